@@ -13,8 +13,10 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -22,11 +24,16 @@ import javax.swing.SwingUtilities;
 import javax.swing.ToolTipManager;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 
 import com.github.mangstadt.emc.net.EmcWebsiteConnectionImpl;
 
+import emcshop.chart.ChartWriter;
+import emcshop.chart.ProfitsChart;
+import emcshop.chat.ChatLogIndex;
 import emcshop.cli.CliController;
 import emcshop.cli.EmcShopArguments;
 import emcshop.db.DbDao;
@@ -51,7 +58,10 @@ import emcshop.model.ProfileSelectorModelImpl;
 import emcshop.presenter.DatabaseStartupErrorPresenter;
 import emcshop.presenter.ProfileSelectorPresenter;
 import emcshop.presenter.UnhandledErrorPresenter;
+import emcshop.query.AggregateQuery;
+import emcshop.query.Leaderboard;
 import emcshop.scraper.EmcSession;
+import emcshop.scraper.RupeePageCache;
 import emcshop.util.GuiUtils;
 import emcshop.view.DatabaseStartupErrorViewImpl;
 import emcshop.view.IDatabaseStartupErrorView;
@@ -177,7 +187,7 @@ public class EMCShopkeeper {
 		Settings settings = new Settings(profileDir.resolve("settings.properties"));
 
 		//show the "choose profile" dialog
-		boolean cliMode = arguments.query() != null || arguments.update();
+		boolean cliMode = arguments.query() != null || arguments.update() || arguments.reimport() || arguments.inventory() != null || arguments.top() != null || arguments.chart() != null || arguments.serve() != null || arguments.watch() != null;
 		if (!cliMode && !profileSpecified && settings.isShowProfilesOnStartup()) {
 			initializeMac();
 
@@ -214,16 +224,17 @@ public class EMCShopkeeper {
 
 		LogManager logManager = new LogManager(logLevel, profileDir.resolve("app.log"));
 
-		if (!arguments.update() && arguments.query() == null && arguments.export() == null) {
+		if (!cliMode && arguments.export() == null) {
 			launchGui(profileDir, dbDir, settings, logManager);
 		} else {
-			launchCli(dbDir, settings, arguments);
+			launchCli(profileDir, dbDir, settings, arguments);
 		}
 	}
 
-	private static void launchCli(Path dbDir, Settings settings, EmcShopArguments args) throws Exception {
+	private static void launchCli(Path profileDir, Path dbDir, Settings settings, EmcShopArguments args) throws Exception {
 		AppContext context = AppContext.instance();
 		context.add(settings);
+		context.add(new RupeePageCache(profileDir.resolve("page-cache")));
 
 		DbDao dao = null;
 		try {
@@ -265,19 +276,148 @@ public class EMCShopkeeper {
 			cli.update(startAtPage, stopAtPage);
 		}
 
+		if (args.reimport()) {
+			cli.reimport();
+		}
+
+		//validate the "watch" arguments now, but start watching after the other commands have run
+		Integer watch = args.watch();
+		Integer watchMax = args.watchMax();
+		if (watch != null) {
+			if (watchMax == null) {
+				watchMax = Math.max(watch, EmcShopArguments.DEFAULT_WATCH_MAX);
+			}
+			if (watch < 1) {
+				out.println("Error: \"watch\" must be greater than 0.");
+				System.exit(1);
+			}
+			if (watchMax < watch) {
+				out.println("Error: \"watch-max\" cannot be less than \"watch\".");
+				System.exit(1);
+			}
+		}
+
 		String query = args.query();
 		if (query != null) {
 			String format = args.format();
 			if (format == null) {
 				format = defaultFormat;
 			}
-			cli.query(query, format);
+
+			if (args.groupBy() != null || args.measures() != null) {
+				AggregateQuery.Builder builder = null;
+				try {
+					builder = CliController.parseAggregateQuery(args.groupBy(), args.measures(), args.type(), args.sort(), args.limit());
+				} catch (IllegalArgumentException e) {
+					out.println("Error: " + e.getMessage());
+					System.exit(1);
+				}
+
+				if (args.items() != null) {
+					builder.items(CliController.parseList(args.items()));
+				}
+				if (args.players() != null) {
+					builder.players(CliController.parseList(args.players()));
+				}
+
+				cli.aggregate(query, builder, format);
+			} else {
+				cli.query(query, format);
+			}
 		}
 
 		String export = args.export();
 		if (export != null) {
 			cli.export(export);
 		}
+
+		String inventory = args.inventory();
+		if (inventory != null) {
+			cli.inventory(inventory, args.format());
+		}
+
+		String top = args.top();
+		if (top != null) {
+			Leaderboard leaderboard = (args.topType() == null) ? Leaderboard.CUSTOMERS : Leaderboard.find(args.topType());
+			if (leaderboard == null) {
+				out.println("Error: \"top-type\" must be CUSTOMERS, SUPPLIERS, ITEMS-SOLD, or ITEMS-BOUGHT.");
+				System.exit(1);
+			}
+
+			Leaderboard.RankBy rankBy = (args.topBy() == null) ? Leaderboard.RankBy.REVENUE : Leaderboard.RankBy.find(args.topBy());
+			if (rankBy == null) {
+				out.println("Error: \"top-by\" must be REVENUE or VOLUME.");
+				System.exit(1);
+			}
+
+			Integer size = args.limit();
+			if (size == null) {
+				size = CliController.DEFAULT_TOP_SIZE;
+			} else if (size < 1) {
+				out.println("Error: \"limit\" must be greater than 0.");
+				System.exit(1);
+			}
+
+			cli.top(top, leaderboard, rankBy, size, args.format());
+		}
+
+		String chart = args.chart();
+		if (chart != null) {
+			List<ProfitsChart.Show> types;
+			int[] size;
+			try {
+				types = (args.chartType() == null) ? Arrays.asList(ProfitsChart.Show.NET_PROFITS) : CliController.parseChartTypes(args.chartType());
+				size = (args.chartSize() == null) ? new int[] { CliController.DEFAULT_CHART_WIDTH, CliController.DEFAULT_CHART_HEIGHT } : CliController.parseChartSize(args.chartSize());
+			} catch (IllegalArgumentException e) {
+				out.println("Error: " + e.getMessage());
+				System.exit(1);
+				return;
+			}
+
+			List<String> items = CliController.parseList(args.chartItems());
+			if (types.contains(ProfitsChart.Show.ITEMS) && items.isEmpty()) {
+				out.println("Error: \"chart-items\" must be specified when rendering an items chart.");
+				System.exit(1);
+			}
+
+			String chartBy = args.chartBy();
+			if (chartBy != null && !"day".equalsIgnoreCase(chartBy) && !"month".equalsIgnoreCase(chartBy)) {
+				out.println("Error: \"chart-by\" must be DAY or MONTH.");
+				System.exit(1);
+			}
+			boolean byMonth = "month".equalsIgnoreCase(chartBy);
+
+			ChartWriter.Format format = (args.format() == null) ? ChartWriter.Format.PNG : ChartWriter.Format.find(args.format());
+			if (format == null) {
+				out.println("Error: Charts can only be saved as PNG or SVG.");
+				System.exit(1);
+			}
+
+			Path dir = Paths.get((args.chartDir() == null) ? "." : args.chartDir());
+			cli.chart(chart, types, CliController.parseList(args.chartGroups()), items, byMonth, format, size[0], size[1], dir);
+		}
+
+		Integer port = args.serve();
+		if (port != null) {
+			if (port < 0 || port > 65535) {
+				out.println("Error: \"serve\" must be a valid port number.");
+				System.exit(1);
+			}
+
+			Integer threads = args.serveThreads();
+			if (threads == null) {
+				threads = Runtime.getRuntime().availableProcessors();
+			} else if (threads < 1) {
+				out.println("Error: \"serve-threads\" must be greater than 0.");
+				System.exit(1);
+			}
+
+			cli.serve(port, threads);
+		}
+
+		if (watch != null) {
+			cli.watch(Duration.ofMinutes(watch), Duration.ofMinutes(watchMax));
+		}
 	}
 
 	private static void launchGui(Path profileDir, Path dbDir, Settings settings, LogManager logManager) throws Exception {
@@ -288,6 +428,12 @@ public class EMCShopkeeper {
 		final AppContext context = AppContext.instance();
 		context.add(settings);
 		context.add(logManager);
+		context.add(new RupeePageCache(profileDir.resolve("page-cache")));
+
+		//index the chat logs in the background so the chat log viewer can load them quickly
+		ChatLogIndex chatLogIndex = new ChatLogIndex(settings.getChatLogDir(), profileDir.resolve("chat-log-index.txt"));
+		context.add(chatLogIndex);
+		chatLogIndex.updateInBackground();
 
 		//add the report sender to the app context here incase there is an error during startup
 		ReportSender reportSender = new ReportSender();
@@ -333,7 +479,7 @@ public class EMCShopkeeper {
 		initCacheDir(cacheDir);
 
 		//start the profile image loader
-		ProfileLoader profileLoader = new ProfileLoader(cacheDir, () -> {
+		ProfileLoader profileLoader = new ProfileLoader(cacheDir, maxConnections -> {
 			HttpClientBuilder builder = HttpClients.custom();
 
 			/*
@@ -342,13 +488,26 @@ public class EMCShopkeeper {
 			 */
 			builder.setUserAgent("EMC Shopkeeper v" + VERSION);
 
-			EmcSession session = context.get(EmcSession.class);
-			if (session != null) {
-				builder.setDefaultCookieStore(session.getCookieStore());
-			}
+			//one connection per download thread, which are kept alive between requests
+			builder.setMaxConnPerRoute(maxConnections);
+			builder.setMaxConnTotal(maxConnections * 2);
+			builder.setConnectionTimeToLive(1, TimeUnit.MINUTES);
+
+			/*
+			 * The client lives as long as the application does, so look up the
+			 * user's login session on every request so the latest session token
+			 * is used.
+			 */
+			builder.addInterceptorFirst((HttpRequestInterceptor) (request, httpContext) -> {
+				EmcSession session = context.get(EmcSession.class);
+				if (session != null) {
+					httpContext.setAttribute(HttpClientContext.COOKIE_STORE, session.getCookieStore());
+				}
+			});
 
 			return builder.build();
 		});
+		profileLoader.setCacheSize(settings.getProfileCacheSize() * 1024L * 1024L);
 		profileLoader.start();
 		context.add(profileLoader);
 
@@ -577,23 +736,6 @@ public class EMCShopkeeper {
 		settings.save(); //remove unused properties
 	}
 
-	/**
-	 * Estimates the time it will take to download a given number of transaction
-	 * pages.
-	 * @param stopPage the page to stop at
-	 * @return the estimated processing time
-	 */
-	public static Duration estimateUpdateTime(Integer stopPage) {
-		long totalMs = 10_000;
-		long last = 10_000;
-		for (int i = 100; i < stopPage; i += 100) {
-			long cur = last + 1550;
-			totalMs += cur;
-			last = cur;
-		}
-		return Duration.ofMillis(totalMs);
-	}
-
 	/**
 	 * Initializes the cache directory.
 	 * @param cacheDir the path to the cache directory
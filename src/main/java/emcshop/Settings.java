@@ -25,12 +25,12 @@ public class Settings {
 
 	private final Path file;
 
-	private Integer version, rupeeBalance, backupFrequency, maxBackups, downloadThreads;
+	private Integer version, rupeeBalance, backupFrequency, maxBackups, downloadThreads, profileCacheSize, autoUpdateInterval;
 	private WindowState windowState;
 	private LocalDateTime previousUpdate, lastUpdated;
 	private String username, password;
 	private Level logLevel;
-	private boolean showProfilesOnStartup, showQuantitiesInStacks, backupsEnabled, reportUnknownItems;
+	private boolean showProfilesOnStartup, showQuantitiesInStacks, backupsEnabled, reportUnknownItems, pageCacheEnabled;
 	private Path chatLogDir;
 	private List<String> reportedUnknownItems;
 
@@ -185,6 +185,42 @@ public class Settings {
 		this.downloadThreads = null;
 	}
 
+	/**
+	 * Gets the size the player profile cache can grow to before the least
+	 * recently used profiles are removed from it.
+	 * @return the size (in megabytes)
+	 */
+	public Integer getProfileCacheSize() {
+		return profileCacheSize;
+	}
+
+	public void setProfileCacheSize(Integer profileCacheSize) {
+		this.profileCacheSize = profileCacheSize;
+	}
+
+	public boolean isPageCacheEnabled() {
+		return pageCacheEnabled;
+	}
+
+	public void setPageCacheEnabled(boolean pageCacheEnabled) {
+		this.pageCacheEnabled = pageCacheEnabled;
+	}
+
+	/**
+	 * Gets how often the GUI should check for new transactions in the
+	 * background. The interval grows when the shop is quiet (see
+	 * {@link emcshop.model.UpdateScheduler}).
+	 * @return the shortest interval (in minutes) or null if automatic updates
+	 * are disabled
+	 */
+	public Integer getAutoUpdateInterval() {
+		return autoUpdateInterval;
+	}
+
+	public void setAutoUpdateInterval(Integer autoUpdateInterval) {
+		this.autoUpdateInterval = autoUpdateInterval;
+	}
+
 	private void defaults() {
 		version = CURRENT_VERSION;
 		windowState = null;
@@ -203,6 +239,9 @@ public class Settings {
 		backupFrequency = 7;
 		maxBackups = 10;
 		downloadThreads = null;
+		pageCacheEnabled = false;
+		autoUpdateInterval = null;
+		profileCacheSize = 50;
 
 		chatLogDir = MinecraftUtils.getLogFolder();
 		if (chatLogDir == null) {
@@ -344,6 +383,22 @@ public class Settings {
 			}
 		}
 
+		pageCacheEnabled = props.getBoolean("download.pageCache", false);
+
+		try {
+			autoUpdateInterval = props.getInteger("download.autoUpdateInterval");
+		} catch (NumberFormatException e) {
+			logger.log(Level.WARNING, "Problem parsing download.autoUpdateInterval: ", e);
+			autoUpdateInterval = null;
+		}
+
+		try {
+			profileCacheSize = props.getInteger("cache.profileCacheSize", 50);
+		} catch (NumberFormatException e) {
+			logger.log(Level.WARNING, "Problem parsing cache.profileCacheSize: ", e);
+			profileCacheSize = 50;
+		}
+
 		String value = props.get("chatLogDir");
 		if (value == null) {
 			chatLogDir = MinecraftUtils.getLogFolder();
@@ -371,6 +426,9 @@ public class Settings {
 		props.setInteger("backup.frequency", backupFrequency);
 		props.setInteger("backup.max", maxBackups);
 		props.set("download.threads", (downloadThreads == null) ? "recommended" : downloadThreads);
+		props.setBoolean("download.pageCache", pageCacheEnabled);
+		props.setInteger("download.autoUpdateInterval", autoUpdateInterval);
+		props.setInteger("cache.profileCacheSize", profileCacheSize);
 
 		try {
 			props.store(file, "EMC Shopkeeper settings");
@@ -0,0 +1,101 @@
+package emcshop.chart;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import javax.imageio.ImageIO;
+
+import org.jfree.chart.JFreeChart;
+
+/**
+ * Renders charts to image files. Charts are drawn to an off-screen image, so
+ * this class works in headless environments.
+ * @author Michael Angstadt
+ */
+public final class ChartWriter {
+	/**
+	 * The supported file formats.
+	 */
+	public enum Format {
+		PNG("png"),
+
+		/**
+		 * An SVG document that contains the chart as an embedded PNG image.
+		 * This allows the chart to be included in web pages that expect SVG
+		 * files, but the chart itself is not a vector image.
+		 */
+		SVG("svg");
+
+		private final String extension;
+
+		private Format(String extension) {
+			this.extension = extension;
+		}
+
+		/**
+		 * Gets the file extension of this format.
+		 * @return the file extension (e.g. "png")
+		 */
+		public String getExtension() {
+			return extension;
+		}
+
+		/**
+		 * Gets a format by name.
+		 * @param name the name (case insensitive, e.g. "png")
+		 * @return the format or null if not found
+		 */
+		public static Format find(String name) {
+			for (Format format : values()) {
+				if (format.name().equalsIgnoreCase(name)) {
+					return format;
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Renders a chart.
+	 * @param chart the chart
+	 * @param format the file format
+	 * @param width the width of the image (in pixels)
+	 * @param height the height of the image (in pixels)
+	 * @param out the output stream to write the image to
+	 * @throws IOException if there's a problem writing to the stream
+	 */
+	public static void write(JFreeChart chart, Format format, int width, int height, OutputStream out) throws IOException {
+		BufferedImage image = chart.createBufferedImage(width, height, BufferedImage.TYPE_INT_ARGB, null);
+
+		switch (format) {
+		case PNG:
+			ImageIO.write(image, "png", out);
+			break;
+
+		case SVG:
+			ByteArrayOutputStream png = new ByteArrayOutputStream();
+			ImageIO.write(image, "png", png);
+
+			Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+			//@formatter:off
+			writer.write(
+			"<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+			"<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" width=\"" + width + "\" height=\"" + height + "\" viewBox=\"0 0 " + width + " " + height + "\">\n" +
+			"<image width=\"" + width + "\" height=\"" + height + "\" xlink:href=\"data:image/png;base64," + Base64.getEncoder().encodeToString(png.toByteArray()) + "\"/>\n" +
+			"</svg>\n");
+			//@formatter:on
+			writer.flush();
+			break;
+		}
+	}
+
+	private ChartWriter() {
+		//hide
+	}
+}
@@ -0,0 +1,80 @@
+package emcshop.chart;
+
+/**
+ * <p>
+ * Downsamples a series of data points using the "Largest Triangle Three
+ * Buckets" algorithm. The algorithm keeps the first and last points and picks
+ * one point from each bucket in between: the one that forms the largest
+ * triangle with the point picked from the previous bucket and the average of
+ * the next bucket. This preserves the overall shape of the series, including
+ * its peaks and valleys.
+ * </p>
+ * @author Michael Angstadt
+ * @see <a href="https://skemman.is/handle/1946/15343">Sveinn Steinarsson,
+ * "Downsampling Time Series for Visual Representation"</a>
+ */
+public final class Lttb {
+	/**
+	 * Downsamples a series of data points.
+	 * @param x the x values (must be in ascending order)
+	 * @param y the y values
+	 * @param threshold the maximum number of points to keep
+	 * @return the indexes of the points to keep (in ascending order)
+	 */
+	public static int[] downsample(double[] x, double[] y, int threshold) {
+		int size = x.length;
+		if (threshold >= size || threshold < 3) {
+			int[] all = new int[size];
+			for (int i = 0; i < size; i++) {
+				all[i] = i;
+			}
+			return all;
+		}
+
+		int[] sampled = new int[threshold];
+		int sampledIndex = 0;
+
+		//the size of each bucket, excluding the first and last points
+		double every = (double) (size - 2) / (threshold - 2);
+
+		int a = 0;
+		sampled[sampledIndex++] = a;
+
+		for (int i = 0; i < threshold - 2; i++) {
+			//calculate the average point of the next bucket
+			int avgRangeStart = (int) Math.floor((i + 1) * every) + 1;
+			int avgRangeEnd = Math.min((int) Math.floor((i + 2) * every) + 1, size);
+			double avgX = 0, avgY = 0;
+			for (int j = avgRangeStart; j < avgRangeEnd; j++) {
+				avgX += x[j];
+				avgY += y[j];
+			}
+			int avgRangeLength = avgRangeEnd - avgRangeStart;
+			avgX /= avgRangeLength;
+			avgY /= avgRangeLength;
+
+			//pick the point in this bucket that forms the largest triangle
+			int rangeStart = (int) Math.floor(i * every) + 1;
+			int rangeEnd = (int) Math.floor((i + 1) * every) + 1;
+			double maxArea = -1;
+			int next = rangeStart;
+			for (int j = rangeStart; j < rangeEnd; j++) {
+				double area = Math.abs((x[a] - avgX) * (y[j] - y[a]) - (x[a] - x[j]) * (avgY - y[a]));
+				if (area > maxArea) {
+					maxArea = area;
+					next = j;
+				}
+			}
+
+			sampled[sampledIndex++] = next;
+			a = next;
+		}
+
+		sampled[sampledIndex] = size - 1;
+		return sampled;
+	}
+
+	private Lttb() {
+		//hide
+	}
+}
@@ -0,0 +1,295 @@
+package emcshop.chart;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.DateAxis;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.xy.XYItemRenderer;
+import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
+import org.jfree.chart.util.DefaultShadowGenerator;
+import org.jfree.data.time.Day;
+import org.jfree.data.time.Month;
+import org.jfree.data.time.RegularTimePeriod;
+import org.jfree.data.time.TimeSeries;
+import org.jfree.data.time.TimeSeriesCollection;
+import org.jfree.data.xy.XYDataset;
+import org.jfree.ui.RectangleInsets;
+
+import emcshop.util.TimeUtils;
+
+/**
+ * Builds time series charts from a {@link ProfitsMatrix}. This class does not
+ * depend on any Swing components, so it can be used to render charts
+ * off-screen.
+ * @author Michael Angstadt
+ */
+public class ProfitsChart {
+	/**
+	 * The kinds of charts that can be built.
+	 */
+	public enum Show {
+		NET_PROFITS("Net Profits"), ITEM_GROUPS("Item Groups"), ITEMS("Items"), RUPEE_BALANCE("Rupee Balance");
+
+		private final String display;
+
+		private Show(String display) {
+			this.display = display;
+		}
+
+		@Override
+		public String toString() {
+			return display;
+		}
+	}
+
+	private final ProfitsMatrix matrix;
+	private final RegularTimePeriod[] periods;
+	private final double[] x;
+
+	/**
+	 * @param matrix the profits data
+	 */
+	public ProfitsChart(ProfitsMatrix matrix) {
+		this.matrix = matrix;
+
+		List<LocalDate> dates = matrix.getDates();
+		periods = new RegularTimePeriod[dates.size()];
+		x = new double[dates.size()];
+		for (int i = 0; i < periods.length; i++) {
+			LocalDate date = dates.get(i);
+			periods[i] = matrix.isByMonth() ? new Month(TimeUtils.toDate(date)) : new Day(TimeUtils.toDate(date));
+			x[i] = periods[i].getFirstMillisecond();
+		}
+	}
+
+	/**
+	 * Gets the profits data.
+	 * @return the profits data
+	 */
+	public ProfitsMatrix getMatrix() {
+		return matrix;
+	}
+
+	/**
+	 * Creates the series to display in a chart.
+	 * @param show the kind of chart
+	 * @param names the item groups or items to include (ignored for the other
+	 * kinds of charts)
+	 * @param maxPoints the maximum number of points each series should have,
+	 * or zero to include every point (see {@link Lttb})
+	 * @return the series
+	 */
+	public List<TimeSeries> createSeries(Show show, Collection<String> names, int maxPoints) {
+		List<TimeSeries> series = new ArrayList<>();
+
+		switch (show) {
+		case NET_PROFITS:
+			int[] customers = matrix.getCustomerTotals();
+			int[] suppliers = matrix.getSupplierTotals();
+			int[] net = new int[customers.length];
+			for (int i = 0; i < net.length; i++) {
+				net[i] = customers[i] + suppliers[i];
+			}
+
+			series.add(createSeries("Customers", customers, true, maxPoints));
+			series.add(createSeries("Suppliers", suppliers, true, maxPoints));
+			series.add(createSeries("Net Profit", net, true, maxPoints));
+			break;
+
+		case ITEM_GROUPS:
+			for (String group : names) {
+				series.add(createGroupSeries(group, maxPoints));
+			}
+			break;
+
+		case ITEMS:
+			for (String item : names) {
+				series.add(createItemSeries(item, maxPoints));
+			}
+			break;
+
+		case RUPEE_BALANCE:
+			series.add(createSeries("Rupee Balance", matrix.getBalances(), false, maxPoints));
+			break;
+		}
+
+		return series;
+	}
+
+	/**
+	 * Creates a series containing the net profits of an item group.
+	 * @param group the group name
+	 * @param maxPoints the maximum number of points or zero to include every
+	 * point
+	 * @return the series
+	 */
+	public TimeSeries createGroupSeries(String group, int maxPoints) {
+		return createSeries(group, matrix.getGroupTotals(group), true, maxPoints);
+	}
+
+	/**
+	 * Creates a series containing the net profits of an item.
+	 * @param item the item name
+	 * @param maxPoints the maximum number of points or zero to include every
+	 * point
+	 * @return the series
+	 */
+	public TimeSeries createItemSeries(String item, int maxPoints) {
+		return createSeries(item, matrix.getItemTotals(item), true, maxPoints);
+	}
+
+	/**
+	 * Calculates the net total of what a chart displays.
+	 * @param show the kind of chart
+	 * @param names the item groups or items to include (ignored for the other
+	 * kinds of charts)
+	 * @return the net total (always zero for rupee balance charts)
+	 */
+	public int getNetTotal(Show show, Collection<String> names) {
+		int total = 0;
+
+		switch (show) {
+		case NET_PROFITS:
+			total += sum(matrix.getCustomerTotals());
+			total += sum(matrix.getSupplierTotals());
+			break;
+
+		case ITEM_GROUPS:
+			for (String group : names) {
+				total += sum(matrix.getGroupTotals(group));
+			}
+			break;
+
+		case ITEMS:
+			for (String item : names) {
+				total += sum(matrix.getItemTotals(item));
+			}
+			break;
+
+		case RUPEE_BALANCE:
+			break;
+		}
+
+		return total;
+	}
+
+	/**
+	 * Creates a chart.
+	 * @param show the kind of chart
+	 * @param dataset the series to display in the chart
+	 * @return the chart
+	 */
+	public JFreeChart createChart(Show show, XYDataset dataset) {
+		String yAxisLabel = (show == Show.RUPEE_BALANCE) ? "Rupee Balance" : "Rupees Earned";
+		JFreeChart chart = ChartFactory.createTimeSeriesChart("", "Date", yAxisLabel, dataset, true, false, false);
+		chart.setBackgroundPaint(null); //transparent
+
+		XYPlot plot = (XYPlot) chart.getPlot();
+		plot.setBackgroundPaint(Color.white);
+		plot.setDomainGridlinePaint(new Color(192, 192, 192));
+		plot.setRangeGridlinePaint(new Color(192, 192, 192));
+		plot.setRangeZeroBaselinePaint(Color.black);
+		plot.setRangeZeroBaselineStroke(new BasicStroke(2));
+		plot.setRangeZeroBaselineVisible(true);
+		plot.setAxisOffset(new RectangleInsets(5.0, 5.0, 5.0, 5.0));
+		plot.setShadowGenerator(new DefaultShadowGenerator());
+
+		XYItemRenderer renderer = plot.getRenderer();
+		if (show == Show.NET_PROFITS) {
+			renderer.setSeriesPaint(0, new Color(0, 128, 0));
+			renderer.setSeriesPaint(1, Color.red);
+			renderer.setSeriesPaint(2, Color.blue);
+			renderer.setSeriesStroke(2, new BasicStroke(3));
+		} else if (show == Show.RUPEE_BALANCE) {
+			renderer.setSeriesPaint(0, new Color(0, 128, 0));
+		}
+
+		if (renderer instanceof XYLineAndShapeRenderer) {
+			XYLineAndShapeRenderer r = (XYLineAndShapeRenderer) renderer;
+			r.setDrawSeriesLineAsPath(true);
+		}
+
+		DateAxis xAxis = (DateAxis) plot.getDomainAxis();
+		String formatStr = matrix.isByMonth() ? "MMM yyyy" : "MMM dd";
+		xAxis.setDateFormatOverride(new SimpleDateFormat(formatStr));
+
+		NumberAxis yAxis = (NumberAxis) plot.getRangeAxis();
+		NumberFormat nf = new DecimalFormat("#,###'r'");
+		nf.setGroupingUsed(true);
+		yAxis.setNumberFormatOverride(nf);
+		yAxis.setAutoRangeIncludesZero(show != Show.RUPEE_BALANCE);
+
+		return chart;
+	}
+
+	/**
+	 * Creates a chart, including all of its series.
+	 * @param show the kind of chart
+	 * @param names the item groups or items to include (ignored for the other
+	 * kinds of charts)
+	 * @param maxPoints the maximum number of points each series should have,
+	 * or zero to include every point
+	 * @return the chart
+	 */
+	public JFreeChart createChart(Show show, Collection<String> names, int maxPoints) {
+		TimeSeriesCollection dataset = new TimeSeriesCollection();
+		for (TimeSeries series : createSeries(show, names, maxPoints)) {
+			dataset.addSeries(series);
+		}
+		return createChart(show, dataset);
+	}
+
+	private TimeSeries createSeries(String name, int[] values, boolean onlyDatesWithTransactions, int maxPoints) {
+		//determine which dates to include
+		int[] indexes = new int[values.length];
+		int count = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (!onlyDatesWithTransactions || matrix.hasTransactions(i)) {
+				indexes[count++] = i;
+			}
+		}
+
+		//downsample
+		if (maxPoints > 0 && count > maxPoints) {
+			double[] seriesX = new double[count];
+			double[] seriesY = new double[count];
+			for (int i = 0; i < count; i++) {
+				seriesX[i] = x[indexes[i]];
+				seriesY[i] = values[indexes[i]];
+			}
+
+			int[] sampled = Lttb.downsample(seriesX, seriesY, maxPoints);
+			for (int i = 0; i < sampled.length; i++) {
+				indexes[i] = indexes[sampled[i]];
+			}
+			count = sampled.length;
+		}
+
+		TimeSeries series = new TimeSeries(name);
+		for (int i = 0; i < count; i++) {
+			int index = indexes[i];
+			series.add(periods[index], values[index], false);
+		}
+		series.fireSeriesChanged();
+		return series;
+	}
+
+	private static int sum(int[] values) {
+		int sum = 0;
+		for (int value : values) {
+			sum += value;
+		}
+		return sum;
+	}
+}
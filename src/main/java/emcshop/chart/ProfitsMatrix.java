@@ -0,0 +1,192 @@
+package emcshop.chart;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import emcshop.ItemIndex;
+import emcshop.db.Profits;
+
+/**
+ * <p>
+ * Holds the result of a profits query as a set of arrays, one value per date,
+ * so that chart series can be built from it without re-processing each date's
+ * {@link Profits} object.
+ * </p>
+ * <p>
+ * The totals of each item group are calculated when the matrix is created.
+ * The totals of individual items are calculated the first time each item is
+ * requested. This class is thread-safe.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class ProfitsMatrix {
+	private final boolean byMonth;
+	private final List<LocalDate> dates;
+	private final List<Profits> profits;
+	private final boolean[] hasTransactions;
+	private final int[] customerTotals, supplierTotals, balances, zeros;
+	private final Map<String, int[]> groupTotals;
+	private final Map<String, int[]> itemTotals = new ConcurrentHashMap<>();
+
+	/**
+	 * @param profits the profits query result (must be sorted by date)
+	 * @param byMonth true if the profits are grouped by month, false if by day
+	 */
+	public ProfitsMatrix(Map<LocalDate, Profits> profits, boolean byMonth) {
+		this(profits, byMonth, ItemIndex.instance()::getGroups);
+	}
+
+	/**
+	 * @param profits the profits query result (must be sorted by date)
+	 * @param byMonth true if the profits are grouped by month, false if by day
+	 * @param groupsOf gets the groups that an item belongs to
+	 */
+	public ProfitsMatrix(Map<LocalDate, Profits> profits, boolean byMonth, Function<String, Collection<String>> groupsOf) {
+		this.byMonth = byMonth;
+		this.dates = Collections.unmodifiableList(new ArrayList<>(profits.keySet()));
+		this.profits = new ArrayList<>(profits.values());
+
+		int size = dates.size();
+		hasTransactions = new boolean[size];
+		customerTotals = new int[size];
+		supplierTotals = new int[size];
+		balances = new int[size];
+		zeros = new int[size];
+
+		Map<String, Collection<String>> groupsCache = new HashMap<>();
+		Map<String, int[]> groupTotals = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			Profits p = this.profits.get(i);
+			hasTransactions[i] = p.hasTransactions();
+			customerTotals[i] = p.getCustomerTotal();
+			supplierTotals[i] = p.getSupplierTotal();
+			balances[i] = p.getBalance();
+
+			for (Map<String, Integer> totals : Arrays.asList(p.getCustomerTotals(), p.getSupplierTotals())) {
+				for (Map.Entry<String, Integer> entry : totals.entrySet()) {
+					Collection<String> groups = groupsCache.computeIfAbsent(entry.getKey(), groupsOf);
+					for (String group : groups) {
+						groupTotals.computeIfAbsent(group, g -> new int[size])[i] += entry.getValue();
+					}
+				}
+			}
+		}
+		this.groupTotals = groupTotals;
+	}
+
+	/**
+	 * Determines if the dates are months or days.
+	 * @return true if each date represents a month, false if it represents a
+	 * day
+	 */
+	public boolean isByMonth() {
+		return byMonth;
+	}
+
+	/**
+	 * Gets the dates. For monthly data, each date is the first day of the
+	 * month.
+	 * @return the dates (in ascending order)
+	 */
+	public List<LocalDate> getDates() {
+		return dates;
+	}
+
+	/**
+	 * Gets the number of dates.
+	 * @return the number of dates
+	 */
+	public int size() {
+		return dates.size();
+	}
+
+	/**
+	 * Determines if any shop transactions happened on the given date.
+	 * @param index the date index
+	 * @return true if there were shop transactions, false if not
+	 */
+	public boolean hasTransactions(int index) {
+		return hasTransactions[index];
+	}
+
+	/**
+	 * Gets the amount earned from customers on each date. The returned array
+	 * must not be modified.
+	 * @return the totals
+	 */
+	public int[] getCustomerTotals() {
+		return customerTotals;
+	}
+
+	/**
+	 * Gets the amount spent on suppliers on each date. The returned array must
+	 * not be modified.
+	 * @return the totals (negative)
+	 */
+	public int[] getSupplierTotals() {
+		return supplierTotals;
+	}
+
+	/**
+	 * Gets the player's highest rupee balance on each date. The returned array
+	 * must not be modified.
+	 * @return the balances
+	 */
+	public int[] getBalances() {
+		return balances;
+	}
+
+	/**
+	 * Gets the names of the item groups that have transactions.
+	 * @return the group names
+	 */
+	public Collection<String> getGroups() {
+		return Collections.unmodifiableSet(groupTotals.keySet());
+	}
+
+	/**
+	 * Gets the net amount earned from the items in a group on each date. The
+	 * returned array must not be modified.
+	 * @param group the group name
+	 * @return the net amounts
+	 */
+	public int[] getGroupTotals(String group) {
+		int[] totals = groupTotals.get(group);
+		return (totals == null) ? zeros : totals;
+	}
+
+	/**
+	 * Gets the net amount earned from an item on each date. The returned array
+	 * must not be modified.
+	 * @param item the item name (case insensitive)
+	 * @return the net amounts
+	 */
+	public int[] getItemTotals(String item) {
+		return itemTotals.computeIfAbsent(item.toLowerCase(), key -> {
+			int[] totals = new int[size()];
+			boolean found = false;
+			for (int i = 0; i < totals.length; i++) {
+				Profits p = profits.get(i);
+				Integer customer = p.getCustomerTotals().get(key);
+				Integer supplier = p.getSupplierTotals().get(key);
+				if (customer != null) {
+					totals[i] += customer;
+					found = true;
+				}
+				if (supplier != null) {
+					totals[i] += supplier;
+					found = true;
+				}
+			}
+			return found ? totals : zeros;
+		});
+	}
+}
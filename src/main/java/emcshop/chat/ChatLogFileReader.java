@@ -1,19 +1,32 @@
 package emcshop.chat;
 
-import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.zip.GZIPInputStream;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+
 import emcshop.util.OS;
 
 /**
@@ -21,16 +34,50 @@ import emcshop.util.OS;
  * @author Michael Angstadt
  */
 public class ChatLogFileReader implements Closeable {
-	private static final Pattern lineRegex = Pattern.compile("^\\[(\\d\\d):(\\d\\d):(\\d\\d)\\].*?\\[CHAT\\](.*)");
-	private final BufferedReader reader;
+	/*
+	 * On my Windows desktop, some characters do not appear when using UTF-8
+	 * encoding (e.g. the dot character that appears before a player's name
+	 * when they PM you and they are on your friends list, and the
+	 * "double arrow" character used for "residence enter" messages)
+	 */
+	private static final Charset charset = OS.isWindows() ? Charset.forName("Windows-1252") : StandardCharsets.UTF_8;
+
+	private static final byte[] CHAT_MARKER = "[CHAT]".getBytes(StandardCharsets.US_ASCII);
+
+	private final InputStream in;
 	private final LocalDate date;
 
+	/*
+	 * The lines are scanned as raw bytes, since the vast majority of the lines
+	 * in a log file are not chat messages. Only the message portion of chat
+	 * lines are decoded. This works because the timestamp and the chat marker
+	 * are ASCII, which is encoded the same way in both of the supported
+	 * charsets.
+	 */
+	private byte[] buffer = new byte[8192];
+	private int position, limit;
+	private boolean eof, skipLineFeed;
+	private int lineStart, lineEnd;
+
 	/**
 	 * @param file the file to read
 	 * @param date the date of the log file
 	 * @throws IOException if there is a problem opening the file
 	 */
 	public ChatLogFileReader(Path file, LocalDate date) throws IOException {
+		this(file, date, 0, -1);
+	}
+
+	/**
+	 * @param file the file to read
+	 * @param date the date of the log file
+	 * @param start the (uncompressed) byte offset to start reading from
+	 * @param end the (uncompressed) byte offset to stop reading at or -1 to
+	 * read until the end of the file
+	 * @throws IOException if there is a problem opening the file
+	 * @see ChatLogIndex
+	 */
+	public ChatLogFileReader(Path file, LocalDate date, long start, long end) throws IOException {
 		InputStream in = Files.newInputStream(file);
 
 		/*
@@ -41,15 +88,14 @@ public class ChatLogFileReader implements Closeable {
 			in = new GZIPInputStream(in);
 		}
 
-		/*
-		 * On my Windows desktop, some characters do not appear when using UTF-8
-		 * encoding (e.g. the dot character that appears before a player's name
-		 * when they PM you and they are on your friends list, and the
-		 * "double arrow" character used for "residence enter" messages)
-		 */
-		String charset = OS.isWindows() ? "Windows-1252" : "UTF-8";
-		reader = new BufferedReader(new InputStreamReader(in, charset));
+		if (start > 0) {
+			IOUtils.skipFully(in, start);
+		}
+		if (end >= 0) {
+			in = new BoundedInputStream(in, end - start);
+		}
 
+		this.in = in;
 		this.date = date;
 	}
 
@@ -59,25 +105,102 @@ public class ChatLogFileReader implements Closeable {
 	 * @throws IOException if there is a problem reading the file
 	 */
 	public ChatMessage readNext() throws IOException {
-		Matcher m;
-		while (true) {
-			String line = reader.readLine();
-			if (line == null) {
-				//EOF
-				return null;
+		while (readLine()) {
+			ChatMessage message = parseLine();
+			if (message != null) {
+				return message;
 			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the remaining chat messages as a stream. The messages are read
+	 * lazily as the stream is consumed. Closing the stream closes this reader.
+	 * @return the chat messages (I/O errors are thrown as
+	 * {@link UncheckedIOException UncheckedIOExceptions})
+	 */
+	public Stream<ChatMessage> stream() {
+		Iterator<ChatMessage> it = new Iterator<ChatMessage>() {
+			private ChatMessage next;
+
+			@Override
+			public boolean hasNext() {
+				if (next == null) {
+					try {
+						next = readNext();
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+				return next != null;
+			}
+
+			@Override
+			public ChatMessage next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				ChatMessage message = next;
+				next = null;
+				return message;
+			}
+		};
 
-			m = lineRegex.matcher(line);
-			if (m.find()) {
-				//found a chat message
-				break;
+		Spliterator<ChatMessage> spliterator = Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL);
+		return StreamSupport.stream(spliterator, false).onClose(() -> {
+			try {
+				close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
+		});
+	}
+
+	/**
+	 * Parses the current line if it is a chat message. Chat lines look like
+	 * this: "[HH:MM:SS] [thread/LEVEL]: [CHAT] message"
+	 * @return the chat message or null if the line isn't a chat message
+	 */
+	private ChatMessage parseLine() {
+		byte[] b = buffer;
+		int s = lineStart;
+		if (lineEnd - s < 10) {
+			return null;
 		}
 
-		int hour = Integer.parseInt(m.group(1));
-		int minute = Integer.parseInt(m.group(2));
-		int second = Integer.parseInt(m.group(3));
-		String message = m.group(4).trim();
+		//@formatter:off
+		if (b[s] != '[' ||
+			!isDigit(b[s+1]) || !isDigit(b[s+2]) || b[s+3] != ':' ||
+			!isDigit(b[s+4]) || !isDigit(b[s+5]) || b[s+6] != ':' ||
+			!isDigit(b[s+7]) || !isDigit(b[s+8]) || b[s+9] != ']') {
+			return null;
+		}
+		//@formatter:on
+
+		int marker = indexOf(b, s + 10, lineEnd, CHAT_MARKER);
+		if (marker < 0) {
+			return null;
+		}
+
+		int hour = digits(b, s + 1);
+		int minute = digits(b, s + 4);
+		int second = digits(b, s + 7);
+
+		/*
+		 * Trim the message before decoding it. Whitespace and control
+		 * characters are single bytes in both charsets, so this gives the
+		 * same result as String.trim().
+		 */
+		int messageStart = marker + CHAT_MARKER.length;
+		int messageEnd = lineEnd;
+		while (messageStart < messageEnd && (b[messageStart] & 0xff) <= ' ') {
+			messageStart++;
+		}
+		while (messageEnd > messageStart && (b[messageEnd - 1] & 0xff) <= ' ') {
+			messageEnd--;
+		}
+		String message = new String(b, messageStart, messageEnd - messageStart, charset);
 
 		LocalTime time = LocalTime.of(hour, minute, second);
 		LocalDateTime ts = LocalDateTime.of(date, time);
@@ -85,8 +208,123 @@ public class ChatLogFileReader implements Closeable {
 		return new ChatMessage(ts, message);
 	}
 
+	/**
+	 * Advances to the next line. Lines are terminated the same way as
+	 * {@link java.io.BufferedReader#readLine}: "\n", "\r", or "\r\n".
+	 * @return true if a line was read, false if the end of the stream has been
+	 * reached
+	 * @throws IOException if there's a problem reading from the stream
+	 */
+	private boolean readLine() throws IOException {
+		int scan = position;
+		while (true) {
+			if (skipLineFeed && scan < limit) {
+				skipLineFeed = false;
+				if (buffer[scan] == '\n') {
+					scan++;
+					position = scan;
+				}
+			}
+
+			for (int i = scan; i < limit; i++) {
+				byte c = buffer[i];
+				if (c == '\n' || c == '\r') {
+					lineStart = position;
+					lineEnd = i;
+					position = i + 1;
+					skipLineFeed = (c == '\r');
+					return true;
+				}
+			}
+
+			if (eof) {
+				if (position < limit) {
+					//last line does not end with a newline
+					lineStart = position;
+					lineEnd = limit;
+					position = limit;
+					return true;
+				}
+				return false;
+			}
+
+			//move the partial line to the beginning of the buffer and read more
+			int partial = limit - position;
+			if (partial == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			} else if (position > 0) {
+				System.arraycopy(buffer, position, buffer, 0, partial);
+			}
+			position = 0;
+			limit = partial;
+			scan = partial;
+
+			int read = in.read(buffer, limit, buffer.length - limit);
+			if (read < 0) {
+				eof = true;
+			} else {
+				limit += read;
+			}
+		}
+	}
+
+	/**
+	 * Finds the end of the last complete line in a plain-text file. Minecraft
+	 * might be in the middle of writing a line to the "latest.log" file, so
+	 * only complete lines should be read from it.
+	 * @param file the file
+	 * @param start the position to stop searching at
+	 * @param size the size of the file
+	 * @return the position after the last newline character or the start
+	 * position if there is no newline after it
+	 * @throws IOException if there's a problem reading the file
+	 */
+	static long endOfLastLine(Path file, long start, long size) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate(4096);
+			long position = size;
+			while (position > start) {
+				int length = (int) Math.min(buffer.capacity(), position - start);
+				position -= length;
+
+				((Buffer) buffer).clear().limit(length);
+				while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+					//keep reading
+				}
+
+				for (int i = buffer.position() - 1; i >= 0; i--) {
+					if (buffer.get(i) == '\n') {
+						return position + i + 1;
+					}
+				}
+			}
+			return start;
+		}
+	}
+
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	private static int digits(byte[] b, int offset) {
+		return (b[offset] - '0') * 10 + (b[offset + 1] - '0');
+	}
+
+	private static int indexOf(byte[] b, int from, int to, byte[] target) {
+		int last = to - target.length;
+		outer: for (int i = from; i <= last; i++) {
+			for (int j = 0; j < target.length; j++) {
+				if (b[i + j] != target[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
 	@Override
 	public void close() throws IOException {
-		reader.close();
+		in.close();
 	}
 }
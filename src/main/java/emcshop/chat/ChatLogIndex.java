@@ -0,0 +1,658 @@
+package emcshop.chat;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * <p>
+ * A persistent index of the archived Minecraft log files (the ".log.gz"
+ * files). It maps each date to the log files that were created on that date,
+ * so the log directory doesn't have to be searched every time a day's chat
+ * messages are retrieved.
+ * </p>
+ * <p>
+ * The index also records where each day's chat messages are located within
+ * each log file (as uncompressed byte offsets). This allows files that contain
+ * no chat messages to be skipped entirely, and the non-chat lines at the
+ * beginning and end of each day to be skipped without being parsed. A log file
+ * can contain messages from more than one day if Minecraft was left running
+ * past midnight, so a day's messages may also be located in log files that are
+ * named after the previous day.
+ * </p>
+ * <p>
+ * The list of files is refreshed whenever the log directory's last modified
+ * time changes. The offsets are calculated by {@link #update}, which is meant
+ * to be run in a background thread, and only scans the files it hasn't seen
+ * before.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class ChatLogIndex {
+	private static final Logger logger = Logger.getLogger(ChatLogIndex.class.getName());
+	private static final Pattern fileNameRegex = Pattern.compile("^(\\d{4}-\\d{2}-\\d{2})-(\\d+)\\.log\\.gz$");
+	private static final String HEADER = "#EMC Shopkeeper chat log index v2";
+	private static final byte[] CHAT_MARKER = "[CHAT]".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * The directory's last modified time may only have a resolution of a few
+	 * seconds on some file systems. If the directory was modified this
+	 * recently, it is listed again the next time it is accessed.
+	 */
+	private static final long DIR_MODIFIED_RESOLUTION = 2000;
+
+	/**
+	 * Save the index after this many files are scanned, so the work isn't
+	 * lost if the application is closed in the middle of a large scan.
+	 */
+	private static final int SAVE_INTERVAL = 100;
+
+	private final Path logDir, indexFile;
+	private final Map<String, FileEntry> files = new HashMap<>();
+	private final Map<LocalDate, List<FileEntry>> filesByDate = new HashMap<>();
+	private final Map<LocalDate, List<DayEntry>> daysByDate = new HashMap<>();
+	private Long dirModified;
+
+	/**
+	 * @param logDir the directory that contains the log files
+	 * @param indexFile the file to persist the index to or null not to
+	 * persist it
+	 */
+	public ChatLogIndex(Path logDir, Path indexFile) {
+		this.logDir = logDir;
+		this.indexFile = indexFile;
+
+		try {
+			load();
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Could not load chat log index. It will be rebuilt.", e);
+			files.clear();
+		}
+	}
+
+	/**
+	 * Gets the directory that contains the log files.
+	 * @return the log directory
+	 */
+	public Path getLogDirectory() {
+		return logDir;
+	}
+
+	/**
+	 * Gets the file the index is persisted to.
+	 * @return the index file
+	 */
+	public Path getIndexFile() {
+		return indexFile;
+	}
+
+	/**
+	 * Gets the log files that were created on the given date.
+	 * @param date the date
+	 * @return the log files, in the order they were created
+	 * @throws IOException if there's a problem listing the log directory
+	 */
+	public synchronized List<FileEntry> getFiles(LocalDate date) throws IOException {
+		refresh();
+		List<FileEntry> entries = filesByDate.get(date);
+		return (entries == null) ? Collections.emptyList() : new ArrayList<>(entries);
+	}
+
+	/**
+	 * Gets the locations of the chat messages from the given date. Log files
+	 * that are named after the given date, but that haven't been scanned yet,
+	 * are included in their entirety.
+	 * @param date the date
+	 * @return the locations of the chat messages, in the order the log files
+	 * were created
+	 * @throws IOException if there's a problem listing the log directory
+	 */
+	public synchronized List<DayEntry> getDays(LocalDate date) throws IOException {
+		refresh();
+
+		List<DayEntry> days = new ArrayList<>(daysByDate.getOrDefault(date, Collections.emptyList()));
+		for (FileEntry entry : filesByDate.getOrDefault(date, Collections.emptyList())) {
+			if (!entry.isScanned()) {
+				days.add(new DayEntry(entry, date, 0, -1, -1));
+			}
+		}
+		days.sort(DayEntry::compareTo);
+		return days;
+	}
+
+	/**
+	 * Gets all the log files in the index.
+	 * @return the log files, sorted by the order they were created
+	 * @throws IOException if there's a problem listing the log directory
+	 */
+	public synchronized List<FileEntry> getFiles() throws IOException {
+		refresh();
+
+		List<FileEntry> all = new ArrayList<>();
+		new TreeMap<>(filesByDate).values().forEach(all::addAll);
+		return all;
+	}
+
+	/**
+	 * Brings the index up to date by scanning all the log files that haven't
+	 * been scanned yet, and saves the index to disk.
+	 * @throws IOException if there's a problem listing the log directory or
+	 * saving the index
+	 */
+	public void update() throws IOException {
+		List<FileEntry> unscanned;
+		synchronized (this) {
+			refresh();
+
+			unscanned = new ArrayList<>();
+			for (FileEntry entry : files.values()) {
+				if (!entry.isScanned()) {
+					unscanned.add(entry);
+				}
+			}
+		}
+
+		int scanned = 0;
+		for (FileEntry entry : unscanned) {
+			List<DayEntry> days;
+			try {
+				days = scan(entry);
+			} catch (IOException e) {
+				//file might have been deleted or is corrupt
+				logger.log(Level.WARNING, "Could not scan chat log file " + entry.getFile() + ".", e);
+				continue;
+			}
+
+			synchronized (this) {
+				entry.setDays(days);
+				if (files.get(entry.getFile().getFileName().toString()) == entry) {
+					addDays(entry);
+				}
+			}
+
+			scanned++;
+			if (scanned % SAVE_INTERVAL == 0) {
+				save();
+			}
+		}
+
+		save();
+	}
+
+	/**
+	 * Calls {@link #update} in a low-priority background thread.
+	 * @return the thread
+	 */
+	public Thread updateInBackground() {
+		Thread thread = new Thread(() -> {
+			try {
+				update();
+			} catch (IOException e) {
+				logger.log(Level.WARNING, "Could not update chat log index.", e);
+			}
+		}, getClass().getSimpleName());
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Re-lists the log directory if its contents have changed since it was
+	 * last listed.
+	 * @throws IOException if there's a problem listing the log directory
+	 */
+	private void refresh() throws IOException {
+		long now = System.currentTimeMillis();
+		long modified;
+		try {
+			modified = Files.getLastModifiedTime(logDir).toMillis();
+		} catch (NoSuchFileException e) {
+			files.clear();
+			filesByDate.clear();
+			dirModified = null;
+			return;
+		}
+
+		if (dirModified != null && dirModified == modified) {
+			return;
+		}
+
+		Map<String, FileEntry> existing = new HashMap<>(files);
+		files.clear();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(logDir, "*.log.gz")) {
+			for (Path file : stream) {
+				String name = file.getFileName().toString();
+				FileEntry entry = existing.get(name);
+				long size = Files.size(file);
+				long fileModified = Files.getLastModifiedTime(file).toMillis();
+
+				if (entry == null || entry.size != size || entry.modified != fileModified) {
+					entry = parseFileName(name);
+					if (entry == null) {
+						continue;
+					}
+					entry.size = size;
+					entry.modified = fileModified;
+				}
+
+				entry.file = file;
+				files.put(name, entry);
+			}
+		}
+
+		rebuildDateMap();
+		dirModified = (now - modified < DIR_MODIFIED_RESOLUTION) ? null : modified;
+	}
+
+	private void rebuildDateMap() {
+		filesByDate.clear();
+		daysByDate.clear();
+
+		/*
+		 * The files are sorted by number instead of by name because sorting by
+		 * name can result in incorrect ordering (e.g. "2020-04-01-10" would
+		 * come before "2020-04-01-2")
+		 */
+		Map<LocalDate, TreeMap<Integer, FileEntry>> sorted = new HashMap<>();
+		for (FileEntry entry : files.values()) {
+			sorted.computeIfAbsent(entry.date, date -> new TreeMap<>()).put(entry.number, entry);
+		}
+		for (Map.Entry<LocalDate, TreeMap<Integer, FileEntry>> entry : sorted.entrySet()) {
+			filesByDate.put(entry.getKey(), new ArrayList<>(entry.getValue().values()));
+		}
+
+		for (FileEntry entry : files.values()) {
+			if (entry.isScanned()) {
+				addDays(entry);
+			}
+		}
+	}
+
+	private void addDays(FileEntry entry) {
+		for (DayEntry day : entry.getDays()) {
+			List<DayEntry> days = daysByDate.computeIfAbsent(day.date, date -> new ArrayList<>());
+			days.add(day);
+			days.sort(DayEntry::compareTo);
+		}
+	}
+
+	/**
+	 * Determines where each day's chat messages in a log file are located.
+	 * The lines only contain the time, so a new day is assumed to have started
+	 * whenever a line's time is earlier than the previous line's.
+	 * @param entry the log file
+	 * @return the locations of each day's chat messages
+	 * @throws IOException if there's a problem reading the file
+	 */
+	private static List<DayEntry> scan(FileEntry entry) throws IOException {
+		List<DayEntry> days = new ArrayList<>();
+		LocalDate date = entry.date;
+		long chatStart = -1, chatEnd = -1;
+		int chatLines = 0;
+		int prevTime = -1;
+
+		try (InputStream in = new GZIPInputStream(Files.newInputStream(entry.file), 8192)) {
+			byte[] buffer = new byte[8192];
+			byte[] head = new byte[10];
+			long offset = 0, lineStart = 0;
+			int headLength = 0, matched = 0;
+			boolean chatLine = false, eof = false;
+			while (!eof) {
+				int read = in.read(buffer);
+				if (read == -1) {
+					//last line might not end with a newline
+					if (offset == lineStart) {
+						break;
+					}
+					eof = true;
+					read = 1;
+					buffer[0] = '\n';
+				}
+
+				for (int i = 0; i < read; i++) {
+					byte b = buffer[i];
+					if (!eof) {
+						offset++;
+					}
+
+					if (b == '\n') {
+						int time = (headLength == head.length) ? parseTime(head) : -1;
+						if (time >= 0) {
+							if (time < prevTime) {
+								//the clock went past midnight
+								if (chatLines > 0) {
+									days.add(new DayEntry(entry, date, chatStart, chatEnd, chatLines));
+								}
+								date = date.plusDays(1);
+								chatStart = chatEnd = -1;
+								chatLines = 0;
+							}
+							prevTime = time;
+						}
+
+						if (chatLine) {
+							if (chatStart < 0) {
+								chatStart = lineStart;
+							}
+							chatEnd = offset;
+							chatLines++;
+						}
+						lineStart = offset;
+						headLength = matched = 0;
+						chatLine = false;
+						continue;
+					}
+
+					if (headLength < head.length) {
+						head[headLength++] = b;
+					}
+
+					if (chatLine) {
+						continue;
+					}
+
+					if (b == CHAT_MARKER[matched]) {
+						matched++;
+						if (matched == CHAT_MARKER.length) {
+							chatLine = true;
+						}
+					} else {
+						matched = (b == CHAT_MARKER[0]) ? 1 : 0;
+					}
+				}
+			}
+		}
+
+		if (chatLines > 0) {
+			days.add(new DayEntry(entry, date, chatStart, chatEnd, chatLines));
+		}
+		return days;
+	}
+
+	/**
+	 * Parses the timestamp at the beginning of a log line (for example,
+	 * "[10:11:12]").
+	 * @param head the first 10 bytes of the line
+	 * @return the number of seconds since midnight or -1 if the line doesn't
+	 * start with a timestamp
+	 */
+	private static int parseTime(byte[] head) {
+		if (head[0] != '[' || head[3] != ':' || head[6] != ':' || head[9] != ']') {
+			return -1;
+		}
+
+		int time = 0;
+		for (int i = 1; i < 9; i += 3) {
+			byte tens = head[i], ones = head[i + 1];
+			if (tens < '0' || tens > '9' || ones < '0' || ones > '9') {
+				return -1;
+			}
+			time = time * 60 + (tens - '0') * 10 + (ones - '0');
+		}
+		return time;
+	}
+
+	private void load() throws IOException {
+		if (indexFile == null || !Files.exists(indexFile)) {
+			return;
+		}
+
+		List<String> lines = Files.readAllLines(indexFile, StandardCharsets.UTF_8);
+		if (lines.size() < 2 || !HEADER.equals(lines.get(0))) {
+			return;
+		}
+
+		String dir = lines.get(1);
+		if (!dir.equals(logDir.toAbsolutePath().toString())) {
+			//the index belongs to a different log directory
+			return;
+		}
+
+		for (String line : lines.subList(2, lines.size())) {
+			String[] split = line.split("\t", -1);
+			if (split.length != 4) {
+				continue;
+			}
+
+			FileEntry entry = parseFileName(split[0]);
+			if (entry == null) {
+				continue;
+			}
+
+			try {
+				entry.size = Long.parseLong(split[1]);
+				entry.modified = Long.parseLong(split[2]);
+
+				List<DayEntry> days = new ArrayList<>();
+				if (!split[3].isEmpty()) {
+					for (String day : split[3].split(";")) {
+						String[] fields = day.split(",");
+						if (fields.length != 4) {
+							throw new NumberFormatException();
+						}
+						days.add(new DayEntry(entry, LocalDate.parse(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2]), Integer.parseInt(fields[3])));
+					}
+				}
+				entry.setDays(days);
+			} catch (DateTimeParseException | NumberFormatException e) {
+				continue;
+			}
+
+			entry.file = logDir.resolve(split[0]);
+			files.put(split[0], entry);
+		}
+	}
+
+	private void save() throws IOException {
+		if (indexFile == null) {
+			return;
+		}
+
+		List<FileEntry> entries;
+		synchronized (this) {
+			entries = new ArrayList<>(files.values());
+		}
+
+		Files.createDirectories(indexFile.toAbsolutePath().getParent());
+		Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+		try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+			writer.write(HEADER);
+			writer.newLine();
+			writer.write(logDir.toAbsolutePath().toString());
+			writer.newLine();
+
+			for (FileEntry entry : entries) {
+				synchronized (entry) {
+					if (!entry.isScanned()) {
+						continue;
+					}
+
+					writer.write(entry.file.getFileName() + "\t" + entry.size + "\t" + entry.modified + "\t");
+					boolean first = true;
+					for (DayEntry day : entry.days) {
+						if (!first) {
+							writer.write(';');
+						}
+						writer.write(day.date + "," + day.chatStart + "," + day.chatEnd + "," + day.chatLines);
+						first = false;
+					}
+					writer.newLine();
+				}
+			}
+		}
+
+		Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static FileEntry parseFileName(String name) {
+		Matcher m = fileNameRegex.matcher(name);
+		if (!m.find()) {
+			return null;
+		}
+
+		try {
+			return new FileEntry(LocalDate.parse(m.group(1)), Integer.parseInt(m.group(2)));
+		} catch (DateTimeParseException | NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * An archived log file in the index.
+	 */
+	public static class FileEntry {
+		private final LocalDate date;
+		private final int number;
+		private Path file;
+		private long size, modified;
+		private List<DayEntry> days;
+
+		private FileEntry(LocalDate date, int number) {
+			this.date = date;
+			this.number = number;
+		}
+
+		public Path getFile() {
+			return file;
+		}
+
+		/**
+		 * Gets the date in the file name, which is the date the file was
+		 * created.
+		 * @return the date
+		 */
+		public LocalDate getDate() {
+			return date;
+		}
+
+		/**
+		 * Gets the number at the end of the file name, which determines the
+		 * order of the files that were created on the same date.
+		 * @return the number
+		 */
+		public int getNumber() {
+			return number;
+		}
+
+		/**
+		 * Determines if the location of the file's chat messages is known.
+		 * @return true if the file has been scanned, false if not
+		 */
+		public synchronized boolean isScanned() {
+			return days != null;
+		}
+
+		/**
+		 * Gets the locations of each day's chat messages in the file. Days
+		 * that have no chat messages are not included.
+		 * @return the locations, in chronological order (empty if the file
+		 * hasn't been scanned yet)
+		 */
+		public synchronized List<DayEntry> getDays() {
+			return (days == null) ? Collections.emptyList() : days;
+		}
+
+		/**
+		 * Gets the number of chat messages in the file.
+		 * @return the number of chat messages (only valid if the file has been
+		 * scanned)
+		 */
+		public synchronized int getChatLines() {
+			int chatLines = 0;
+			for (DayEntry day : getDays()) {
+				chatLines += day.chatLines;
+			}
+			return chatLines;
+		}
+
+		private synchronized void setDays(List<DayEntry> days) {
+			this.days = Collections.unmodifiableList(days);
+		}
+	}
+
+	/**
+	 * The location of one day's chat messages within a log file.
+	 */
+	public static class DayEntry implements Comparable<DayEntry> {
+		private final FileEntry file;
+		private final LocalDate date;
+		private final long chatStart, chatEnd;
+		private final int chatLines;
+
+		private DayEntry(FileEntry file, LocalDate date, long chatStart, long chatEnd, int chatLines) {
+			this.file = file;
+			this.date = date;
+			this.chatStart = chatStart;
+			this.chatEnd = chatEnd;
+			this.chatLines = chatLines;
+		}
+
+		public FileEntry getFileEntry() {
+			return file;
+		}
+
+		public Path getFile() {
+			return file.getFile();
+		}
+
+		public LocalDate getDate() {
+			return date;
+		}
+
+		/**
+		 * Gets the uncompressed byte offset of the day's first chat message.
+		 * @return the offset
+		 */
+		public long getChatStart() {
+			return chatStart;
+		}
+
+		/**
+		 * Gets the uncompressed byte offset of the end of the day's last chat
+		 * message.
+		 * @return the offset or -1 if the file hasn't been scanned yet (the
+		 * entire file needs to be read)
+		 */
+		public long getChatEnd() {
+			return chatEnd;
+		}
+
+		/**
+		 * Gets the number of chat messages from the day.
+		 * @return the number of chat messages or -1 if the file hasn't been
+		 * scanned yet
+		 */
+		public int getChatLines() {
+			return chatLines;
+		}
+
+		/**
+		 * Sorts the entries by the order their log files were created in.
+		 */
+		@Override
+		public int compareTo(DayEntry that) {
+			int c = file.date.compareTo(that.file.date);
+			return (c == 0) ? Integer.compare(file.number, that.file.number) : c;
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package emcshop.chat;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
@@ -13,6 +14,8 @@ import java.util.Map;
 import java.util.TreeMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Extracts chat messages from the Minecraft log files.
@@ -20,16 +23,28 @@ import java.util.regex.Pattern;
  */
 public class ChatLogParser {
 	private final Path logDir;
+	private final ChatLogIndex index;
 
 	/**
 	 * @param logDir the path to the directory that contains the log files
 	 * @throws IllegalArgumentException if the given path is not a directory
 	 */
 	public ChatLogParser(Path logDir) {
+		this(logDir, null);
+	}
+
+	/**
+	 * @param logDir the path to the directory that contains the log files
+	 * @param index the index of the log files or null to search the log
+	 * directory every time a log is retrieved
+	 * @throws IllegalArgumentException if the given path is not a directory
+	 */
+	public ChatLogParser(Path logDir, ChatLogIndex index) {
 		if (!Files.isDirectory(logDir)) {
 			throw new IllegalArgumentException("The specified path is not a directory: " + logDir);
 		}
 		this.logDir = logDir;
+		this.index = index;
 	}
 
 	/**
@@ -38,6 +53,43 @@ public class ChatLogParser {
 	 * @return the chat messages
 	 */
 	public List<ChatMessage> getLog(LocalDate date) throws IOException {
+		try (Stream<ChatMessage> stream = streamLog(date)) {
+			return stream.collect(Collectors.toList());
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Gets the chat messages from a specific date as a stream. The log files
+	 * are opened and read lazily as the stream is consumed, so the caller can
+	 * process the messages as they are read. The stream should be closed when
+	 * the caller is done with it.
+	 * @param date the date
+	 * @return the chat messages (I/O errors are thrown as
+	 * {@link UncheckedIOException UncheckedIOExceptions})
+	 * @throws IOException if there's a problem searching the log directory
+	 */
+	public Stream<ChatMessage> streamLog(LocalDate date) throws IOException {
+		List<LogFile> logFiles = (index == null) ? findLogFiles(date) : findLogFilesFromIndex(date);
+
+		//should the "latest.log" file be parsed as well?
+		Path latest = logDir.resolve("latest.log");
+		if (lastModifiedTimeMatches(latest, date)) {
+			//the "latest.log" file is always changing, so it isn't indexed
+			logFiles.add(new LogFile(latest, 0, -1));
+		}
+
+		return logFiles.stream().flatMap(logFile -> {
+			try {
+				return new ChatLogFileReader(logFile.file, date, logFile.start, logFile.end).stream();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	private List<LogFile> findLogFiles(LocalDate date) throws IOException {
 		String dateStr = date.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
 		Pattern fileNameRegex = Pattern.compile("^" + dateStr + "-(\\d+)\\.log\\.gz$");
 
@@ -57,26 +109,20 @@ public class ChatLogParser {
 				logFilesMap.put(num, file);
 			}
 		});
-		List<Path> logFiles = new ArrayList<>(logFilesMap.values());
 
-		//should the "latest.log" file be parsed as well?
-		Path latest = logDir.resolve("latest.log");
-		if (lastModifiedTimeMatches(latest, date)) {
-			logFiles.add(latest);
+		List<LogFile> logFiles = new ArrayList<>();
+		for (Path file : logFilesMap.values()) {
+			logFiles.add(new LogFile(file, 0, -1));
 		}
+		return logFiles;
+	}
 
-		//parse each log file
-		List<ChatMessage> messages = new ArrayList<>();
-		for (Path file : logFiles) {
-			try (ChatLogFileReader reader = new ChatLogFileReader(file, date)) {
-				ChatMessage message;
-				while ((message = reader.readNext()) != null) {
-					messages.add(message);
-				}
-			}
+	private List<LogFile> findLogFilesFromIndex(LocalDate date) throws IOException {
+		List<LogFile> logFiles = new ArrayList<>();
+		for (ChatLogIndex.DayEntry day : index.getDays(date)) {
+			logFiles.add(new LogFile(day.getFile(), day.getChatStart(), day.getChatEnd()));
 		}
-
-		return messages;
+		return logFiles;
 	}
 
 	private boolean lastModifiedTimeMatches(Path file, LocalDate date) throws IOException {
@@ -87,4 +133,15 @@ public class ChatLogParser {
 		LocalDate modifiedLocalDate = modified.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
 		return modifiedLocalDate.equals(date);
 	}
+
+	private static class LogFile {
+		private final Path file;
+		private final long start, end;
+
+		public LogFile(Path file, long start, long end) {
+			this.file = file;
+			this.start = start;
+			this.end = end;
+		}
+	}
 }
@@ -0,0 +1,277 @@
+package emcshop.chat;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ * Watches the "latest.log" file for new chat messages while Minecraft is
+ * running. Only the lines that were appended since the last check are read.
+ * </p>
+ * <p>
+ * When Minecraft starts, it archives the previous "latest.log" file to a
+ * ".log.gz" file and creates a new "latest.log" file. When this happens, the
+ * new file is read from the beginning.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class ChatLogTail {
+	private static final Logger logger = Logger.getLogger(ChatLogTail.class.getName());
+
+	private final Path logDir, latest;
+	private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+	private volatile Thread thread;
+
+	private long position;
+	private LocalDate date;
+	private Object fileKey;
+
+	/**
+	 * @param logDir the directory that contains the log files
+	 */
+	public ChatLogTail(Path logDir) {
+		this.logDir = logDir;
+		latest = logDir.resolve("latest.log");
+	}
+
+	/**
+	 * Gets the directory that contains the log files.
+	 * @return the log directory
+	 */
+	public Path getLogDirectory() {
+		return logDir;
+	}
+
+	/**
+	 * Adds a listener that is called whenever new lines are read from the
+	 * file. The listener is called from the tail's background thread.
+	 * @param listener the listener
+	 */
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Starts watching the log directory in a background thread. Only messages
+	 * that are logged after this method is called are reported.
+	 * @param pollInterval how often to check the file if the file system does
+	 * not report any changes (in milliseconds). Some file systems, such as
+	 * network drives, do not report changes at all.
+	 * @return the thread
+	 */
+	public synchronized Thread start(long pollInterval) {
+		if (thread != null) {
+			return thread;
+		}
+
+		try {
+			skipToEnd();
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Could not read " + latest + ".", e);
+		}
+
+		thread = new Thread(() -> watch(pollInterval), getClass().getSimpleName());
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Stops watching the log directory.
+	 */
+	public synchronized void stop() {
+		if (thread != null) {
+			thread.interrupt();
+			thread = null;
+		}
+	}
+
+	private void watch(long pollInterval) {
+		try (WatchService watcher = logDir.getFileSystem().newWatchService()) {
+			logDir.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+
+			while (!Thread.currentThread().isInterrupted()) {
+				WatchKey key = watcher.poll(pollInterval, TimeUnit.MILLISECONDS);
+				boolean created = false;
+				if (key != null) {
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == ENTRY_CREATE && latest.getFileName().equals(event.context())) {
+							created = true;
+						}
+					}
+					key.reset();
+				}
+
+				try {
+					poll(created);
+				} catch (IOException e) {
+					logger.log(Level.WARNING, "Could not read " + latest + ".", e);
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			//stopped
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Could not watch log directory " + logDir + ".", e);
+		}
+	}
+
+	/**
+	 * Moves the file position to the end of the "latest.log" file.
+	 * @throws IOException if there's a problem reading the file
+	 */
+	synchronized void skipToEnd() throws IOException {
+		if (!Files.exists(latest)) {
+			position = 0;
+			date = null;
+			fileKey = null;
+			return;
+		}
+
+		BasicFileAttributes attributes = Files.readAttributes(latest, BasicFileAttributes.class);
+		position = ChatLogFileReader.endOfLastLine(latest, 0, attributes.size());
+		date = toLocalDate(attributes);
+		fileKey = attributes.fileKey();
+	}
+
+	/**
+	 * Reads the lines that were appended to the "latest.log" file since the
+	 * last check and passes the chat messages to the listeners.
+	 * @param created true if the file system reported that the file was
+	 * created, false if not
+	 * @throws IOException if there's a problem reading the file
+	 */
+	synchronized void poll(boolean created) throws IOException {
+		if (!Files.exists(latest)) {
+			return;
+		}
+
+		BasicFileAttributes attributes = Files.readAttributes(latest, BasicFileAttributes.class);
+		long size = attributes.size();
+
+		/*
+		 * The file key identifies the file on most platforms. It is not
+		 * supported on Windows, so the file system's "create" event and the
+		 * file's size are used instead.
+		 */
+		Object key = attributes.fileKey();
+		boolean replaced = (fileKey == null) ? created : !fileKey.equals(key);
+		if (size < position) {
+			replaced = true;
+		}
+		if (replaced) {
+			position = 0;
+		}
+		if (replaced || date == null) {
+			date = toLocalDate(attributes);
+		}
+		fileKey = key;
+
+		long end = ChatLogFileReader.endOfLastLine(latest, position, size);
+		if (end <= position) {
+			if (replaced) {
+				fire(0, 0, new ArrayList<>());
+			}
+			return;
+		}
+
+		List<ChatMessage> messages = new ArrayList<>();
+		try (ChatLogFileReader reader = new ChatLogFileReader(latest, date, position, end)) {
+			ChatMessage message;
+			while ((message = reader.readNext()) != null) {
+				messages.add(message);
+			}
+		}
+		messages = assignDates(messages, toLocalDateTime(attributes));
+
+		long start = position;
+		position = end;
+		fire(start, end, messages);
+	}
+
+	private void fire(long start, long end, List<ChatMessage> messages) {
+		for (Listener listener : listeners) {
+			listener.onMessages(date, start, end, messages);
+		}
+	}
+
+	private static LocalDate toLocalDate(BasicFileAttributes attributes) {
+		return toLocalDateTime(attributes).toLocalDate();
+	}
+
+	private static LocalDateTime toLocalDateTime(BasicFileAttributes attributes) {
+		return attributes.lastModifiedTime().toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime();
+	}
+
+	/**
+	 * <p>
+	 * Assigns the correct dates to messages that were read from the
+	 * "latest.log" file. The file only records the time of each message, and
+	 * Minecraft can keep writing to the same file for several days.
+	 * </p>
+	 * <p>
+	 * The last message was written when the file was last modified, so the
+	 * dates are worked out backwards from there. Whenever the time of day
+	 * jumps forward going backwards through the messages, midnight was crossed.
+	 * Jumps of up to an hour are allowed, for when the clocks go back at the
+	 * end of daylight saving time.
+	 * </p>
+	 * @param messages the messages, in the order they appear in the file
+	 * @param lastModified the time the file was last modified
+	 * @return the messages with the correct dates
+	 */
+	static List<ChatMessage> assignDates(List<ChatMessage> messages, LocalDateTime lastModified) {
+		ChatMessage[] dated = new ChatMessage[messages.size()];
+
+		//the file system's timestamp can be slightly behind the message's timestamp
+		LocalDateTime bound = lastModified.plusMinutes(1);
+		for (int i = messages.size() - 1; i >= 0; i--) {
+			ChatMessage message = messages.get(i);
+			LocalDateTime ts = LocalDateTime.of(bound.toLocalDate(), message.getDate().toLocalTime());
+			if (ts.isAfter(bound)) {
+				ts = ts.minusDays(1);
+			}
+
+			dated[i] = ts.equals(message.getDate()) ? message : new ChatMessage(ts, message.getMessage());
+			bound = ts.plusHours(1);
+		}
+
+		return new ArrayList<>(Arrays.asList(dated));
+	}
+
+	/**
+	 * Receives the chat messages that are appended to the "latest.log" file.
+	 */
+	public interface Listener {
+		/**
+		 * Called when new lines are read from the file.
+		 * @param date the date of the "latest.log" file (messages may have
+		 * later dates if Minecraft was left running past midnight)
+		 * @param start the byte offset where reading started (0 if the file
+		 * was replaced with a new file)
+		 * @param end the byte offset after the last line that was read
+		 * @param messages the chat messages that were found in the new lines
+		 * (may be empty)
+		 */
+		void onMessages(LocalDate date, long start, long end, List<ChatMessage> messages);
+	}
+}
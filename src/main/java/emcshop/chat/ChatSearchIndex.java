@@ -0,0 +1,468 @@
+package emcshop.chat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import emcshop.chat.ChatLogIndex.DayEntry;
+import emcshop.chat.ChatLogIndex.FileEntry;
+
+/**
+ * <p>
+ * An in-memory inverted index of all the chat messages in the Minecraft log
+ * directory, which allows every message that mentions a player or keyword to
+ * be found without reading the log files.
+ * </p>
+ * <p>
+ * The index is built the first time it is searched. The archived log files
+ * are read in parallel. After that, each search only reads the log files that
+ * were created since the last search, and the lines that were appended to the
+ * "latest.log" file.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class ChatSearchIndex {
+	private final ChatLogIndex logIndex;
+
+	/*
+	 * Each message is identified by its position in these lists. The
+	 * messages are stored in the order they appear in the log files.
+	 */
+	private final List<String> messages = new ArrayList<>();
+	private long[] times = new long[1024];
+
+	private final Map<String, Postings> postings = new HashMap<>();
+	private final Set<Path> indexedFiles = new HashSet<>();
+	private FileEntry lastIndexedFile;
+
+	/*
+	 * The messages from the "latest.log" file are always at the end of the
+	 * index, so they can be removed when Minecraft archives the file.
+	 */
+	private int latestStart;
+	private long latestPosition;
+	private LocalDate latestDate;
+
+	/**
+	 * @param logIndex the index of the log files
+	 */
+	public ChatSearchIndex(ChatLogIndex logIndex) {
+		this.logIndex = logIndex;
+	}
+
+	/**
+	 * Gets the directory that contains the log files.
+	 * @return the log directory
+	 */
+	public Path getLogDirectory() {
+		return logIndex.getLogDirectory();
+	}
+
+	/**
+	 * Gets the number of messages in the index.
+	 * @return the number of messages
+	 */
+	public synchronized int size() {
+		return messages.size();
+	}
+
+	/**
+	 * Searches the chat logs.
+	 * @param query the search criteria
+	 * @return the matching messages, in chronological order
+	 * @throws IOException if there's a problem reading the log files
+	 */
+	public synchronized List<ChatMessage> search(ChatSearchQuery query) throws IOException {
+		refresh();
+
+		String keyword = lower(query.getKeyword());
+		Set<String> keywordTokens = tokenize(keyword);
+		boolean phrase = keywordTokens.size() > 1;
+
+		Set<String> tokens = new LinkedHashSet<>(keywordTokens);
+		tokens.addAll(tokenize(lower(query.getPlayer())));
+
+		long from = (query.getFrom() == null) ? Long.MIN_VALUE : toEpoch(query.getFrom().atStartOfDay());
+		long to = (query.getTo() == null) ? Long.MAX_VALUE : toEpoch(query.getTo().plusDays(1).atStartOfDay()) - 1;
+
+		/*
+		 * Start from the most recent message, so the most recent messages are
+		 * returned if the limit is reached.
+		 */
+		List<ChatMessage> results = new ArrayList<>();
+		for (Iterator<Integer> it = candidates(tokens); it.hasNext();) {
+			int id = it.next();
+
+			long time = times[id];
+			if (time < from || time > to) {
+				continue;
+			}
+
+			String message = messages.get(id);
+			if (phrase && !message.toLowerCase(Locale.ROOT).contains(keyword)) {
+				//the words of the keyword phrase must be next to each other
+				continue;
+			}
+
+			results.add(new ChatMessage(fromEpoch(time), message));
+			if (results.size() >= query.getLimit()) {
+				break;
+			}
+		}
+
+		Collections.reverse(results);
+		return results;
+	}
+
+	/**
+	 * Adds messages that were appended to the "latest.log" file, so the file
+	 * does not have to be read again on the next search. If the messages do
+	 * not start where the index left off, they are ignored and the file is read
+	 * on the next search instead.
+	 * @param date the date of the "latest.log" file
+	 * @param start the byte offset of the first message
+	 * @param end the byte offset after the last message
+	 * @param messages the messages
+	 * @see ChatLogTail
+	 */
+	public synchronized void append(LocalDate date, long start, long end, List<ChatMessage> messages) {
+		if (start == 0) {
+			//the file was replaced
+			truncate(latestStart);
+			latestPosition = 0;
+			latestDate = date;
+		} else if (start != latestPosition || !date.equals(latestDate)) {
+			return;
+		}
+
+		for (ChatMessage message : messages) {
+			add(message);
+		}
+		latestPosition = end;
+	}
+
+	/**
+	 * Gets the IDs of the messages that contain all the given tokens, from
+	 * newest to oldest.
+	 * @param tokens the tokens
+	 * @return the message IDs
+	 */
+	private Iterator<Integer> candidates(Set<String> tokens) {
+		if (tokens.isEmpty()) {
+			return new Iterator<Integer>() {
+				private int next = messages.size() - 1;
+
+				@Override
+				public boolean hasNext() {
+					return next >= 0;
+				}
+
+				@Override
+				public Integer next() {
+					return next--;
+				}
+			};
+		}
+
+		//intersect the posting lists, starting with the shortest
+		List<Postings> lists = new ArrayList<>();
+		for (String token : tokens) {
+			Postings list = postings.get(token);
+			if (list == null) {
+				return Collections.emptyIterator();
+			}
+			lists.add(list);
+		}
+		lists.sort((a, b) -> Integer.compare(a.size, b.size));
+
+		int[] ids = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+		int count = ids.length;
+		for (Postings list : lists.subList(1, lists.size())) {
+			count = list.retainAll(ids, count);
+		}
+
+		int[] result = ids;
+		int size = count;
+		return new Iterator<Integer>() {
+			private int next = size - 1;
+
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			@Override
+			public Integer next() {
+				return result[next--];
+			}
+		};
+	}
+
+	/**
+	 * Adds any new messages from the log files to the index.
+	 * @throws IOException if there's a problem reading the log files
+	 */
+	private void refresh() throws IOException {
+		List<FileEntry> newFiles = logIndex.getFiles().stream() //@formatter:off
+			.filter(entry -> !indexedFiles.contains(entry.getFile()))
+		.collect(Collectors.toList()); //@formatter:on
+
+		if (!newFiles.isEmpty()) {
+			if (lastIndexedFile != null && compare(newFiles.get(0), lastIndexedFile) < 0) {
+				//an older log file was added to the directory, so the messages would be out of order
+				clear();
+				newFiles = logIndex.getFiles();
+			}
+
+			/*
+			 * The new files are newer than the "latest.log" file that was
+			 * indexed (they most likely contain its messages, if Minecraft was
+			 * restarted).
+			 */
+			truncate(latestStart);
+			latestPosition = 0;
+
+			List<List<ChatMessage>> parsed;
+			try {
+				parsed = newFiles.parallelStream().map(ChatSearchIndex::read).collect(Collectors.toList());
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+
+			for (int i = 0; i < newFiles.size(); i++) {
+				for (ChatMessage message : parsed.get(i)) {
+					add(message);
+				}
+				indexedFiles.add(newFiles.get(i).getFile());
+			}
+			lastIndexedFile = newFiles.get(newFiles.size() - 1);
+			latestStart = messages.size();
+		}
+
+		refreshLatest();
+	}
+
+	/**
+	 * Adds the lines that were appended to the "latest.log" file since the last
+	 * refresh.
+	 * @throws IOException if there's a problem reading the file
+	 */
+	private void refreshLatest() throws IOException {
+		Path latest = logIndex.getLogDirectory().resolve("latest.log");
+		if (!Files.exists(latest)) {
+			truncate(latestStart);
+			latestPosition = 0;
+			return;
+		}
+
+		long size = Files.size(latest);
+		LocalDateTime lastModified = Files.getLastModifiedTime(latest).toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime();
+		LocalDate date = lastModified.toLocalDate();
+		if (size < latestPosition || !date.equals(latestDate)) {
+			//the file was replaced
+			truncate(latestStart);
+			latestPosition = 0;
+			latestDate = date;
+		}
+
+		//only read complete lines, since Minecraft might be in the middle of writing one
+		long end = ChatLogFileReader.endOfLastLine(latest, latestPosition, size);
+		if (end <= latestPosition) {
+			return;
+		}
+
+		List<ChatMessage> messages = new ArrayList<>();
+		try (ChatLogFileReader reader = new ChatLogFileReader(latest, date, latestPosition, end)) {
+			ChatMessage message;
+			while ((message = reader.readNext()) != null) {
+				messages.add(message);
+			}
+		}
+		for (ChatMessage message : ChatLogTail.assignDates(messages, lastModified)) {
+			add(message);
+		}
+		latestPosition = end;
+	}
+
+	private static List<ChatMessage> read(FileEntry entry) {
+		List<ChatMessage> messages = new ArrayList<>();
+		if (!entry.isScanned()) {
+			read(entry.getFile(), entry.getDate(), 0, -1, messages);
+			return messages;
+		}
+
+		for (DayEntry day : entry.getDays()) {
+			read(day.getFile(), day.getDate(), day.getChatStart(), day.getChatEnd(), messages);
+		}
+		return messages;
+	}
+
+	private static void read(Path file, LocalDate date, long start, long end, List<ChatMessage> messages) {
+		try (ChatLogFileReader reader = new ChatLogFileReader(file, date, start, end)) {
+			ChatMessage message;
+			while ((message = reader.readNext()) != null) {
+				messages.add(message);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void add(ChatMessage message) {
+		int id = messages.size();
+		messages.add(message.getMessage());
+
+		if (id == times.length) {
+			times = Arrays.copyOf(times, times.length * 2);
+		}
+		times[id] = toEpoch(message.getDate());
+
+		for (String token : tokenize(message.getMessage().toLowerCase(Locale.ROOT))) {
+			postings.computeIfAbsent(token, t -> new Postings()).add(id);
+		}
+	}
+
+	/**
+	 * Removes the messages at the end of the index.
+	 * @param size the number of messages to keep
+	 */
+	private void truncate(int size) {
+		if (messages.size() <= size) {
+			return;
+		}
+
+		messages.subList(size, messages.size()).clear();
+		for (Iterator<Postings> it = postings.values().iterator(); it.hasNext();) {
+			Postings list = it.next();
+			list.truncate(size);
+			if (list.size == 0) {
+				it.remove();
+			}
+		}
+	}
+
+	private void clear() {
+		messages.clear();
+		postings.clear();
+		indexedFiles.clear();
+		lastIndexedFile = null;
+		latestStart = 0;
+		latestPosition = 0;
+		latestDate = null;
+	}
+
+	/**
+	 * Splits text into lower-case words. Player names can contain
+	 * underscores, so they are treated as part of a word.
+	 * @param text the lower-case text (can be null)
+	 * @return the words
+	 */
+	static Set<String> tokenize(String text) {
+		if (text == null) {
+			return Collections.emptySet();
+		}
+
+		Set<String> tokens = new LinkedHashSet<>();
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean wordChar = i < text.length() && isWordChar(text.charAt(i));
+			if (wordChar) {
+				if (start < 0) {
+					start = i;
+				}
+			} else if (start >= 0) {
+				tokens.add(text.substring(start, i));
+				start = -1;
+			}
+		}
+		return tokens;
+	}
+
+	private static boolean isWordChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_';
+	}
+
+	private static String lower(String text) {
+		if (text == null) {
+			return null;
+		}
+		text = text.trim();
+		return text.isEmpty() ? null : text.toLowerCase(Locale.ROOT);
+	}
+
+	private static int compare(FileEntry a, FileEntry b) {
+		int c = a.getDate().compareTo(b.getDate());
+		return (c == 0) ? Integer.compare(a.getNumber(), b.getNumber()) : c;
+	}
+
+	private static long toEpoch(LocalDateTime date) {
+		return date.toEpochSecond(ZoneOffset.UTC);
+	}
+
+	private static LocalDateTime fromEpoch(long epoch) {
+		return LocalDateTime.ofEpochSecond(epoch, 0, ZoneOffset.UTC);
+	}
+
+	/**
+	 * A sorted list of message IDs.
+	 */
+	private static class Postings {
+		private int[] ids = new int[4];
+		private int size;
+
+		public void add(int id) {
+			//a word can appear more than once in a message
+			if (size > 0 && ids[size - 1] == id) {
+				return;
+			}
+
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			ids[size++] = id;
+		}
+
+		/**
+		 * Removes the IDs that are greater than or equal to the given value.
+		 * @param max the value
+		 */
+		public void truncate(int max) {
+			while (size > 0 && ids[size - 1] >= max) {
+				size--;
+			}
+		}
+
+		/**
+		 * Removes the IDs from a sorted array that are not in this list.
+		 * @param other the sorted array (modified in place)
+		 * @param count the number of IDs in the array
+		 * @return the new number of IDs in the array
+		 */
+		public int retainAll(int[] other, int count) {
+			int kept = 0;
+			for (int i = 0; i < count; i++) {
+				if (Arrays.binarySearch(ids, 0, size, other[i]) >= 0) {
+					other[kept++] = other[i];
+				}
+			}
+			return kept;
+		}
+	}
+}
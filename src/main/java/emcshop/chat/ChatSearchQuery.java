@@ -0,0 +1,86 @@
+package emcshop.chat;
+
+import java.time.LocalDate;
+
+/**
+ * Defines the criteria for searching the chat logs.
+ * @author Michael Angstadt
+ * @see ChatSearchIndex
+ */
+public class ChatSearchQuery {
+	private String player, keyword;
+	private LocalDate from, to;
+	private int limit = 1000;
+
+	/**
+	 * Only return messages that mention a player.
+	 * @param player the player name or null to search for all players
+	 * @return this
+	 */
+	public ChatSearchQuery player(String player) {
+		this.player = player;
+		return this;
+	}
+
+	/**
+	 * Only return messages that contain a keyword or phrase.
+	 * @param keyword the keyword (case insensitive) or null to not filter by
+	 * keyword
+	 * @return this
+	 */
+	public ChatSearchQuery keyword(String keyword) {
+		this.keyword = keyword;
+		return this;
+	}
+
+	/**
+	 * Only return messages that were sent on or after a date.
+	 * @param from the date or null for no lower bound
+	 * @return this
+	 */
+	public ChatSearchQuery from(LocalDate from) {
+		this.from = from;
+		return this;
+	}
+
+	/**
+	 * Only return messages that were sent on or before a date.
+	 * @param to the date or null for no upper bound
+	 * @return this
+	 */
+	public ChatSearchQuery to(LocalDate to) {
+		this.to = to;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of messages to return. If there are more
+	 * matching messages, the most recent ones are returned.
+	 * @param limit the maximum number of messages (defaults to 1000)
+	 * @return this
+	 */
+	public ChatSearchQuery limit(int limit) {
+		this.limit = limit;
+		return this;
+	}
+
+	public String getPlayer() {
+		return player;
+	}
+
+	public String getKeyword() {
+		return keyword;
+	}
+
+	public LocalDate getFrom() {
+		return from;
+	}
+
+	public LocalDate getTo() {
+		return to;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+}
@@ -1,38 +1,72 @@
 package emcshop.cli;
 
+import java.awt.Color;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import emcshop.db.ShopTransactionDb;
 import org.apache.commons.lang3.StringUtils;
+import org.jfree.chart.JFreeChart;
+
+import au.com.bytecode.opencsv.CSVWriter;
 
 import com.github.mangstadt.emc.rupees.RupeeTransactionReader;
 
 import emcshop.AppContext;
 import emcshop.ItemIndex;
 import emcshop.QueryExporter;
+import emcshop.Settings;
+import emcshop.chart.ChartWriter;
+import emcshop.chart.ProfitsChart;
+import emcshop.chart.ProfitsMatrix;
 import emcshop.cli.model.UpdateModelCli;
 import emcshop.cli.view.FirstUpdateViewCli;
 import emcshop.cli.view.LoginShower;
 import emcshop.cli.view.UpdateViewCli;
 import emcshop.db.DbDao;
+import emcshop.db.Inventory;
 import emcshop.db.ItemGroup;
+import emcshop.db.Profits;
 import emcshop.db.ShopTransactionType;
 import emcshop.model.FirstUpdateModelImpl;
 import emcshop.model.IUpdateModel;
+import emcshop.model.UpdateMetrics;
+import emcshop.model.UpdateScheduler;
 import emcshop.presenter.FirstUpdatePresenter;
 import emcshop.presenter.UpdatePresenter;
+import emcshop.query.AggregateQuery;
+import emcshop.query.AggregateRow;
+import emcshop.query.Dimension;
+import emcshop.query.Leaderboard;
+import emcshop.query.Measure;
+import emcshop.query.QueryEngine;
 import emcshop.scraper.EmcSession;
+import emcshop.scraper.RupeePageCache;
 import emcshop.util.OS;
 import emcshop.util.QuantityFormatter;
 import emcshop.util.RupeeFormatter;
@@ -42,6 +76,10 @@ public class CliController {
 	private static final Logger logger = Logger.getLogger(CliController.class.getName());
 	private static final PrintStream out = System.out;
 
+	public static final int DEFAULT_CHART_WIDTH = 1200, DEFAULT_CHART_HEIGHT = 600;
+	public static final int DEFAULT_SERVE_PORT = 8080;
+	public static final int DEFAULT_TOP_SIZE = 10;
+
 	private final DbDao dao;
 
 	public CliController(DbDao dao) {
@@ -73,8 +111,7 @@ public class CliController {
 		LoginShower loginShower = new LoginShower();
 		loginShower.show();
 
-		EmcSession session = AppContext.instance().get(EmcSession.class);
-		RupeeTransactionReader.Builder builder = new RupeeTransactionReader.Builder(session.getCookieStore());
+		RupeeTransactionReader.Builder builder = newReaderBuilder();
 		if (firstUpdate) {
 			builder.stop(stopAtPage);
 			builder.start(startAtPage);
@@ -86,10 +123,144 @@ public class CliController {
 		IUpdateView view = new UpdateViewCli(loginShower);
 		IUpdateModel model = new UpdateModelCli(builder, oldestAllowablePaymentTransactionAge);
 		UpdatePresenter presenter = new UpdatePresenter(view, model);
+		printSummary(presenter);
+	}
+
+	/**
+	 * Keeps running and downloads new transactions on an interval. The
+	 * interval adapts to how often new transactions come in (see
+	 * {@link UpdateScheduler}). This method does not return until the program
+	 * is terminated.
+	 * @param minInterval the shortest amount of time to wait between updates
+	 * @param maxInterval the longest amount of time to wait between updates
+	 * @throws Exception if there's a problem querying the database
+	 */
+	public void watch(Duration minInterval, Duration maxInterval) throws Exception {
+		if (dao.getLatestTransactionDate() == null) {
+			out.println("Your transaction history has not been downloaded yet.  Run an update with --update first.");
+			return;
+		}
+
+		//log user in
+		LoginShower loginShower = new LoginShower();
+		loginShower.show();
+
+		DateTimeFormatter df = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM, FormatStyle.SHORT);
+		UpdateScheduler scheduler = new UpdateScheduler(minInterval, maxInterval, Duration.ZERO, () -> {
+			//only download the transactions that are newer than the ones in the database
+			RupeeTransactionReader.Builder builder = newReaderBuilder();
+			builder.stop(dao.getLatestTransactionDate());
+
+			IUpdateView view = new UpdateViewCli(loginShower);
+			IUpdateModel model = new UpdateModelCli(builder, null);
+			UpdatePresenter presenter = new UpdatePresenter(view, model);
+			if (presenter.isCanceled()) {
+				out.println();
+				return -1;
+			}
+
+			int transactions = presenter.getShopTransactions() + presenter.getPaymentTransactions() + presenter.getBonusFeeTransactions();
+			out.println("\r" + df.format(LocalDateTime.now()) + ": " + transactions + " new transactions saved in " + presenter.getTimeTaken().getSeconds() + " seconds.");
+			logger.info("Scheduled update: " + presenter.getPageCount() + " pages processed and " + transactions + " transactions saved in " + presenter.getTimeTaken().getSeconds() + " seconds.");
+			return transactions;
+		});
+
+		out.println("Checking for new transactions every " + minInterval.toMinutes() + " to " + maxInterval.toMinutes() + " minutes.  Press Ctrl+C to stop.");
+		scheduler.run();
+	}
+
+	private static RupeeTransactionReader.Builder newReaderBuilder() {
+		EmcSession session = AppContext.instance().get(EmcSession.class);
+		RupeeTransactionReader.Builder builder = new RupeeTransactionReader.Builder(session.getCookieStore());
+		Settings settings = AppContext.instance().get(Settings.class);
+		if (settings != null) {
+			builder.threads(settings.getDownloadThreads());
+		}
+		return builder;
+	}
+
+	public void reimport() throws Exception {
+		RupeePageCache cache = AppContext.instance().get(RupeePageCache.class);
+		int pages = (cache == null) ? 0 : cache.size();
+		if (pages == 0) {
+			out.println("The page cache is empty.  Enable the page cache in the settings, then run an update to populate it.");
+			return;
+		}
+
+		/*
+		 * The database is wiped before the cached pages are replayed, so make
+		 * sure that nothing is lost (for example, if the page cache was enabled
+		 * after the transaction history was downloaded).
+		 */
+		String missing = findUncachedTransactions(cache);
+		if (missing != null) {
+			out.println(missing + "  Re-importing would delete these transactions, so the re-import was canceled.  To re-import, clear the page cache, then download the entire transaction history again with the page cache enabled.");
+			return;
+		}
+
+		out.println("Re-importing " + pages + " cached pages...");
+		dao.wipe();
+
+		Settings settings = AppContext.instance().get(Settings.class);
+		int threads = (settings == null) ? Runtime.getRuntime().availableProcessors() : settings.getDownloadThreads();
+
+		IUpdateView view = new UpdateViewCli(null);
+		IUpdateModel model = new UpdateModelCli(cache, threads);
+		UpdatePresenter presenter = new UpdatePresenter(view, model);
+		printSummary(presenter);
+	}
+
+	/**
+	 * Determines whether the database contains transactions that are not in
+	 * the page cache.
+	 * @param cache the page cache (must not be empty)
+	 * @return a description of the transactions that are missing from the
+	 * cache or null if none are missing
+	 * @throws IOException if there's a problem reading the page cache
+	 * @throws SQLException if there's a problem querying the database
+	 */
+	String findUncachedTransactions(RupeePageCache cache) throws IOException, SQLException {
+		DateTimeFormatter df = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM, FormatStyle.SHORT);
+
+		List<RupeePageCache.Entry> entries = cache.getEntries();
+		entries.sort(Comparator.comparing(RupeePageCache.Entry::getOldest));
+
+		LocalDateTime oldestCached = entries.get(0).getOldest();
+		LocalDateTime earliest = dao.getEarliestTransactionDate();
+		if (earliest != null && earliest.isBefore(oldestCached)) {
+			return "The database contains transactions from as far back as " + df.format(earliest) + ", but the page cache only goes back to " + df.format(oldestCached) + ".";
+		}
+
+		//look for transactions that fall between the cached pages (for example, if the page cache was disabled for a while)
+		LocalDateTime coveredUntil = entries.get(0).getNewest();
+		for (RupeePageCache.Entry entry : entries.subList(1, entries.size())) {
+			if (entry.getOldest().isAfter(coveredUntil) && !dao.getTransactionsByDate(coveredUntil.plusSeconds(1), entry.getOldest(), ShopTransactionType.ALL).isEmpty()) {
+				return "The page cache does not contain the transactions between " + df.format(coveredUntil) + " and " + df.format(entry.getOldest()) + ".";
+			}
+			if (entry.getNewest().isAfter(coveredUntil)) {
+				coveredUntil = entry.getNewest();
+			}
+		}
+
+		if (!dao.getTransactionsByDate(coveredUntil.plusSeconds(1), null, ShopTransactionType.ALL).isEmpty()) {
+			return "The page cache does not contain the transactions after " + df.format(coveredUntil) + ".";
+		}
+
+		return null;
+	}
 
+	private void printSummary(UpdatePresenter presenter) {
 		int transactions = presenter.getShopTransactions() + presenter.getPaymentTransactions() + presenter.getBonusFeeTransactions();
 		out.println("\n" + presenter.getPageCount() + " pages processed and " + transactions + " transactions saved in " + presenter.getTimeTaken().getSeconds() + " seconds.");
 		logger.info(presenter.getPageCount() + " pages processed and " + transactions + " transactions saved in " + presenter.getTimeTaken().getSeconds() + " seconds.");
+
+		UpdateMetrics metrics = presenter.getMetrics();
+		if (metrics != null) {
+			out.println("Time spent:");
+			for (UpdateMetrics.Stage stage : UpdateMetrics.Stage.values()) {
+				out.println("  " + fixedLength(stage.getDisplay() + ":", 16) + metrics.getTime(stage).toMillis() + " ms");
+			}
+		}
 	}
 
 	public void query(String query, String format) throws Exception {
@@ -165,6 +336,222 @@ public class CliController {
 		}
 	}
 
+	/**
+	 * Runs a query that groups the transactions by one or more dimensions.
+	 * @param query the date range (empty for all data)
+	 * @param builder the rest of the query
+	 * @param format the output format ("CSV" or "TABLE")
+	 * @throws Exception if there's a problem querying the database
+	 * @see QueryEngine
+	 */
+	public void aggregate(String query, AggregateQuery.Builder builder, String format) throws Exception {
+		LocalDateTime from, to;
+		if (query.isEmpty()) {
+			from = to = null;
+		} else {
+			LocalDateTime range[] = parseDateRange(query, dao);
+			from = range[0];
+			to = range[1];
+		}
+
+		AggregateQuery aggregateQuery = builder.from(from).to(to).build();
+		List<AggregateRow> rows = new QueryEngine(dao).execute(aggregateQuery);
+
+		List<Dimension> dimensions = aggregateQuery.getDimensions();
+		List<Measure> measures = aggregateQuery.getMeasures();
+
+		List<String> header = new ArrayList<>();
+		for (Dimension dimension : dimensions) {
+			header.add(dimension.getName());
+		}
+		for (Measure measure : measures) {
+			header.add(measure.getName());
+		}
+
+		if ("CSV".equalsIgnoreCase(format)) {
+			StringWriter sw = new StringWriter();
+			try (CSVWriter writer = new CSVWriter(sw)) {
+				writer.writeNext(header.toArray(new String[0]));
+				for (AggregateRow row : rows) {
+					List<String> line = new ArrayList<>();
+					for (int i = 0; i < dimensions.size(); i++) {
+						line.add(dimensions.get(i).format(row.getValue(i)));
+					}
+					for (Measure measure : measures) {
+						Number value = row.get(measure);
+						line.add((value == null) ? "" : value.toString());
+					}
+					writer.writeNext(line.toArray(new String[0]));
+				}
+			}
+			out.print(sw);
+			return;
+		}
+
+		NumberFormat wholeFormat = NumberFormat.getIntegerInstance();
+		NumberFormat decimalFormat = new DecimalFormat("#,##0.00");
+		List<String[]> lines = new ArrayList<>();
+		for (AggregateRow row : rows) {
+			String[] line = new String[header.size()];
+			int col = 0;
+			for (int i = 0; i < dimensions.size(); i++) {
+				line[col++] = dimensions.get(i).format(row.getValue(i));
+			}
+			for (Measure measure : measures) {
+				Number value = row.get(measure);
+				line[col++] = (value == null) ? "-" : (measure.isWholeNumber() ? wholeFormat : decimalFormat).format(value);
+			}
+			lines.add(line);
+		}
+
+		int widths[] = new int[header.size()];
+		for (int i = 0; i < widths.length; i++) {
+			widths[i] = header.get(i).length();
+		}
+		for (String[] line : lines) {
+			for (int i = 0; i < widths.length; i++) {
+				widths[i] = Math.max(widths[i], line[i].length());
+			}
+		}
+
+		DateTimeFormatter df = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM, FormatStyle.SHORT);
+		out.println("Start date: " + ((from == null) ? "not specified" : df.format(from)));
+		out.println("End date: " + ((to == null) ? "not specified" : df.format(to)));
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < widths.length; i++) {
+			if (i > 0) {
+				sb.append('|');
+			}
+			sb.append(fixedLength(header.get(i), widths[i]));
+		}
+		out.println(sb);
+		out.println(StringUtils.repeat('-', sb.length()));
+
+		for (String[] line : lines) {
+			sb.setLength(0);
+			for (int i = 0; i < widths.length; i++) {
+				if (i > 0) {
+					sb.append('|');
+				}
+
+				//right-align the measures
+				sb.append((i < dimensions.size()) ? fixedLength(line[i], widths[i]) : StringUtils.leftPad(line[i], widths[i]));
+			}
+			out.println(sb);
+		}
+	}
+
+	/**
+	 * Outputs a leaderboard.
+	 * @param query the date range (empty for all data)
+	 * @param leaderboard the leaderboard
+	 * @param rankBy what to rank by
+	 * @param size the number of places on the leaderboard
+	 * @param format the output format ("CSV" or "TABLE")
+	 * @throws Exception if there's a problem querying the database
+	 */
+	public void top(String query, Leaderboard leaderboard, Leaderboard.RankBy rankBy, int size, String format) throws Exception {
+		LocalDateTime from, to;
+		if (query.isEmpty()) {
+			from = to = null;
+		} else {
+			LocalDateTime range[] = parseDateRange(query, dao);
+			from = range[0];
+			to = range[1];
+		}
+
+		List<AggregateRow> rows = new QueryEngine(dao).leaderboard(leaderboard, rankBy, from, to, size);
+		String name = StringUtils.capitalize(leaderboard.getDimension().getName());
+
+		if ("CSV".equalsIgnoreCase(format)) {
+			StringWriter sw = new StringWriter();
+			try (CSVWriter writer = new CSVWriter(sw)) {
+				writer.writeNext(new String[] { "Rank", name, "Amount", "Quantity", "Transactions" });
+				int rank = 1;
+				for (AggregateRow row : rows) {
+					writer.writeNext(new String[] { rank++ + "", (String) row.getValue(0), row.getAmount() + "", row.getQuantity() + "", row.getCount() + "" });
+				}
+			}
+			out.print(sw);
+			return;
+		}
+
+		DateTimeFormatter df = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM, FormatStyle.SHORT);
+		out.println("Top " + size + " " + leaderboard.getName().replace('-', ' ') + " by " + rankBy.name().toLowerCase());
+		out.println("Start date: " + ((from == null) ? "not specified" : df.format(from)));
+		out.println("End date: " + ((to == null) ? "not specified" : df.format(to)));
+		out.println("  #|" + fixedLength(name, 30) + "|Amount            |Quantity          |Transactions");
+		out.println("--------------------------------------------------------------------------------");
+
+		RupeeFormatter rf = new RupeeFormatter();
+		rf.setPlus(true);
+		NumberFormat nf = NumberFormat.getIntegerInstance();
+		int rank = 1;
+		for (AggregateRow row : rows) {
+			out.print(StringUtils.leftPad(rank++ + "", 3));
+			out.print('|');
+			out.print(fixedLength((String) row.getValue(0), 30));
+			out.print('|');
+			out.print(fixedLength(rf.format(row.getAmount()), 18));
+			out.print('|');
+			out.print(fixedLength(nf.format(row.getQuantity()), 18));
+			out.print('|');
+			out.println(nf.format(row.getCount()));
+		}
+	}
+
+	/**
+	 * Creates a query from the values of the command-line arguments.
+	 * @param groupBy the dimensions (see {@link Dimension#parse})
+	 * @param measures the measures (see {@link Measure#parse}) or null for the
+	 * default measures
+	 * @param type the transaction type or null for {@link ShopTransactionType#MY_SHOP}
+	 * @param sort the measure to sort by, followed by an optional "asc" or
+	 * "desc" (e.g. "sum(amount) desc"), or null to sort by the dimensions
+	 * @param limit the maximum number of rows or null for no limit
+	 * @return the query builder
+	 * @throws IllegalArgumentException if any of the values are invalid
+	 */
+	public static AggregateQuery.Builder parseAggregateQuery(String groupBy, String measures, String type, String sort, Integer limit) {
+		AggregateQuery.Builder builder = new AggregateQuery.Builder();
+		builder.groupBy(Dimension.parse((groupBy == null) ? "" : groupBy));
+		builder.measures(Measure.parse((measures == null) ? EmcShopArguments.DEFAULT_MEASURES : measures));
+
+		if (type != null) {
+			try {
+				builder.transactionType(ShopTransactionType.valueOf(type.trim().toUpperCase()));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Unknown transaction type \"" + type + "\".  Valid types are: MY_SHOP, OTHER_SHOPS, ALL");
+			}
+		}
+
+		if (sort != null) {
+			String value = sort.trim();
+			boolean descending = false;
+			String lower = value.toLowerCase();
+			if (lower.endsWith(" desc")) {
+				descending = true;
+				value = value.substring(0, value.length() - 5);
+			} else if (lower.endsWith(" asc")) {
+				value = value.substring(0, value.length() - 4);
+			}
+
+			Measure measure = Measure.find(value);
+			if (measure == null) {
+				throw new IllegalArgumentException("Unknown measure \"" + value.trim() + "\" in sort.");
+			}
+			builder.sortBy(measure, descending);
+		}
+
+		if (limit != null && limit < 1) {
+			throw new IllegalArgumentException("\"limit\" must be greater than 0.");
+		}
+		builder.limit(limit);
+
+		return builder;
+	}
+
 	public void export(String query) throws Exception {
 		LocalDateTime from, to;
 		if (query.isEmpty()) {
@@ -179,6 +566,238 @@ public class CliController {
 		out.println(QueryExporter.generateExportCsv(transactions, from, to));
 	}
 
+	public void inventory(String asOf, String format) throws Exception {
+		Collection<Inventory> inventory = asOf.isEmpty() ? dao.getInventory() : dao.getInventory(parseTo(asOf.trim()));
+
+		List<Inventory> sortedInventory = new ArrayList<>(inventory);
+		sortedInventory.sort((left, right) -> left.getItem().compareToIgnoreCase(right.getItem()));
+
+		if ("bbcode".equalsIgnoreCase(format)) {
+			out.println(QueryExporter.generateInventoryBBCode(sortedInventory));
+		} else {
+			out.println(QueryExporter.generateInventoryCsv(sortedInventory));
+		}
+	}
+
+	/**
+	 * Renders charts of the profits data to image files. The profits are
+	 * queried once and shared by all the charts, which are rendered in
+	 * parallel.
+	 * @param query the date range (empty for all data)
+	 * @param types the charts to render
+	 * @param groups the item groups to include in the item groups chart (empty
+	 * for all groups)
+	 * @param items the items to include in the items chart
+	 * @param byMonth true to plot one point per month, false for one point per
+	 * day
+	 * @param format the image format
+	 * @param width the image width
+	 * @param height the image height
+	 * @param dir the directory to save the images to
+	 * @return the image files that were saved
+	 * @throws Exception if there's a problem querying the database or writing
+	 * the images
+	 */
+	public List<Path> chart(String query, Collection<ProfitsChart.Show> types, Collection<String> groups, Collection<String> items, boolean byMonth, ChartWriter.Format format, int width, int height, Path dir) throws Exception {
+		LocalDate from, to;
+		if (query.isEmpty()) {
+			from = to = null;
+		} else {
+			LocalDateTime range[] = parseDateRange(query, dao);
+			from = (range[0] == null) ? null : range[0].toLocalDate();
+			to = (range[1] == null) ? null : toExclusiveDate(range[1]);
+		}
+
+		Map<LocalDate, Profits> profits = byMonth ? dao.getProfitsByMonth(from, to) : dao.getProfitsByDay(from, to);
+		if (profits.isEmpty()) {
+			out.println("No transactions found.");
+			return Collections.emptyList();
+		}
+
+		ProfitsChart profitsChart = new ProfitsChart(new ProfitsMatrix(profits, byMonth));
+		if (groups.isEmpty()) {
+			List<String> allGroups = new ArrayList<>(profitsChart.getMatrix().getGroups());
+			allGroups.sort(String.CASE_INSENSITIVE_ORDER);
+			groups = allGroups;
+		}
+
+		//the charts are drawn to off-screen images
+		if (System.getProperty("java.awt.headless") == null) {
+			System.setProperty("java.awt.headless", "true");
+		}
+
+		Files.createDirectories(dir);
+
+		int threads = Math.max(1, Math.min(types.size(), Runtime.getRuntime().availableProcessors()));
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Path>> futures = new ArrayList<>(types.size());
+			for (ProfitsChart.Show type : types) {
+				Collection<String> names;
+				switch (type) {
+				case ITEM_GROUPS:
+					names = groups;
+					break;
+				case ITEMS:
+					names = items;
+					break;
+				default:
+					names = Collections.emptyList();
+					break;
+				}
+
+				futures.add(executor.submit(() -> {
+					//there's no point in plotting more points than there are pixels
+					JFreeChart chart = profitsChart.createChart(type, names, width);
+					chart.setTitle(type.toString());
+					chart.setBackgroundPaint(Color.white);
+
+					Path file = dir.resolve(getChartTypeName(type) + "." + format.getExtension());
+					try (OutputStream fileOut = Files.newOutputStream(file)) {
+						ChartWriter.write(chart, format, width, height, fileOut);
+					}
+					return file;
+				}));
+			}
+
+			List<Path> files = new ArrayList<>(futures.size());
+			for (Future<Path> future : futures) {
+				try {
+					files.add(future.get());
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof Exception) {
+						throw (Exception) cause;
+					}
+					throw e;
+				}
+			}
+
+			for (Path file : files) {
+				out.println("Saved " + file);
+			}
+			return files;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Starts a server that answers queries over HTTP. This method returns
+	 * once the server has started. The server keeps running until the program
+	 * is terminated.
+	 * @param port the port to listen on
+	 * @param threads the number of worker threads
+	 * @return the server
+	 * @throws IOException if the server socket could not be opened
+	 * @see QueryServer
+	 */
+	public QueryServer serve(int port, int threads) throws IOException {
+		//load the item data now, so the first request doesn't have to wait for it
+		ItemIndex.instance();
+
+		QueryServer server = new QueryServer(dao, port, threads);
+		server.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+
+		out.println("Listening on http://localhost:" + server.getPort() + "/ with " + threads + " worker threads.  Press Ctrl+C to stop.");
+		logger.info("Query server listening on port " + server.getPort() + ".");
+		return server;
+	}
+
+	/**
+	 * Parses the value of the "chart-type" argument.
+	 * @param value the argument value (comma-separated list of chart types)
+	 * @return the chart types
+	 * @throws IllegalArgumentException if a chart type is not recognized
+	 */
+	public static List<ProfitsChart.Show> parseChartTypes(String value) {
+		List<ProfitsChart.Show> types = new ArrayList<>();
+		for (String name : parseList(value)) {
+			ProfitsChart.Show type = null;
+			for (ProfitsChart.Show show : ProfitsChart.Show.values()) {
+				if (getChartTypeName(show).equalsIgnoreCase(name)) {
+					type = show;
+					break;
+				}
+			}
+
+			if (type == null) {
+				throw new IllegalArgumentException("Unknown chart type \"" + name + "\".");
+			}
+			if (!types.contains(type)) {
+				types.add(type);
+			}
+		}
+		return types;
+	}
+
+	/**
+	 * Parses the value of the "chart-size" argument.
+	 * @param value the argument value (e.g. "800x600")
+	 * @return the width and height
+	 * @throws IllegalArgumentException if the value is not formatted correctly
+	 */
+	public static int[] parseChartSize(String value) {
+		String split[] = value.trim().toLowerCase().split("\\s*x\\s*");
+		if (split.length == 2) {
+			try {
+				int width = Integer.parseInt(split[0]);
+				int height = Integer.parseInt(split[1]);
+				if (width > 0 && height > 0) {
+					return new int[] { width, height };
+				}
+			} catch (NumberFormatException e) {
+				//handled below
+			}
+		}
+		throw new IllegalArgumentException("Chart size must be in the form WIDTHxHEIGHT (e.g. \"800x600\").");
+	}
+
+	/**
+	 * Splits a comma-separated argument value.
+	 * @param value the argument value (may be null)
+	 * @return the values
+	 */
+	public static List<String> parseList(String value) {
+		List<String> list = new ArrayList<>();
+		if (value == null) {
+			return list;
+		}
+
+		for (String s : value.split(",")) {
+			s = s.trim();
+			if (!s.isEmpty()) {
+				list.add(s);
+			}
+		}
+		return list;
+	}
+
+	private static String getChartTypeName(ProfitsChart.Show type) {
+		switch (type) {
+		case NET_PROFITS:
+			return "profits";
+		case ITEM_GROUPS:
+			return "groups";
+		case ITEMS:
+			return "items";
+		default:
+			return "balance";
+		}
+	}
+
+	/**
+	 * Converts the end of a date range to the date that the range stops
+	 * before.
+	 * @param to the end of the range (exclusive)
+	 * @return the date
+	 */
+	private static LocalDate toExclusiveDate(LocalDateTime to) {
+		LocalDate date = to.toLocalDate();
+		return to.toLocalTime().equals(LocalTime.MIDNIGHT) ? date : date.plusDays(1);
+	}
+
 	/**
 	 * @author Michael Angstadt
 	 * @see "http://ascii-table.com/ansi-escape-sequences.php"
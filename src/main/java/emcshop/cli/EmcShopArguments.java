@@ -7,6 +7,9 @@ import joptsimple.OptionSet;
 import emcshop.EMCShopkeeper;
 
 public class EmcShopArguments {
+	public static final int DEFAULT_WATCH_INTERVAL = 5, DEFAULT_WATCH_MAX = 60;
+	public static final String DEFAULT_MEASURES = "sum(amount), sum(quantity), count";
+
 	private final OptionSet options;
 
 	public EmcShopArguments(String[] args) {
@@ -18,8 +21,31 @@ public class EmcShopArguments {
 		parser.accepts("update");
 		parser.accepts("stop-page").withRequiredArg().ofType(Integer.class);
 		parser.accepts("start-page").withRequiredArg().ofType(Integer.class);
+		parser.accepts("reimport");
+		parser.accepts("watch").withOptionalArg().ofType(Integer.class);
+		parser.accepts("watch-max").withRequiredArg().ofType(Integer.class);
 		parser.accepts("query").withOptionalArg();
+		parser.accepts("group-by").withRequiredArg();
+		parser.accepts("measures").withRequiredArg();
+		parser.accepts("items").withRequiredArg();
+		parser.accepts("players").withRequiredArg();
+		parser.accepts("type").withRequiredArg();
+		parser.accepts("sort").withRequiredArg();
+		parser.accepts("limit").withRequiredArg().ofType(Integer.class);
 		parser.accepts("export").withOptionalArg();
+		parser.accepts("inventory").withOptionalArg();
+		parser.accepts("top").withOptionalArg();
+		parser.accepts("top-type").withRequiredArg();
+		parser.accepts("top-by").withRequiredArg();
+		parser.accepts("chart").withOptionalArg();
+		parser.accepts("chart-type").withRequiredArg();
+		parser.accepts("chart-groups").withRequiredArg();
+		parser.accepts("chart-items").withRequiredArg();
+		parser.accepts("chart-by").withRequiredArg();
+		parser.accepts("chart-size").withRequiredArg();
+		parser.accepts("chart-dir").withRequiredArg();
+		parser.accepts("serve").withOptionalArg().ofType(Integer.class);
+		parser.accepts("serve-threads").withRequiredArg().ofType(Integer.class);
 		parser.accepts("format").withRequiredArg();
 		parser.accepts("version");
 		parser.accepts("help");
@@ -39,6 +65,26 @@ public class EmcShopArguments {
 		return options.has("update");
 	}
 
+	public boolean reimport() {
+		return options.has("reimport");
+	}
+
+	public Integer watch() {
+		if (!options.has("watch")) {
+			return null;
+		}
+
+		if (!options.hasArgument("watch")) {
+			return DEFAULT_WATCH_INTERVAL;
+		}
+
+		return (Integer) options.valueOf("watch");
+	}
+
+	public Integer watchMax() {
+		return (Integer) options.valueOf("watch-max");
+	}
+
 	public String profileDir() {
 		return (String) options.valueOf("profile-dir");
 	}
@@ -59,6 +105,34 @@ public class EmcShopArguments {
 		return (String) options.valueOf("query");
 	}
 
+	public String groupBy() {
+		return (String) options.valueOf("group-by");
+	}
+
+	public String measures() {
+		return (String) options.valueOf("measures");
+	}
+
+	public String items() {
+		return (String) options.valueOf("items");
+	}
+
+	public String players() {
+		return (String) options.valueOf("players");
+	}
+
+	public String type() {
+		return (String) options.valueOf("type");
+	}
+
+	public String sort() {
+		return (String) options.valueOf("sort");
+	}
+
+	public Integer limit() {
+		return (Integer) options.valueOf("limit");
+	}
+
 	public String export() {
 		if (!options.has("export")) {
 			return null;
@@ -71,6 +145,90 @@ public class EmcShopArguments {
 		return (String) options.valueOf("export");
 	}
 
+	public String inventory() {
+		if (!options.has("inventory")) {
+			return null;
+		}
+
+		if (!options.hasArgument("inventory")) {
+			return "";
+		}
+
+		return (String) options.valueOf("inventory");
+	}
+
+	public String top() {
+		if (!options.has("top")) {
+			return null;
+		}
+
+		if (!options.hasArgument("top")) {
+			return "";
+		}
+
+		return (String) options.valueOf("top");
+	}
+
+	public String topType() {
+		return (String) options.valueOf("top-type");
+	}
+
+	public String topBy() {
+		return (String) options.valueOf("top-by");
+	}
+
+	public String chart() {
+		if (!options.has("chart")) {
+			return null;
+		}
+
+		if (!options.hasArgument("chart")) {
+			return "";
+		}
+
+		return (String) options.valueOf("chart");
+	}
+
+	public String chartType() {
+		return (String) options.valueOf("chart-type");
+	}
+
+	public String chartGroups() {
+		return (String) options.valueOf("chart-groups");
+	}
+
+	public String chartItems() {
+		return (String) options.valueOf("chart-items");
+	}
+
+	public String chartBy() {
+		return (String) options.valueOf("chart-by");
+	}
+
+	public String chartSize() {
+		return (String) options.valueOf("chart-size");
+	}
+
+	public String chartDir() {
+		return (String) options.valueOf("chart-dir");
+	}
+
+	public Integer serve() {
+		if (!options.has("serve")) {
+			return null;
+		}
+
+		if (!options.hasArgument("serve")) {
+			return CliController.DEFAULT_SERVE_PORT;
+		}
+
+		return (Integer) options.valueOf("serve");
+	}
+
+	public Integer serveThreads() {
+		return (Integer) options.valueOf("serve-threads");
+	}
+
 	public String format() {
 		return (String) options.valueOf("format");
 	}
@@ -133,6 +291,21 @@ public class EmcShopArguments {
 		"  Specifies the transaction history page number to stop at during" + nl +
 		"  the first update (defaults to the last page)." + nl +
 		nl +
+		"--reimport" + nl +
+		"  Rebuilds the database from the page cache, without connecting to the" + nl +
+		"  website.  The page cache must be enabled in the settings before the" + nl +
+		"  pages are downloaded.  All existing transactions and inventory data" + nl +
+		"  are deleted first, so the re-import is canceled if the database" + nl +
+		"  contains transactions that are not in the page cache." + nl +
+		nl +
+		"--watch=MINUTES" + nl +
+		"  Keeps running and downloads new transactions on an interval, so that" + nl +
+		"  each update only has a few transactions to download.  The interval" + nl +
+		"  adapts to how busy your shop is.  MINUTES is the shortest amount of" + nl +
+		"  time to wait between updates (defaults to " + DEFAULT_WATCH_INTERVAL + ")." + nl +
+		"--watch-max=MINUTES" + nl +
+		"  The longest amount of time to wait between updates (defaults to " + DEFAULT_WATCH_MAX + ")." + nl +
+		nl +
 		"--query=QUERY" + nl +
 		"  Shows the net gains/losses of each item.  Examples:" + nl +
 		"  All data:               --query" + nl +
@@ -142,6 +315,29 @@ public class EmcShopArguments {
 		"  Data up to today:       --query=\"2013-03-07 to today\"" + nl +
 		"--format=TABLE|CSV|BBCODE" + nl +
 		"  Specifies how to render the queried transaction data (defaults to " + defaultFormat + ")." + nl +
+		"--group-by=DIMENSIONS" + nl +
+		"  Groups the queried transactions by something other than the item." + nl +
+		"  Separate multiple dimensions with commas.  Valid dimensions are:" + nl +
+		"  item, group, category, player, day, week, month, hour, weekday" + nl +
+		"--measures=MEASURES" + nl +
+		"  What to calculate for each group when --group-by is used, separated" + nl +
+		"  by commas (defaults to \"" + DEFAULT_MEASURES + "\").  Valid measures are:" + nl +
+		"  sum(amount), avg(amount), sum(quantity), avg(quantity), count, price" + nl +
+		"--items=ITEMS" + nl +
+		"  Only include these items, separated by commas." + nl +
+		"--players=PLAYERS" + nl +
+		"  Only include these players, separated by commas." + nl +
+		"--type=MY_SHOP|OTHER_SHOPS|ALL" + nl +
+		"  The shop transactions to include (defaults to MY_SHOP)." + nl +
+		"--sort=\"MEASURE [ASC|DESC]\"" + nl +
+		"  Sorts the groups by a measure (defaults to sorting by the dimensions)." + nl +
+		"--limit=NUM" + nl +
+		"  The maximum number of groups to show." + nl +
+		"  Examples:" + nl +
+		"  Sales per player per month: --query --group-by=player,month" + nl +
+		"  Diamond sales by weekday:   --query --group-by=weekday --items=Diamond" + nl +
+		"  Top 10 Diamond customers:   --query --group-by=player --items=Diamond" + nl +
+		"                              --sort=\"sum(amount) desc\" --limit=10" + nl +
 		nl +
 		"--export=QUERY" + nl +
 		"  Outputs every transaction in chronological order in CSV format.  Examples:" + nl +
@@ -151,6 +347,64 @@ public class EmcShopArguments {
 		"  Three days of data:     --export=\"2013-03-07 to 2013-03-09\"" + nl +
 		"  Data up to today:       --export=\"2013-03-07 to today\"" + nl +
 		nl +
+		"--inventory=DATE" + nl +
+		"  Outputs the shop inventory in CSV format (or BBCode if --format=BBCODE)." + nl +
+		"  If a date is given, the inventory is calculated as it was at the end" + nl +
+		"  of that date, based on the shop transactions that happened since then." + nl +
+		"  Current inventory:      --inventory" + nl +
+		"  Past inventory:         --inventory=\"2013-03-07\"" + nl +
+		"                          --inventory=\"2013-03-07 14:30\"" + nl +
+		nl +
+		"--top=QUERY" + nl +
+		"  Outputs a leaderboard, such as your best customers.  Accepts the same" + nl +
+		"  date ranges as --query.  Use --format=CSV to output in CSV format." + nl +
+		"  Examples:" + nl +
+		"  All data:               --top" + nl +
+		"  Top 5 items this week:  --top=\"2013-03-03 to today\" --top-type=items-sold" + nl +
+		"                          --limit=5" + nl +
+		"--top-type=CUSTOMERS|SUPPLIERS|ITEMS-SOLD|ITEMS-BOUGHT" + nl +
+		"  The leaderboard to output (defaults to CUSTOMERS)." + nl +
+		"--top-by=REVENUE|VOLUME" + nl +
+		"  Whether to rank by rupees or by number of items (defaults to REVENUE)." + nl +
+		"--limit=NUM" + nl +
+		"  The number of places on the leaderboard (defaults to " + CliController.DEFAULT_TOP_SIZE + ")." + nl +
+		nl +
+		"--chart=QUERY" + nl +
+		"  Renders charts of the queried data to image files, without opening any" + nl +
+		"  windows.  Accepts the same date ranges as --query.  Examples:" + nl +
+		"  All data:               --chart" + nl +
+		"  Three days of data:     --chart=\"2013-03-07 to 2013-03-09\"" + nl +
+		"--chart-type=PROFITS,GROUPS,ITEMS,BALANCE" + nl +
+		"  The charts to render, separated by commas (defaults to PROFITS).  Each" + nl +
+		"  chart is saved to its own file (for example, \"profits.png\")." + nl +
+		"--chart-groups=GROUPS" + nl +
+		"  The item groups to include in the GROUPS chart, separated by commas" + nl +
+		"  (defaults to all groups)." + nl +
+		"--chart-items=ITEMS" + nl +
+		"  The items to include in the ITEMS chart, separated by commas." + nl +
+		"--chart-by=DAY|MONTH" + nl +
+		"  Whether to plot one point per day or per month (defaults to DAY)." + nl +
+		"--chart-size=WIDTHxHEIGHT" + nl +
+		"  The size of each image, in pixels (defaults to " + CliController.DEFAULT_CHART_WIDTH + "x" + CliController.DEFAULT_CHART_HEIGHT + ")." + nl +
+		"--chart-dir=DIR" + nl +
+		"  The directory to save the images to (defaults to the current directory)." + nl +
+		"--format=PNG|SVG" + nl +
+		"  The image format (defaults to PNG).  SVG files contain the chart as an" + nl +
+		"  embedded image." + nl +
+		nl +
+		"--serve=PORT" + nl +
+		"  Keeps running and answers queries over HTTP, so that scripts which run" + nl +
+		"  many queries do not have to start the program each time.  Only" + nl +
+		"  connections from the local machine are accepted (defaults to port " + CliController.DEFAULT_SERVE_PORT + ")." + nl +
+		"  Responses are in JSON format.  The \"range\" parameter accepts the same" + nl +
+		"  values as --query and the \"type\" parameter can be MY_SHOP," + nl +
+		"  OTHER_SHOPS, or ALL.  Examples:" + nl +
+		"  Net gains/losses:       http://localhost:" + CliController.DEFAULT_SERVE_PORT + "/query?range=today" + nl +
+		"  Every transaction:      http://localhost:" + CliController.DEFAULT_SERVE_PORT + "/export?range=2013-03-07+to+today" + nl +
+		"--serve-threads=NUM" + nl +
+		"  The number of requests that can be handled at the same time (defaults" + nl +
+		"  to the number of processors)." + nl +
+		nl +
 		"--version" + nl +
 		"  Prints the version of this program." + nl +
 		nl +
@@ -0,0 +1,405 @@
+package emcshop.cli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import emcshop.db.DbDao;
+import emcshop.db.ItemGroup;
+import emcshop.db.ShopTransactionType;
+
+/**
+ * <p>
+ * Answers queries over HTTP, so that scripts which run many queries do not
+ * have to start the program for each one. The server only accepts
+ * connections from the local machine.
+ * </p>
+ * <p>
+ * Requests are handled by a pool of worker threads. Each worker thread has its
+ * own read-only database connection (see {@link DbDao#openReader}), so queries
+ * can run at the same time.
+ * </p>
+ * <p>
+ * <b>Endpoints:</b>
+ * </p>
+ * <ul>
+ * <li>{@code GET /query} - The net gains/losses of each item (same as the
+ * "--query" argument).</li>
+ * <li>{@code GET /export} - Every transaction in chronological order (same as
+ * the "--export" argument). The transactions are streamed from the database
+ * to the client as they are read.</li>
+ * </ul>
+ * <p>
+ * Both endpoints accept a "range" parameter, which takes the same values as
+ * the "--query" argument (for example, "2013-03-07 to today"), and a "type"
+ * parameter ("MY_SHOP", "OTHER_SHOPS", or "ALL"). The responses are in JSON
+ * format. If a request fails, the response is a JSON object with an "error"
+ * field. If the failure happens after part of a response has been sent, the
+ * response is cut short instead.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class QueryServer {
+	private static final Logger logger = Logger.getLogger(QueryServer.class.getName());
+	private static final JsonFactory jsonFactory = new JsonFactory();
+	private static final DateTimeFormatter df = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+	private final DbDao dao;
+	private final ExecutorService workers;
+	private final ThreadLocal<DbDao> readers;
+	private final List<DbDao> openReaders = new ArrayList<>();
+	private final HttpServer server;
+
+	/**
+	 * @param dao the data access object
+	 * @param port the port to listen on (zero to pick any free port)
+	 * @param threads the number of worker threads
+	 * @throws IOException if the server socket could not be opened
+	 */
+	public QueryServer(DbDao dao, int port, int threads) throws IOException {
+		this.dao = dao;
+
+		AtomicInteger threadCount = new AtomicInteger();
+		workers = Executors.newFixedThreadPool(threads, r -> new Thread(r, "query-server-" + threadCount.incrementAndGet()));
+		readers = ThreadLocal.withInitial(this::openReader);
+
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/query", exchange -> handle(exchange, this::query));
+		server.createContext("/export", exchange -> handle(exchange, this::export));
+		server.setExecutor(workers);
+	}
+
+	/**
+	 * Starts the server.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Gets the port the server is listening on.
+	 * @return the port
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Stops the server and closes the database connections of the worker
+	 * threads.
+	 */
+	public void stop() {
+		server.stop(0);
+		workers.shutdown();
+
+		synchronized (openReaders) {
+			for (DbDao reader : openReaders) {
+				try {
+					reader.close();
+				} catch (SQLException e) {
+					logger.log(Level.WARNING, "Problem closing database connection.", e);
+				}
+			}
+			openReaders.clear();
+		}
+	}
+
+	private DbDao openReader() {
+		try {
+			DbDao reader = dao.openReader();
+			synchronized (openReaders) {
+				openReaders.add(reader);
+			}
+			return reader;
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private Body query(Request request) throws SQLException {
+		Collection<ItemGroup> itemGroups = readers.get().getItemGroups(request.from, request.to, request.type(ShopTransactionType.MY_SHOP));
+
+		List<ItemGroup> sortedItemGroups = new ArrayList<>(itemGroups);
+		sortedItemGroups.sort((left, right) -> left.getItem().compareToIgnoreCase(right.getItem()));
+
+		return json -> {
+			json.writeStartObject();
+			writeDateRange(request, json);
+
+			int netTotal = 0;
+			json.writeArrayFieldStart("items");
+			for (ItemGroup itemGroup : sortedItemGroups) {
+				json.writeStartObject();
+				json.writeStringField("item", itemGroup.getItem());
+				json.writeNumberField("boughtQuantity", itemGroup.getBoughtQuantity());
+				json.writeNumberField("boughtAmount", itemGroup.getBoughtAmount());
+				json.writeNumberField("soldQuantity", itemGroup.getSoldQuantity());
+				json.writeNumberField("soldAmount", itemGroup.getSoldAmount());
+				json.writeNumberField("netQuantity", itemGroup.getNetQuantity());
+				json.writeNumberField("netAmount", itemGroup.getNetAmount());
+				json.writeEndObject();
+
+				netTotal += itemGroup.getNetAmount();
+			}
+			json.writeEndArray();
+
+			json.writeNumberField("netTotal", netTotal);
+			json.writeEndObject();
+		};
+	}
+
+	private Body export(Request request) {
+		return json -> {
+			json.writeStartObject();
+			writeDateRange(request, json);
+
+			json.writeArrayFieldStart("transactions");
+			try {
+				readers.get().getTransactionsByDate(request.from, request.to, request.type(ShopTransactionType.ALL), transaction -> {
+					try {
+						json.writeStartObject();
+						json.writeStringField("ts", df.format(transaction.getTs()));
+						json.writeStringField("customer", transaction.getShopCustomer());
+						json.writeStringField("shopOwner", transaction.getShopOwner());
+						json.writeStringField("item", transaction.getItem());
+						json.writeNumberField("quantity", transaction.getQuantity());
+						json.writeNumberField("amount", transaction.getAmount());
+						json.writeEndObject();
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			json.writeEndArray();
+
+			json.writeEndObject();
+		};
+	}
+
+	private static void writeDateRange(Request request, JsonGenerator json) throws IOException {
+		json.writeStringField("from", (request.from == null) ? null : df.format(request.from));
+		json.writeStringField("to", (request.to == null) ? null : df.format(request.to));
+	}
+
+	private void handle(HttpExchange exchange, Handler handler) throws IOException {
+		ResponseStream response = new ResponseStream(exchange);
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				send(response, 405, error("Only GET requests are supported."));
+				return;
+			}
+
+			Request request;
+			try {
+				request = new Request(exchange);
+			} catch (DateTimeException | IllegalArgumentException e) {
+				send(response, 400, error(e.getMessage()));
+				return;
+			}
+
+			send(response, 200, handler.handle(request));
+		} catch (SQLException e) {
+			logger.log(Level.SEVERE, "Problem querying the database.", e);
+			sendError(response, "Problem querying the database.");
+		} catch (RuntimeException e) {
+			logger.log(Level.SEVERE, "Problem handling request.", e);
+			sendError(response, "Problem handling request: " + e);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Sends a response. The JSON is written directly to the response body,
+	 * which uses chunked encoding, so large responses do not have to be held
+	 * in memory.
+	 * @param response the response stream
+	 * @param status the HTTP status code
+	 * @param body writes the response body
+	 * @throws IOException if the client closed the connection
+	 * @throws SQLException if there's a problem querying the database while
+	 * the body is being written
+	 */
+	private static void send(ResponseStream response, int status, Body body) throws IOException, SQLException {
+		response.setStatus(status);
+		JsonGenerator json = jsonFactory.createGenerator(response, JsonEncoding.UTF8);
+		body.write(json);
+
+		//not closed if the body fails, so that the status can still be changed if nothing was sent yet
+		json.close();
+	}
+
+	/**
+	 * Sends a 500 error response. If part of the response has already been
+	 * sent, the response is cut short instead.
+	 * @param response the response stream
+	 * @param message the error message
+	 * @throws IOException if the client closed the connection
+	 */
+	private static void sendError(ResponseStream response, String message) throws IOException {
+		if (response.isCommitted()) {
+			logger.warning("Part of the response was already sent, so the response was cut short.");
+			return;
+		}
+
+		try {
+			send(response, 500, error(message));
+		} catch (SQLException e) {
+			//should never be thrown
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static Body error(String message) {
+		return json -> {
+			json.writeStartObject();
+			json.writeStringField("error", message);
+			json.writeEndObject();
+		};
+	}
+
+	private interface Handler {
+		/**
+		 * Queries the database.
+		 * @param request the request
+		 * @return writes the response body
+		 * @throws SQLException if there's a problem querying the database
+		 */
+		Body handle(Request request) throws SQLException;
+	}
+
+	private interface Body {
+		void write(JsonGenerator json) throws IOException, SQLException;
+	}
+
+	/**
+	 * The response body. The response headers are not sent until the first
+	 * bytes of the body are written. This means an error response can still
+	 * be sent if something goes wrong before then (the JSON generator buffers
+	 * the first few kilobytes of the body).
+	 */
+	private static class ResponseStream extends OutputStream {
+		private final HttpExchange exchange;
+		private int status;
+		private OutputStream out;
+
+		public ResponseStream(HttpExchange exchange) {
+			this.exchange = exchange;
+		}
+
+		public void setStatus(int status) {
+			this.status = status;
+		}
+
+		/**
+		 * Determines if the response headers have been sent.
+		 * @return true if they have been sent, false if not
+		 */
+		public boolean isCommitted() {
+			return out != null;
+		}
+
+		private OutputStream out() throws IOException {
+			if (out == null) {
+				exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+				exchange.sendResponseHeaders(status, 0);
+				out = exchange.getResponseBody();
+			}
+			return out;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out().write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out().write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out().flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			out().close();
+		}
+	}
+
+	/**
+	 * The parameters of a request.
+	 */
+	private class Request {
+		private final LocalDateTime from, to;
+		private final ShopTransactionType type;
+
+		public Request(HttpExchange exchange) throws SQLException {
+			Map<String, String> params = parseQueryString(exchange.getRequestURI().getRawQuery());
+
+			String range = params.get("range");
+			if (range == null || range.trim().isEmpty()) {
+				from = to = null;
+			} else {
+				LocalDateTime dateRange[] = CliController.parseDateRange(range, readers.get());
+				from = dateRange[0];
+				to = dateRange[1];
+			}
+
+			String type = params.get("type");
+			this.type = (type == null) ? null : ShopTransactionType.valueOf(type.toUpperCase());
+		}
+
+		public ShopTransactionType type(ShopTransactionType defaultValue) {
+			return (type == null) ? defaultValue : type;
+		}
+	}
+
+	private static Map<String, String> parseQueryString(String query) {
+		Map<String, String> params = new HashMap<>();
+		if (query == null) {
+			return params;
+		}
+
+		for (String pair : query.split("&")) {
+			int equals = pair.indexOf('=');
+			String name = (equals < 0) ? pair : pair.substring(0, equals);
+			String value = (equals < 0) ? "" : pair.substring(equals + 1);
+			try {
+				params.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+			} catch (UnsupportedEncodingException e) {
+				//should never be thrown
+				throw new RuntimeException(e);
+			}
+		}
+		return params;
+	}
+}
@@ -4,13 +4,23 @@ import java.time.Duration;
 
 import com.github.mangstadt.emc.rupees.RupeeTransactionReader;
 
+import emcshop.db.DbDao;
 import emcshop.model.UpdateModelImpl;
+import emcshop.scraper.RupeePageCache;
 
 public class UpdateModelCli extends UpdateModelImpl {
 	public UpdateModelCli(RupeeTransactionReader.Builder builder, Duration oldestAllowablePaymentTransactionAge) {
 		super(builder, oldestAllowablePaymentTransactionAge);
 	}
 
+	public UpdateModelCli(RupeeTransactionReader.Builder builder, Duration oldestAllowablePaymentTransactionAge, DbDao dao) {
+		super(builder, oldestAllowablePaymentTransactionAge, dao);
+	}
+
+	public UpdateModelCli(RupeePageCache replayCache, int threads) {
+		super(replayCache, threads);
+	}
+
 	@Override
 	public Thread startDownload() {
 		Thread thread = super.startDownload();
@@ -7,7 +7,9 @@ import java.time.Duration;
 import java.time.LocalDateTime;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.lang3.time.DurationFormatUtils;
 
+import emcshop.model.UpdateMetrics;
 import emcshop.presenter.LoginPresenter;
 import emcshop.scraper.EmcSession;
 import emcshop.view.IUpdateView;
@@ -17,6 +19,8 @@ public class UpdateViewCli implements IUpdateView {
 	private final NumberFormat nf = NumberFormat.getInstance();
 	private final LoginShower loginShower;
 	private int pages, shopTransactions, paymentTransactions, bonusFeeTransactions;
+	private UpdateMetrics metrics;
+	private Duration estimatedTime;
 
 	public UpdateViewCli(LoginShower loginShower) {
 		this.loginShower = loginShower;
@@ -62,7 +66,7 @@ public class UpdateViewCli implements IUpdateView {
 
 	@Override
 	public void setEstimatedTime(Duration estimatedTime) {
-		//empty
+		this.estimatedTime = estimatedTime;
 	}
 
 	@Override
@@ -99,9 +103,31 @@ public class UpdateViewCli implements IUpdateView {
 		updateDisplay();
 	}
 
+	@Override
+	public void setMetrics(UpdateMetrics metrics) {
+		this.metrics = metrics;
+		updateDisplay();
+	}
+
 	private void updateDisplay() {
 		int transactions = shopTransactions + paymentTransactions + bonusFeeTransactions;
-		out.print("\rPages: " + nf.format(pages) + " | Transactions: " + nf.format(transactions));
+		String line = "\rPages: " + nf.format(pages) + " | Transactions: " + nf.format(transactions);
+		if (metrics != null) {
+			line += String.format(" | %.1f pages/s | %.0f rows/s | insert p50 %.2f ms, p99 %.2f ms", metrics.getPagesPerSecond(), metrics.getRowsPerSecond(), toMillis(metrics.getInsertLatency(50)), toMillis(metrics.getInsertLatency(99)));
+
+			if (estimatedTime != null) {
+				Duration remaining = estimatedTime.minus(metrics.getElapsed());
+				if (remaining.isNegative()) {
+					remaining = Duration.ZERO;
+				}
+				line += " | ETA " + DurationFormatUtils.formatDuration(remaining.toMillis(), "HH:mm:ss", true);
+			}
+		}
+		out.print(line);
+	}
+
+	private static double toMillis(Duration duration) {
+		return duration.toNanos() / 1_000_000.0;
 	}
 
 	@Override
@@ -8,11 +8,23 @@ import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import org.apache.commons.lang3.mutable.MutableInt;
 
 import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
 
+import emcshop.query.AggregateQuery;
+import emcshop.query.AggregateRow;
+import emcshop.query.QueryEngine;
+
+/**
+ * Data access object for the database. An instance wraps a single database
+ * connection and transaction, so it is not thread-safe. Use
+ * {@link #openReader} or {@link #openWriter} to access the database from
+ * another thread.
+ * @author Michael Angstadt
+ */
 public interface DbDao {
 	/**
 	 * Re-creates the database connection after {@link #close} was called.
@@ -126,11 +138,23 @@ public interface DbDao {
 	/**
 	 * Inserts a transaction.
 	 * @param transaction
-	 * @param updateInventory true to update the inventory, false not to
+	 * @param updateInventory true to update the inventory, false not to (the
+	 * inventory is updated when {@link #commit} is called)
 	 * @throws SQLException
 	 */
 	void insertTransaction(ShopTransactionDb transaction, boolean updateInventory) throws SQLException;
 
+	/**
+	 * Inserts multiple transactions in a single batch. This is faster than
+	 * calling {@link #insertTransaction} for each one, but the IDs of the
+	 * inserted rows are not assigned to the transaction objects.
+	 * @param transactions the transactions
+	 * @param updateInventory true to update the inventory, false not to (the
+	 * inventory is updated when {@link #commit} is called)
+	 * @throws SQLException
+	 */
+	void insertTransactions(List<ShopTransactionDb> transactions, boolean updateInventory) throws SQLException;
+
 	/**
 	 * Inserts a payment transaction.
 	 * @param transaction the transaction
@@ -138,6 +162,15 @@ public interface DbDao {
 	 */
 	void insertPaymentTransaction(PaymentTransactionDb transaction) throws SQLException;
 
+	/**
+	 * Inserts multiple payment transactions in a single batch. This is faster
+	 * than calling {@link #insertPaymentTransaction} for each one, but the IDs
+	 * of the inserted rows are not assigned to the transaction objects.
+	 * @param transactions the transactions
+	 * @throws SQLException
+	 */
+	void insertPaymentTransactions(List<PaymentTransactionDb> transactions) throws SQLException;
+
 	/**
 	 * Deletes a payment transaction.
 	 * @param transaction the transaction to delete
@@ -211,6 +244,33 @@ public interface DbDao {
 	 */
 	List<ShopTransactionDb> getTransactionsByDate(LocalDateTime from, LocalDateTime to, ShopTransactionType transactionType) throws SQLException;
 
+	/**
+	 * Gets all transactions by date, consolidating them so consecutive
+	 * purchases are combined into a single transaction. Each transaction is
+	 * passed to the handler as soon as it has been consolidated, so the
+	 * transactions don't all have to be held in memory. The handler must not
+	 * use this DAO.
+	 * @param from the start date
+	 * @param to the end date
+	 * @param transactionType the kind of shop transactions to query for
+	 * @param handler receives the transactions, in chronological order
+	 * @throws SQLException
+	 */
+	void getTransactionsByDate(LocalDateTime from, LocalDateTime to, ShopTransactionType transactionType, Consumer<ShopTransactionDb> handler) throws SQLException;
+
+	/**
+	 * Groups the shop transactions by the query's dimensions and totals them
+	 * up in a single aggregated query. Item group and category dimensions are
+	 * returned as the item name, so they can be rolled up by the
+	 * {@link QueryEngine}. If the query has a sort measure and a limit, and
+	 * none of its dimensions are derived from the item, only the top rows are
+	 * returned (sorted). Otherwise, the rows are not sorted or limited.
+	 * @param query the query
+	 * @return the rows
+	 * @throws SQLException
+	 */
+	List<AggregateRow> getAggregates(AggregateQuery query) throws SQLException;
+
 	/**
 	 * Computes what each player bought/sold over a date range.
 	 * @param from the start date
@@ -228,6 +288,20 @@ public interface DbDao {
 	 */
 	Collection<Inventory> getInventory() throws SQLException;
 
+	/**
+	 * Gets what the player's shop inventory looked like at a point in the
+	 * past. This is calculated by taking the current inventory and undoing
+	 * the shop transactions that happened after the given date. Only the
+	 * transactions that changed the inventory when they were inserted are
+	 * undone (see {@link #insertTransaction}). Items that have been added to
+	 * the inventory since then are included, and changes that were made to
+	 * the inventory by hand are not taken into account.
+	 * @param asOf the date
+	 * @return the inventory
+	 * @throws SQLException
+	 */
+	Collection<Inventory> getInventory(LocalDateTime asOf) throws SQLException;
+
 	/**
 	 * Updates or inserts an inventory item.
 	 * @param inventory the inventory item
@@ -254,6 +328,14 @@ public interface DbDao {
 	 */
 	void updateInventoryLowThreshold(String item, int threshold) throws SQLException;
 
+	/**
+	 * Applies a batch of inventory changes. Items that are not in the
+	 * inventory are added to it.
+	 * @param changes the changes to apply
+	 * @throws SQLException
+	 */
+	void updateInventory(Collection<InventoryChange> changes) throws SQLException;
+
 	/**
 	 * Deletes one or more inventory items.
 	 * @param ids the inventory IDs to delete
@@ -365,6 +447,32 @@ public interface DbDao {
 	 */
 	void insertUpdateLog(LocalDateTime ts, Integer rupeeBalance, int transactionCount, int paymentTransactionCount, int bonusFeeTransactionCount, Duration timeTaken) throws SQLException;
 
+	/**
+	 * Logs an update operation, including the time each stage of the update
+	 * took.
+	 * @param log the update log entry
+	 * @return the ID of the inserted row
+	 * @throws SQLException
+	 */
+	int insertUpdateLog(UpdateLog log) throws SQLException;
+
+	/**
+	 * Records how long it took to commit an update. This is saved separately
+	 * because the update log entry is part of the transaction being timed.
+	 * @param id the ID of the update log entry
+	 * @param commitTime the time the commit took
+	 * @throws SQLException
+	 */
+	void updateUpdateLogCommitTime(int id, Duration commitTime) throws SQLException;
+
+	/**
+	 * Gets the most recent entries from the update log.
+	 * @param limit the maximum number of entries to return
+	 * @return the entries, sorted by date descending
+	 * @throws SQLException
+	 */
+	List<UpdateLog> getUpdateLogs(int limit) throws SQLException;
+
 	/**
 	 * Gets the timestamp of the most recent update.
 	 * @return the timestamp or null if the update log is empty
@@ -402,4 +510,24 @@ public interface DbDao {
 	 * @throws SQLException
 	 */
 	void close() throws SQLException;
+
+	/**
+	 * Opens a separate, read-only connection to the database, so that queries
+	 * can be run from multiple threads at the same time. Calling {@link #close}
+	 * on the returned object only closes its own connection.
+	 * @return the read-only data access object
+	 * @throws SQLException
+	 */
+	DbDao openReader() throws SQLException;
+
+	/**
+	 * Opens a separate connection to the database for writing from a
+	 * background thread. The returned object has its own transaction, so
+	 * calling {@link #commit} or {@link #rollback} on one connection does not
+	 * affect the other. Calling {@link #close} on the returned object only
+	 * closes its own connection.
+	 * @return the data access object
+	 * @throws SQLException
+	 */
+	DbDao openWriter() throws SQLException;
 }
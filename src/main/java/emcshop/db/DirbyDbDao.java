@@ -12,20 +12,26 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.DayOfWeek;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -47,6 +53,10 @@ import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multimap;
 
 import emcshop.ItemIndex;
+import emcshop.query.AggregateQuery;
+import emcshop.query.AggregateRow;
+import emcshop.query.Dimension;
+import emcshop.query.Measure;
 import emcshop.util.ClasspathUtils;
 
 /**
@@ -61,11 +71,28 @@ public abstract class DirbyDbDao implements DbDao {
 	 * directly. Use {@link #getAppDbVersion()} instead, because this method
 	 * gets overridden in unit tests.
 	 */
-	public static final int schemaVersion = 50;
+	public static final int schemaVersion = 54;
+
+	/**
+	 * A Monday, used for calculating weeks and days of the week.
+	 */
+	private static final LocalDate WEEK_EPOCH = LocalDate.of(1970, 1, 5);
+
+	/**
+	 * The maximum number of item names to look up in a single query.
+	 */
+	private static final int ITEM_LOOKUP_CHUNK_SIZE = 500;
 
 	protected Connection conn;
 	protected String jdbcUrl;
+
+	/*
+	 * Changes that are saved when the connection's transaction is committed.
+	 * These belong to the connection, so they are only accessed by the thread
+	 * that is using the connection.
+	 */
 	private Map<Integer, LocalDateTime[]> firstLastSeenDates = new HashMap<>();
+	private Map<Integer, Integer> inventoryDeltas = new HashMap<>();
 
 	private final Map<Class<? extends RupeeTransaction>, String> bonusFeeColumnNames = ImmutableMap.<Class<? extends RupeeTransaction>, String>builder() //@formatter:off
 		.put(DailySigninBonus.class, "sign_in")
@@ -555,20 +582,9 @@ public abstract class DirbyDbDao implements DbDao {
 		Integer itemId = selsertItem(transaction.getItem());
 		LocalDateTime ts = transaction.getTs();
 
-		//keep track of the first/last seen dates so they can be updated (in "commit()")
 		//don't record this if this is not a transaction from the player's own shop
 		if (player != null) {
-			LocalDateTime dates[] = firstLastSeenDates.computeIfAbsent(player.getId(), k -> new LocalDateTime[] { player.getFirstSeen(), player.getLastSeen() });
-
-			LocalDateTime earliest = dates[0];
-			if (earliest == null || ts.isBefore(earliest)) {
-				dates[0] = ts;
-			}
-
-			LocalDateTime latest = dates[1];
-			if (latest == null || ts.isAfter(latest)) {
-				dates[1] = ts;
-			}
+			trackFirstLastSeen(player, ts);
 		}
 
 		//insert transaction
@@ -584,11 +600,134 @@ public abstract class DirbyDbDao implements DbDao {
 		stmt.setInt("quantity", transaction.getQuantity());
 		stmt.setInt("amount", transaction.getAmount());
 		stmt.setInt("balance", transaction.getBalance());
+
+		//only items that are in the inventory are updated (see "applyInventoryDeltas()")
+		boolean inventoryUpdated = player != null && updateInventory && getInventoryItems(Collections.singletonList(itemId)).contains(itemId);
+		stmt.setBoolean("inventory_updated", inventoryUpdated);
+
 		int id = stmt.execute(conn);
 		transaction.setId(id);
 
-		if (player != null && updateInventory) {
-			addToInventory(itemId, transaction.getQuantity());
+		//keep track of the inventory changes so they can be applied all at once (in "commit()")
+		if (inventoryUpdated) {
+			inventoryDeltas.merge(itemId, transaction.getQuantity(), Integer::sum);
+		}
+	}
+
+	@Override
+	public void insertTransactions(List<ShopTransactionDb> transactions, boolean updateInventory) throws SQLException {
+		//the same players and items appear over and over again
+		Map<String, Player> players = new HashMap<>();
+		Map<String, Integer> items = new HashMap<>();
+
+		//only items that are in the inventory are updated (see "applyInventoryDeltas()")
+		Set<Integer> inventoryItems = updateInventory ? getInventoryItems(null) : Collections.emptySet();
+
+		try (PreparedStatement stmt = stmt("INSERT INTO transactions (ts, player, shop_owner, item, quantity, amount, balance, inventory_updated) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+			for (ShopTransactionDb transaction : transactions) {
+				String playerName = transaction.getShopCustomer();
+				Player player = (playerName == null) ? null : selsertPlayer(playerName, players);
+
+				String ownerName = transaction.getShopOwner();
+				Player owner = (ownerName == null) ? null : selsertPlayer(ownerName, players);
+
+				String itemName = transaction.getItem();
+				Integer itemId = items.get(itemName);
+				if (itemId == null) {
+					itemId = selsertItem(itemName);
+					items.put(itemName, itemId);
+				}
+
+				LocalDateTime ts = transaction.getTs();
+				if (player != null) {
+					trackFirstLastSeen(player, ts);
+				}
+
+				int i = 1;
+				stmt.setTimestamp(i++, toTimestamp(ts));
+				if (player == null) {
+					stmt.setNull(i++, Types.INTEGER);
+				} else {
+					stmt.setInt(i++, player.getId());
+				}
+				if (owner == null) {
+					stmt.setNull(i++, Types.INTEGER);
+				} else {
+					stmt.setInt(i++, owner.getId());
+				}
+				stmt.setInt(i++, itemId);
+				stmt.setInt(i++, transaction.getQuantity());
+				stmt.setInt(i++, transaction.getAmount());
+				stmt.setInt(i++, transaction.getBalance());
+				boolean inventoryUpdated = player != null && inventoryItems.contains(itemId);
+				stmt.setBoolean(i++, inventoryUpdated);
+				stmt.addBatch();
+
+				if (inventoryUpdated) {
+					inventoryDeltas.merge(itemId, transaction.getQuantity(), Integer::sum);
+				}
+			}
+			stmt.executeBatch();
+		}
+	}
+
+	/**
+	 * Determines which items are in the inventory.
+	 * @param itemIds the IDs of the items to check or null to get all the
+	 * items in the inventory
+	 * @return the IDs of the items that are in the inventory
+	 * @throws SQLException
+	 */
+	private Set<Integer> getInventoryItems(Collection<Integer> itemIds) throws SQLException {
+		String sql = "SELECT item FROM inventory";
+		if (itemIds != null) {
+			sql += " WHERE item " + in(itemIds.size());
+		}
+
+		try (PreparedStatement stmt = stmt(sql)) {
+			if (itemIds != null) {
+				int index = 1;
+				for (Integer itemId : itemIds) {
+					stmt.setInt(index++, itemId);
+				}
+			}
+
+			Set<Integer> items = new HashSet<>();
+			ResultSet rs = stmt.executeQuery();
+			while (rs.next()) {
+				items.add(rs.getInt("item"));
+			}
+			return items;
+		}
+	}
+
+	private Player selsertPlayer(String name, Map<String, Player> cache) throws SQLException {
+		String key = name.toLowerCase();
+		Player player = cache.get(key);
+		if (player == null) {
+			player = selsertPlayer(name);
+			cache.put(key, player);
+		}
+		return player;
+	}
+
+	/**
+	 * Keeps track of the first/last seen dates of a player so they can be
+	 * updated (in "commit()").
+	 * @param player the player
+	 * @param ts the date of one of the player's transactions
+	 */
+	private void trackFirstLastSeen(Player player, LocalDateTime ts) {
+		LocalDateTime dates[] = firstLastSeenDates.computeIfAbsent(player.getId(), k -> new LocalDateTime[] { player.getFirstSeen(), player.getLastSeen() });
+
+		LocalDateTime earliest = dates[0];
+		if (earliest == null || ts.isBefore(earliest)) {
+			dates[0] = ts;
+		}
+
+		LocalDateTime latest = dates[1];
+		if (latest == null || ts.isAfter(latest)) {
+			dates[1] = ts;
 		}
 	}
 
@@ -601,6 +740,26 @@ public abstract class DirbyDbDao implements DbDao {
 		transaction.setId(id);
 	}
 
+	@Override
+	public void insertPaymentTransactions(List<PaymentTransactionDb> transactions) throws SQLException {
+		Map<String, Player> players = new HashMap<>();
+
+		try (PreparedStatement stmt = stmt("INSERT INTO payment_transactions (ts, player, amount, balance, reason) VALUES (?, ?, ?, ?, ?)")) {
+			for (PaymentTransactionDb transaction : transactions) {
+				Player player = selsertPlayer(transaction.getPlayer(), players);
+
+				int i = 1;
+				stmt.setTimestamp(i++, toTimestamp(transaction.getTs()));
+				stmt.setInt(i++, player.getId());
+				stmt.setInt(i++, transaction.getAmount());
+				stmt.setInt(i++, transaction.getBalance());
+				stmt.setString(i++, transaction.getReason());
+				stmt.addBatch();
+			}
+			stmt.executeBatch();
+		}
+	}
+
 	@Override
 	public void deletePaymentTransaction(PaymentTransactionDb transaction) throws SQLException {
 		try (PreparedStatement stmt = stmt("DELETE FROM payment_transactions WHERE id = ?")) {
@@ -821,6 +980,13 @@ public abstract class DirbyDbDao implements DbDao {
 
 	@Override
 	public List<ShopTransactionDb> getTransactionsByDate(LocalDateTime from, LocalDateTime to, ShopTransactionType transactionType) throws SQLException {
+		List<ShopTransactionDb> transactions = new ArrayList<>();
+		getTransactionsByDate(from, to, transactionType, transactions::add);
+		return transactions;
+	}
+
+	@Override
+	public void getTransactionsByDate(LocalDateTime from, LocalDateTime to, ShopTransactionType transactionType, Consumer<ShopTransactionDb> handler) throws SQLException {
 		String sql;
 		List<String> where = new ArrayList<>();
 		//@formatter:off
@@ -857,9 +1023,14 @@ public abstract class DirbyDbDao implements DbDao {
 		}
 		sql += " ORDER BY t.ts";
 
-		List<ShopTransactionDb> transactions = new ArrayList<>();
+		/*
+		 * Transactions that are still being consolidated. They are passed to
+		 * the handler in the order they were started, once no more rows can
+		 * be added to them.
+		 */
+		Deque<ShopTransactionDb> pending = new ArrayDeque<>();
 		Map<String, ShopTransactionDb> lastTransactionByItem = new HashMap<>();
-		Map<ShopTransactionDb, LocalDateTime> dateOfLastTransaction = new HashMap<>();
+		Map<ShopTransactionDb, LocalDateTime> dateOfLastTransaction = new IdentityHashMap<>();
 		try (PreparedStatement stmt = stmt(sql)) {
 			int index = 1;
 			if (from != null) {
@@ -894,28 +1065,30 @@ public abstract class DirbyDbDao implements DbDao {
 					break;
 				}
 
+				//the rows are sorted by date, so transactions that ended more than 2 minutes ago can't be added to anymore
+				while (!pending.isEmpty()) {
+					ShopTransactionDb oldest = pending.peek();
+					if (!isConsolidationDone(dateOfLastTransaction.get(oldest), ts)) {
+						break;
+					}
+
+					pending.remove();
+					dateOfLastTransaction.remove(oldest);
+					lastTransactionByItem.remove(consolidationKey(oldest.getShopCustomer(), oldest.getShopOwner(), oldest.getItem()), oldest);
+					handler.accept(oldest);
+				}
+
 				String item = rs.getString("item");
 				int amount = rs.getInt("amount");
 				int quantity = rs.getInt("quantity");
 
-				String key = ((shopCustomer == null) ? shopOwner : shopCustomer) + ":" + item;
+				String key = consolidationKey(shopCustomer, shopOwner, item);
 				ShopTransactionDb transaction = lastTransactionByItem.get(key);
-				if (transaction != null) {
-					/*
-					 * If the transactions occurred within 2 minutes of the last
-					 * one, then consider it part of the same, consolidated
-					 * transaction.
-					 * 
-					 * Note: "diff.toMinutes() <= 2" will return true for values
-					 * such as 2:10.
-					 */
-					Duration diff = Duration.between(dateOfLastTransaction.get(transaction), ts);
-					if (diff.toMinutes() < 2) {
-						transaction.setAmount(transaction.getAmount() + amount);
-						transaction.setQuantity(transaction.getQuantity() + quantity);
-						dateOfLastTransaction.put(transaction, ts);
-						continue;
-					}
+				if (transaction != null && !isConsolidationDone(dateOfLastTransaction.get(transaction), ts)) {
+					transaction.setAmount(transaction.getAmount() + amount);
+					transaction.setQuantity(transaction.getQuantity() + quantity);
+					dateOfLastTransaction.put(transaction, ts);
+					continue;
 				}
 
 				transaction = new ShopTransactionDb();
@@ -927,11 +1100,226 @@ public abstract class DirbyDbDao implements DbDao {
 				transaction.setQuantity(quantity);
 				lastTransactionByItem.put(key, transaction);
 				dateOfLastTransaction.put(transaction, ts);
-				transactions.add(transaction);
+				pending.add(transaction);
 			}
 		}
 
-		return transactions;
+		for (ShopTransactionDb transaction : pending) {
+			handler.accept(transaction);
+		}
+	}
+
+	private static String consolidationKey(String shopCustomer, String shopOwner, String item) {
+		return ((shopCustomer == null) ? shopOwner : shopCustomer) + ":" + item;
+	}
+
+	/**
+	 * Determines if a transaction can no longer be consolidated with
+	 * transactions that come after it.
+	 * @param last the date of the last row that was added to the transaction
+	 * @param next the date of the next row
+	 * @return true if the next row starts a new transaction
+	 */
+	private static boolean isConsolidationDone(LocalDateTime last, LocalDateTime next) {
+		/*
+		 * If the transactions occurred within 2 minutes of the last one, then
+		 * consider it part of the same, consolidated transaction.
+		 * 
+		 * Note: "diff.toMinutes() <= 2" will return true for values such as
+		 * 2:10.
+		 */
+		Duration diff = Duration.between(last, next);
+		return diff.toMinutes() >= 2;
+	}
+
+	@Override
+	public List<AggregateRow> getAggregates(AggregateQuery query) throws SQLException {
+		List<Dimension> dimensions = query.getDimensions();
+		boolean joinPlayers = dimensions.contains(Dimension.PLAYER) || !query.getPlayers().isEmpty();
+
+		String playerColumn;
+		List<String> where = new ArrayList<>();
+		switch (query.getTransactionType()) {
+		case MY_SHOP:
+			playerColumn = "t.player";
+			where.add("t.player IS NOT NULL");
+			break;
+		case OTHER_SHOPS:
+			playerColumn = "t.shop_owner";
+			where.add("t.shop_owner IS NOT NULL");
+			break;
+		default:
+			playerColumn = "COALESCE(t.player, t.shop_owner)";
+			break;
+		}
+
+		/*
+		 * The dimensions are calculated in a sub-query so the outer query can
+		 * group by their aliases. Weeks and weekdays are counted from a
+		 * Monday, because Derby has no week functions.
+		 */
+		final String daysSinceMonday = "{fn TIMESTAMPDIFF(SQL_TSI_DAY, TIMESTAMP('" + WEEK_EPOCH + " 00:00:00'), t.ts)}";
+		List<String> columns = new ArrayList<>();
+		List<String> aliases = new ArrayList<>();
+		for (int i = 0; i < dimensions.size(); i++) {
+			String expression;
+			switch (dimensions.get(i)) {
+			case PLAYER:
+				expression = "p.name";
+				break;
+			case DAY:
+				expression = "DATE(t.ts)";
+				break;
+			case WEEK:
+				expression = daysSinceMonday + " / 7";
+				break;
+			case MONTH:
+				expression = "YEAR(t.ts) * 100 + MONTH(t.ts)";
+				break;
+			case HOUR:
+				expression = "HOUR(t.ts)";
+				break;
+			case WEEKDAY:
+				expression = "MOD(" + daysSinceMonday + ", 7)";
+				break;
+			default:
+				//item, group, category
+				expression = "i.name";
+				break;
+			}
+
+			String alias = "d" + i;
+			columns.add(expression + " AS " + alias);
+			aliases.add(alias);
+		}
+
+		if (!query.getItems().isEmpty()) {
+			where.add("LOWER(i.name) " + in(query.getItems().size()));
+		}
+		if (!query.getPlayers().isEmpty()) {
+			where.add("LOWER(p.name) " + in(query.getPlayers().size()));
+		}
+		if (query.getFrom() != null) {
+			where.add("t.ts >= ?");
+		}
+		if (query.getTo() != null) {
+			where.add("t.ts < ?");
+		}
+
+		//@formatter:off
+		String sql =
+		"SELECT " + (aliases.isEmpty() ? "" : String.join(", ", aliases) + ", ") + "Sum(amount) AS amountSum, Sum(quantity) AS quantitySum, Count(*) AS count " +
+		"FROM (" +
+			"SELECT " + (columns.isEmpty() ? "" : String.join(", ", columns) + ", ") + "CAST(t.amount AS BIGINT) AS amount, CAST(t.quantity AS BIGINT) AS quantity " +
+			"FROM transactions t " +
+			"INNER JOIN items i ON t.item = i.id " +
+			(joinPlayers ? "INNER JOIN players p ON p.id = " + playerColumn + " " : "") +
+			(where.isEmpty() ? "" : "WHERE " + String.join(" AND ", where)) +
+		") x";
+		//@formatter:on
+		if (!aliases.isEmpty()) {
+			sql += " GROUP BY " + String.join(", ", aliases);
+		}
+
+		/*
+		 * For top-N queries, let the database sort the groups and only return
+		 * the top rows. Groups and categories have to be rolled up first, so
+		 * the QueryEngine handles those.
+		 */
+		Measure sortBy = query.getSortBy();
+		Integer limit = query.getLimit();
+		if (sortBy != null && limit != null && !query.hasItemDerivedDimensions()) {
+			List<String> orderBy = new ArrayList<>();
+			orderBy.add(measureExpression(sortBy) + (query.isDescending() ? " DESC" : " ASC") + " NULLS LAST");
+			for (int i = 0; i < aliases.size(); i++) {
+				//break ties the same way the QueryEngine does
+				String alias = aliases.get(i);
+				boolean text = (dimensions.get(i) == Dimension.ITEM || dimensions.get(i) == Dimension.PLAYER);
+				orderBy.add(text ? "LOWER(" + alias + ")" : alias);
+			}
+			sql += " ORDER BY " + String.join(", ", orderBy) + " FETCH FIRST " + limit + " ROWS ONLY";
+		}
+
+		List<AggregateRow> rows = new ArrayList<>();
+		try (PreparedStatement stmt = stmt(sql)) {
+			int index = 1;
+			for (String item : query.getItems()) {
+				stmt.setString(index++, item.toLowerCase());
+			}
+			for (String player : query.getPlayers()) {
+				stmt.setString(index++, player.toLowerCase());
+			}
+			if (query.getFrom() != null) {
+				stmt.setTimestamp(index++, toTimestamp(query.getFrom()));
+			}
+			if (query.getTo() != null) {
+				stmt.setTimestamp(index++, toTimestamp(query.getTo()));
+			}
+
+			ResultSet rs = stmt.executeQuery();
+			while (rs.next()) {
+				int count = rs.getInt("count");
+				if (count == 0) {
+					//a query without dimensions returns one row, even if there are no transactions
+					continue;
+				}
+
+				List<Object> values = new ArrayList<>(dimensions.size());
+				for (int i = 0; i < dimensions.size(); i++) {
+					String alias = aliases.get(i);
+					Object value;
+					switch (dimensions.get(i)) {
+					case DAY:
+						value = rs.getDate(alias).toLocalDate();
+						break;
+					case WEEK:
+						value = WEEK_EPOCH.plusWeeks(rs.getInt(alias));
+						break;
+					case MONTH:
+						int yearMonth = rs.getInt(alias);
+						value = LocalDate.of(yearMonth / 100, yearMonth % 100, 1);
+						break;
+					case HOUR:
+						value = rs.getInt(alias);
+						break;
+					case WEEKDAY:
+						value = DayOfWeek.of(rs.getInt(alias) + 1);
+						break;
+					default:
+						value = rs.getString(alias);
+						break;
+					}
+					values.add(value);
+				}
+
+				rows.add(new AggregateRow(values, rs.getLong("amountSum"), rs.getLong("quantitySum"), count));
+			}
+		}
+
+		return rows;
+	}
+
+	/**
+	 * Gets the SQL expression that calculates a measure in
+	 * {@link #getAggregates}.
+	 * @param measure the measure
+	 * @return the SQL expression
+	 */
+	private static String measureExpression(Measure measure) {
+		switch (measure) {
+		case SUM_AMOUNT:
+			return "Sum(amount)";
+		case AVG_AMOUNT:
+			return "CAST(Sum(amount) AS DOUBLE) / Count(*)";
+		case SUM_QUANTITY:
+			return "Sum(quantity)";
+		case AVG_QUANTITY:
+			return "CAST(Sum(quantity) AS DOUBLE) / Count(*)";
+		case COUNT:
+			return "Count(*)";
+		default:
+			return "ABS(CAST(Sum(amount) AS DOUBLE) / NULLIF(Sum(quantity), 0))";
+		}
 	}
 
 	@Override
@@ -1103,11 +1491,52 @@ public abstract class DirbyDbDao implements DbDao {
 		return inventory;
 	}
 
-	private void addToInventory(Integer itemId, Integer quantityToAdd) throws SQLException {
+	@Override
+	public Collection<Inventory> getInventory(LocalDateTime asOf) throws SQLException {
+		Collection<Inventory> inventory = getInventory();
+
+		/*
+		 * Undo the shop transactions that happened after the given date. Only
+		 * the transactions that were applied to the inventory when they were
+		 * inserted are undone. Quantities that the user entered manually
+		 * cannot be undone, because the inventory's history is not recorded.
+		 */
+		Map<Integer, Integer> deltas = new HashMap<>();
+		try (PreparedStatement stmt = stmt("SELECT item, Sum(quantity) AS total FROM transactions WHERE inventory_updated = true AND ts > ? GROUP BY item")) {
+			stmt.setTimestamp(1, toTimestamp(asOf));
+			ResultSet rs = stmt.executeQuery();
+			while (rs.next()) {
+				deltas.put(rs.getInt("item"), rs.getInt("total"));
+			}
+		}
+
+		for (Inventory inv : inventory) {
+			Integer delta = deltas.get(inv.getItemId());
+			if (delta != null) {
+				inv.setQuantity(inv.getQuantity() - delta);
+			}
+		}
+
+		return inventory;
+	}
+
+	private void applyInventoryDeltas() throws SQLException {
+		if (inventoryDeltas.isEmpty()) {
+			return;
+		}
+
 		try (PreparedStatement stmt = stmt("UPDATE inventory SET quantity = quantity + ? WHERE item = ?")) {
-			stmt.setInt(1, quantityToAdd);
-			stmt.setInt(2, itemId);
-			stmt.executeUpdate();
+			for (Map.Entry<Integer, Integer> entry : inventoryDeltas.entrySet()) {
+				int delta = entry.getValue();
+				if (delta == 0) {
+					continue;
+				}
+
+				stmt.setInt(1, delta);
+				stmt.setInt(2, entry.getKey());
+				stmt.addBatch();
+			}
+			stmt.executeBatch();
 		}
 	}
 
@@ -1197,6 +1626,104 @@ public abstract class DirbyDbDao implements DbDao {
 		}
 	}
 
+	@Override
+	public void updateInventory(Collection<InventoryChange> changes) throws SQLException {
+		if (changes.isEmpty()) {
+			return;
+		}
+
+		/*
+		 * Look up the IDs of all the items, and of their inventory rows, at
+		 * once. The names are passed as parameters, so they are looked up in
+		 * chunks to keep the statements from getting too big.
+		 */
+		Map<String, Integer> itemIds = new HashMap<>();
+		Map<Integer, Integer> inventoryIds = new HashMap<>();
+		List<String> names = changes.stream().map(change -> change.getItem().toLowerCase()).distinct().collect(Collectors.toList());
+		for (int i = 0; i < names.size(); i += ITEM_LOOKUP_CHUNK_SIZE) {
+			List<String> chunk = names.subList(i, Math.min(i + ITEM_LOOKUP_CHUNK_SIZE, names.size()));
+
+			//@formatter:off
+			String sql =
+			"SELECT Lower(items.name) AS name, items.id AS item, inventory.id AS inventory " +
+			"FROM items LEFT JOIN inventory ON inventory.item = items.id " +
+			"WHERE Lower(items.name) " + in(chunk.size());
+			//@formatter:on
+
+			try (PreparedStatement stmt = stmt(sql)) {
+				int index = 1;
+				for (String name : chunk) {
+					stmt.setString(index++, name);
+				}
+
+				ResultSet rs = stmt.executeQuery();
+				while (rs.next()) {
+					int itemId = rs.getInt("item");
+					itemIds.put(rs.getString("name"), itemId);
+
+					int inventoryId = rs.getInt("inventory");
+					if (!rs.wasNull()) {
+						inventoryIds.put(itemId, inventoryId);
+					}
+				}
+			}
+		}
+
+		InsertStatement insert = new InsertStatement("inventory");
+		boolean inserts = false;
+
+		//@formatter:off
+		try (PreparedStatement setQuantity = stmt("UPDATE inventory SET quantity = ? WHERE id = ?");
+			PreparedStatement addQuantity = stmt("UPDATE inventory SET quantity = quantity + ? WHERE id = ?");
+			PreparedStatement setThreshold = stmt("UPDATE inventory SET low_threshold = ? WHERE id = ?")) {
+		//@formatter:on
+			for (InventoryChange change : changes) {
+				Integer itemId = itemIds.get(change.getItem().toLowerCase());
+				if (itemId == null) {
+					itemId = selsertItem(change.getItem());
+				}
+				Integer quantity = change.getQuantity();
+				Integer threshold = change.getLowThreshold();
+
+				Integer invId = inventoryIds.get(itemId);
+				if (invId == null) {
+					if (inserts) {
+						insert.nextRow();
+					}
+					insert.setInt("item", itemId);
+					insert.setInt("quantity", ((quantity == null) ? 0 : quantity) + change.getDelta());
+					insert.setInt("low_threshold", (threshold == null) ? 0 : threshold);
+					inserts = true;
+					continue;
+				}
+
+				if (quantity != null) {
+					setQuantity.setInt(1, quantity + change.getDelta());
+					setQuantity.setInt(2, invId);
+					setQuantity.addBatch();
+				} else if (change.getDelta() != 0) {
+					addQuantity.setInt(1, change.getDelta());
+					addQuantity.setInt(2, invId);
+					addQuantity.addBatch();
+				}
+
+				if (threshold != null) {
+					setThreshold.setInt(1, threshold);
+					setThreshold.setInt(2, invId);
+					setThreshold.addBatch();
+				}
+			}
+
+			setQuantity.executeBatch();
+			addQuantity.executeBatch();
+			setThreshold.executeBatch();
+		}
+
+		if (inserts) {
+			insert.execute(conn);
+		}
+	}
+
 	@Override
 	public void deleteInventory(Collection<Integer> ids) throws SQLException {
 		if (ids.isEmpty()) {
@@ -1436,14 +1963,19 @@ public abstract class DirbyDbDao implements DbDao {
 			updateFirstLastSeen(playerId, firstSeen, lastSeen);
 		}
 
+		//update the inventory if transactions were inserted
+		applyInventoryDeltas();
+
 		conn.commit();
 
 		firstLastSeenDates.clear();
+		inventoryDeltas.clear();
 	}
 
 	@Override
 	public void rollback() {
 		firstLastSeenDates.clear();
+		inventoryDeltas.clear();
 
 		try {
 			conn.rollback();
@@ -1460,6 +1992,7 @@ public abstract class DirbyDbDao implements DbDao {
 	@Override
 	public void close() throws SQLException {
 		firstLastSeenDates.clear();
+		inventoryDeltas.clear();
 
 		try {
 			logger.info("Closing database.");
@@ -1476,6 +2009,37 @@ public abstract class DirbyDbDao implements DbDao {
 		}
 	}
 
+	@Override
+	public DbDao openReader() throws SQLException {
+		Connection connection = DriverManager.getConnection(jdbcUrl);
+		connection.setReadOnly(true);
+		return new SeparateDbDao(connection, jdbcUrl);
+	}
+
+	@Override
+	public DbDao openWriter() throws SQLException {
+		Connection connection = DriverManager.getConnection(jdbcUrl);
+		connection.setAutoCommit(false);
+		return new SeparateDbDao(connection, jdbcUrl);
+	}
+
+	/**
+	 * A separate connection to the database.
+	 * @see DirbyDbDao#openReader
+	 * @see DirbyDbDao#openWriter
+	 */
+	private static class SeparateDbDao extends DirbyDbDao {
+		public SeparateDbDao(Connection connection, String jdbcUrl) {
+			init(connection);
+			this.jdbcUrl = jdbcUrl;
+		}
+
+		@Override
+		public void close() throws SQLException {
+			conn.close();
+		}
+	}
+
 	@Override
 	public void calculatePlayersFirstLastSeenDates() throws SQLException {
 		//@formatter:off
@@ -1554,17 +2118,91 @@ public abstract class DirbyDbDao implements DbDao {
 
 	@Override
 	public void insertUpdateLog(LocalDateTime ts, Integer rupeeBalance, int transactionCount, int paymentTransactionCount, int bonusFeeTransactionCount, Duration timeTaken) throws SQLException {
+		UpdateLog log = new UpdateLog();
+		log.setTs(ts);
+		log.setRupeeBalance(rupeeBalance);
+		log.setTransactionCount(transactionCount);
+		log.setPaymentTransactionCount(paymentTransactionCount);
+		log.setBonusFeeTransactionCount(bonusFeeTransactionCount);
+		log.setTimeTaken(timeTaken);
+		insertUpdateLog(log);
+	}
+
+	@Override
+	public int insertUpdateLog(UpdateLog log) throws SQLException {
 		InsertStatement stmt = new InsertStatement("update_log");
-		stmt.setTimestamp("ts", ts);
+		stmt.setTimestamp("ts", log.getTs());
+		Integer rupeeBalance = log.getRupeeBalance();
 		if (rupeeBalance == null) {
 			rupeeBalance = 0;
 		}
 		stmt.setInt("rupee_balance", rupeeBalance);
-		stmt.setInt("transaction_count", transactionCount);
-		stmt.setInt("payment_transaction_count", paymentTransactionCount);
-		stmt.setInt("bonus_fee_transaction_count", bonusFeeTransactionCount);
-		stmt.setInt("time_taken", (int) timeTaken.toMillis());
-		stmt.execute(conn);
+		stmt.setInt("transaction_count", log.getTransactionCount());
+		stmt.setInt("payment_transaction_count", log.getPaymentTransactionCount());
+		stmt.setInt("bonus_fee_transaction_count", log.getBonusFeeTransactionCount());
+		stmt.setInt("time_taken", (int) log.getTimeTaken().toMillis());
+		stmt.setInt("page_count", log.getPageCount());
+		stmt.setInt("download_threads", log.getDownloadThreads());
+		stmt.setInt("download_time", toMillis(log.getDownloadTime()));
+		stmt.setInt("item_name_time", toMillis(log.getItemNameTime()));
+		stmt.setInt("insert_time", toMillis(log.getInsertTime()));
+		stmt.setInt("commit_time", toMillis(log.getCommitTime()));
+		stmt.setInt("insert_latency_p50", toMicros(log.getInsertLatencyP50()));
+		stmt.setInt("insert_latency_p99", toMicros(log.getInsertLatencyP99()));
+		return stmt.execute(conn);
+	}
+
+	@Override
+	public void updateUpdateLogCommitTime(int id, Duration commitTime) throws SQLException {
+		try (PreparedStatement stmt = stmt("UPDATE update_log SET commit_time = ? WHERE id = ?")) {
+			stmt.setInt(1, toMillis(commitTime));
+			stmt.setInt(2, id);
+			stmt.executeUpdate();
+		}
+	}
+
+	@Override
+	public List<UpdateLog> getUpdateLogs(int limit) throws SQLException {
+		List<UpdateLog> logs = new ArrayList<>();
+		try (PreparedStatement stmt = stmt("SELECT * FROM update_log ORDER BY ts DESC")) {
+			stmt.setMaxRows(limit);
+			ResultSet rs = stmt.executeQuery();
+			while (rs.next()) {
+				UpdateLog log = new UpdateLog();
+				log.setTs(toLocalDateTime(rs.getTimestamp("ts")));
+				log.setRupeeBalance(rs.getInt("rupee_balance"));
+				log.setTransactionCount(rs.getInt("transaction_count"));
+				log.setPaymentTransactionCount(rs.getInt("payment_transaction_count"));
+				log.setBonusFeeTransactionCount(rs.getInt("bonus_fee_transaction_count"));
+				log.setTimeTaken(Duration.ofMillis(rs.getInt("time_taken")));
+				log.setPageCount((Integer) rs.getObject("page_count"));
+				log.setDownloadThreads((Integer) rs.getObject("download_threads"));
+				log.setDownloadTime(millis((Integer) rs.getObject("download_time")));
+				log.setItemNameTime(millis((Integer) rs.getObject("item_name_time")));
+				log.setInsertTime(millis((Integer) rs.getObject("insert_time")));
+				log.setCommitTime(millis((Integer) rs.getObject("commit_time")));
+				log.setInsertLatencyP50(micros((Integer) rs.getObject("insert_latency_p50")));
+				log.setInsertLatencyP99(micros((Integer) rs.getObject("insert_latency_p99")));
+				logs.add(log);
+			}
+		}
+		return logs;
+	}
+
+	private static Duration millis(Integer value) {
+		return (value == null) ? null : Duration.ofMillis(value);
+	}
+
+	private static Duration micros(Integer value) {
+		return (value == null) ? null : Duration.ofNanos(value * 1000L);
+	}
+
+	private static Integer toMillis(Duration duration) {
+		return (duration == null) ? null : (int) duration.toMillis();
+	}
+
+	private static Integer toMicros(Duration duration) {
+		return (duration == null) ? null : (int) (duration.toNanos() / 1000);
 	}
 
 	@Override
@@ -0,0 +1,82 @@
+package emcshop.db;
+
+/**
+ * Represents all the pending changes to a single inventory item. Successive
+ * changes are merged together, so only the final result is written to the
+ * database.
+ * @author Michael Angstadt
+ * @see DbDao#updateInventory
+ */
+public class InventoryChange {
+	private final String item;
+	private Integer quantity;
+	private int delta;
+	private Integer lowThreshold;
+
+	/**
+	 * @param item the item name
+	 */
+	public InventoryChange(String item) {
+		this.item = item;
+	}
+
+	public String getItem() {
+		return item;
+	}
+
+	/**
+	 * Gets the quantity that the item's quantity should be set to, before
+	 * {@link #getDelta} is added to it.
+	 * @return the quantity or null to leave the existing quantity alone
+	 */
+	public Integer getQuantity() {
+		return quantity;
+	}
+
+	/**
+	 * Gets the amount to add to the item's quantity.
+	 * @return the amount to add (may be negative)
+	 */
+	public int getDelta() {
+		return delta;
+	}
+
+	/**
+	 * Gets the "low in stock" threshold.
+	 * @return the threshold or null to leave the existing threshold alone
+	 */
+	public Integer getLowThreshold() {
+		return lowThreshold;
+	}
+
+	/**
+	 * Overwrites the item's quantity.
+	 * @param quantity the new quantity
+	 * @return this
+	 */
+	public InventoryChange setQuantity(int quantity) {
+		this.quantity = quantity;
+		delta = 0;
+		return this;
+	}
+
+	/**
+	 * Adds to the item's quantity.
+	 * @param amount the amount to add (may be negative)
+	 * @return this
+	 */
+	public InventoryChange addQuantity(int amount) {
+		delta += amount;
+		return this;
+	}
+
+	/**
+	 * Sets the "low in stock" threshold.
+	 * @param lowThreshold the threshold
+	 * @return this
+	 */
+	public InventoryChange setLowThreshold(int lowThreshold) {
+		this.lowThreshold = lowThreshold;
+		return this;
+	}
+}
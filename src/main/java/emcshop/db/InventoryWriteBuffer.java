@@ -0,0 +1,226 @@
+package emcshop.db;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ * Collects edits to the inventory and writes them to the database in the
+ * background. Edits to the same item are merged together. The edits are
+ * written in a single batch once no more edits have been made for a short
+ * period of time, or when {@link #flush} is called.
+ * </p>
+ * <p>
+ * The edits are written by a background thread using a database connection of
+ * their own (see {@link DbDao#openWriter}), so the GUI doesn't have to wait for
+ * them and the main connection is never used by two threads at once. The
+ * connection is opened the first time edits are written, and is only ever used
+ * by the background thread.
+ * </p>
+ * <p>
+ * If the batch cannot be written, the transaction is rolled back, the edits
+ * are discarded, and the error handler is called. The caller should then
+ * reload the inventory from the database.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class InventoryWriteBuffer implements AutoCloseable {
+	private static final Logger logger = Logger.getLogger(InventoryWriteBuffer.class.getName());
+
+	private final DbDao dao;
+	private final long delay;
+	private final Consumer<SQLException> errorHandler;
+	private final ScheduledThreadPoolExecutor executor;
+
+	private Map<String, InventoryChange> pending = new LinkedHashMap<>();
+	private ScheduledFuture<?> scheduled;
+
+	/**
+	 * The connection the edits are written with (only accessed by the
+	 * background thread).
+	 */
+	private DbDao writer;
+
+	/**
+	 * @param dao the database DAO (used to open the connection the edits are
+	 * written with)
+	 * @param delay how long to wait after the last edit before writing the
+	 * edits to the database (in milliseconds)
+	 * @param errorHandler called if the delayed write fails (called from the
+	 * background thread)
+	 */
+	public InventoryWriteBuffer(DbDao dao, long delay, Consumer<SQLException> errorHandler) {
+		this.dao = dao;
+		this.delay = delay;
+		this.errorHandler = errorHandler;
+
+		executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, getClass().getSimpleName());
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * Updates an item's quantity.
+	 * @param item the item name
+	 * @param quantity the new quantity
+	 * @param add true to add the given quantity to the existing total, false to
+	 * overwrite it
+	 */
+	public void setQuantity(String item, int quantity, boolean add) {
+		edit(item, change -> {
+			if (add) {
+				change.addQuantity(quantity);
+			} else {
+				change.setQuantity(quantity);
+			}
+		});
+	}
+
+	/**
+	 * Updates an item's "low in stock" threshold.
+	 * @param item the item name
+	 * @param threshold the new threshold
+	 */
+	public void setLowThreshold(String item, int threshold) {
+		edit(item, change -> change.setLowThreshold(threshold));
+	}
+
+	/**
+	 * Gets the number of items that have edits which haven't been written
+	 * yet.
+	 * @return the number of items
+	 */
+	public synchronized int size() {
+		return pending.size();
+	}
+
+	private synchronized void edit(String item, Consumer<InventoryChange> edit) {
+		String key = item.toLowerCase(Locale.ROOT);
+		edit.accept(pending.computeIfAbsent(key, k -> new InventoryChange(item)));
+
+		//restart the timer
+		if (scheduled != null) {
+			scheduled.cancel(false);
+		}
+		scheduled = executor.schedule(this::writeQuietly, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Writes all pending edits to the database and waits for them to be
+	 * committed.
+	 * @throws SQLException if the edits could not be written (the transaction
+	 * is rolled back)
+	 */
+	public void flush() throws SQLException {
+		synchronized (this) {
+			if (scheduled != null) {
+				scheduled.cancel(false);
+				scheduled = null;
+			}
+		}
+
+		runInBackground(this::write);
+	}
+
+	/**
+	 * Writes all pending edits to the database and closes the connection they
+	 * are written with.
+	 * @throws SQLException if the edits could not be written or the connection
+	 * could not be closed
+	 */
+	@Override
+	public void close() throws SQLException {
+		try {
+			flush();
+		} finally {
+			try {
+				runInBackground(() -> {
+					if (writer != null) {
+						writer.close();
+						writer = null;
+					}
+				});
+			} finally {
+				executor.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Runs a task in the background thread and waits for it to finish.
+	 * @param task the task
+	 * @throws SQLException if the task throws one
+	 */
+	private void runInBackground(SqlTask task) throws SQLException {
+		try {
+			executor.submit(() -> {
+				task.run();
+				return null;
+			}).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof SQLException) {
+				throw (SQLException) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * Writes the pending edits. Must only be called from the background
+	 * thread.
+	 * @throws SQLException if the edits could not be written (the transaction
+	 * is rolled back)
+	 */
+	private void write() throws SQLException {
+		List<InventoryChange> changes;
+		synchronized (this) {
+			if (pending.isEmpty()) {
+				return;
+			}
+			changes = new ArrayList<>(pending.values());
+			pending = new LinkedHashMap<>();
+		}
+
+		if (writer == null) {
+			writer = dao.openWriter();
+		}
+
+		try {
+			writer.updateInventory(changes);
+			writer.commit();
+		} catch (SQLException e) {
+			writer.rollback();
+			throw e;
+		}
+	}
+
+	private void writeQuietly() {
+		try {
+			write();
+		} catch (SQLException e) {
+			logger.log(Level.SEVERE, "Could not save inventory changes.", e);
+			errorHandler.accept(e);
+		}
+	}
+
+	private interface SqlTask {
+		void run() throws SQLException;
+	}
+}
@@ -0,0 +1,135 @@
+package emcshop.db;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Represents a row in the "update_log" table.
+ * @author Michael Angstadt
+ */
+public class UpdateLog {
+	private LocalDateTime ts;
+	private Integer rupeeBalance;
+	private int transactionCount, paymentTransactionCount, bonusFeeTransactionCount;
+	private Duration timeTaken;
+
+	/*
+	 * The following fields are only populated for updates that were performed
+	 * after the app began recording them.
+	 */
+	private Integer pageCount, downloadThreads;
+	private Duration downloadTime, itemNameTime, insertTime, commitTime;
+	private Duration insertLatencyP50, insertLatencyP99;
+
+	public LocalDateTime getTs() {
+		return ts;
+	}
+
+	public void setTs(LocalDateTime ts) {
+		this.ts = ts;
+	}
+
+	public Integer getRupeeBalance() {
+		return rupeeBalance;
+	}
+
+	public void setRupeeBalance(Integer rupeeBalance) {
+		this.rupeeBalance = rupeeBalance;
+	}
+
+	public int getTransactionCount() {
+		return transactionCount;
+	}
+
+	public void setTransactionCount(int transactionCount) {
+		this.transactionCount = transactionCount;
+	}
+
+	public int getPaymentTransactionCount() {
+		return paymentTransactionCount;
+	}
+
+	public void setPaymentTransactionCount(int paymentTransactionCount) {
+		this.paymentTransactionCount = paymentTransactionCount;
+	}
+
+	public int getBonusFeeTransactionCount() {
+		return bonusFeeTransactionCount;
+	}
+
+	public void setBonusFeeTransactionCount(int bonusFeeTransactionCount) {
+		this.bonusFeeTransactionCount = bonusFeeTransactionCount;
+	}
+
+	public Duration getTimeTaken() {
+		return timeTaken;
+	}
+
+	public void setTimeTaken(Duration timeTaken) {
+		this.timeTaken = timeTaken;
+	}
+
+	public Integer getPageCount() {
+		return pageCount;
+	}
+
+	public void setPageCount(Integer pageCount) {
+		this.pageCount = pageCount;
+	}
+
+	public Integer getDownloadThreads() {
+		return downloadThreads;
+	}
+
+	public void setDownloadThreads(Integer downloadThreads) {
+		this.downloadThreads = downloadThreads;
+	}
+
+	public Duration getDownloadTime() {
+		return downloadTime;
+	}
+
+	public void setDownloadTime(Duration downloadTime) {
+		this.downloadTime = downloadTime;
+	}
+
+	public Duration getItemNameTime() {
+		return itemNameTime;
+	}
+
+	public void setItemNameTime(Duration itemNameTime) {
+		this.itemNameTime = itemNameTime;
+	}
+
+	public Duration getInsertTime() {
+		return insertTime;
+	}
+
+	public void setInsertTime(Duration insertTime) {
+		this.insertTime = insertTime;
+	}
+
+	public Duration getCommitTime() {
+		return commitTime;
+	}
+
+	public void setCommitTime(Duration commitTime) {
+		this.commitTime = commitTime;
+	}
+
+	public Duration getInsertLatencyP50() {
+		return insertLatencyP50;
+	}
+
+	public void setInsertLatencyP50(Duration insertLatencyP50) {
+		this.insertLatencyP50 = insertLatencyP50;
+	}
+
+	public Duration getInsertLatencyP99() {
+		return insertLatencyP99;
+	}
+
+	public void setInsertLatencyP99(Duration insertLatencyP99) {
+		this.insertLatencyP99 = insertLatencyP99;
+	}
+}
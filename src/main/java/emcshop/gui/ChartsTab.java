@@ -1,14 +1,12 @@
 package emcshop.gui;
 
-import java.awt.BasicStroke;
-import java.awt.Color;
 import java.awt.event.ActionListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
 import java.beans.PropertyVetoException;
 import java.sql.SQLException;
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -17,10 +15,12 @@ import java.time.format.FormatStyle;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -32,27 +32,19 @@ import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
-import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartPanel;
 import org.jfree.chart.JFreeChart;
-import org.jfree.chart.axis.DateAxis;
-import org.jfree.chart.axis.NumberAxis;
-import org.jfree.chart.plot.XYPlot;
-import org.jfree.chart.renderer.xy.XYItemRenderer;
-import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
-import org.jfree.chart.util.DefaultShadowGenerator;
-import org.jfree.data.time.Day;
-import org.jfree.data.time.Month;
-import org.jfree.data.time.RegularTimePeriod;
 import org.jfree.data.time.TimeSeries;
 import org.jfree.data.time.TimeSeriesCollection;
-import org.jfree.data.xy.XYDataset;
-import org.jfree.ui.RectangleInsets;
 
 import com.michaelbaranov.microba.calendar.DatePicker;
 
 import emcshop.ItemIndex;
+import emcshop.chart.ProfitsChart;
+import emcshop.chart.ProfitsChart.Show;
+import emcshop.chart.ProfitsMatrix;
 import emcshop.db.DbDao;
 import emcshop.db.Profits;
 import emcshop.gui.images.Images;
@@ -107,24 +99,15 @@ public class ChartsTab extends JPanel {
 	private final JLabel netTotalLabelLabel;
 	private final JLabel netTotalLabel;
 
-	private Map<LocalDate, Profits> profits;
-	private GroupBy profitsGroupBy;
-	private int netTotal = 0;
-
-	private enum Show {
-		NET_PROFITS("Net Profits"), ITEM_GROUPS("Item Groups"), ITEMS("Items"), RUPEE_BALANCE("Rupee Balance");
-
-		private final String display;
-
-		private Show(String display) {
-			this.display = display;
-		}
+	private final JCheckBox downsample;
+	private final Timer resizeTimer;
 
-		@Override
-		public String toString() {
-			return display;
-		}
-	}
+	private ProfitsChart profitsChart;
+	private JFreeChart chart;
+	private TimeSeriesCollection dataset;
+	private Show chartShow;
+	private int chartMaxPoints;
+	private int netTotal = 0;
 
 	private enum GroupBy {
 		DAY("Day"), MONTH("Month");
@@ -192,6 +175,18 @@ public class ChartsTab extends JPanel {
 
 		graphPanel = new JPanel(new MigLayout("width 100%, height 100%, fillx, insets 0"));
 
+		//the number of points in each line depends on the width of the chart, so wait until the user stops resizing the window, then resample the lines
+		resizeTimer = new Timer(250, event -> refreshChart());
+		resizeTimer.setRepeats(false);
+		graphPanel.addComponentListener(new ComponentAdapter() {
+			@Override
+			public void componentResized(ComponentEvent event) {
+				if (chart != null && downsample.isSelected()) {
+					resizeTimer.restart();
+				}
+			}
+		});
+
 		dateRangeQueried = new JLabel();
 
 		netTotalLabelLabel = new JLabel("<html><font size=5>Net Profit:</font></html>");
@@ -250,6 +245,10 @@ public class ChartsTab extends JPanel {
 			itemNamesPanel.add(f, "w 150" + wrap);
 		}
 
+		downsample = new JCheckBox("downsample", true);
+		downsample.setToolTipText("<html>Reduces the number of points in each line to the width of the chart,<br>while keeping its shape. Speeds up charts that cover a long period of time.");
+		downsample.addActionListener(event -> refreshChart());
+
 		show = new JComboBox<>(Show.values());
 		show.addActionListener(event -> {
 			Show selected = (Show) show.getSelectedItem();
@@ -291,7 +290,8 @@ public class ChartsTab extends JPanel {
 
 		JPanel right = new JPanel(new MigLayout("insets 0"));
 		right.add(new JLabel("Show:"), "split 2, align right");
-		right.add(show);
+		right.add(show, "wrap");
+		right.add(downsample, "align right");
 		add(right, "align right, growy, wrap");
 
 		add(dateRangeQueried, "gaptop 20, w 100%, wrap"); //putting this label here allows the left panel to be vertically aligned to the top of the tab
@@ -313,6 +313,10 @@ public class ChartsTab extends JPanel {
 		}
 
 		graphPanel.removeAll();
+		profitsChart = null;
+		chart = null;
+		dataset = null;
+		netTotal = 0;
 
 		updateNetTotal();
 
@@ -329,10 +333,15 @@ public class ChartsTab extends JPanel {
 		Thread t = new Thread(() -> {
 			try {
 				//query database
-				profitsGroupBy = (GroupBy) groupBy.getSelectedItem();
-				profits = (profitsGroupBy == GroupBy.DAY) ? dao.getProfitsByDay(from, to) : dao.getProfitsByMonth(from, to);
+				GroupBy profitsGroupBy = (GroupBy) groupBy.getSelectedItem();
+				Map<LocalDate, Profits> profits = (profitsGroupBy == GroupBy.DAY) ? dao.getProfitsByDay(from, to) : dao.getProfitsByMonth(from, to);
+
+				//calculate the totals of each item group once, so they don't have to be re-calculated when the chart is changed
+				ProfitsChart profitsChart = new ProfitsChart(new ProfitsMatrix(profits, profitsGroupBy == GroupBy.MONTH));
 
 				SwingUtilities.invokeAndWait(() -> {
+					this.profitsChart = profitsChart;
+					chart = null;
 					updateDateRangeLabel(from, to);
 					refreshChart();
 				});
@@ -346,46 +355,87 @@ public class ChartsTab extends JPanel {
 	}
 
 	private void refreshChart() {
-		if (profits == null) {
+		if (profitsChart == null) {
 			return;
 		}
 
-		netTotal = 0;
+		Show selected = (Show) show.getSelectedItem();
+		Collection<String> names = getSelectedNames(selected);
+		int maxPoints = downsample.isSelected() ? Math.max(graphPanel.getWidth(), 100) : 0;
 
-		//build the chart
-		JFreeChart chart = createChart(createDataset(profits));
+		if (chart == null || selected != chartShow) {
+			//build the chart
+			dataset = new TimeSeriesCollection();
+			for (TimeSeries series : profitsChart.createSeries(selected, names, maxPoints)) {
+				dataset.addSeries(series);
+			}
+			chart = profitsChart.createChart(selected, dataset);
+			chartShow = selected;
+			chartMaxPoints = maxPoints;
+
+			graphPanel.removeAll();
+			graphPanel.validate();
+
+			//add the chart to the UI
+			ChartPanel panel = new ChartPanel(chart);
+			panel.setFillZoomRectangle(true);
+			panel.setMouseWheelEnabled(true);
+			graphPanel.add(panel, "grow, w 100%, h 100%, wrap");
+			graphPanel.validate();
+		} else if (maxPoints != chartMaxPoints) {
+			//the chart was resized, so resample the lines (the chart is kept so the user doesn't lose their zoom level)
+			List<Comparable<?>> order = new ArrayList<>();
+			for (int i = 0; i < dataset.getSeriesCount(); i++) {
+				order.add(dataset.getSeriesKey(i));
+			}
 
-		graphPanel.removeAll();
-		graphPanel.validate();
+			//keep the lines in the same order so they keep their colors
+			List<TimeSeries> resampled = profitsChart.createSeries(selected, names, maxPoints);
+			resampled.sort(Comparator.comparingInt(series -> {
+				int index = order.indexOf(series.getKey());
+				return (index < 0) ? Integer.MAX_VALUE : index;
+			}));
+
+			chart.setNotify(false);
+			dataset.removeAllSeries();
+			for (TimeSeries series : resampled) {
+				dataset.addSeries(series);
+			}
+			chartMaxPoints = maxPoints;
+			chart.setNotify(true);
+		} else if (selected == Show.ITEM_GROUPS || selected == Show.ITEMS) {
+			//only add and remove the series that changed
+			Set<String> keep = new HashSet<>(names);
+			for (int i = dataset.getSeriesCount() - 1; i >= 0; i--) {
+				TimeSeries series = dataset.getSeries(i);
+				if (!keep.contains((String) series.getKey())) {
+					dataset.removeSeries(i);
+				}
+			}
+
+			for (String name : names) {
+				if (dataset.getSeries(name) != null) {
+					continue;
+				}
 
-		//add the chart to the UI
-		ChartPanel panel = new ChartPanel(chart);
-		panel.setFillZoomRectangle(true);
-		panel.setMouseWheelEnabled(true);
-		graphPanel.add(panel, "grow, w 100%, h 100%, wrap");
-		graphPanel.validate();
+				TimeSeries series = (selected == Show.ITEM_GROUPS) ? profitsChart.createGroupSeries(name, maxPoints) : profitsChart.createItemSeries(name, maxPoints);
+				dataset.addSeries(series);
+			}
+		}
 
+		netTotal = profitsChart.getNetTotal(selected, names);
 		updateNetTotal();
 	}
 
-	private Map<String, Integer> organizeIntoGroups(Map<String, Integer> itemAmounts) {
-		Map<String, Integer> groupAmounts = new HashMap<>();
-
-		for (Map.Entry<String, Integer> entry : itemAmounts.entrySet()) {
-			String item = entry.getKey();
-			Integer amount = entry.getValue();
-
-			Collection<String> groups = index.getGroups(item);
-			for (String group : groups) {
-				Integer groupAmount = groupAmounts.get(group);
-				if (groupAmount == null) {
-					groupAmount = 0;
-				}
-				groupAmounts.put(group, groupAmount + amount);
-			}
+	private Collection<String> getSelectedNames(Show show) {
+		switch (show) {
+		case ITEM_GROUPS:
+			return getSelectedGroups();
+		case ITEMS:
+			return getSelectedItems();
+		default:
+			return Collections.emptyList();
 		}
-
-		return groupAmounts;
 	}
 
 	private List<String> getSelectedGroups() {
@@ -403,7 +453,7 @@ public class ChartsTab extends JPanel {
 	}
 
 	private Set<String> getSelectedItems() {
-		Set<String> items = new HashSet<>();
+		Set<String> items = new LinkedHashSet<>();
 
 		for (ItemSuggestField field : itemNames) {
 			String item = field.getText();
@@ -415,176 +465,6 @@ public class ChartsTab extends JPanel {
 		return items;
 	}
 
-	private XYDataset createDataset(Map<LocalDate, Profits> profits) {
-		TimeSeriesCollection dataset = new TimeSeriesCollection();
-
-		if (show.getSelectedItem() == Show.NET_PROFITS) {
-			TimeSeries customersSeries = new TimeSeries("Customers");
-			TimeSeries suppliersSeries = new TimeSeries("Suppliers");
-			TimeSeries netProfitSeries = new TimeSeries("Net Profit");
-
-			for (Map.Entry<LocalDate, Profits> entry : profits.entrySet()) {
-				Profits p = entry.getValue();
-				if (!p.hasTransactions()) {
-					continue;
-				}
-
-				LocalDate date = entry.getKey();
-				RegularTimePeriod timePeriod = (profitsGroupBy == GroupBy.DAY) ? new Day(TimeUtils.toDate(date)) : new Month(TimeUtils.toDate(date));
-
-				customersSeries.add(timePeriod, p.getCustomerTotal());
-				suppliersSeries.add(timePeriod, p.getSupplierTotal());
-				netProfitSeries.add(timePeriod, p.getCustomerTotal() + p.getSupplierTotal());
-				netTotal += p.getCustomerTotal() + p.getSupplierTotal();
-			}
-
-			dataset.addSeries(customersSeries);
-			dataset.addSeries(suppliersSeries);
-			dataset.addSeries(netProfitSeries);
-			return dataset;
-		}
-
-		if (show.getSelectedItem() == Show.ITEM_GROUPS) {
-			//create TimeSeries for each selected group
-			Map<String, TimeSeries> series = new HashMap<>();
-			for (String group : getSelectedGroups()) {
-				TimeSeries ts = new TimeSeries(group);
-				series.put(group, ts);
-				dataset.addSeries(ts);
-			}
-
-			for (Map.Entry<LocalDate, Profits> entry : profits.entrySet()) {
-				Profits p = entry.getValue();
-				if (!p.hasTransactions()) {
-					continue;
-				}
-
-				LocalDate date = entry.getKey();
-				RegularTimePeriod timePeriod = (profitsGroupBy == GroupBy.DAY) ? new Day(TimeUtils.toDate(date)) : new Month(TimeUtils.toDate(date));
-
-				Map<String, Integer> customerGroupTotals = organizeIntoGroups(p.getCustomerTotals());
-				Map<String, Integer> supplierGroupTotals = organizeIntoGroups(p.getSupplierTotals());
-				for (Map.Entry<String, TimeSeries> tsEntry : series.entrySet()) {
-					String group = tsEntry.getKey();
-					TimeSeries ts = tsEntry.getValue();
-
-					Integer customer = customerGroupTotals.get(group);
-					if (customer == null) {
-						customer = 0;
-					}
-					Integer supplier = supplierGroupTotals.get(group);
-					if (supplier == null) {
-						supplier = 0;
-					}
-
-					ts.add(timePeriod, customer + supplier);
-					netTotal += customer + supplier;
-				}
-			}
-
-			return dataset;
-		}
-
-		if (show.getSelectedItem() == Show.ITEMS) {
-			//create TimeSeries for each item
-			Map<String, TimeSeries> series = new HashMap<>();
-			for (String item : getSelectedItems()) {
-				TimeSeries ts = new TimeSeries(item);
-				series.put(item.toLowerCase(), ts);
-				dataset.addSeries(ts);
-			}
-
-			for (Map.Entry<LocalDate, Profits> entry : profits.entrySet()) {
-				Profits p = entry.getValue();
-				if (!p.hasTransactions()) {
-					continue;
-				}
-
-				LocalDate date = entry.getKey();
-				RegularTimePeriod timePeriod = (profitsGroupBy == GroupBy.DAY) ? new Day(TimeUtils.toDate(date)) : new Month(TimeUtils.toDate(date));
-
-				for (Map.Entry<String, TimeSeries> tsEntry : series.entrySet()) {
-					String item = tsEntry.getKey();
-					TimeSeries ts = tsEntry.getValue();
-
-					Integer customer = p.getCustomerTotals().get(item);
-					if (customer == null) {
-						customer = 0;
-					}
-					Integer supplier = p.getSupplierTotals().get(item);
-					if (supplier == null) {
-						supplier = 0;
-					}
-
-					ts.add(timePeriod, customer + supplier);
-					netTotal += customer + supplier;
-				}
-			}
-
-			return dataset;
-		}
-
-		if (show.getSelectedItem() == Show.RUPEE_BALANCE) {
-			TimeSeries balanceSeries = new TimeSeries("Rupee Balance");
-
-			for (Map.Entry<LocalDate, Profits> entry : profits.entrySet()) {
-				LocalDate date = entry.getKey();
-				Profits p = entry.getValue();
-				RegularTimePeriod timePeriod = (profitsGroupBy == GroupBy.DAY) ? new Day(TimeUtils.toDate(date)) : new Month(TimeUtils.toDate(date));
-
-				balanceSeries.add(timePeriod, p.getBalance());
-			}
-
-			dataset.addSeries(balanceSeries);
-			return dataset;
-		}
-
-		return dataset;
-	}
-
-	private JFreeChart createChart(XYDataset dataset) {
-		String yAxisLabel = (show.getSelectedItem() == Show.RUPEE_BALANCE) ? "Rupee Balance" : "Rupees Earned";
-		JFreeChart chart = ChartFactory.createTimeSeriesChart("", "Date", yAxisLabel, dataset, true, false, false);
-		chart.setBackgroundPaint(null); //transparent
-
-		XYPlot plot = (XYPlot) chart.getPlot();
-		plot.setBackgroundPaint(Color.white);
-		plot.setDomainGridlinePaint(new Color(192, 192, 192));
-		plot.setRangeGridlinePaint(new Color(192, 192, 192));
-		plot.setRangeZeroBaselinePaint(Color.black);
-		plot.setRangeZeroBaselineStroke(new BasicStroke(2));
-		plot.setRangeZeroBaselineVisible(true);
-		plot.setAxisOffset(new RectangleInsets(5.0, 5.0, 5.0, 5.0));
-		plot.setShadowGenerator(new DefaultShadowGenerator());
-
-		XYItemRenderer renderer = plot.getRenderer();
-		if (show.getSelectedItem() == Show.NET_PROFITS) {
-			renderer.setSeriesPaint(0, new Color(0, 128, 0));
-			renderer.setSeriesPaint(1, Color.red);
-			renderer.setSeriesPaint(2, Color.blue);
-			renderer.setSeriesStroke(2, new BasicStroke(3));
-		} else if (show.getSelectedItem() == Show.RUPEE_BALANCE) {
-			renderer.setSeriesPaint(0, new Color(0, 128, 0));
-		}
-
-		if (renderer instanceof XYLineAndShapeRenderer) {
-			XYLineAndShapeRenderer r = (XYLineAndShapeRenderer) renderer;
-			r.setDrawSeriesLineAsPath(true);
-		}
-
-		DateAxis xAxis = (DateAxis) plot.getDomainAxis();
-		String formatStr = (profitsGroupBy == GroupBy.DAY) ? "MMM dd" : "MMM yyyy";
-		xAxis.setDateFormatOverride(new SimpleDateFormat(formatStr));
-
-		NumberAxis yAxis = (NumberAxis) plot.getRangeAxis();
-		NumberFormat nf = new DecimalFormat("#,###'r'");
-		nf.setGroupingUsed(true);
-		yAxis.setNumberFormatOverride(nf);
-		yAxis.setAutoRangeIncludesZero(show.getSelectedItem() != Show.RUPEE_BALANCE);
-
-		return chart;
-	}
-
 	private void updateDateRangeLabel(LocalDate from, LocalDate to) {
 		String dateRangeStr;
 		final String startFont = "<b><i><font color=navy>";
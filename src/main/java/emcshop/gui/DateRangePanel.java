@@ -0,0 +1,172 @@
+package emcshop.gui;
+
+import java.beans.PropertyVetoException;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.Date;
+
+import javax.swing.JCheckBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+
+import com.michaelbaranov.microba.calendar.DatePicker;
+
+import emcshop.db.DbDao;
+import emcshop.util.DateRange;
+import emcshop.util.TimeUtils;
+import net.miginfocom.swing.MigLayout;
+
+/**
+ * Lets the user pick a date range to query, or choose to query their entire
+ * transaction history.
+ * @author Michael Angstadt
+ */
+@SuppressWarnings("serial")
+public class DateRangePanel extends JPanel {
+	private static final DateTimeFormatter df = DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM);
+
+	private final JCheckBox entireHistory;
+	private final JLabel fromDatePickerLabel, toDatePickerLabel;
+	private final DatePicker fromDatePicker, toDatePicker;
+
+	/**
+	 * @param dao the data access object (used to get the date of the earliest
+	 * transaction)
+	 */
+	public DateRangePanel(DbDao dao) {
+		super(new MigLayout("insets 0"));
+
+		LocalDateTime earliestTransactionDate = null;
+		try {
+			earliestTransactionDate = dao.getEarliestTransactionDate();
+		} catch (SQLException e) {
+			//ignore
+		}
+
+		fromDatePickerLabel = new JLabel("Start:");
+		fromDatePicker = new DatePicker();
+		fromDatePicker.setDateFormat(new SimpleDateFormat("yyyy-MM-dd"));
+		fromDatePicker.setShowNoneButton(true);
+		fromDatePicker.setShowTodayButton(true);
+		fromDatePicker.setStripTime(true);
+
+		toDatePickerLabel = new JLabel("End:");
+		toDatePicker = new DatePicker();
+		toDatePicker.setDateFormat(new SimpleDateFormat("yyyy-MM-dd"));
+		toDatePicker.setShowNoneButton(true);
+		toDatePicker.setShowTodayButton(true);
+		toDatePicker.setStripTime(true);
+
+		String text = "entire history";
+		if (earliestTransactionDate != null) {
+			text += " (since " + df.format(earliestTransactionDate) + ")";
+		}
+		entireHistory = new JCheckBox(text);
+		entireHistory.addActionListener(event -> updateState());
+
+		add(entireHistory, "wrap");
+		add(fromDatePickerLabel, "split 4");
+		add(fromDatePicker);
+		add(toDatePickerLabel);
+		add(toDatePicker);
+	}
+
+	/**
+	 * Resets the date pickers to today's date.
+	 */
+	public void reset() {
+		try {
+			fromDatePicker.setDate(new Date());
+			toDatePicker.setDate(new Date());
+		} catch (PropertyVetoException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Makes sure the start date does not come after the end date. Displays an
+	 * error dialog if it does.
+	 * @return true if the date range is valid, false if not
+	 */
+	public boolean checkDateRange() {
+		if (entireHistory.isSelected()) {
+			return true;
+		}
+
+		Date from = fromDatePicker.getDate();
+		Date to = toDatePicker.getDate();
+		if (from == null || to == null) {
+			return true;
+		}
+
+		if (from.compareTo(to) > 0) {
+			DialogBuilder.info() //@formatter:off
+				.parent(this)
+				.title("Invalid date range")
+				.text("Invalid date range: \"Start\" date must come before \"End\" date.")
+			.show(); //@formatter:on
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Gets the date range the user selected.
+	 * @return the date range (the end date is exclusive, either date may be
+	 * null)
+	 */
+	public DateRange getDateRange() {
+		if (entireHistory.isSelected()) {
+			return new DateRange(null, null);
+		}
+
+		LocalDate from = TimeUtils.toLocalDate(fromDatePicker.getDate());
+		LocalDate to = TimeUtils.toLocalDate(toDatePicker.getDate());
+		if (to != null) {
+			to = to.plusDays(1);
+		}
+
+		return new DateRange((from == null) ? null : from.atStartOfDay(), (to == null) ? null : to.atStartOfDay());
+	}
+
+	/**
+	 * Describes a date range for display.
+	 * @param range the date range (as returned by {@link #getDateRange})
+	 * @return the description (HTML)
+	 */
+	public static String describe(DateRange range) {
+		LocalDateTime from = range.getFrom();
+		LocalDateTime to = range.getTo();
+
+		final String startFont = "<b><i><font color=navy>";
+		final String endFont = "</font></i></b>";
+		if (from == null && to == null) {
+			return startFont + "entire history" + endFont;
+		}
+		if (from == null) {
+			return "up to " + startFont + df.format(to.minusDays(1)) + endFont;
+		}
+		if (to == null) {
+			return startFont + df.format(from) + endFont + " to " + startFont + "now" + endFont;
+		}
+
+		LocalDate lastDay = to.toLocalDate().minusDays(1);
+		if (from.toLocalDate().equals(lastDay)) {
+			return startFont + df.format(from) + endFont;
+		}
+		return startFont + df.format(from) + endFont + " to " + startFont + df.format(lastDay) + endFont;
+	}
+
+	private void updateState() {
+		boolean enableDatePickers = !entireHistory.isSelected();
+		fromDatePickerLabel.setEnabled(enableDatePickers);
+		fromDatePicker.setEnabled(enableDatePickers);
+		toDatePickerLabel.setEnabled(enableDatePickers);
+		toDatePicker.setEnabled(enableDatePickers);
+	}
+}
@@ -1,14 +1,36 @@
 package emcshop.gui;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import emcshop.util.AhoCorasick;
 
 /**
+ * <p>
  * Represents a list of filtered keywords.
+ * </p>
+ * <p>
+ * Whole-match keywords are stored in a hash set, and partial-match keywords
+ * are compiled into a single {@link AhoCorasick} matcher. Because the same
+ * names are often checked many times (for example, the item name of each
+ * transaction), the result of each check is remembered.
+ * </p>
+ * <p>
+ * Once all keywords have been added, this class can be used from multiple
+ * threads.
+ * </p>
  */
 public class FilterList {
-	private final List<String> keywords = new ArrayList<>();
-	private final List<Boolean> wholeMatches = new ArrayList<>();
+	private final Set<String> wholeMatches = new HashSet<>();
+	private final List<String> partialMatches = new ArrayList<>();
+	private volatile AhoCorasick matcher;
+	private final Map<String, Boolean> results = new ConcurrentHashMap<>();
 
 	/**
 	 * Adds a keyword to the list
@@ -16,8 +38,14 @@ public class FilterList {
 	 * @param wholeMatch true for a whole match, false for a partial match
 	 */
 	public void add(String keyword, boolean wholeMatch) {
-		keywords.add(keyword.toLowerCase());
-		wholeMatches.add(wholeMatch);
+		String key = key(keyword);
+		if (wholeMatch) {
+			wholeMatches.add(key);
+		} else {
+			partialMatches.add(key);
+			matcher = null;
+		}
+		results.clear();
 	}
 
 	/**
@@ -25,7 +53,25 @@ public class FilterList {
 	 * @return true if it's empty, false if not
 	 */
 	public boolean isEmpty() {
-		return keywords.isEmpty();
+		return wholeMatches.isEmpty() && partialMatches.isEmpty();
+	}
+
+	/**
+	 * Determines if the list contains any partial-match keywords. If it
+	 * doesn't, the text that this list matches is exactly the text returned by
+	 * {@link #getWholeMatches}.
+	 * @return true if it contains partial-match keywords, false if not
+	 */
+	public boolean hasPartialMatches() {
+		return !partialMatches.isEmpty();
+	}
+
+	/**
+	 * Gets the whole-match keywords.
+	 * @return the keywords (as returned by {@link #key})
+	 */
+	public Set<String> getWholeMatches() {
+		return Collections.unmodifiableSet(wholeMatches);
 	}
 
 	/**
@@ -38,22 +84,44 @@ public class FilterList {
 			return true;
 		}
 
-		text = text.toLowerCase();
-		for (int i = 0; i < keywords.size(); i++) {
-			String keyword = keywords.get(i);
-			Boolean wholeMatch = wholeMatches.get(i);
-
-			if (wholeMatch) {
-				if (text.equals(keyword)) {
-					return true;
-				}
-			} else {
-				if (text.contains(keyword)) {
-					return true;
-				}
-			}
+		return results.computeIfAbsent(text, t -> isFilteredKey(key(t)));
+	}
+
+	/**
+	 * Determines if some text is matched by this filter list. This method
+	 * should be used when the text has already been converted using
+	 * {@link #key}, so it does not have to be converted again.
+	 * @param key the text (as returned by {@link #key})
+	 * @return true if it matches or if the filter list is empty, false if not
+	 */
+	public boolean isFilteredKey(String key) {
+		if (isEmpty()) {
+			return true;
+		}
+
+		if (wholeMatches.contains(key)) {
+			return true;
 		}
 
-		return false;
+		return hasPartialMatches() && matcher().containsAny(key);
+	}
+
+	/**
+	 * Converts text to the form that keywords are compared against (case
+	 * insensitive).
+	 * @param text the text
+	 * @return the converted text
+	 */
+	public static String key(String text) {
+		return text.toLowerCase(Locale.ROOT);
+	}
+
+	private AhoCorasick matcher() {
+		AhoCorasick matcher = this.matcher;
+		if (matcher == null) {
+			matcher = new AhoCorasick(partialMatches);
+			this.matcher = matcher;
+		}
+		return matcher;
 	}
 }
@@ -15,13 +15,9 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.io.IOException;
-import java.io.UncheckedIOException;
 import java.net.URL;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.SQLException;
-import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -29,13 +25,9 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.function.Function;
-import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 import javax.swing.AbstractCellEditor;
 import javax.swing.DefaultComboBoxModel;
@@ -54,6 +46,7 @@ import javax.swing.RowFilter;
 import javax.swing.RowSorter;
 import javax.swing.SortOrder;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.border.EmptyBorder;
 import javax.swing.table.AbstractTableModel;
 import javax.swing.table.TableCellEditor;
@@ -71,10 +64,13 @@ import emcshop.QueryExporter;
 import emcshop.Settings;
 import emcshop.db.DbDao;
 import emcshop.db.Inventory;
+import emcshop.db.InventoryChange;
+import emcshop.db.InventoryWriteBuffer;
 import emcshop.gui.ExportButton.ExportListener;
 import emcshop.gui.images.Images;
 import emcshop.gui.lib.GroupPanel;
 import emcshop.util.ChesterFile;
+import emcshop.util.ChesterWatcher;
 import emcshop.util.GuiUtils;
 import emcshop.util.QuantityFormatter;
 import emcshop.util.UIDefaultsWrapper;
@@ -92,6 +88,7 @@ public class InventoryTab extends JPanel implements ExportListener {
 	private final MainFrame owner;
 	private final DbDao dao = context.get(DbDao.class);
 	private final ItemIndex index = ItemIndex.instance();
+	private final InventoryWriteBuffer edits = new InventoryWriteBuffer(dao, 1000, e -> SwingUtilities.invokeLater(this::onEditsFailed));
 
 	private final FilterPanel filterPanel;
 	private final JButton addItem;
@@ -152,6 +149,8 @@ public class InventoryTab extends JPanel implements ExportListener {
 				return;
 			}
 
+			flushEdits();
+
 			List<Integer> selectedIds = new ArrayList<>(selected.size());
 			for (Row row : selected) {
 				selectedIds.add(row.inventory.getId());
@@ -187,10 +186,13 @@ public class InventoryTab extends JPanel implements ExportListener {
 				return;
 			}
 
+			flushEdits();
 			try {
+				List<InventoryChange> changes = new ArrayList<>(items.size());
 				for (Inventory item : items) {
-					dao.upsertInventory(item);
+					changes.add(new InventoryChange(item.getItem()).setQuantity(item.getQuantity()));
 				}
+				dao.updateInventory(changes);
 				dao.commit();
 			} catch (SQLException e) {
 				dao.rollback();
@@ -297,6 +299,7 @@ public class InventoryTab extends JPanel implements ExportListener {
 		}
 
 		//update database
+		flushEdits();
 		int inventoryId;
 		try {
 			inventoryId = dao.upsertInventory(itemStr, qty, add);
@@ -366,7 +369,43 @@ public class InventoryTab extends JPanel implements ExportListener {
 		}
 	}
 
+	/**
+	 * Writes any edits that were made to the inventory table that haven't been
+	 * saved yet.
+	 */
+	public void flushEdits() {
+		try {
+			edits.flush();
+		} catch (SQLException e) {
+			onEditsFailed();
+		}
+	}
+
+	/**
+	 * Writes any edits that haven't been saved yet and closes the database
+	 * connection they are written with.
+	 */
+	public void close() {
+		try {
+			edits.close();
+		} catch (SQLException e) {
+			logger.log(Level.SEVERE, "Could not save inventory changes.", e);
+		}
+	}
+
+	private void onEditsFailed() {
+		DialogBuilder.error() //@formatter:off
+			.parent(this)
+			.title("Error")
+			.text("Your inventory changes could not be saved.")
+		.show(); //@formatter:on
+
+		refresh();
+	}
+
 	public void refresh() {
+		flushEdits();
+
 		Collection<Inventory> inventory;
 		try {
 			inventory = dao.getInventory();
@@ -592,14 +631,8 @@ public class InventoryTab extends JPanel implements ExportListener {
 						return;
 					}
 
-					//update database
-					try {
-						dao.upsertInventory(item, quantity, add);
-						dao.commit();
-					} catch (SQLException e) {
-						dao.rollback();
-						throw new RuntimeException(e);
-					}
+					//queue the database update
+					edits.setQuantity(item, quantity, add);
 
 					//update row with new data
 					resetJustInserted();
@@ -629,14 +662,8 @@ public class InventoryTab extends JPanel implements ExportListener {
 						return;
 					}
 
-					//update database
-					try {
-						dao.updateInventoryLowThreshold(item, threshold);
-						dao.commit();
-					} catch (SQLException e) {
-						dao.rollback();
-						throw new RuntimeException(e);
-					}
+					//queue the database update
+					edits.setLowThreshold(item, threshold);
 
 					//update row with new data
 					resetJustInserted();
@@ -1039,7 +1066,7 @@ public class InventoryTab extends JPanel implements ExportListener {
 		private final InventoryTable table;
 		private final JButton done, cancel, remove;
 		private boolean cancelled = true;
-		private final ChesterThread thread;
+		private final ChesterWatcher watcher;
 
 		public ChesterDialog() {
 			super(owner, "Chester", true);
@@ -1048,26 +1075,29 @@ public class InventoryTab extends JPanel implements ExportListener {
 				@Override
 				public void windowClosing(WindowEvent event) {
 					//fired when the user closes the window
-					thread.stopMe();
+					watcher.close();
 					cancelled = true;
 				}
 			});
 
-			thread = new ChesterThread();
-			thread.setDaemon(true);
-
 			table = new InventoryTable();
 
+			Path dir = FileUtils.getUserDirectory().toPath().resolve(".chester");
+			watcher = new ChesterWatcher(dir, 5000, files -> {
+				List<Row> rows = toRows(files);
+				SwingUtilities.invokeLater(() -> table.addAll(rows));
+			});
+
 			done = new JButton("Done");
 			done.addActionListener(event -> {
-				thread.stopMe();
+				watcher.close();
 				cancelled = false;
 				dispose();
 			});
 
 			cancel = new JButton("Cancel");
 			cancel.addActionListener(event -> {
-				thread.stopMe();
+				watcher.close();
 				cancelled = true;
 				dispose();
 			});
@@ -1105,7 +1135,7 @@ public class InventoryTab extends JPanel implements ExportListener {
 			setSize(500, 400);
 			setLocationRelativeTo(owner);
 
-			thread.start();
+			watcher.start();
 		}
 
 		public Collection<Inventory> getItems() {
@@ -1132,107 +1162,45 @@ public class InventoryTab extends JPanel implements ExportListener {
 			return map.values();
 		}
 
-		private class ChesterThread extends Thread {
-			private final Instant started = Instant.now();
-			private volatile boolean running = true;
-
-			public void stopMe() {
-				running = false;
-				try {
-					join();
-				} catch (InterruptedException ignore) {
-				}
-			}
-
-			@Override
-			public void run() {
-				Path dir = FileUtils.getUserDirectory().toPath().resolve(".chester");
-				ItemIndex index = ItemIndex.instance();
-				Pattern idRegex = Pattern.compile("[\\d]+(:[\\d]+)?");
-
-				Predicate<Path> modifiedSinceStartup = file -> {
-					try {
-						return Files.getLastModifiedTime(file).toInstant().isAfter(started);
-					} catch (IOException e) {
-						throw new UncheckedIOException(e);
-					}
-				};
-				Predicate<Path> isChesterFile = file -> file.getFileName().toString().endsWith(".chester");
-				Function<Path, ChesterFile> parseFile = file -> {
-					ChesterFile chesterFile;
-					try {
-						chesterFile = ChesterFile.parse(file);
-					} catch (IllegalArgumentException e) {
-						logger.log(Level.SEVERE, "Problem parsing Chester file.", e);
-						chesterFile = null;
-					} catch (IOException e) {
-						throw new UncheckedIOException(e);
-					}
-
-					try {
-						Files.delete(file);
-					} catch (IOException e) {
-						throw new UncheckedIOException(e);
-					}
-
-					return chesterFile;
-				};
-
-				while (running) {
-					if (!Files.exists(dir)) {
-						continue;
-					}
-
-					List<ChesterFile> files;
-					try {
-						files = Files.list(dir) //@formatter:off
-							.filter(modifiedSinceStartup)
-							.filter(isChesterFile)
-							.map(parseFile)
-							.filter(Objects::nonNull)
-						.collect(Collectors.toList()); //@formatter:on
-					} catch (Exception e) {
-						throw new RuntimeException("Problem getting list of Chester files.", e);
-					}
-
-					for (ChesterFile file : files) {
-						List<Row> rows = new ArrayList<>();
-						for (Map.Entry<String, Integer> entry : file.getItems().entrySet()) {
-							String id = entry.getKey();
-							Integer quantity = entry.getValue();
-
-							String name;
-							boolean idUnknown;
-							if (idRegex.matcher(id).matches()) {
-								name = index.getDisplayNameFromMinecraftId(id);
-								idUnknown = (name == null);
-								if (idUnknown) {
-									name = id;
-								}
-							} else {
-								//it's an EMC-exclusive item, like Zombie Virus
-								name = id;
-								idUnknown = false;
-							}
-
-							Inventory item = new Inventory();
-							item.setItem(name);
-							item.setQuantity(quantity);
-
-							Row row = new Row(item);
-							row.idUnknown = idUnknown;
-							rows.add(row);
+		/**
+		 * Converts the contents of Chester files to table rows.
+		 * @param files the Chester files
+		 * @return the rows
+		 */
+		private List<Row> toRows(List<ChesterFile> files) {
+			ItemIndex index = ItemIndex.instance();
+			Pattern idRegex = Pattern.compile("[\\d]+(:[\\d]+)?");
+
+			List<Row> rows = new ArrayList<>();
+			for (ChesterFile file : files) {
+				for (Map.Entry<String, Integer> entry : file.getItems().entrySet()) {
+					String id = entry.getKey();
+					Integer quantity = entry.getValue();
+
+					String name;
+					boolean idUnknown;
+					if (idRegex.matcher(id).matches()) {
+						name = index.getDisplayNameFromMinecraftId(id);
+						idUnknown = (name == null);
+						if (idUnknown) {
+							name = id;
 						}
-						table.addAll(rows);
+					} else {
+						//it's an EMC-exclusive item, like Zombie Virus
+						name = id;
+						idUnknown = false;
 					}
 
-					try {
-						Thread.sleep(100);
-					} catch (InterruptedException e) {
-						running = false;
-					}
+					Inventory item = new Inventory();
+					item.setItem(name);
+					item.setQuantity(quantity);
+
+					Row row = new Row(item);
+					row.idUnknown = idUnknown;
+					rows.add(row);
 				}
 			}
+			return rows;
 		}
 	}
 }
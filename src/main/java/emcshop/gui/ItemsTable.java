@@ -10,7 +10,6 @@ import java.util.List;
 import java.util.Set;
 
 import javax.swing.ImageIcon;
-import javax.swing.JLabel;
 import javax.swing.JTable;
 import javax.swing.SwingConstants;
 import javax.swing.border.EmptyBorder;
@@ -21,6 +20,7 @@ import emcshop.ItemIndex;
 import emcshop.db.ItemGroup;
 import emcshop.db.ShopTransactionType;
 import emcshop.gui.images.Images;
+import emcshop.gui.lib.CachingLabel;
 import emcshop.gui.lib.GroupableColumnsTable;
 import emcshop.util.QuantityFormatter;
 import emcshop.util.RupeeFormatter;
@@ -49,7 +49,10 @@ public class ItemsTable extends GroupableColumnsTable {
 		}
 	}
 
+	private static final String NO_VALUE = "-";
+
 	private final Column columns[] = Column.values();
+	private final CachingLabel cellLabel = new CachingLabel();
 	private final List<ItemGroup> itemGroups;
 	private List<ItemGroup> itemGroupsToDisplay;
 
@@ -117,7 +120,7 @@ public class ItemsTable extends GroupableColumnsTable {
 			private final Color evenRowColor = new Color(255, 255, 255);
 			private final Color oddRowColor = new Color(240, 240, 240);
 			private final ItemIndex index = ItemIndex.instance();
-			private final JLabel label = new JLabel();
+			private final CachingLabel label = cellLabel;
 			{
 				label.setOpaque(true);
 				label.setBorder(new EmptyBorder(4, 4, 4, 4));
@@ -155,15 +158,13 @@ public class ItemsTable extends GroupableColumnsTable {
 				Column column = columns[col];
 
 				ImageIcon image = getIcon(group, column);
-				String text = getText(group, column);
-				int alignment = SwingConstants.LEFT;
-				if (text == null) {
-					text = "-";
-					alignment = SwingConstants.CENTER;
-				}
+				String text = label.setText(group, col, () -> {
+					String t = getText(group, column);
+					return (t == null) ? NO_VALUE : t;
+				});
+				int alignment = (text == NO_VALUE) ? SwingConstants.CENTER : SwingConstants.LEFT;
 
 				label.setIcon(image);
-				label.setText(text);
 				label.setHorizontalAlignment(alignment);
 
 				//set the background color of the row
@@ -189,7 +190,7 @@ public class ItemsTable extends GroupableColumnsTable {
 			public String getText(ItemGroup group, Column column) {
 				switch (column) {
 				case ITEM_NAME:
-					return "<html>" + ItemIndex.instance().getItemNameFormatted(group.getItem(), true);
+					return "<html>" + index.getItemNameFormatted(group.getItem(), true);
 				case PPU_BUY:
 					switch (shopTransactionType) {
 					case OTHER_SHOPS:
@@ -303,6 +304,7 @@ public class ItemsTable extends GroupableColumnsTable {
 		AbstractTableModel model = (AbstractTableModel) getModel();
 		int cols[] = { Column.SOLD_QTY.ordinal(), Column.BOUGHT_QTY.ordinal(), Column.NET_QTY.ordinal() };
 		for (int col : cols) {
+			cellLabel.invalidate(col);
 			for (int row = 0; row < model.getRowCount(); row++) {
 				model.fireTableCellUpdated(row, col);
 			}
@@ -0,0 +1,249 @@
+package emcshop.gui;
+
+import java.awt.Component;
+import java.text.NumberFormat;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.JSpinner;
+import javax.swing.JTable;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+
+import org.apache.commons.lang3.StringUtils;
+
+import emcshop.db.DbDao;
+import emcshop.gui.images.Images;
+import emcshop.query.AggregateRow;
+import emcshop.query.Leaderboard;
+import emcshop.query.Leaderboard.RankBy;
+import emcshop.query.QueryEngine;
+import emcshop.util.DateRange;
+import emcshop.util.RupeeFormatter;
+import net.miginfocom.swing.MigLayout;
+
+/**
+ * Shows the top customers, suppliers, and items (see {@link Leaderboard}). Only
+ * the top rows are fetched from the database, so the leaderboards load quickly
+ * even when the transaction history is large. The query runs in the
+ * background on its own database connection.
+ * @author Michael Angstadt
+ */
+@SuppressWarnings("serial")
+public class LeaderboardTab extends JPanel {
+	private final MainFrame owner;
+	private final DbDao dao;
+
+	private final DateRangePanel dateRange;
+	private final JComboBox<Leaderboard> leaderboard;
+	private final JComboBox<RankBy> rankBy;
+	private final JSpinner size;
+	private final JButton show;
+
+	private final JLabel title;
+	private final JLabel dateRangeQueried;
+	private final Model model = new Model();
+
+	/**
+	 * True once the user has loaded a leaderboard. After that, changing the
+	 * leaderboard or ranking reloads it right away.
+	 */
+	private boolean loaded = false;
+
+	public LeaderboardTab(MainFrame owner, DbDao dao) {
+		this.owner = owner;
+		this.dao = dao;
+
+		dateRange = new DateRangePanel(dao);
+		dateRange.reset();
+
+		leaderboard = new JComboBox<>(Leaderboard.values());
+		leaderboard.setRenderer(new DefaultListCellRenderer() {
+			@Override
+			public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+				String text = (value == null) ? "" : displayName((Leaderboard) value);
+				return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+			}
+		});
+		leaderboard.addActionListener(event -> reloadIfLoaded());
+
+		rankBy = new JComboBox<>(RankBy.values());
+		rankBy.setRenderer(new DefaultListCellRenderer() {
+			@Override
+			public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+				String text = (value == null) ? "" : StringUtils.capitalize(((RankBy) value).name().toLowerCase());
+				return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+			}
+		});
+		rankBy.addActionListener(event -> reloadIfLoaded());
+
+		size = new JSpinner(new SpinnerNumberModel(10, 1, 1000, 5));
+
+		show = new JButton("Show", Images.SEARCH);
+		show.addActionListener(event -> onShow());
+
+		title = new JLabel();
+		dateRangeQueried = new JLabel();
+
+		JTable table = new JTable(model);
+		table.getTableHeader().setReorderingAllowed(false);
+		table.setColumnSelectionAllowed(false);
+		table.setRowHeight(24);
+		DefaultTableCellRenderer rightAligned = new DefaultTableCellRenderer();
+		rightAligned.setHorizontalAlignment(SwingConstants.RIGHT);
+		for (int i = 0; i < model.getColumnCount(); i++) {
+			if (i != Model.NAME) {
+				table.getColumnModel().getColumn(i).setCellRenderer(rightAligned);
+			}
+		}
+		table.getColumnModel().getColumn(Model.RANK).setMaxWidth(50);
+
+		///////////////////////////////////////
+
+		setLayout(new MigLayout("fillx, insets 5"));
+
+		add(dateRange, "growy");
+
+		JPanel right = new JPanel(new MigLayout("insets 0"));
+		right.add(new JLabel("Show the top"), "split 4");
+		right.add(size, "w 60");
+		right.add(leaderboard);
+		right.add(new JLabel("by"), "wrap");
+		right.add(rankBy, "split 2");
+		right.add(show);
+		add(right, "growy, wrap");
+
+		add(title, "gaptop 20, span 2, split 2");
+		add(dateRangeQueried, "wrap");
+
+		add(new MyJScrollPane(table), "span 2, grow, w 100%, h 100%");
+	}
+
+	/**
+	 * Removes the leaderboard that is being displayed.
+	 */
+	public void clear() {
+		loaded = false;
+		dateRange.reset();
+		title.setText("");
+		dateRangeQueried.setText("");
+		model.setData(Collections.emptyList());
+	}
+
+	private void reloadIfLoaded() {
+		if (loaded) {
+			onShow();
+		}
+	}
+
+	private void onShow() {
+		if (!dateRange.checkDateRange()) {
+			return;
+		}
+
+		Leaderboard selectedLeaderboard = (Leaderboard) leaderboard.getSelectedItem();
+		RankBy selectedRankBy = (RankBy) rankBy.getSelectedItem();
+		int selectedSize = (Integer) size.getValue();
+		DateRange range = dateRange.getDateRange();
+
+		owner.startProgress("Querying...");
+		Thread t = new Thread(() -> {
+			try {
+				List<AggregateRow> rows;
+				DbDao reader = dao.openReader();
+				try {
+					rows = new QueryEngine(reader).leaderboard(selectedLeaderboard, selectedRankBy, range.getFrom(), range.getTo(), selectedSize);
+				} finally {
+					reader.close();
+				}
+
+				SwingUtilities.invokeAndWait(() -> {
+					loaded = true;
+					title.setText("<html><b>Top " + selectedSize + " " + displayName(selectedLeaderboard).toLowerCase() + " by " + selectedRankBy.name().toLowerCase() + ":</b></html>");
+					dateRangeQueried.setText("<html>" + DateRangePanel.describe(range) + "</html>");
+					model.setData(rows);
+				});
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			} finally {
+				SwingUtilities.invokeLater(owner::stopProgress);
+			}
+		});
+		t.start();
+	}
+
+	private static String displayName(Leaderboard leaderboard) {
+		return StringUtils.capitalize(leaderboard.getName().replace('-', ' '));
+	}
+
+	private static class Model extends AbstractTableModel {
+		private static final int RANK = 0, NAME = 1, AMOUNT = 2, QUANTITY = 3, TRANSACTIONS = 4;
+		private static final String[] columns = { "#", "Name", "Amount", "Quantity", "Transactions" };
+
+		private final RupeeFormatter rf = new RupeeFormatter();
+		private final NumberFormat nf = NumberFormat.getIntegerInstance();
+		private List<AggregateRow> rows = Collections.emptyList();
+
+		{
+			rf.setPlus(true);
+		}
+
+		public void setData(List<AggregateRow> rows) {
+			this.rows = rows;
+			fireTableDataChanged();
+		}
+
+		@Override
+		public int getColumnCount() {
+			return columns.length;
+		}
+
+		@Override
+		public String getColumnName(int column) {
+			return columns[column];
+		}
+
+		@Override
+		public int getRowCount() {
+			return rows.size();
+		}
+
+		@Override
+		public Object getValueAt(int row, int column) {
+			AggregateRow aggregateRow = rows.get(row);
+			switch (column) {
+			case RANK:
+				return (row + 1) + "";
+			case NAME:
+				return aggregateRow.getValue(0);
+			case AMOUNT:
+				return rf.format(aggregateRow.getAmount());
+			case QUANTITY:
+				return nf.format(aggregateRow.getQuantity());
+			case TRANSACTIONS:
+				return nf.format(aggregateRow.getCount());
+			default:
+				return null;
+			}
+		}
+
+		@Override
+		public Class<?> getColumnClass(int column) {
+			return String.class;
+		}
+
+		@Override
+		public boolean isCellEditable(int row, int column) {
+			return false;
+		}
+	}
+}
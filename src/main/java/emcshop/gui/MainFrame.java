@@ -45,6 +45,7 @@ import emcshop.AppContext;
 import emcshop.EMCShopkeeper;
 import emcshop.LogManager;
 import emcshop.Settings;
+import emcshop.cli.model.UpdateModelCli;
 import emcshop.db.DbDao;
 import emcshop.gui.images.Images;
 import emcshop.gui.lib.InfiniteProgressPanel;
@@ -57,6 +58,7 @@ import emcshop.model.IChatLogViewerModel;
 import emcshop.model.IFirstUpdateModel;
 import emcshop.model.IUpdateModel;
 import emcshop.model.UpdateModelImpl;
+import emcshop.model.UpdateScheduler;
 import emcshop.presenter.BackupPresenter;
 import emcshop.presenter.ChatLogViewerPresenter;
 import emcshop.presenter.FirstUpdatePresenter;
@@ -67,6 +69,7 @@ import emcshop.util.GitHubCommitsApi;
 import emcshop.util.GuiUtils;
 import emcshop.util.RupeeFormatter;
 import emcshop.util.TimeUtils;
+import emcshop.view.BackgroundUpdateView;
 import emcshop.view.BackupViewImpl;
 import emcshop.view.ChatLogViewerViewImpl;
 import emcshop.view.FirstUpdateViewImpl;
@@ -83,6 +86,12 @@ public class MainFrame extends JFrame {
 	private static final Logger logger = Logger.getLogger(MainFrame.class.getName());
 	private static final AppContext context = AppContext.instance();
 
+	/**
+	 * The longest amount of time to wait between automatic updates (in
+	 * minutes), unless the user's interval is longer.
+	 */
+	private static final int MAX_AUTO_UPDATE_INTERVAL = 60;
+
 	private final InfiniteProgressPanel progressPanel;
 	private final KeyEventDispatcher ignoreKeyEvents;
 
@@ -97,9 +106,14 @@ public class MainFrame extends JFrame {
 	private InventoryTab inventoryTab;
 	private BonusFeeTab bonusFeeTab;
 	private ChartsTab graphsTab;
+	private QueryTab queryTab;
+	private LeaderboardTab leaderboardTab;
 	private JMenuItem clearSessionMenuItem;
 	private MenuButton menu;
 
+	private boolean updating = false;
+	private UpdateScheduler autoUpdater;
+
 	private final DbDao dao;
 	private final Settings settings;
 	private final LogManager logManager;
@@ -140,6 +154,7 @@ public class MainFrame extends JFrame {
 		});
 
 		checkForNewVersion();
+		startAutoUpdates();
 	}
 
 	/**
@@ -354,6 +369,67 @@ public class MainFrame extends JFrame {
 
 				settings.save();
 			});
+
+			JCheckBoxMenuItem pageCache = menu.addCheckboxMenuItem("Cache Downloaded Transactions")
+			.parent(settingsMenu)
+			.add(event -> {
+				JCheckBoxMenuItem source = (JCheckBoxMenuItem) event.getSource();
+				settings.setPageCacheEnabled(source.isSelected());
+				settings.save();
+			});
+			pageCache.setToolTipText("Saves the downloaded transactions, page by page, so the database can be rebuilt with the \"--reimport\" command.");
+			pageCache.setSelected(settings.isPageCacheEnabled());
+
+			menu.addMenuItem("Update Automatically...")
+			.parent(settingsMenu)
+			.add(event -> {
+				final String valueForOff = "off";
+				Integer interval = settings.getAutoUpdateInterval();
+				String textboxValue = (interval == null) ? valueForOff : (interval + "");
+
+				while (true) {
+					String answer = DialogBuilder.question() //@formatter:off
+						.title("Update Automatically")
+						.text("EMC Shopkeeper can download your new transactions in the background while it is open.",
+							"Frequent updates keep each update short, so you don't have to wait for a long download",
+							"when you click \"Update Transactions\". You must log in once before automatic updates begin.",
+							"",
+							"Type the number of minutes to wait between updates. EMC Shopkeeper will wait longer",
+							"between updates when your shop is quiet.",
+							"",
+							"Type \"" + valueForOff + "\" to turn off automatic updates.")
+						.showInput(textboxValue); //@formatter:on
+
+					boolean dialogWasCanceled = (answer == null);
+					if (dialogWasCanceled) {
+						return;
+					}
+
+					if (valueForOff.equalsIgnoreCase(answer)) {
+						settings.setAutoUpdateInterval(null);
+						break;
+					} else {
+						int newValue;
+						try {
+							newValue = Integer.parseInt(answer);
+						} catch (NumberFormatException e) {
+							//bad input, ask again
+							continue;
+						}
+
+						if (newValue <= 0) {
+							//bad input, ask again
+							continue;
+						}
+
+						settings.setAutoUpdateInterval(newValue);
+						break;
+					}
+				}
+
+				settings.save();
+				startAutoUpdates();
+			});
 		}
 
 		menu.addSeparator();
@@ -390,6 +466,9 @@ public class MainFrame extends JFrame {
 			if (selected == paymentsTab && paymentsTab.isStale()) {
 				paymentsTab.reset();
 			}
+			if (selected != inventoryTab) {
+				inventoryTab.flushEdits();
+			}
 		});
 
 		transactionsTab = new TransactionsTab(this);
@@ -397,6 +476,8 @@ public class MainFrame extends JFrame {
 		inventoryTab = new InventoryTab(this);
 		bonusFeeTab = new BonusFeeTab(dao);
 		graphsTab = new ChartsTab(this, dao);
+		queryTab = new QueryTab(this, dao);
+		leaderboardTab = new LeaderboardTab(this, dao);
 	}
 
 	private void layoutWidgets() {
@@ -439,10 +520,32 @@ public class MainFrame extends JFrame {
 		tabs.addTab("Charts", graphsTab);
 		tabs.setToolTipTextAt(index++, toolTipText("<font size=4><b>Charts</b></font><br><br>Generates graphs of your shop transaction data."));
 
+		tabs.addTab("Query", queryTab);
+		tabs.setToolTipTextAt(index++, toolTipText("<font size=4><b>Query</b></font><br><br>Groups your shop transactions by item, player, date, and more, and calculates totals and averages for each group."));
+
+		tabs.addTab("Leaderboards", leaderboardTab);
+		tabs.setToolTipTextAt(index++, toolTipText("<font size=4><b>Leaderboards</b></font><br><br>Shows your shop's top customers and suppliers, and the items it sells and buys the most of."));
+
 		add(tabs, "span 4, h 100%, w 100%");
 	}
 
 	private void onUpdate() {
+		if (updating) {
+			return;
+		}
+
+		updating = true;
+		try {
+			update();
+		} finally {
+			updating = false;
+		}
+	}
+
+	private void update() {
+		//save the pending edits first so the update sees the latest inventory
+		inventoryTab.flushEdits();
+
 		LocalDateTime latestTransactionDate;
 		try {
 			latestTransactionDate = dao.getLatestTransactionDate();
@@ -499,13 +602,111 @@ public class MainFrame extends JFrame {
 
 		if (!presenter.isCanceled()) {
 			try {
-				updateSuccessful(presenter.getStarted(), presenter.getRupeeBalance(), presenter.getTimeTaken(), presenter.getShopTransactions(), presenter.getPaymentTransactions(), presenter.getBonusFeeTransactions(), presenter.getPageCount(), presenter.getShowResults());
+				updateSuccessful(presenter.getStarted(), presenter.getRupeeBalance(), presenter.getTimeTaken(), presenter.getShopTransactions(), presenter.getPaymentTransactions(), presenter.getBonusFeeTransactions(), presenter.getPageCount(), presenter.getShowResults(), true);
 			} catch (SQLException e) {
 				throw new RuntimeException(e);
 			}
 		}
 	}
 
+	/**
+	 * Starts or stops the automatic updates, according to the user's
+	 * settings.
+	 */
+	private void startAutoUpdates() {
+		if (autoUpdater != null) {
+			autoUpdater.stop();
+			autoUpdater = null;
+		}
+
+		Integer interval = settings.getAutoUpdateInterval();
+		if (interval == null) {
+			return;
+		}
+
+		Duration minInterval = Duration.ofMinutes(interval);
+		Duration maxInterval = Duration.ofMinutes(Math.max(interval, MAX_AUTO_UPDATE_INTERVAL));
+		autoUpdater = new UpdateScheduler(minInterval, maxInterval, minInterval, this::autoUpdate);
+
+		Thread t = new Thread(autoUpdater, "auto-update");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	/**
+	 * Downloads new transactions in the background. Called by the
+	 * {@link UpdateScheduler} thread. The update uses its own database
+	 * connection, because the GUI keeps using the main connection while the
+	 * update runs.
+	 * @return the number of transactions downloaded or -1 if the update did
+	 * not run
+	 * @throws Exception if the update failed
+	 */
+	private int autoUpdate() throws Exception {
+		//the user must log in manually first
+		EmcSession session = context.get(EmcSession.class);
+		if (session == null) {
+			return -1;
+		}
+
+		//don't run if the user is running an update (checked first so a database connection isn't opened for nothing)
+		boolean[] started = { false };
+		SwingUtilities.invokeAndWait(() -> {
+			if (!updating) {
+				updating = true;
+				started[0] = true;
+			}
+		});
+		if (!started[0]) {
+			return -1;
+		}
+
+		try {
+			DbDao writer = dao.openWriter();
+			try {
+				return autoUpdate(session, writer);
+			} finally {
+				writer.close();
+			}
+		} finally {
+			SwingUtilities.invokeAndWait(() -> updating = false);
+		}
+	}
+
+	private int autoUpdate(EmcSession session, DbDao writer) throws Exception {
+		//the first update has to be run manually
+		LocalDateTime latestTransactionDate = writer.getLatestTransactionDate();
+		if (latestTransactionDate == null) {
+			return -1;
+		}
+
+		SwingUtilities.invokeAndWait(() -> startProgress("Downloading new transactions..."));
+		try {
+			RupeeTransactionReader.Builder builder = new RupeeTransactionReader.Builder(session.getCookieStore());
+			builder.threads(settings.getDownloadThreads());
+			builder.stop(latestTransactionDate);
+
+			IUpdateView view = new BackgroundUpdateView();
+			IUpdateModel model = new UpdateModelCli(builder, null, writer);
+			UpdatePresenter presenter = new UpdatePresenter(view, model);
+			if (presenter.isCanceled()) {
+				return -1;
+			}
+
+			SwingUtilities.invokeAndWait(() -> {
+				try {
+					updateSuccessful(presenter.getStarted(), presenter.getRupeeBalance(), presenter.getTimeTaken(), presenter.getShopTransactions(), presenter.getPaymentTransactions(), presenter.getBonusFeeTransactions(), presenter.getPageCount(), false, false);
+				} catch (SQLException e) {
+					throw new RuntimeException(e);
+				}
+			});
+
+			return presenter.getShopTransactions() + presenter.getPaymentTransactions() + presenter.getBonusFeeTransactions();
+		} finally {
+			SwingUtilities.invokeAndWait(this::stopProgress);
+		}
+	}
+
 	private void onWipeDatabase() {
 		boolean reset = ResetDatabaseDialog.show(this);
 		if (!reset) {
@@ -529,6 +730,8 @@ public class MainFrame extends JFrame {
 					inventoryTab.refresh();
 					bonusFeeTab.refresh();
 					graphsTab.clear();
+					queryTab.clear();
+					leaderboardTab.clear();
 				});
 			} catch (Exception e) {
 				throw new RuntimeException(e);
@@ -570,9 +773,11 @@ public class MainFrame extends JFrame {
 
 	/**
 	 * Called after an update has completed.
+	 * @param showDialog true to tell the user that the update completed, false
+	 * not to (for background updates)
 	 * @throws SQLException
 	 */
-	private void updateSuccessful(LocalDateTime started, Integer rupeeTotal, Duration time, int shopTransactionCount, int paymentTransactionCount, int bonusFeeTransactionCount, int pageCount, boolean showResults) throws SQLException {
+	private void updateSuccessful(LocalDateTime started, Integer rupeeTotal, Duration time, int shopTransactionCount, int paymentTransactionCount, int bonusFeeTransactionCount, int pageCount, boolean showResults, boolean showDialog) throws SQLException {
 		int totalTransactions = shopTransactionCount + paymentTransactionCount + bonusFeeTransactionCount;
 		String message;
 		if (totalTransactions == 0) {
@@ -615,6 +820,10 @@ public class MainFrame extends JFrame {
 			updateRupeeBalance(rupeeTotal);
 		}
 
+		if (!showDialog) {
+			return;
+		}
+
 		DialogBuilder.info() //@formatter:off
 			.parent(this)
 			.title("Update complete")
@@ -666,6 +875,8 @@ public class MainFrame extends JFrame {
 	}
 
 	public void exit() {
+		inventoryTab.close();
+
 		WindowState state = WindowState.of(this);
 		if (!Boolean.TRUE.equals(state.getComponentValues().get("dateRange.range"))) {
 			Map<String, Object> map = new HashMap<>(state.getComponentValues());
@@ -676,6 +887,11 @@ public class MainFrame extends JFrame {
 		settings.setWindowState(state);
 		settings.save();
 
+		ProfileLoader profileLoader = context.get(ProfileLoader.class);
+		if (profileLoader != null) {
+			profileLoader.close();
+		}
+
 		System.exit(0);
 	}
 
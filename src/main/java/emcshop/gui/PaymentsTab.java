@@ -19,6 +19,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
 
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
@@ -33,7 +34,6 @@ import javax.swing.JTable;
 import javax.swing.RowSorter;
 import javax.swing.SortOrder;
 import javax.swing.SwingConstants;
-import javax.swing.SwingUtilities;
 import javax.swing.border.EmptyBorder;
 import javax.swing.table.AbstractTableModel;
 import javax.swing.table.TableCellRenderer;
@@ -253,6 +253,7 @@ public class PaymentsTab extends JPanel {
 		private final Column columns[] = Column.values();
 		private final Model model;
 		private final TableRowSorter<Model> rowSorter;
+		private final PlayerRepainter repainter = new PlayerRepainter(this::repaintPlayers);
 
 		public PaymentsTable(List<PaymentTransactionDb> rows) {
 			setRowHeight(24);
@@ -296,6 +297,16 @@ public class PaymentsTab extends JPanel {
 			});
 		}
 
+		/**
+		 * Repaints the visible cells of the given players (for example, when
+		 * their portraits are downloaded).
+		 * @param players the player names (in lower case)
+		 */
+		private void repaintPlayers(Set<String> players) {
+			int col = convertColumnIndexToView(Column.PLAYER.ordinal());
+			PlayerRepainter.repaintRows(this, col, players, row -> model.data.get(row).transaction.getPlayer());
+		}
+
 		public List<Row> getSelected() {
 			List<Row> selected = new ArrayList<>();
 			for (Row row : model.data) {
@@ -399,19 +410,7 @@ public class PaymentsTab extends JPanel {
 				case PLAYER:
 					component = playerPanel;
 
-					final String playerName = transaction.getPlayer();
-					playerPanel.setPlayer(playerName, downloadedProfile -> {
-						//re-render all cells with this player name when the profile is downloaded
-						SwingUtilities.invokeLater(() -> {
-							for (int i = 0; i < model.getRowCount(); i++) {
-								Row r = model.data.get(i);
-								String name = r.transaction.getPlayer();
-								if (playerName.equalsIgnoreCase(name)) {
-									model.fireTableCellUpdated(i, col);
-								}
-							}
-						});
-					});
+					playerPanel.setPlayer(transaction.getPlayer(), repainter);
 					break;
 
 				case REASON:
@@ -38,14 +38,29 @@ public class PlayerCellPanel extends JPanel {
 		add(serverLabel);
 	}
 
+	/**
+	 * Displays a player in a panel that is not used as a cell renderer.
+	 * @param playerName the player name
+	 */
 	public void setPlayer(String playerName) {
-		setPlayer(playerName, downloadedProfile -> profileLoader.getPortrait(playerName, playerLabel, 16));
+		ProfileDownloadedListener listener = downloadedProfile -> profileLoader.getPortrait(playerName, playerLabel, 16);
+		profileLoader.getPortrait(playerName, playerLabel, 16, listener);
+		setPlayer(playerName, listener);
 	}
 
-	public void setPlayer(String playerName, ProfileDownloadedListener listener) {
-		playerLabel.setText(playerName);
+	/**
+	 * Displays a player in a cell renderer.
+	 * @param playerName the player name
+	 * @param repainter repaints the cells of the player when their portrait
+	 * or profile becomes available
+	 */
+	public void setPlayer(String playerName, PlayerRepainter repainter) {
+		playerLabel.setIcon(profileLoader.getPortrait(playerName, 16, repainter.onPortraitLoaded(playerName), repainter.onProfileDownloaded()));
+		setPlayer(playerName, repainter.onProfileDownloaded());
+	}
 
-		profileLoader.getPortrait(playerName, playerLabel, 16, listener);
+	private void setPlayer(String playerName, ProfileDownloadedListener listener) {
+		playerLabel.setText(playerName);
 
 		PlayerProfile profile = profileLoader.getProfile(playerName, listener);
 		if (profile != null) {
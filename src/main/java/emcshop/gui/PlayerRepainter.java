@@ -0,0 +1,196 @@
+package emcshop.gui;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+import javax.swing.ImageIcon;
+import javax.swing.JList;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import emcshop.gui.ProfileLoader.ProfileDownloadedListener;
+
+/**
+ * <p>
+ * Repaints the parts of a component that display a player when that player's
+ * profile or portrait becomes available.
+ * </p>
+ * <p>
+ * Requests are coalesced: the players that change within a short period of
+ * time are collected and then repainted together in a single pass. It's up to
+ * the repaint handler to repaint only the visible parts of the component that
+ * display those players (see {@link #repaintRows} and {@link #repaintCells}).
+ * </p>
+ * @author Michael Angstadt
+ */
+public class PlayerRepainter {
+	/**
+	 * The default amount of time to collect players before repainting them (in
+	 * milliseconds).
+	 */
+	public static final int DEFAULT_DELAY = 100;
+
+	private final Consumer<Set<String>> repaint;
+	private final Timer timer;
+	private Set<String> pending = new HashSet<>();
+
+	private final ProfileDownloadedListener profileListener = profile -> playerChanged(profile.getPlayerName());
+
+	/**
+	 * @param repaint repaints the given players (called on the event dispatch
+	 * thread, player names are in lower case)
+	 */
+	public PlayerRepainter(Consumer<Set<String>> repaint) {
+		this(DEFAULT_DELAY, repaint);
+	}
+
+	/**
+	 * @param delay how long to collect players before repainting them (in
+	 * milliseconds)
+	 * @param repaint repaints the given players (called on the event dispatch
+	 * thread, player names are in lower case)
+	 */
+	public PlayerRepainter(int delay, Consumer<Set<String>> repaint) {
+		this.repaint = repaint;
+		timer = new Timer(delay, event -> flush());
+		timer.setRepeats(false);
+	}
+
+	/**
+	 * Schedules a player to be repainted. Can be called from any thread.
+	 * @param playerName the player name
+	 */
+	public void playerChanged(String playerName) {
+		if (playerName == null) {
+			return;
+		}
+
+		synchronized (this) {
+			if (!pending.add(playerName.toLowerCase(Locale.ROOT)) || pending.size() > 1) {
+				//the timer has already been started
+				return;
+			}
+		}
+
+		SwingUtilities.invokeLater(timer::restart);
+	}
+
+	/**
+	 * Gets a listener that schedules a repaint when a player's profile is
+	 * downloaded.
+	 * @return the listener
+	 */
+	public ProfileDownloadedListener onProfileDownloaded() {
+		return profileListener;
+	}
+
+	/**
+	 * Gets a callback that schedules a repaint when a player's portrait is
+	 * loaded from the disk cache.
+	 * @param playerName the player name
+	 * @return the callback
+	 */
+	public Consumer<ImageIcon> onPortraitLoaded(String playerName) {
+		return image -> playerChanged(playerName);
+	}
+
+	/**
+	 * Repaints all pending players immediately. Must be called on the event
+	 * dispatch thread.
+	 */
+	public void flush() {
+		Set<String> players;
+		synchronized (this) {
+			if (pending.isEmpty()) {
+				return;
+			}
+			players = Collections.unmodifiableSet(pending);
+			pending = new HashSet<>();
+		}
+
+		repaint.accept(players);
+	}
+
+	/**
+	 * Repaints the visible cells in a table column that contain any of the
+	 * given players.
+	 * @param table the table
+	 * @param column the column index (in the view)
+	 * @param players the players to repaint (in lower case)
+	 * @param playerAtModelRow gets the player name at the given model row
+	 */
+	public static void repaintRows(JTable table, int column, Set<String> players, IntFunction<String> playerAtModelRow) {
+		int[] range = visibleRows(table);
+		if (range == null) {
+			return;
+		}
+
+		for (int row = range[0]; row <= range[1]; row++) {
+			String playerName = playerAtModelRow.apply(table.convertRowIndexToModel(row));
+			if (playerName != null && players.contains(playerName.toLowerCase(Locale.ROOT))) {
+				table.repaint(table.getCellRect(row, column, false));
+			}
+		}
+	}
+
+	/**
+	 * Repaints the visible cells in a list that contain any of the given
+	 * players.
+	 * @param list the list
+	 * @param players the players to repaint (in lower case)
+	 * @param playerAt gets the player name at the given index
+	 */
+	public static void repaintCells(JList<?> list, Set<String> players, IntFunction<String> playerAt) {
+		int first = list.getFirstVisibleIndex();
+		int last = list.getLastVisibleIndex();
+		if (first < 0 || last < 0) {
+			return;
+		}
+
+		for (int i = first; i <= last; i++) {
+			String playerName = playerAt.apply(i);
+			if (playerName != null && players.contains(playerName.toLowerCase(Locale.ROOT))) {
+				Rectangle bounds = list.getCellBounds(i, i);
+				if (bounds != null) {
+					list.repaint(bounds);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Determines which rows of a table are visible.
+	 * @param table the table
+	 * @return the first and last visible rows (in the view) or null if no rows
+	 * are visible
+	 */
+	static int[] visibleRows(JTable table) {
+		if (table.getRowCount() == 0) {
+			return null;
+		}
+
+		Rectangle visible = table.getVisibleRect();
+		if (visible.isEmpty()) {
+			return null;
+		}
+
+		int first = table.rowAtPoint(visible.getLocation());
+		if (first < 0) {
+			return null;
+		}
+
+		int last = table.rowAtPoint(new Point(visible.x, visible.y + visible.height - 1));
+		if (last < 0) {
+			last = table.getRowCount() - 1;
+		}
+
+		return new int[] { first, last };
+	}
+}
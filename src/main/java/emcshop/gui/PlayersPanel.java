@@ -2,6 +2,7 @@ package emcshop.gui;
 
 import java.awt.Color;
 import java.awt.Component;
+import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
@@ -12,8 +13,11 @@ import java.time.format.FormatStyle;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 import javax.swing.ImageIcon;
@@ -37,7 +41,6 @@ import emcshop.db.Player;
 import emcshop.db.PlayerGroup;
 import emcshop.db.ShopTransactionType;
 import emcshop.gui.ItemsTable.Column;
-import emcshop.gui.ProfileLoader.ProfileDownloadedListener;
 import emcshop.gui.images.Images;
 import emcshop.gui.lib.ClickableLabel;
 import emcshop.scraper.PlayerProfile;
@@ -66,6 +69,9 @@ public class PlayersPanel extends JPanel {
 	private final ListMultimap<PlayerGroup, ItemGroup> itemGroups = ArrayListMultimap.create();
 	private List<PlayerGroup> displayedPlayers;
 	private ListMultimap<PlayerGroup, ItemGroup> displayedItems;
+	private Map<PlayerGroup, Integer> netTotals = new IdentityHashMap<>();
+	private final Map<String, Color> rankColors = new HashMap<>();
+	private int rankColorsGeneration;
 	private FilterList filteredPlayerNames = new FilterList();
 	private FilterList filteredItemNames = new FilterList();
 	private ItemsTable table = null;
@@ -161,6 +167,9 @@ public class PlayersPanel extends JPanel {
 		//filter items
 		displayedItems = filterItems(displayedPlayers);
 
+		//calculate each player's net total once, since it is used for sorting and rendering
+		netTotals = calculateNetTotals(displayedPlayers);
+
 		//sort data
 		sortData(displayedPlayers, displayedItems);
 
@@ -168,74 +177,9 @@ public class PlayersPanel extends JPanel {
 		table = null;
 
 		final JList<PlayerGroup> list = new JList<>(new Vector<>(displayedPlayers));
-		list.setCellRenderer(new ListCellRenderer<PlayerGroup>() {
-			private static final int profileImageSize = 32;
-			private final ProfileDownloadedListener onImageDownloaded = profile -> {
-				synchronized (this) {
-					list.repaint();
-				}
-			};
-
-			private final RupeeFormatter rf = new RupeeFormatter();
-			{
-				rf.setPlus(true);
-			}
-
-			@Override
-			public Component getListCellRendererComponent(JList<? extends PlayerGroup> list, PlayerGroup playerGroup, int index, boolean selected, boolean hasFocus) {
-				Player player = playerGroup.getPlayer();
-				String playerName = player.getName();
-
-				JPanel row = new JPanel(new MigLayout("insets 5"));
-				UIDefaultsWrapper.assignListFormats(row, selected);
-
-				JLabel profileImage = new JLabel();
-				profileImage.setHorizontalAlignment(SwingConstants.CENTER);
-				profileImage.setVerticalAlignment(SwingConstants.CENTER);
-
-				synchronized (this) {
-					profileLoader.getPortrait(playerName, profileImage, profileImageSize, onImageDownloaded);
-				}
-
-				row.add(profileImage, "w " + profileImageSize + "!, h " + profileImageSize + "!, span 1 2");
-
-				JLabel playerNameLabel = new JLabel(playerName);
-				EmcServer server = onlinePlayersMonitor.getPlayerServer(playerName);
-				if (server != null) {
-					playerNameLabel.setIcon(Images.getOnline(server, 16));
-					playerNameLabel.setHorizontalTextPosition(SwingConstants.LEFT);
-					playerNameLabel.setVerticalTextPosition(SwingConstants.TOP);
-				}
-				if (selected) {
-					playerNameLabel.setForeground(UIDefaultsWrapper.getListForegroundSelected());
-				} else {
-					PlayerProfile profile = profileLoader.getProfile(playerName, null);
-					if (profile != null) {
-						String rankColorStr = profile.getRankColor();
-						if (rankColorStr != null) {
-							try {
-								Color color = Color.decode(rankColorStr);
-								playerNameLabel.setForeground(color);
-							} catch (NumberFormatException e) {
-								/*
-								 * If the color string is not in the correct
-								 * format, ignore it.
-								 */
-							}
-						}
-					}
-				}
-				row.add(playerNameLabel, "gapbottom 0, wrap");
-
-				int netTotal = calculateNetTotal(playerGroup);
-				JLabel rupeeTotalLabel = new JLabel(rf.format(netTotal));
-				Color foreground = selected ? UIDefaultsWrapper.getListForegroundSelected() : BaseFormatter.getColor(netTotal);
-				rupeeTotalLabel.setForeground(foreground);
-				row.add(rupeeTotalLabel, "gaptop 0");
-
-				return row;
-			}
-		});
+		PlayerCellRenderer renderer = new PlayerCellRenderer(list);
+		list.setCellRenderer(renderer);
+		setFixedCellSize(list, renderer);
 		list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
 		list.addListSelectionListener(new ListSelectionListener() {
 			private Integer prevSelected;
@@ -256,7 +200,9 @@ public class PlayersPanel extends JPanel {
 				return (prevSelected != null && prevSelected == selectedIndex);
 			}
 		});
-		add(new MyJScrollPane(list), "w 450, growy");
+		MyJScrollPane scrollPane = new MyJScrollPane(list);
+		scrollPane.getViewport().addChangeListener(event -> prioritizeVisiblePlayers(list));
+		add(scrollPane, "w 450, growy");
 
 		tablesPanel = new JPanel(new MigLayout("insets 3, fillx"));
 		add(tablesPanel, "grow, w 100%, h 100%");
@@ -264,6 +210,25 @@ public class PlayersPanel extends JPanel {
 		validate();
 	}
 
+	/**
+	 * Moves the players that are visible in the list to the front of the
+	 * profile download queue.
+	 * @param list the list
+	 */
+	private void prioritizeVisiblePlayers(JList<PlayerGroup> list) {
+		int first = list.getFirstVisibleIndex();
+		int last = list.getLastVisibleIndex();
+		if (first < 0 || last < 0) {
+			return;
+		}
+
+		List<String> playerNames = new ArrayList<>(last - first + 1);
+		for (int i = first; i <= last; i++) {
+			playerNames.add(list.getModel().getElementAt(i).getPlayer().getName());
+		}
+		profileLoader.prioritize(playerNames);
+	}
+
 	private ImageIcon buildProfilePortrait(String playerName) {
 		ImageIcon portrait = profileLoader.getPortraitFromCache(playerName, profileImageSize);
 		if (portrait == null) {
@@ -432,13 +397,106 @@ public class PlayersPanel extends JPanel {
 	}
 
 	private int calculateNetTotal(PlayerGroup playerGroup) {
-		int total = 0;
+		Integer total = netTotals.get(playerGroup);
+		if (total != null) {
+			return total;
+		}
+
+		total = 0;
 		for (ItemGroup item : displayedItems.get(playerGroup)) {
 			total += item.getNetAmount();
 		}
 		return total;
 	}
 
+	private Map<PlayerGroup, Integer> calculateNetTotals(List<PlayerGroup> players) {
+		Map<PlayerGroup, Integer> netTotals = new IdentityHashMap<>(players.size());
+		for (PlayerGroup playerGroup : players) {
+			int total = 0;
+			for (ItemGroup item : displayedItems.get(playerGroup)) {
+				total += item.getNetAmount();
+			}
+			netTotals.put(playerGroup, total);
+		}
+		return netTotals;
+	}
+
+	/**
+	 * Gets the color of a player's rank. The color is decoded once and then
+	 * cached.
+	 * @param playerName the player name
+	 * @return the rank color or null if the player has no rank color or their
+	 * profile hasn't been downloaded yet
+	 */
+	Color getRankColor(String playerName) {
+		//the colors of private profiles can change once the user logs in
+		int generation = profileLoader.getCacheGeneration();
+		if (generation != rankColorsGeneration) {
+			rankColors.clear();
+			rankColorsGeneration = generation;
+		}
+
+		if (rankColors.containsKey(playerName)) {
+			return rankColors.get(playerName);
+		}
+
+		PlayerProfile profile = profileLoader.getProfile(playerName, null);
+		if (profile == null) {
+			//profile is being downloaded, so don't cache anything yet
+			return null;
+		}
+
+		Color color = null;
+		String rankColorStr = profile.getRankColor();
+		if (rankColorStr != null) {
+			try {
+				color = Color.decode(rankColorStr);
+			} catch (NumberFormatException e) {
+				/*
+				 * If the color string is not in the correct format, ignore
+				 * it.
+				 */
+			}
+		}
+		rankColors.put(playerName, color);
+		return color;
+	}
+
+	/**
+	 * Sets the list's cell size so it doesn't have to measure every cell. The
+	 * size is determined by rendering the player whose name is the widest.
+	 * @param list the list
+	 * @param renderer the list's cell renderer
+	 */
+	private void setFixedCellSize(JList<PlayerGroup> list, PlayerCellRenderer renderer) {
+		JLabel label = renderer.playerNameLabel;
+		PlayerGroup widest = getWidestPlayer(displayedPlayers, label.getFontMetrics(label.getFont()));
+		if (widest != null) {
+			list.setPrototypeCellValue(widest);
+		}
+	}
+
+	/**
+	 * Gets the player whose name takes up the most horizontal space when
+	 * drawn. The name with the most characters isn't necessarily the widest
+	 * one (for example, "WWWW" is wider than "iiiiii").
+	 * @param players the players
+	 * @param metrics the font the names are drawn with
+	 * @return the player or null if the collection is empty
+	 */
+	static PlayerGroup getWidestPlayer(Collection<PlayerGroup> players, FontMetrics metrics) {
+		PlayerGroup widest = null;
+		int widestWidth = -1;
+		for (PlayerGroup playerGroup : players) {
+			int width = metrics.stringWidth(playerGroup.getPlayer().getName());
+			if (width > widestWidth) {
+				widest = playerGroup;
+				widestWidth = width;
+			}
+		}
+		return widest;
+	}
+
 	private List<PlayerGroup> filterPlayers() {
 		if (filteredPlayerNames.isEmpty()) {
 			return new LinkedList<>(playerGroups);
@@ -500,19 +558,7 @@ public class PlayersPanel extends JPanel {
 			break;
 		case SUPPLIER:
 			//sort by net sold amount ascending
-			players.sort((a, b) -> {
-				int netA = 0;
-				for (ItemGroup item : items.get(a)) {
-					netA += item.getNetAmount();
-				}
-
-				int netB = 0;
-				for (ItemGroup item : items.get(b)) {
-					netB += item.getNetAmount();
-				}
-
-				return netA - netB;
-			});
+			players.sort((a, b) -> calculateNetTotal(a) - calculateNetTotal(b));
 
 			//sort each player's item list by item amount ascending
 			for (PlayerGroup group : players) {
@@ -521,19 +567,7 @@ public class PlayersPanel extends JPanel {
 			break;
 		case CUSTOMER:
 			//sort by net bought amount descending
-			players.sort((a, b) -> {
-				int netA = 0;
-				for (ItemGroup item : items.get(a)) {
-					netA += item.getNetAmount();
-				}
-
-				int netB = 0;
-				for (ItemGroup item : items.get(b)) {
-					netB += item.getNetAmount();
-				}
-
-				return netB - netA;
-			});
+			players.sort((a, b) -> calculateNetTotal(b) - calculateNetTotal(a));
 
 			//sort each player's item list by item amount descending
 			for (PlayerGroup group : players) {
@@ -543,6 +577,70 @@ public class PlayersPanel extends JPanel {
 		}
 	}
 
+	/**
+	 * Renders the cells of the player list. The same components are re-used
+	 * for every cell.
+	 */
+	private class PlayerCellRenderer extends JPanel implements ListCellRenderer<PlayerGroup> {
+		private static final int profileImageSize = 32;
+
+		private final JLabel profileImage = new JLabel();
+		private final JLabel playerNameLabel = new JLabel();
+		private final JLabel rupeeTotalLabel = new JLabel();
+		private final RupeeFormatter rf = new RupeeFormatter();
+
+		private final PlayerRepainter repainter;
+
+		/**
+		 * @param list the list this renderer belongs to
+		 */
+		public PlayerCellRenderer(JList<PlayerGroup> list) {
+			super(new MigLayout("insets 5"));
+			repainter = new PlayerRepainter(players -> PlayerRepainter.repaintCells(list, players, i -> list.getModel().getElementAt(i).getPlayer().getName()));
+			rf.setPlus(true);
+
+			profileImage.setHorizontalAlignment(SwingConstants.CENTER);
+			profileImage.setVerticalAlignment(SwingConstants.CENTER);
+			playerNameLabel.setHorizontalTextPosition(SwingConstants.LEFT);
+			playerNameLabel.setVerticalTextPosition(SwingConstants.TOP);
+
+			add(profileImage, "w " + profileImageSize + "!, h " + profileImageSize + "!, span 1 2");
+			add(playerNameLabel, "gapbottom 0, wrap");
+			add(rupeeTotalLabel, "gaptop 0");
+		}
+
+		@Override
+		public Component getListCellRendererComponent(JList<? extends PlayerGroup> list, PlayerGroup playerGroup, int index, boolean selected, boolean hasFocus) {
+			Player player = playerGroup.getPlayer();
+			String playerName = player.getName();
+
+			UIDefaultsWrapper.assignListFormats(this, selected);
+
+			profileImage.setIcon(profileLoader.getPortrait(playerName, profileImageSize, repainter.onPortraitLoaded(playerName), repainter.onProfileDownloaded()));
+
+			playerNameLabel.setText(playerName);
+			EmcServer server = onlinePlayersMonitor.getPlayerServer(playerName);
+			playerNameLabel.setIcon((server == null) ? null : Images.getOnline(server, 16));
+
+			Color nameColor;
+			if (selected) {
+				nameColor = UIDefaultsWrapper.getListForegroundSelected();
+			} else {
+				nameColor = getRankColor(playerName);
+				if (nameColor == null) {
+					nameColor = UIDefaultsWrapper.getLabelForeground();
+				}
+			}
+			playerNameLabel.setForeground(nameColor);
+
+			int netTotal = calculateNetTotal(playerGroup);
+			rupeeTotalLabel.setText(rf.format(netTotal));
+			rupeeTotalLabel.setForeground(selected ? UIDefaultsWrapper.getListForegroundSelected() : BaseFormatter.getColor(netTotal));
+
+			return this;
+		}
+	}
+
 	private enum Sort {
 		PLAYER, SUPPLIER, CUSTOMER
 	}
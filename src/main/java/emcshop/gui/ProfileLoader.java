@@ -2,18 +2,24 @@ package emcshop.gui;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.time.DateTimeException;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -21,17 +27,17 @@ import java.util.stream.Collectors;
 import javax.swing.ImageIcon;
 import javax.swing.JLabel;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ListMultimap;
 import com.google.common.net.UrlEscapers;
+import com.google.common.util.concurrent.RateLimiter;
 
 import emcshop.gui.images.Images;
 import emcshop.scraper.PlayerProfile;
@@ -42,25 +48,44 @@ import emcshop.util.ImageCache;
 import emcshop.util.PropertiesWrapper;
 
 /**
+ * <p>
  * Used for downloading player profile data.
+ * </p>
+ * <p>
+ * All download threads share a single HTTP client, so connections to the
+ * website are kept alive and reused. Players that are currently visible on
+ * the screen can be moved to the front of the queue (see {@link #prioritize}).
+ * The number of requests that are sent to the website is limited by a token
+ * bucket (see {@link #setRequestsPerSecond}).
+ * </p>
  */
 public class ProfileLoader {
 	private static final Logger logger = Logger.getLogger(ProfileLoader.class.getName());
 
-	private final Path cacheDir;
+	private final ProfilePack pack;
 	private final EmcWebsiteSessionFactory sessionFactory;
 	private final Set<String> downloaded = CaseInsensitiveHashSet.create();
 	private final ListMultimap<String, Job> waitList = CaseInsensitiveMultimap.create();
-	private final LinkedBlockingQueue<String> downloadQueue = new LinkedBlockingQueue<>();
+	private final PriorityBlockingQueue<QueueEntry> downloadQueue = new PriorityBlockingQueue<>();
+	private final Map<String, QueueEntry> queued = new HashMap<>();
+	private final AtomicLong queueSequence = new AtomicLong();
+	private final AtomicLong priorityGeneration = new AtomicLong();
+	private final AtomicInteger cacheGeneration = new AtomicInteger();
 	private final PlayerProfileSerializer profileSerializer = new PlayerProfileSerializer();
 
 	private final PortraitCache portraitCache = new PortraitCache();
 	private final ProfileCache profileCache = new ProfileCache();
 
 	private int threads = 4;
+	private final RateLimiter rateLimiter = RateLimiter.create(10);
+	private CloseableHttpClient client;
 
 	private PlayerProfileScraper scraper = new PlayerProfileScraper();
 
+	private final AtomicInteger fetched = new AtomicInteger();
+	private final AtomicLong totalFetchTime = new AtomicLong();
+	private final AtomicLong maxFetchTime = new AtomicLong();
+
 	/**
 	 * The number of items on the queue, plus the number of jobs currently being
 	 * processed by the threads (for unit testing purposes).
@@ -69,12 +94,13 @@ public class ProfileLoader {
 
 	/**
 	 * Creates a profile image loader.
-	 * @param cacheDir the directory where the images are cached
-	 * @param sessionFactory creates an HTTP connection that is used to download
-	 * profiles from the EMC website
+	 * @param cacheDir the directory where the profiles and images are cached
+	 * @param sessionFactory creates the HTTP client that is used to download
+	 * profiles from the EMC website (it is created once and shared by all the
+	 * download threads)
 	 */
 	public ProfileLoader(Path cacheDir, EmcWebsiteSessionFactory sessionFactory) {
-		this.cacheDir = cacheDir;
+		pack = new ProfilePack(cacheDir, 50 * 1024 * 1024);
 		this.sessionFactory = sessionFactory;
 	}
 
@@ -94,6 +120,43 @@ public class ProfileLoader {
 		this.threads = threads;
 	}
 
+	/**
+	 * Gets the size the profile cache can grow to before the least recently
+	 * used profiles are removed from it.
+	 * @return the size (in bytes)
+	 */
+	public long getCacheSize() {
+		return pack.getMaxSize();
+	}
+
+	/**
+	 * Sets the size the profile cache can grow to before the least recently
+	 * used profiles are removed from it.
+	 * @param cacheSize the size (in bytes, defaults to 50 MB)
+	 */
+	public void setCacheSize(long cacheSize) {
+		pack.setMaxSize(cacheSize);
+	}
+
+	/**
+	 * Gets the maximum number of HTTP requests that are sent to the website
+	 * per second.
+	 * @return the number of requests per second
+	 */
+	public double getRequestsPerSecond() {
+		return rateLimiter.getRate();
+	}
+
+	/**
+	 * Sets the maximum number of HTTP requests that are sent to the website
+	 * per second.
+	 * @param requestsPerSecond the number of requests per second (defaults to
+	 * 10)
+	 */
+	public void setRequestsPerSecond(double requestsPerSecond) {
+		rateLimiter.setRate(requestsPerSecond);
+	}
+
 	/**
 	 * Gets the object used to download and scrape the profile pages.
 	 * @return the profile page scraper
@@ -111,9 +174,25 @@ public class ProfileLoader {
 	}
 
 	/**
-	 * Starts the downloader threads.
+	 * Starts the downloader threads. Also moves any files that were cached by
+	 * older versions of the program into the cache's data file (this is done
+	 * in the background).
 	 */
 	public void start() {
+		client = sessionFactory.createSession(threads);
+
+		Thread migrateThread = new Thread(() -> {
+			try {
+				pack.migrateLooseFiles();
+			} catch (IOException e) {
+				logger.log(Level.WARNING, "Problem moving old profile cache files into the cache's data file.", e);
+			}
+		});
+		migrateThread.setDaemon(true);
+		migrateThread.setPriority(Thread.MIN_PRIORITY);
+		migrateThread.setName(getClass().getSimpleName() + "-migrate");
+		migrateThread.start();
+
 		for (int i = 0; i < threads; i++) {
 			LoadThread t = new LoadThread();
 			t.setDaemon(true); //terminate the thread when the program exits
@@ -141,15 +220,31 @@ public class ProfileLoader {
 	 * @param listener invoked when the image has been assigned to the label
 	 */
 	public void getPortrait(String playerName, JLabel label, int maxSize, ProfileDownloadedListener listener) {
-		ImageIcon image = getPortraitFromCache(playerName, maxSize);
+		label.setIcon(getPortrait(playerName, maxSize, label::setIcon, listener));
+	}
+
+	/**
+	 * Loads a profile image, queuing it for download if necessary. If the
+	 * image is not in the in-memory cache, it is loaded from the disk cache in
+	 * a background thread.
+	 * @param playerName the player name
+	 * @param maxSize the size to scale the image to
+	 * @param onLoaded invoked on the event dispatch thread if the image had to
+	 * be loaded from the disk cache
+	 * @param listener invoked when the player's profile has been downloaded
+	 * @return the image, or a placeholder image if it has to be loaded
+	 */
+	public ImageIcon getPortrait(String playerName, int maxSize, Consumer<ImageIcon> onLoaded, ProfileDownloadedListener listener) {
+		ImageIcon image = portraitCache.get(playerName, maxSize, () -> loadPortrait(playerName, maxSize), onLoaded);
 		if (image == null) {
 			image = portraitCache.unknown(maxSize);
 		}
-		label.setIcon(image);
 
 		//queue the image for download if necessary
 		Job job = new Job(playerName, listener);
 		queueJob(job);
+
+		return image;
 	}
 
 	/**
@@ -163,24 +258,41 @@ public class ProfileLoader {
 			return image;
 		}
 
-		Path file = portraitFile(playerName);
-		if (!Files.exists(file)) {
-			return null;
+		image = loadPortrait(playerName, maxSize);
+		if (image != null) {
+			portraitCache.put(playerName, maxSize, image);
 		}
+		return image;
+	}
 
-		//load the image from the file cache
-		byte data[] = null;
+	/**
+	 * Loads a profile image from the disk cache and scales it.
+	 * @param playerName the player name
+	 * @param maxSize the size to scale the image to
+	 * @return the image or null if no image exists in the cache
+	 */
+	private ImageIcon loadPortrait(String playerName, int maxSize) {
+		byte data[];
 		try {
-			data = Files.readAllBytes(file);
+			data = pack.getPortrait(playerName);
 		} catch (IOException e) {
 			logger.log(Level.SEVERE, "Problem loading profile image from cache.", e);
 			return null;
 		}
+		if (data == null) {
+			return null;
+		}
 
-		image = new ImageIcon(data);
-		image = Images.scale(image, maxSize);
-		portraitCache.put(playerName, maxSize, image);
-		return image;
+		ImageIcon image = new ImageIcon(data);
+		return Images.scale(image, maxSize);
+	}
+
+	/**
+	 * Gets the hit, miss, and eviction counts of the in-memory portrait cache.
+	 * @return the statistics
+	 */
+	public CacheStats getPortraitCacheStats() {
+		return portraitCache.getStats();
 	}
 
 	/**
@@ -227,6 +339,18 @@ public class ProfileLoader {
 		}
 
 		profileCache.clearPrivateProfiles();
+		cacheGeneration.incrementAndGet();
+	}
+
+	/**
+	 * Gets a number that changes whenever profiles are removed from the
+	 * in-memory cache (see {@link #clearPrivateProfilesFromCache}). Anything
+	 * that caches data taken from the profiles should discard that data when
+	 * this number changes.
+	 * @return the cache generation
+	 */
+	public int getCacheGeneration() {
+		return cacheGeneration.get();
 	}
 
 	private void queueJob(Job job) {
@@ -239,19 +363,10 @@ public class ProfileLoader {
 			//see if the image is already queued for download
 			if (!waitList.containsKey(job.playerName)) {
 				//player name is not queued for download, so add it to the queue
-				try {
-					jobsBeingProcessed.incrementAndGet();
-					downloadQueue.put(job.playerName);
-				} catch (InterruptedException e) {
-					/*
-					 * The "put" method will wait until there is enough room in
-					 * the queue before adding it to the queue. While it's
-					 * waiting, an InterruptedException could be thrown.
-					 * However, this should never happen because the queue
-					 * doesn't have a max size.
-					 */
-					logger.log(Level.SEVERE, "Queue's \"put\" operation was interrupted.", e);
-				}
+				jobsBeingProcessed.incrementAndGet();
+				QueueEntry entry = new QueueEntry(job.playerName, 0, queueSequence.getAndIncrement());
+				queued.put(key(job.playerName), entry);
+				downloadQueue.put(entry);
 			}
 
 			//add job to wait list
@@ -260,12 +375,88 @@ public class ProfileLoader {
 	}
 
 	/**
-	 * Gets the path to a player's cached profile image.
-	 * @param playerName the player name
-	 * @return the file path
+	 * Moves the given players to the front of the download queue. This should
+	 * be called with the players that are currently visible on the screen, so
+	 * their portraits are downloaded first. Players that are prioritized later
+	 * are downloaded before players that were prioritized earlier.
+	 * @param playerNames the player names (players that are not in the queue
+	 * are ignored)
+	 */
+	public void prioritize(Collection<String> playerNames) {
+		long priority = priorityGeneration.incrementAndGet();
+
+		synchronized (downloaded) {
+			for (String playerName : playerNames) {
+				QueueEntry entry = queued.get(key(playerName));
+				if (entry == null || entry.priority == priority) {
+					continue;
+				}
+
+				/*
+				 * The entry is only removed if it hasn't been taken off the
+				 * queue by a download thread yet.
+				 */
+				if (!downloadQueue.remove(entry)) {
+					continue;
+				}
+
+				QueueEntry prioritized = new QueueEntry(entry.playerName, priority, entry.sequence);
+				queued.put(key(playerName), prioritized);
+				downloadQueue.put(prioritized);
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of players that are waiting to be downloaded.
+	 * @return the queue length
+	 */
+	public int getQueueLength() {
+		return downloadQueue.size();
+	}
+
+	/**
+	 * Gets the number of profiles that have been downloaded since the loader
+	 * was started.
+	 * @return the number of profiles
+	 */
+	public int getFetchCount() {
+		return fetched.get();
+	}
+
+	/**
+	 * Gets the average time it took to download a profile, including its
+	 * portrait.
+	 * @return the average time
+	 */
+	public Duration getAverageFetchTime() {
+		int count = fetched.get();
+		return (count == 0) ? Duration.ZERO : Duration.ofNanos(totalFetchTime.get() / count);
+	}
+
+	/**
+	 * Gets the longest time it took to download a profile, including its
+	 * portrait.
+	 * @return the longest time
 	 */
-	private Path portraitFile(String playerName) {
-		return cacheDir.resolve(playerName.toLowerCase());
+	public Duration getMaxFetchTime() {
+		return Duration.ofNanos(maxFetchTime.get());
+	}
+
+	/**
+	 * Saves the profile cache's index to disk. This should be called when the
+	 * application exits.
+	 */
+	public void close() {
+		try {
+			pack.close();
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Problem closing profile cache.", e);
+		}
+	}
+
+	private static String key(String playerName) {
+		return playerName.toLowerCase();
 	}
 
 	/**
@@ -285,66 +476,69 @@ public class ProfileLoader {
 				//get the next player name
 				String playerName;
 				try {
-					playerName = downloadQueue.take();
+					QueueEntry entry = downloadQueue.take();
+					playerName = entry.playerName;
+					synchronized (downloaded) {
+						queued.remove(key(playerName));
+					}
 				} catch (InterruptedException e) {
 					break;
 				}
 
+				long started = System.nanoTime();
+
 				//scrape the profile page
 				PlayerProfile profile;
-				CloseableHttpClient client = sessionFactory.createSession(); //get the session information each time so the user's login session token can be used
 				try {
+					Document page = downloadProfilePage(playerName);
+					profile = scraper.scrapeProfile(playerName, page);
+				} catch (IOException e) {
+					profile = null;
+					logger.log(Level.WARNING, "Problem downloading player profile page.", e);
+				}
+
+				if (profile != null) {
+					//save profile data
 					try {
-						Document page = downloadProfilePage(playerName, client);
-						profile = scraper.scrapeProfile(playerName, page);
+						profileSerializer.save(profile);
+						profileCache.set(profile.getPlayerName(), profile);
 					} catch (IOException e) {
-						profile = null;
-						logger.log(Level.WARNING, "Problem downloading player profile page.", e);
+						logger.log(Level.WARNING, "Problem saving player profile data.", e);
 					}
 
-					if (profile != null) {
-						//save profile data
+					//download portrait
+					if (!profile.isPrivate()) {
+						Instant lastModified;
 						try {
-							profileSerializer.save(profile);
-							profileCache.set(profile.getPlayerName(), profile);
+							lastModified = pack.getPortraitLastModified(playerName);
 						} catch (IOException e) {
-							logger.log(Level.WARNING, "Problem saving player profile data.", e);
+							logger.log(Level.WARNING, "Problem determining last modified time of cached profile image.", e);
+							lastModified = null;
 						}
 
-						//download portrait
-						if (!profile.isPrivate()) {
-							Path cachedFile = portraitFile(playerName);
-							Instant lastModified;
-							try {
-								lastModified = Files.exists(cachedFile) ? Files.getLastModifiedTime(cachedFile).toInstant() : null;
-							} catch (IOException e) {
-								logger.log(Level.WARNING, "Problem determining last modified time of cached profile image.", e);
-								lastModified = null;
-							}
+						byte[] data;
+						try {
+							rateLimiter.acquire();
+							data = scraper.downloadPortrait(profile, lastModified, client);
+						} catch (IOException e) {
+							data = null;
+							logger.log(Level.WARNING, "Problem downloading profile image.", e);
+						}
 
-							byte[] data;
+						//save to cache
+						if (data != null) {
 							try {
-								data = scraper.downloadPortrait(profile, lastModified, client);
+								pack.putPortrait(playerName, data, Instant.now());
+								portraitCache.clear(playerName);
 							} catch (IOException e) {
-								data = null;
-								logger.log(Level.WARNING, "Problem downloading profile image.", e);
-							}
-
-							//save to cache
-							if (data != null) {
-								try {
-									Files.write(cachedFile, data);
-									portraitCache.clear(playerName);
-								} catch (IOException e) {
-									logger.log(Level.WARNING, "Problem saving image to cache.", e);
-								}
+								logger.log(Level.WARNING, "Problem saving image to cache.", e);
 							}
 						}
 					}
-				} finally {
-					IOUtils.closeQuietly(client);
 				}
 
+				recordFetchTime(playerName, System.nanoTime() - started);
+
 				List<Job> waiting;
 				synchronized (downloaded) {
 					downloaded.add(playerName);
@@ -373,13 +567,22 @@ public class ProfileLoader {
 			}
 		}
 
-		private Document downloadProfilePage(String playerName, HttpClient client) throws IOException {
+		private void recordFetchTime(String playerName, long nanos) {
+			fetched.incrementAndGet();
+			totalFetchTime.addAndGet(nanos);
+			maxFetchTime.accumulateAndGet(nanos, Math::max);
+
+			logger.fine("Downloaded profile of " + playerName + " in " + (nanos / 1_000_000) + " ms (" + downloadQueue.size() + " players remaining in queue).");
+		}
+
+		private Document downloadProfilePage(String playerName) throws IOException {
 			/*
 			 * EmcWebsiteConnection#getPlayerProfile cannot be used because its
 			 * HttpClient is configured to IGNORE redirects!
 			 */
 			String url = "https://u.emc.gs/" + UrlEscapers.urlPathSegmentEscaper().escape(playerName);
 			HttpGet request = new HttpGet(url);
+			rateLimiter.acquire();
 			HttpResponse response = client.execute(request);
 			HttpEntity entity = response.getEntity();
 
@@ -389,6 +592,29 @@ public class ProfileLoader {
 		}
 	}
 
+	/**
+	 * An entry in the download queue. Entries with a higher priority come
+	 * first. Entries with the same priority are downloaded in the order in
+	 * which they were queued.
+	 */
+	private static class QueueEntry implements Comparable<QueueEntry> {
+		private final String playerName;
+		private final long priority;
+		private final long sequence;
+
+		private QueueEntry(String playerName, long priority, long sequence) {
+			this.playerName = playerName;
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(QueueEntry that) {
+			int c = Long.compare(that.priority, this.priority);
+			return (c == 0) ? Long.compare(this.sequence, that.sequence) : c;
+		}
+	}
+
 	private static class Job {
 		private final String playerName;
 		private final ProfileDownloadedListener listener;
@@ -455,12 +681,12 @@ public class ProfileLoader {
 
 	private class PlayerProfileSerializer {
 		public PlayerProfile load(String playerName) throws IOException {
-			Path file = file(playerName);
-			if (!Files.exists(file)) {
+			byte[] data = pack.getProfile(playerName);
+			if (data == null) {
 				return null;
 			}
 
-			PropertiesWrapper properties = new PropertiesWrapper(file);
+			PropertiesWrapper properties = new PropertiesWrapper(new StringReader(new String(data, StandardCharsets.UTF_8)));
 
 			LocalDate joined;
 			try {
@@ -494,16 +720,21 @@ public class ProfileLoader {
 			properties.set("rankColor", profile.getRankColor());
 			properties.set("title", profile.getTitle());
 
-			Path file = file(profile.getPlayerName());
-			properties.store(file, "");
-		}
-
-		private Path file(String playerName) {
-			return cacheDir.resolve(playerName.toLowerCase() + ".properties");
+			StringWriter writer = new StringWriter();
+			properties.store(writer, "");
+			pack.putProfile(profile.getPlayerName(), writer.toString().getBytes(StandardCharsets.UTF_8));
 		}
 	}
 
 	public interface EmcWebsiteSessionFactory {
-		CloseableHttpClient createSession();
+		/**
+		 * Creates the HTTP client that is used to download the profiles. The
+		 * client is shared by all download threads and is used for the
+		 * lifetime of the loader, so it should keep connections alive and
+		 * attach the user's current login session to each request.
+		 * @param maxConnections the number of download threads
+		 * @return the HTTP client
+		 */
+		CloseableHttpClient createSession(int maxConnections);
 	}
 }
@@ -0,0 +1,632 @@
+package emcshop.gui;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ * Stores the player profile data and portraits that {@link ProfileLoader}
+ * downloads. Everything is stored in a single, append-only data file. Adding
+ * a new version of a player's portrait or profile appends a new record and
+ * leaves the old record behind as garbage.
+ * </p>
+ * <p>
+ * An index file records where each player's latest records are located and
+ * when they were last accessed. It is rewritten when the pack is closed and
+ * after it is compacted. Records that were appended after the index was last
+ * written are recovered by scanning the end of the data file.
+ * </p>
+ * <p>
+ * When the data file grows past its size limit, it is compacted. The garbage
+ * is removed and the least recently used players are dropped until the file
+ * is down to three quarters of the limit.
+ * </p>
+ * <p>
+ * Older versions stored each profile and portrait as an individual file.
+ * These files are moved into the pack by {@link #migrateLooseFiles}, which
+ * should be called from a background thread because it can take a while.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class ProfilePack implements Closeable {
+	private static final Logger logger = Logger.getLogger(ProfilePack.class.getName());
+
+	private static final byte PROFILE = 1, PORTRAIT = 2;
+
+	/**
+	 * type (1) + key length (2) + last modified (8) + data length (4)
+	 */
+	private static final int HEADER_SIZE = 15;
+
+	private static final int INDEX_VERSION = 1;
+
+	private final Path dir, dataFile, indexFile;
+	private long maxSize;
+
+	private FileChannel channel;
+	private Map<String, Entry> entries;
+
+	/**
+	 * The number of times the pack has been closed (lets
+	 * {@link #migrateLooseFiles} know when to stop).
+	 */
+	private int closes;
+
+	/**
+	 * @param dir the directory to store the pack in
+	 * @param maxSize the size the data file can grow to before it is
+	 * compacted (in bytes)
+	 */
+	public ProfilePack(Path dir, long maxSize) {
+		this.dir = dir;
+		this.maxSize = maxSize;
+		dataFile = dir.resolve("profiles.dat");
+		indexFile = dir.resolve("profiles.idx");
+	}
+
+	/**
+	 * Gets the size the data file can grow to before it is compacted.
+	 * @return the size (in bytes)
+	 */
+	public synchronized long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Sets the size the data file can grow to before it is compacted.
+	 * @param maxSize the size (in bytes)
+	 */
+	public synchronized void setMaxSize(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Gets a player's profile data.
+	 * @param player the player name
+	 * @return the profile data or null if not found
+	 * @throws IOException if there's a problem reading from the pack
+	 */
+	public synchronized byte[] getProfile(String player) throws IOException {
+		load();
+
+		Entry entry = access(player);
+		return (entry == null || entry.profile == null) ? null : read(entry.profile);
+	}
+
+	/**
+	 * Gets a player's portrait.
+	 * @param player the player name
+	 * @return the image data or null if not found
+	 * @throws IOException if there's a problem reading from the pack
+	 */
+	public synchronized byte[] getPortrait(String player) throws IOException {
+		load();
+
+		Entry entry = access(player);
+		return (entry == null || entry.portrait == null) ? null : read(entry.portrait);
+	}
+
+	/**
+	 * Gets the time a player's portrait was last modified.
+	 * @param player the player name
+	 * @return the time or null if the pack does not contain the player's
+	 * portrait
+	 * @throws IOException if there's a problem reading from the pack
+	 */
+	public synchronized Instant getPortraitLastModified(String player) throws IOException {
+		load();
+
+		Entry entry = entries.get(key(player));
+		return (entry == null || entry.portrait == null) ? null : Instant.ofEpochMilli(entry.portrait.lastModified);
+	}
+
+	/**
+	 * Adds a player's profile data, replacing the existing data.
+	 * @param player the player name
+	 * @param data the profile data
+	 * @throws IOException if there's a problem writing to the pack
+	 */
+	public synchronized void putProfile(String player, byte[] data) throws IOException {
+		load();
+		append(PROFILE, key(player), 0, data);
+		compactIfNecessary();
+	}
+
+	/**
+	 * Adds a player's portrait, replacing the existing portrait.
+	 * @param player the player name
+	 * @param data the image data
+	 * @param lastModified the time the portrait was last modified
+	 * @throws IOException if there's a problem writing to the pack
+	 */
+	public synchronized void putPortrait(String player, byte[] data, Instant lastModified) throws IOException {
+		load();
+		append(PORTRAIT, key(player), lastModified.toEpochMilli(), data);
+		compactIfNecessary();
+	}
+
+	/**
+	 * Gets the number of players in the pack.
+	 * @return the number of players
+	 * @throws IOException if there's a problem reading from the pack
+	 */
+	public synchronized int size() throws IOException {
+		load();
+		return entries.size();
+	}
+
+	/**
+	 * Gets the size of the data file.
+	 * @return the size (in bytes)
+	 * @throws IOException if there's a problem reading from the pack
+	 */
+	public synchronized long getDataSize() throws IOException {
+		load();
+		return channel.size();
+	}
+
+	/**
+	 * Writes the index file and closes the data file. The pack is reopened
+	 * if it is accessed again.
+	 * @throws IOException if there's a problem writing the index
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (channel == null) {
+			return;
+		}
+
+		try {
+			writeIndex();
+		} finally {
+			channel.close();
+			channel = null;
+			entries = null;
+			closes++;
+		}
+	}
+
+	/**
+	 * Removes the garbage from the data file, and drops the least recently
+	 * used players if the data file is larger than the size limit.
+	 * @throws IOException if there's a problem writing to the pack
+	 */
+	public synchronized void compact() throws IOException {
+		load();
+
+		List<Entry> byLastAccess = new ArrayList<>(entries.values());
+		byLastAccess.sort(Comparator.comparingLong((Entry entry) -> entry.lastAccess).reversed());
+
+		long target = maxSize / 4 * 3;
+		long size = 0;
+		List<Entry> keep = new ArrayList<>();
+		for (Entry entry : byLastAccess) {
+			size += entry.size();
+			if (size > target && !keep.isEmpty()) {
+				break;
+			}
+			keep.add(entry);
+		}
+
+		/*
+		 * The kept entries are copied so that the existing entries still
+		 * point to the old data file if the compaction fails.
+		 */
+		Map<String, Entry> kept = new HashMap<>();
+		Path tempFile = dir.resolve(dataFile.getFileName() + ".tmp");
+		try (FileChannel temp = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			for (Entry entry : keep) {
+				Entry copy = new Entry(entry.key);
+				copy.lastAccess = entry.lastAccess;
+				if (entry.profile != null) {
+					copy.profile = write(temp, PROFILE, entry.key, 0, read(entry.profile));
+				}
+				if (entry.portrait != null) {
+					copy.portrait = write(temp, PORTRAIT, entry.key, entry.portrait.lastModified, read(entry.portrait));
+				}
+				kept.put(copy.key, copy);
+			}
+		} catch (IOException e) {
+			Files.deleteIfExists(tempFile);
+			throw e;
+		}
+
+		//the data file has to be closed before it can be replaced on Windows
+		channel.close();
+		try {
+			Files.move(tempFile, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			//keep using the old data file
+			reopen();
+			Files.deleteIfExists(tempFile);
+			throw e;
+		}
+
+		logger.info("Compacted profile cache. " + kept.size() + " of " + entries.size() + " players kept.");
+
+		reopen();
+		entries = kept;
+
+		writeIndex();
+	}
+
+	/**
+	 * Reopens the data file after it was closed by {@link #compact}. If it
+	 * can't be reopened, the pack is loaded from scratch the next time it is
+	 * accessed.
+	 * @throws IOException if the data file can't be opened
+	 */
+	private void reopen() throws IOException {
+		try {
+			channel = FileChannel.open(dataFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		} catch (IOException e) {
+			channel = null;
+			entries = null;
+			throw e;
+		}
+	}
+
+	private void compactIfNecessary() throws IOException {
+		if (channel.size() > maxSize) {
+			compact();
+		}
+	}
+
+	private Entry access(String player) {
+		Entry entry = entries.get(key(player));
+		if (entry != null) {
+			entry.lastAccess = System.currentTimeMillis();
+		}
+		return entry;
+	}
+
+	/**
+	 * Opens the data file and loads the index.
+	 * @throws IOException if there's a problem reading the pack
+	 */
+	private void load() throws IOException {
+		if (channel != null) {
+			return;
+		}
+
+		Files.createDirectories(dir);
+		channel = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		entries = new HashMap<>();
+
+		long indexed = readIndex();
+		scan(indexed);
+	}
+
+	/**
+	 * Reads the index file.
+	 * @return the position in the data file that the index covers up to
+	 */
+	private long readIndex() {
+		if (!Files.exists(indexFile)) {
+			return 0;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+			if (in.readInt() != INDEX_VERSION) {
+				return 0;
+			}
+
+			long indexed = in.readLong();
+			if (indexed > channel.size()) {
+				//the data file was modified outside of this class
+				return 0;
+			}
+
+			int count = in.readInt();
+			Map<String, Entry> entries = new HashMap<>(count * 2);
+			for (int i = 0; i < count; i++) {
+				Entry entry = new Entry(in.readUTF());
+				entry.lastAccess = in.readLong();
+				entry.profile = readRecord(in);
+				entry.portrait = readRecord(in);
+				entries.put(entry.key, entry);
+			}
+
+			this.entries = entries;
+			return indexed;
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Profile cache index could not be read. Rebuilding it from the data file.", e);
+			entries = new HashMap<>();
+			return 0;
+		}
+	}
+
+	private static Record readRecord(DataInputStream in) throws IOException {
+		long offset = in.readLong();
+		if (offset < 0) {
+			return null;
+		}
+		return new Record(offset, in.readInt(), in.readLong());
+	}
+
+	private void writeIndex() throws IOException {
+		Path tempFile = dir.resolve(indexFile.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+			out.writeInt(INDEX_VERSION);
+			out.writeLong(channel.size());
+			out.writeInt(entries.size());
+			for (Entry entry : entries.values()) {
+				out.writeUTF(entry.key);
+				out.writeLong(entry.lastAccess);
+				writeRecord(out, entry.profile);
+				writeRecord(out, entry.portrait);
+			}
+		}
+		Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static void writeRecord(DataOutputStream out, Record record) throws IOException {
+		if (record == null) {
+			out.writeLong(-1);
+			return;
+		}
+
+		out.writeLong(record.offset);
+		out.writeInt(record.length);
+		out.writeLong(record.lastModified);
+	}
+
+	/**
+	 * Adds the records that are not in the index to the index. An incomplete
+	 * record at the end of the data file is discarded.
+	 * @param position the position to start scanning at
+	 * @throws IOException if there's a problem reading the data file
+	 */
+	private void scan(long position) throws IOException {
+		long size = channel.size();
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		while (position < size) {
+			((Buffer) header).clear();
+			if (!readFully(header, position)) {
+				break;
+			}
+			((Buffer) header).flip();
+
+			byte type = header.get();
+			int keyLength = header.getShort() & 0xffff;
+			long lastModified = header.getLong();
+			int length = header.getInt();
+
+			long dataOffset = position + HEADER_SIZE + keyLength;
+			if (dataOffset + length > size || (type != PROFILE && type != PORTRAIT)) {
+				break;
+			}
+
+			ByteBuffer key = ByteBuffer.allocate(keyLength);
+			readFully(key, position + HEADER_SIZE);
+			index(type, new String(key.array(), StandardCharsets.UTF_8), new Record(dataOffset, length, lastModified));
+
+			position = dataOffset + length;
+		}
+
+		if (position < size) {
+			logger.warning("Profile cache is incomplete, possibly because the application was terminated while it was being written to. Discarding incomplete data.");
+			channel.truncate(position);
+		}
+	}
+
+	/**
+	 * Imports the profiles and portraits that older versions stored as
+	 * individual files, and deletes the files. The pack is only locked while
+	 * each file is being imported, so the pack can still be used while this
+	 * method runs. If the pack already contains a newer copy of a file's data,
+	 * the file is deleted without being imported. If the pack is closed while
+	 * this method runs, the method stops without reopening it.
+	 * @return the number of files that were imported
+	 * @throws IOException if there's a problem listing the directory or
+	 * writing to the pack
+	 */
+	public int migrateLooseFiles() throws IOException {
+		List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+			for (Path file : stream) {
+				String name = file.getFileName().toString();
+				if (!Files.isRegularFile(file) || file.equals(dataFile) || file.equals(indexFile) || name.equals("_cache-version") || name.endsWith(".tmp")) {
+					continue;
+				}
+				if (name.endsWith(".properties") || name.indexOf('.') < 0) {
+					files.add(file);
+				}
+			}
+		} catch (NoSuchFileException e) {
+			return 0;
+		}
+
+		if (files.isEmpty()) {
+			return 0;
+		}
+
+		int closes;
+		synchronized (this) {
+			closes = this.closes;
+		}
+
+		int count = 0;
+		for (Path file : files) {
+			try {
+				Boolean imported = migrate(file, closes);
+				if (imported == null) {
+					//the pack was closed, so don't reopen it
+					return count;
+				}
+				if (imported) {
+					count++;
+				}
+			} catch (IOException e) {
+				logger.log(Level.WARNING, "Could not move " + file + " into the profile cache.", e);
+			}
+		}
+
+		synchronized (this) {
+			if (closes != this.closes) {
+				return count;
+			}
+			if (count > 0) {
+				logger.info("Moved " + count + " profile cache files into " + dataFile + ".");
+			}
+			load();
+			writeIndex();
+			compactIfNecessary();
+		}
+		return count;
+	}
+
+	/**
+	 * Imports a single file from the old cache format and deletes it.
+	 * @param file the file
+	 * @param closes the number of times the pack had been closed when the
+	 * migration started
+	 * @return true if the file was imported, false if it was deleted without
+	 * being imported, or null if the pack has been closed since the migration
+	 * started
+	 * @throws IOException if there's a problem reading the file or writing to
+	 * the pack
+	 */
+	private synchronized Boolean migrate(Path file, int closes) throws IOException {
+		if (closes != this.closes) {
+			return null;
+		}
+		load();
+
+		String name = file.getFileName().toString();
+		boolean profile = name.endsWith(".properties");
+		String key = key(profile ? name.substring(0, name.length() - ".properties".length()) : name);
+
+		//a newer copy might have been downloaded since the application started
+		Entry entry = entries.get(key);
+		boolean exists = (entry != null) && ((profile ? entry.profile : entry.portrait) != null);
+		if (!exists) {
+			byte[] data = Files.readAllBytes(file);
+			if (profile) {
+				append(PROFILE, key, 0, data);
+			} else {
+				append(PORTRAIT, key, Files.getLastModifiedTime(file).toMillis(), data);
+			}
+		}
+
+		Files.delete(file);
+		return !exists;
+	}
+
+	private void append(byte type, String key, long lastModified, byte[] data) throws IOException {
+		index(type, key, write(channel, type, key, lastModified, data)).lastAccess = System.currentTimeMillis();
+	}
+
+	private Entry index(byte type, String key, Record record) {
+		Entry entry = entries.computeIfAbsent(key, Entry::new);
+		if (type == PROFILE) {
+			entry.profile = record;
+		} else {
+			entry.portrait = record;
+		}
+		return entry;
+	}
+
+	private static Record write(FileChannel channel, byte type, String key, long lastModified, byte[] data) throws IOException {
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + keyBytes.length + data.length);
+		buffer.put(type);
+		buffer.putShort((short) keyBytes.length);
+		buffer.putLong(lastModified);
+		buffer.putInt(data.length);
+		buffer.put(keyBytes);
+		buffer.put(data);
+		((Buffer) buffer).flip();
+
+		long position = channel.size();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, position + buffer.position());
+		}
+
+		return new Record(position + HEADER_SIZE + keyBytes.length, data.length, lastModified);
+	}
+
+	private byte[] read(Record record) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(record.length);
+		if (!readFully(buffer, record.offset)) {
+			throw new IOException("Unexpected end of profile cache data file.");
+		}
+		return buffer.array();
+	}
+
+	private boolean readFully(ByteBuffer buffer, long position) throws IOException {
+		int start = buffer.position();
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position() - start) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String key(String player) {
+		return player.toLowerCase();
+	}
+
+	/**
+	 * The latest records of a player.
+	 */
+	private static class Entry {
+		private final String key;
+		private Record profile, portrait;
+		private long lastAccess;
+
+		public Entry(String key) {
+			this.key = key;
+		}
+
+		public long size() {
+			long size = 0;
+			if (profile != null) {
+				size += HEADER_SIZE + key.length() + profile.length;
+			}
+			if (portrait != null) {
+				size += HEADER_SIZE + key.length() + portrait.length;
+			}
+			return size;
+		}
+	}
+
+	/**
+	 * The location of a record's data in the data file.
+	 */
+	private static class Record {
+		private final long offset;
+		private final int length;
+		private final long lastModified;
+
+		public Record(long offset, int length, long lastModified) {
+			this.offset = offset;
+			this.length = length;
+			this.lastModified = lastModified;
+		}
+	}
+}
@@ -0,0 +1,376 @@
+package emcshop.gui;
+
+import java.awt.Component;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.ButtonGroup;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JRadioButton;
+import javax.swing.JTable;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableRowSorter;
+
+import org.apache.commons.lang3.StringUtils;
+
+import emcshop.db.DbDao;
+import emcshop.db.ShopTransactionType;
+import emcshop.gui.images.Images;
+import emcshop.gui.lib.JNumberTextField;
+import emcshop.query.AggregateQuery;
+import emcshop.query.AggregateRow;
+import emcshop.query.Dimension;
+import emcshop.query.Measure;
+import emcshop.query.QueryEngine;
+import emcshop.util.DateRange;
+import emcshop.util.RupeeFormatter;
+import net.miginfocom.swing.MigLayout;
+
+/**
+ * Groups the shop transactions by the dimensions the user chooses and
+ * calculates the measures the user chooses for each group (see
+ * {@link QueryEngine}). The query runs in the background on its own database
+ * connection.
+ * @author Michael Angstadt
+ */
+@SuppressWarnings("serial")
+public class QueryTab extends JPanel {
+	private final MainFrame owner;
+	private final DbDao dao;
+
+	private final DateRangePanel dateRange;
+	private final JRadioButton shopTransactions, myTransactions, bothTransactions;
+	private final Map<Dimension, JCheckBox> dimensions = new LinkedHashMap<>();
+	private final Map<Measure, JCheckBox> measures = new LinkedHashMap<>();
+	private final JComboBox<String> sortBy;
+	private final JCheckBox descending;
+	private final JNumberTextField limit;
+	private final JButton runQuery;
+
+	private final JLabel dateRangeQueried;
+	private final JLabel rowCount;
+	private final AggregateTable table;
+
+	public QueryTab(MainFrame owner, DbDao dao) {
+		this.owner = owner;
+		this.dao = dao;
+
+		dateRange = new DateRangePanel(dao);
+		dateRange.reset();
+
+		ButtonGroup transactionTypeGroup = new ButtonGroup();
+		shopTransactions = new JRadioButton("My Shop", true);
+		transactionTypeGroup.add(shopTransactions);
+		myTransactions = new JRadioButton("Other Shops");
+		transactionTypeGroup.add(myTransactions);
+		bothTransactions = new JRadioButton("Both");
+		transactionTypeGroup.add(bothTransactions);
+
+		for (Dimension dimension : Dimension.values()) {
+			JCheckBox checkBox = new JCheckBox(dimension.getName(), dimension == Dimension.ITEM);
+			dimensions.put(dimension, checkBox);
+		}
+
+		sortBy = new JComboBox<>();
+		sortBy.addItem("(groups)");
+		for (Measure measure : Measure.values()) {
+			JCheckBox checkBox = new JCheckBox(measure.getName(), measure == Measure.SUM_AMOUNT || measure == Measure.SUM_QUANTITY || measure == Measure.COUNT);
+			measures.put(measure, checkBox);
+			sortBy.addItem(measure.getName());
+		}
+
+		descending = new JCheckBox("descending");
+
+		limit = new JNumberTextField(6);
+		limit.setAllowNegative(false);
+		limit.setToolTipText("The maximum number of rows to show (leave blank to show all rows).");
+
+		runQuery = new JButton("Run Query", Images.SEARCH);
+		runQuery.addActionListener(event -> onRunQuery());
+
+		dateRangeQueried = new JLabel();
+		rowCount = new JLabel();
+		table = new AggregateTable();
+
+		///////////////////////////////////////
+
+		setLayout(new MigLayout("fillx, insets 5"));
+
+		JPanel left = new JPanel(new MigLayout("insets 0"));
+		left.add(dateRange, "wrap");
+		left.add(shopTransactions, "split 3");
+		left.add(myTransactions);
+		left.add(bothTransactions);
+		add(left, "growy");
+
+		JPanel dimensionsPanel = new JPanel(new MigLayout("insets 0"));
+		dimensionsPanel.add(new JLabel("<html><b>Group by:</b></html>"), "wrap");
+		addCheckBoxes(dimensionsPanel, dimensions.values());
+		add(dimensionsPanel, "growy");
+
+		JPanel measuresPanel = new JPanel(new MigLayout("insets 0"));
+		measuresPanel.add(new JLabel("<html><b>Calculate:</b></html>"), "wrap");
+		addCheckBoxes(measuresPanel, measures.values());
+		add(measuresPanel, "growy");
+
+		JPanel right = new JPanel(new MigLayout("insets 0"));
+		right.add(new JLabel("Sort by:"), "split 3");
+		right.add(sortBy);
+		right.add(descending, "wrap");
+		right.add(new JLabel("Limit:"), "split 2");
+		right.add(limit, "w 60, wrap");
+		right.add(runQuery);
+		add(right, "growy, wrap");
+
+		add(dateRangeQueried, "gaptop 20, span 4, split 2, w 100%");
+		add(rowCount, "align right, wrap");
+
+		add(new MyJScrollPane(table), "span 4, grow, w 100%, h 100%");
+	}
+
+	/**
+	 * Removes the results of the last query.
+	 */
+	public void clear() {
+		dateRange.reset();
+		dateRangeQueried.setText("");
+		rowCount.setText("");
+		table.setData(Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+	}
+
+	private static void addCheckBoxes(JPanel panel, Iterable<JCheckBox> checkBoxes) {
+		int column = 0;
+		for (JCheckBox checkBox : checkBoxes) {
+			panel.add(checkBox, (column % 3 == 2) ? "wrap" : "");
+			column++;
+		}
+	}
+
+	private void onRunQuery() {
+		if (!dateRange.checkDateRange()) {
+			return;
+		}
+
+		List<Measure> selectedMeasures = selected(measures);
+		if (selectedMeasures.isEmpty()) {
+			DialogBuilder.info() //@formatter:off
+				.parent(this)
+				.title("No measures selected")
+				.text("Select at least one value to calculate.")
+			.show(); //@formatter:on
+			return;
+		}
+
+		List<Dimension> selectedDimensions = selected(dimensions);
+		int sortByIndex = sortBy.getSelectedIndex();
+		Measure sortByMeasure = (sortByIndex == 0) ? null : Measure.values()[sortByIndex - 1];
+		String limitText = limit.getText().trim();
+		Integer limitValue = limitText.isEmpty() ? null : Integer.valueOf(limitText);
+		if (limitValue != null && limitValue < 1) {
+			limitValue = null;
+		}
+
+		DateRange range = dateRange.getDateRange();
+
+		//@formatter:off
+		AggregateQuery query = new AggregateQuery.Builder()
+			.groupBy(selectedDimensions)
+			.measures(selectedMeasures)
+			.from(range.getFrom())
+			.to(range.getTo())
+			.transactionType(getTransactionType())
+			.sortBy(sortByMeasure, descending.isSelected())
+			.limit(limitValue)
+		.build();
+		//@formatter:on
+
+		owner.startProgress("Querying...");
+		Thread t = new Thread(() -> {
+			try {
+				List<AggregateRow> rows;
+				DbDao reader = dao.openReader();
+				try {
+					rows = new QueryEngine(reader).execute(query);
+				} finally {
+					reader.close();
+				}
+
+				SwingUtilities.invokeAndWait(() -> {
+					dateRangeQueried.setText("<html>" + DateRangePanel.describe(range) + "</html>");
+					rowCount.setText(rows.size() + " rows");
+					table.setData(query.getDimensions(), query.getMeasures(), rows);
+				});
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			} finally {
+				SwingUtilities.invokeLater(owner::stopProgress);
+			}
+		});
+		t.start();
+	}
+
+	private ShopTransactionType getTransactionType() {
+		if (shopTransactions.isSelected()) {
+			return ShopTransactionType.MY_SHOP;
+		}
+		if (myTransactions.isSelected()) {
+			return ShopTransactionType.OTHER_SHOPS;
+		}
+		return ShopTransactionType.ALL;
+	}
+
+	private static <T> List<T> selected(Map<T, JCheckBox> checkBoxes) {
+		List<T> selected = new ArrayList<>();
+		for (Map.Entry<T, JCheckBox> entry : checkBoxes.entrySet()) {
+			if (entry.getValue().isSelected()) {
+				selected.add(entry.getKey());
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * Formats the value of a measure for display.
+	 * @param measure the measure
+	 * @param value the value (may be null)
+	 * @return the formatted value
+	 */
+	static String format(Measure measure, Number value) {
+		if (value == null) {
+			return "-";
+		}
+
+		switch (measure) {
+		case SUM_AMOUNT:
+			return new RupeeFormatter().format(value.doubleValue());
+		case AVG_AMOUNT:
+		case UNIT_PRICE:
+			return new RupeeFormatter(2).format(value.doubleValue());
+		default:
+			NumberFormat nf = measure.isWholeNumber() ? NumberFormat.getIntegerInstance() : new DecimalFormat("#,##0.00");
+			return nf.format(value);
+		}
+	}
+
+	/**
+	 * Displays the results of a query. The columns depend on the query's
+	 * dimensions and measures. Clicking on a column header sorts by that
+	 * column.
+	 */
+	private static class AggregateTable extends JTable {
+		private final Model model = new Model();
+
+		public AggregateTable() {
+			setModel(model);
+			getTableHeader().setReorderingAllowed(false);
+			setColumnSelectionAllowed(false);
+			setRowHeight(24);
+
+			setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
+				@Override
+				public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int col) {
+					int column = convertColumnIndexToModel(col);
+					String text;
+					if (model.isDimension(column)) {
+						text = model.getDimension(column).format(value);
+						setHorizontalAlignment(SwingConstants.LEFT);
+					} else {
+						text = format(model.getMeasure(column), (Number) value);
+						setHorizontalAlignment(SwingConstants.RIGHT);
+					}
+					return super.getTableCellRendererComponent(table, text, isSelected, hasFocus, row, col);
+				}
+			});
+		}
+
+		public void setData(List<Dimension> dimensions, List<Measure> measures, List<AggregateRow> rows) {
+			model.setData(dimensions, measures, rows);
+
+			//every column holds values of the same type, so they can be compared directly
+			TableRowSorter<Model> sorter = new TableRowSorter<>(model);
+			Comparator<Object> comparator = Comparator.nullsFirst((a, b) -> compare(a, b));
+			for (int i = 0; i < model.getColumnCount(); i++) {
+				sorter.setComparator(i, comparator);
+			}
+			setRowSorter(sorter);
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private static int compare(Object a, Object b) {
+			if (a instanceof Number && b instanceof Number) {
+				return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+			}
+			return ((Comparable) a).compareTo(b);
+		}
+	}
+
+	private static class Model extends AbstractTableModel {
+		private List<Dimension> dimensions = Collections.emptyList();
+		private List<Measure> measures = Collections.emptyList();
+		private List<AggregateRow> rows = Collections.emptyList();
+
+		public void setData(List<Dimension> dimensions, List<Measure> measures, List<AggregateRow> rows) {
+			this.dimensions = dimensions;
+			this.measures = measures;
+			this.rows = rows;
+			fireTableStructureChanged();
+		}
+
+		public boolean isDimension(int column) {
+			return column < dimensions.size();
+		}
+
+		public Dimension getDimension(int column) {
+			return dimensions.get(column);
+		}
+
+		public Measure getMeasure(int column) {
+			return measures.get(column - dimensions.size());
+		}
+
+		@Override
+		public int getColumnCount() {
+			return dimensions.size() + measures.size();
+		}
+
+		@Override
+		public String getColumnName(int column) {
+			String name = isDimension(column) ? getDimension(column).getName() : getMeasure(column).getName();
+			return StringUtils.capitalize(name);
+		}
+
+		@Override
+		public int getRowCount() {
+			return rows.size();
+		}
+
+		@Override
+		public Object getValueAt(int row, int column) {
+			AggregateRow aggregateRow = rows.get(row);
+			return isDimension(column) ? aggregateRow.getValue(column) : aggregateRow.get(getMeasure(column));
+		}
+
+		@Override
+		public Class<?> getColumnClass(int column) {
+			return Object.class;
+		}
+
+		@Override
+		public boolean isCellEditable(int row, int column) {
+			return false;
+		}
+	}
+}
@@ -124,9 +124,13 @@ public class TransactionsTab extends JPanel implements ExportListener {
 			playersPanel.filterByPlayers(players);
 		}
 		if (transactionsTable != null) {
-			transactionsTable.filterByItem(items);
-			transactionsTable.filterByPlayers(players);
-			transactionsTableScrollPane.scrollToTop();
+			MyJScrollPane scrollPane = transactionsTableScrollPane;
+			transactionsTable.filter(items, players, () -> {
+				scrollPane.scrollToTop();
+				updateNetTotal();
+				updateCustomers();
+			});
+			return;
 		}
 
 		updateNetTotal();
@@ -4,6 +4,8 @@ import java.awt.Color;
 import java.awt.Component;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
@@ -12,7 +14,6 @@ import java.util.Set;
 
 import javax.swing.ImageIcon;
 import javax.swing.JComponent;
-import javax.swing.JLabel;
 import javax.swing.JTable;
 import javax.swing.RowFilter;
 import javax.swing.RowSorter;
@@ -24,12 +25,16 @@ import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableColumn;
 import javax.swing.table.TableRowSorter;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+
 import emcshop.AppContext;
 import emcshop.ItemIndex;
 import emcshop.Settings;
 import emcshop.db.ShopTransactionDb;
 import emcshop.db.ShopTransactionType;
 import emcshop.gui.images.Images;
+import emcshop.gui.lib.CachingLabel;
 import emcshop.util.QuantityFormatter;
 import emcshop.util.RelativeDateFormat;
 import emcshop.util.RupeeFormatter;
@@ -65,17 +70,19 @@ public class TransactionsTable extends JTable {
 	private final Model model;
 	private final TableRowSorter<Model> rowSorter;
 	private final ShopTransactionType transactionType;
+	private final Renderer renderer;
+	private final PlayerRepainter repainter = new PlayerRepainter(this::repaintPlayers);
 
 	private boolean showQuantitiesInStacks;
-	private FilterList filteredPlayerNames = new FilterList();
-	private FilterList filteredItemNames = new FilterList();
+	private int filterGeneration;
 
 	public TransactionsTable(List<ShopTransactionDb> transactions, ShopTransactionType transactionType) {
 		this.transactionType = transactionType;
 		this.showQuantitiesInStacks = context.get(Settings.class).isShowQuantitiesInStacks();
 
 		setRowHeight(24);
-		setDefaultRenderer(ShopTransactionDb.class, new Renderer());
+		renderer = new Renderer();
+		setDefaultRenderer(ShopTransactionDb.class, renderer);
 
 		model = new Model(transactions);
 		setModel(model);
@@ -172,40 +179,65 @@ public class TransactionsTable extends JTable {
 		}
 	}
 
-	public void filterByItem(FilterList filterList) {
-		filteredItemNames = filterList;
-		filter();
-	}
+	/**
+	 * Repaints the visible cells of the given players (for example, when their
+	 * portraits are downloaded).
+	 * @param players the player names (in lower case)
+	 */
+	private void repaintPlayers(Set<String> players) {
+		int[] range = PlayerRepainter.visibleRows(this);
+		if (range == null) {
+			return;
+		}
 
-	public void filterByPlayers(FilterList filterList) {
-		filteredPlayerNames = filterList;
-		filter();
+		int col = convertColumnIndexToView(Column.PLAYER_NAME.ordinal());
+		for (String player : players) {
+			for (int modelRow : model.rowsByPlayer.get(player)) {
+				int row = convertRowIndexToView(modelRow);
+				if (row >= range[0] && row <= range[1]) {
+					repaint(getCellRect(row, col, false));
+				}
+			}
+		}
 	}
 
-	public void filter() {
-		if (filteredItemNames.isEmpty() && filteredPlayerNames.isEmpty()) {
-			rowSorter.setRowFilter(null);
-			return;
-		}
+	/**
+	 * Filters the table. The rows to display are determined in a background
+	 * thread, and then applied to the table all at once.
+	 * @param items the items to filter by
+	 * @param players the players to filter by
+	 * @param onFiltered called on the event dispatch thread after the filter
+	 * has been applied (not called if another filter is applied in the
+	 * meantime)
+	 */
+	public void filter(FilterList items, FilterList players, Runnable onFiltered) {
+		int generation = ++filterGeneration;
 
-		rowSorter.setRowFilter(new RowFilter<Model, Integer>() {
-			@Override
-			public boolean include(RowFilter.Entry<? extends Model, ? extends Integer> entry) {
-				int row = entry.getIdentifier();
-				ShopTransactionDb transaction = model.transactions.get(row);
+		Thread t = new Thread(() -> {
+			BitSet included = model.filter(items, players);
 
-				if (!filteredItemNames.isFiltered(transaction.getItem())) {
-					return false;
+			SwingUtilities.invokeLater(() -> {
+				if (generation != filterGeneration) {
+					//a newer filter was applied
+					return;
 				}
 
-				if (filteredPlayerNames.isEmpty()) {
-					return true;
+				if (included == null) {
+					rowSorter.setRowFilter(null);
+				} else {
+					rowSorter.setRowFilter(new RowFilter<Model, Integer>() {
+						@Override
+						public boolean include(RowFilter.Entry<? extends Model, ? extends Integer> entry) {
+							return included.get(entry.getIdentifier());
+						}
+					});
 				}
 
-				String name = getPlayerName(transaction);
-				return filteredPlayerNames.isFiltered(name);
-			}
-		});
+				onFiltered.run();
+			});
+		}, getClass().getSimpleName() + " filter");
+		t.setDaemon(true);
+		t.start();
 	}
 
 	public void setShowQuantitiesInStacks(boolean enable) {
@@ -213,17 +245,22 @@ public class TransactionsTable extends JTable {
 
 		//re-render the "quantity" column
 		int col = Column.QUANTITY.ordinal();
+		renderer.label.invalidate(col);
 		for (int row = 0; row < model.getRowCount(); row++) {
 			model.fireTableCellUpdated(row, col);
 		}
 	}
 
+	/**
+	 * Renders the cells. The text of the item, quantity, and amount cells is
+	 * cached, since it contains HTML that is expensive to build and parse.
+	 */
 	private class Renderer implements TableCellRenderer {
 		private final Color evenRowColor = new Color(255, 255, 255);
 		private final Color oddRowColor = new Color(240, 240, 240);
 		private final ItemIndex index = ItemIndex.instance();
 
-		private final JLabel label = new JLabel();
+		private final CachingLabel label = new CachingLabel();
 		{
 			label.setOpaque(true);
 			label.setBorder(new EmptyBorder(4, 4, 4, 4));
@@ -265,26 +302,13 @@ public class TransactionsTable extends JTable {
 			case PLAYER_NAME:
 				component = playerPanel;
 
-				String playerName = getPlayerName(transaction);
-				playerPanel.setPlayer(playerName, profile -> {
-					//re-render all cells with this player when the profile is downloaded
-					SwingUtilities.invokeLater(() -> {
-						for (int i = 0; i < model.getRowCount(); i++) {
-							ShopTransactionDb shopTransaction = model.transactions.get(i);
-							String name = getPlayerName(shopTransaction);
-							if (playerName.equalsIgnoreCase(name)) {
-								model.fireTableCellUpdated(i, col);
-							}
-						}
-					});
-				});
+				playerPanel.setPlayer(getPlayerName(transaction), repainter);
 				break;
 
 			case ITEM_NAME:
 				component = label;
 
-				String name = transaction.getItem();
-				label.setText("<html>" + ItemIndex.instance().getItemNameFormatted(name, true));
+				label.setText(transaction, col, () -> "<html>" + index.getItemNameFormatted(transaction.getItem(), true));
 
 				ImageIcon icon = Images.getItemImage(transaction.getItem());
 				label.setIcon(icon);
@@ -293,15 +317,17 @@ public class TransactionsTable extends JTable {
 			case QUANTITY:
 				component = label;
 
-				int quantity = transaction.getQuantity();
-				int stackSize = showQuantitiesInStacks ? index.getStackSize(transaction.getItem()) : 1;
-				label.setText("<html>" + qf.format(quantity, stackSize));
+				label.setText(transaction, col, () -> {
+					int quantity = transaction.getQuantity();
+					int stackSize = showQuantitiesInStacks ? index.getStackSize(transaction.getItem()) : 1;
+					return "<html>" + qf.format(quantity, stackSize);
+				});
 				break;
 
 			case AMOUNT:
 				component = label;
 
-				label.setText("<html>" + rf.format(transaction.getAmount()));
+				label.setText(transaction, col, () -> "<html>" + rf.format(transaction.getAmount()));
 				break;
 			}
 
@@ -321,8 +347,76 @@ public class TransactionsTable extends JTable {
 	private class Model extends AbstractTableModel {
 		private final List<ShopTransactionDb> transactions;
 
+		/**
+		 * The model row indexes of each player's transactions (player names
+		 * are converted using {@link FilterList#key}).
+		 */
+		private final ListMultimap<String, Integer> rowsByPlayer = ArrayListMultimap.create();
+
+		/**
+		 * The model row indexes of each item's transactions (item names are
+		 * converted using {@link FilterList#key}).
+		 */
+		private final ListMultimap<String, Integer> rowsByItem = ArrayListMultimap.create();
+
 		public Model(List<ShopTransactionDb> transactions) {
 			this.transactions = transactions;
+
+			for (int i = 0; i < transactions.size(); i++) {
+				ShopTransactionDb transaction = transactions.get(i);
+
+				String playerName = getPlayerName(transaction);
+				if (playerName != null) {
+					rowsByPlayer.put(FilterList.key(playerName), i);
+				}
+
+				rowsByItem.put(FilterList.key(transaction.getItem()), i);
+			}
+		}
+
+		/**
+		 * Determines which rows match the given filters. Each distinct item
+		 * and player name is only checked once. Safe to call from any thread.
+		 * @param items the items to filter by
+		 * @param players the players to filter by
+		 * @return the model indexes of the matching rows or null if there are
+		 * no filters
+		 */
+		public BitSet filter(FilterList items, FilterList players) {
+			BitSet included = null;
+
+			if (!items.isEmpty()) {
+				included = matchingRows(rowsByItem, items);
+			}
+
+			if (!players.isEmpty()) {
+				BitSet playerRows = matchingRows(rowsByPlayer, players);
+				if (included == null) {
+					included = playerRows;
+				} else {
+					included.and(playerRows);
+				}
+			}
+
+			return included;
+		}
+
+		private BitSet matchingRows(ListMultimap<String, Integer> index, FilterList filterList) {
+			BitSet rows = new BitSet(transactions.size());
+
+			//if there are only whole-match keywords, the matching rows can be looked up directly
+			Collection<String> keys = filterList.hasPartialMatches() ? index.keySet() : filterList.getWholeMatches();
+
+			for (String key : keys) {
+				if (!filterList.isFilteredKey(key)) {
+					continue;
+				}
+				for (int row : index.get(key)) {
+					rows.set(row);
+				}
+			}
+
+			return rows;
 		}
 
 		@Override
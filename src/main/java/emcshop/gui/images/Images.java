@@ -1,5 +1,6 @@
 package emcshop.gui.images;
 
+import java.awt.image.BufferedImage;
 import java.net.URL;
 
 import javax.swing.Icon;
@@ -100,30 +101,55 @@ public final class Images {
 	 * @return the item image or an empty image if none can be found
 	 */
 	public static ImageIcon getItemImage(String item) {
+		return getItemImage(item, 16);
+	}
+
+	/**
+	 * Gets an item image.
+	 * @param item the item name (e.g. "Diamond")
+	 * @param size the size of the image
+	 * @return the item image or an empty image if none can be found
+	 */
+	public static ImageIcon getItemImage(String item, int size) {
 		URL imageUrl = itemIndex.getImage(item);
 		if (imageUrl == null) {
-			return getEmptyImage();
+			return getEmptyImage(size);
 		}
 
-		String key = imageUrl.getFile();
-		ImageIcon image = imageCache.get(key, 16);
+		String path = imageUrl.getPath();
+		String fileName = path.substring(path.lastIndexOf('/') + 1);
+		ImageIcon image = imageCache.get(fileName, size);
 		if (image == null) {
-			image = scale(new ImageIcon(imageUrl), 16);
-			imageCache.put(key, 16, image);
+			image = loadItemImage(fileName, imageUrl, size);
+			imageCache.put(fileName, size, image);
 		}
 		return image;
 	}
 
-	private static ImageIcon getEmptyImage() {
-		String key = "_empty";
-		ImageIcon image = imageCache.get(key, 16);
+	private static ImageIcon getEmptyImage(int size) {
+		String fileName = "_empty.png";
+		ImageIcon image = imageCache.get(fileName, size);
 		if (image == null) {
-			image = scale(get("items/_empty.png"), 16);
-			imageCache.put(key, 16, image);
+			image = loadItemImage(fileName, Images.class.getResource("items/" + fileName), size);
+			imageCache.put(fileName, size, image);
 		}
 		return image;
 	}
 
+	/**
+	 * Loads an item image from the item atlas, falling back to the individual
+	 * image file if the atlas does not contain it.
+	 * @param fileName the file name of the image
+	 * @param url the URL of the individual image file
+	 * @param size the size to scale the image to
+	 * @return the image
+	 */
+	private static ImageIcon loadItemImage(String fileName, URL url, int size) {
+		BufferedImage icon = ItemAtlas.instance().get(fileName);
+		ImageIcon image = (icon == null) ? new ImageIcon(url) : new ImageIcon(icon);
+		return scale(image, size);
+	}
+
 	/**
 	 * Scales an image.
 	 * @param image the image to scale
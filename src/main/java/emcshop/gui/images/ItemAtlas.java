@@ -0,0 +1,129 @@
+package emcshop.gui.images;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.imageio.ImageIO;
+
+/**
+ * <p>
+ * Holds all the item icons in a single image, so the icons don't have to be
+ * loaded from the classpath and decoded one at a time. The atlas image is
+ * decoded once, and each icon is a view into it (no pixel data is copied).
+ * </p>
+ * <p>
+ * The atlas is generated from the individual images in the "items" directory
+ * by {@code ItemAtlasBuilder} (in the test source tree), which must be re-run
+ * whenever an item image is added or changed.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class ItemAtlas {
+	private static final Logger logger = Logger.getLogger(ItemAtlas.class.getName());
+
+	/**
+	 * The classpath location of the atlas image, relative to this class.
+	 */
+	public static final String IMAGE = "items-atlas.png";
+
+	/**
+	 * The classpath location of the atlas index, relative to this class. Each
+	 * line contains the file name of an icon and its position and size in the
+	 * atlas image: "NAME X Y WIDTH HEIGHT".
+	 */
+	public static final String INDEX = "items-atlas.txt";
+
+	private static ItemAtlas instance;
+
+	private final Map<String, BufferedImage> icons;
+
+	/**
+	 * Gets the atlas, loading it from the classpath if necessary.
+	 * @return the atlas (empty if it could not be loaded)
+	 */
+	public static synchronized ItemAtlas instance() {
+		if (instance == null) {
+			try {
+				instance = load(ItemAtlas.class.getResourceAsStream(IMAGE), ItemAtlas.class.getResourceAsStream(INDEX));
+			} catch (IOException | RuntimeException e) {
+				logger.log(Level.WARNING, "Item icon atlas could not be loaded. Icons will be loaded individually.", e);
+				instance = new ItemAtlas(new HashMap<>());
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * Loads an atlas.
+	 * @param image the atlas image
+	 * @param index the atlas index
+	 * @return the atlas
+	 * @throws IOException if there's a problem reading the atlas
+	 */
+	public static ItemAtlas load(InputStream image, InputStream index) throws IOException {
+		if (image == null || index == null) {
+			throw new IOException("Item icon atlas not found.");
+		}
+
+		BufferedImage atlas;
+		try (InputStream in = image) {
+			atlas = ImageIO.read(in);
+		}
+		if (atlas == null) {
+			throw new IOException("Item icon atlas could not be decoded.");
+		}
+
+		Map<String, BufferedImage> icons = new HashMap<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(index, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty()) {
+					continue;
+				}
+
+				String[] split = line.split(" ");
+				if (split.length != 5) {
+					throw new IOException("Invalid item icon atlas index line: " + line);
+				}
+
+				int x = Integer.parseInt(split[1]);
+				int y = Integer.parseInt(split[2]);
+				int width = Integer.parseInt(split[3]);
+				int height = Integer.parseInt(split[4]);
+				icons.put(split[0], atlas.getSubimage(x, y, width, height));
+			}
+		}
+
+		return new ItemAtlas(icons);
+	}
+
+	private ItemAtlas(Map<String, BufferedImage> icons) {
+		this.icons = icons;
+	}
+
+	/**
+	 * Gets an icon.
+	 * @param fileName the file name of the icon in the "items" directory
+	 * (e.g. "diamond.png")
+	 * @return the icon or null if the atlas does not contain it
+	 */
+	public BufferedImage get(String fileName) {
+		return icons.get(fileName);
+	}
+
+	/**
+	 * Gets the number of icons in the atlas.
+	 * @return the number of icons
+	 */
+	public int size() {
+		return icons.size();
+	}
+}
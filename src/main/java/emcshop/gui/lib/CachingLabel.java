@@ -0,0 +1,198 @@
+package emcshop.gui.lib;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.util.function.Supplier;
+
+import javax.swing.JLabel;
+import javax.swing.plaf.basic.BasicHTML;
+import javax.swing.text.View;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * <p>
+ * A label for use in table cell renderers that caches the text of each cell
+ * it renders, along with the parsed HTML of that text.
+ * </p>
+ * <p>
+ * Normally, a {@link JLabel} re-parses its HTML every time its text is set,
+ * which means every visible cell is re-parsed every time the table is
+ * repainted (for example, while scrolling). This label only builds the text
+ * and parses the HTML the first time a cell is rendered. The cache is bounded,
+ * so it only holds the cells that were most recently rendered.
+ * </p>
+ * <p>
+ * Cells are identified by the row object (compared by identity) and the
+ * column index. If the row objects are replaced, the old cells are never
+ * requested again and are eventually evicted. If something else changes what
+ * a cell looks like (for example, a display setting), call
+ * {@link #invalidate(int)}.
+ * </p>
+ * @author Michael Angstadt
+ */
+@SuppressWarnings("serial")
+public class CachingLabel extends JLabel {
+	/**
+	 * The default number of cells to cache.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 1000;
+
+	private final Cache<Key, Cell> cache;
+
+	/**
+	 * Creates a label that caches the default number of cells.
+	 */
+	public CachingLabel() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * @param maxSize the number of cells to cache
+	 */
+	public CachingLabel(int maxSize) {
+		//the HTML is parsed by this class, not by the label UI
+		putClientProperty(BasicHTML.propertyKey, null);
+		putClientProperty("html.disable", Boolean.TRUE);
+
+		cache = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+	}
+
+	/**
+	 * Sets the text of a cell, building and parsing it only if the cell is not
+	 * in the cache.
+	 * @param row the row object
+	 * @param column the column index
+	 * @param text builds the cell text (may return null)
+	 * @return the cell text
+	 */
+	public String setText(Object row, int column, Supplier<String> text) {
+		Key key = new Key(row, column);
+		Cell cell = cache.getIfPresent(key);
+		if (cell == null) {
+			String value = text.get();
+			cell = new Cell(value, createView(value));
+			cache.put(key, cell);
+		}
+
+		setText(cell.text, cell.view);
+		return cell.text;
+	}
+
+	/**
+	 * Sets text that is not cached.
+	 * @param text the text
+	 */
+	@Override
+	public void setText(String text) {
+		setText(text, createView(text));
+	}
+
+	private void setText(String text, View view) {
+		/*
+		 * Remove the current view first. Otherwise, the label UI will detach
+		 * the view from its children when the text changes, which would break
+		 * the cached copy.
+		 */
+		putClientProperty(BasicHTML.propertyKey, null);
+		super.setText(text);
+		putClientProperty(BasicHTML.propertyKey, view);
+	}
+
+	/**
+	 * Removes all the cells in a column from the cache.
+	 * @param column the column index
+	 */
+	public void invalidate(int column) {
+		cache.asMap().keySet().removeIf(key -> key.column == column);
+	}
+
+	/**
+	 * Empties the cache.
+	 */
+	public void invalidateAll() {
+		if (cache != null) { //called by the super class constructor
+			cache.invalidateAll();
+		}
+	}
+
+	/**
+	 * Gets the number of cells in the cache.
+	 * @return the number of cells
+	 */
+	public long getCacheSize() {
+		return cache.size();
+	}
+
+	@Override
+	public void setFont(Font font) {
+		if (font != null && font.equals(getFont())) {
+			return;
+		}
+
+		//the cached views were created using the old font
+		putClientProperty(BasicHTML.propertyKey, null);
+		super.setFont(font);
+		invalidateAll();
+	}
+
+	@Override
+	public void setForeground(Color color) {
+		if (color != null && color.equals(getForeground())) {
+			return;
+		}
+
+		//the cached views were created using the old color
+		putClientProperty(BasicHTML.propertyKey, null);
+		super.setForeground(color);
+		invalidateAll();
+	}
+
+	@Override
+	public void updateUI() {
+		putClientProperty(BasicHTML.propertyKey, null);
+		super.updateUI();
+		invalidateAll();
+	}
+
+	private View createView(String text) {
+		return BasicHTML.isHTMLString(text) ? BasicHTML.createHTMLView(this, text) : null;
+	}
+
+	private static class Cell {
+		private final String text;
+		private final View view;
+
+		public Cell(String text, View view) {
+			this.text = text;
+			this.view = view;
+		}
+	}
+
+	/**
+	 * Identifies a cell in the cache. The row object is compared by identity.
+	 */
+	private static class Key {
+		private final Object row;
+		private final int column;
+
+		public Key(Object row, int column) {
+			this.row = row;
+			this.column = column;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(row) + column;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof Key)) return false;
+			Key other = (Key) obj;
+			return row == other.row && column == other.column;
+		}
+	}
+}
@@ -1,22 +1,39 @@
 package emcshop.model;
 
+import java.awt.event.ActionListener;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import emcshop.AppContext;
 import emcshop.Settings;
+import emcshop.chat.ChatLogIndex;
 import emcshop.chat.ChatLogParser;
+import emcshop.chat.ChatLogTail;
 import emcshop.chat.ChatMessage;
+import emcshop.chat.ChatSearchIndex;
+import emcshop.chat.ChatSearchQuery;
 import emcshop.db.PaymentTransactionDb;
+import emcshop.util.GuiUtils;
+import emcshop.util.Listeners;
 
 public class ChatLogViewerModelImpl implements IChatLogViewerModel {
+	private static final Logger logger = Logger.getLogger(ChatLogViewerModelImpl.class.getName());
 	private static final AppContext context = AppContext.instance();
+	private static final long LIVE_TAIL_POLL_INTERVAL = 2000;
 
 	private final Settings settings = context.get(Settings.class);
 	private final PaymentTransactionDb paymentTransaction;
+	private final Listeners searchCompleteListeners = new Listeners();
+	private final Listeners newMessagesListeners = new Listeners();
+	private final List<ChatMessage> newMessages = new ArrayList<>();
 	private ChatLogParser parser;
+	private ChatLogTail tail;
+	private volatile List<ChatMessage> searchResults;
 
 	public ChatLogViewerModelImpl() {
 		this(null);
@@ -24,7 +41,7 @@ public class ChatLogViewerModelImpl implements IChatLogViewerModel {
 
 	public ChatLogViewerModelImpl(PaymentTransactionDb paymentTransaction) {
 		this.paymentTransaction = paymentTransaction;
-		parser = new ChatLogParser(getLogDirectory());
+		parser = createParser(getLogDirectory());
 	}
 
 	@Override
@@ -34,9 +51,51 @@ public class ChatLogViewerModelImpl implements IChatLogViewerModel {
 
 	@Override
 	public void setLogDirectory(Path dir) {
-		parser = new ChatLogParser(dir);
+		ChatLogIndex index = context.get(ChatLogIndex.class);
+		if (index != null && !index.getLogDirectory().equals(dir)) {
+			index = new ChatLogIndex(dir, index.getIndexFile());
+			context.set(index);
+			index.updateInBackground();
+		}
+		context.remove(ChatSearchIndex.class);
+
+		parser = createParser(dir);
 		settings.setChatLogDir(dir);
 		settings.save();
+
+		if (tail != null) {
+			startLiveTail();
+		}
+	}
+
+	/**
+	 * Gets the search index for the given log directory. The index is kept in
+	 * the app context so it only has to be built once per session.
+	 * @param dir the log directory
+	 * @return the search index
+	 */
+	private static synchronized ChatSearchIndex getSearchIndex(Path dir) {
+		ChatSearchIndex searchIndex = context.get(ChatSearchIndex.class);
+		if (searchIndex != null && searchIndex.getLogDirectory().equals(dir)) {
+			return searchIndex;
+		}
+
+		ChatLogIndex index = context.get(ChatLogIndex.class);
+		if (index == null || !index.getLogDirectory().equals(dir)) {
+			index = new ChatLogIndex(dir, null);
+		}
+
+		searchIndex = new ChatSearchIndex(index);
+		context.set(searchIndex);
+		return searchIndex;
+	}
+
+	private static ChatLogParser createParser(Path dir) {
+		ChatLogIndex index = context.get(ChatLogIndex.class);
+		if (index != null && !index.getLogDirectory().equals(dir)) {
+			index = null;
+		}
+		return new ChatLogParser(dir, index);
 	}
 
 	@Override
@@ -57,4 +116,87 @@ public class ChatLogViewerModelImpl implements IChatLogViewerModel {
 	public String getCurrentPlayer() {
 		return settings.getUsername();
 	}
+
+	@Override
+	public void addSearchCompleteListener(ActionListener listener) {
+		searchCompleteListeners.add(listener);
+	}
+
+	@Override
+	public Thread startSearch(ChatSearchQuery query) {
+		ChatSearchIndex searchIndex = getSearchIndex(getLogDirectory());
+
+		searchResults = null;
+		Thread t = new Thread(() -> {
+			try {
+				searchResults = searchIndex.search(query);
+			} catch (IOException e) {
+				logger.log(Level.WARNING, "Could not search chat logs.", e);
+			} finally {
+				GuiUtils.fireEventsLater(searchCompleteListeners);
+			}
+		});
+		t.setDaemon(true);
+		t.start();
+		return t;
+	}
+
+	@Override
+	public List<ChatMessage> getSearchResults() {
+		return searchResults;
+	}
+
+	@Override
+	public void addNewMessagesListener(ActionListener listener) {
+		newMessagesListeners.add(listener);
+	}
+
+	@Override
+	public synchronized void startLiveTail() {
+		stopLiveTail();
+
+		Path dir = getLogDirectory();
+		tail = new ChatLogTail(dir);
+		tail.addListener((date, start, end, messages) -> {
+			ChatSearchIndex searchIndex = context.get(ChatSearchIndex.class);
+			if (searchIndex != null && searchIndex.getLogDirectory().equals(dir)) {
+				searchIndex.append(date, start, end, messages);
+			}
+
+			if (start == 0) {
+				//Minecraft may have archived the previous "latest.log" file
+				ChatLogIndex index = context.get(ChatLogIndex.class);
+				if (index != null && index.getLogDirectory().equals(dir)) {
+					index.updateInBackground();
+				}
+			}
+
+			if (messages.isEmpty()) {
+				return;
+			}
+
+			synchronized (newMessages) {
+				newMessages.addAll(messages);
+			}
+			GuiUtils.fireEventsLater(newMessagesListeners);
+		});
+		tail.start(LIVE_TAIL_POLL_INTERVAL);
+	}
+
+	@Override
+	public synchronized void stopLiveTail() {
+		if (tail != null) {
+			tail.stop();
+			tail = null;
+		}
+	}
+
+	@Override
+	public List<ChatMessage> takeNewMessages() {
+		synchronized (newMessages) {
+			List<ChatMessage> messages = new ArrayList<>(newMessages);
+			newMessages.clear();
+			return messages;
+		}
+	}
 }
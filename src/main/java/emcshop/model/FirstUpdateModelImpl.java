@@ -1,12 +1,28 @@
 package emcshop.model;
 
+import java.sql.SQLException;
 import java.time.Duration;
 
-import emcshop.EMCShopkeeper;
+import emcshop.AppContext;
+import emcshop.Settings;
+import emcshop.db.DbDao;
 
 public class FirstUpdateModelImpl implements IFirstUpdateModel {
+	private static final AppContext context = AppContext.instance();
+
+	private UpdateTimeEstimator estimator;
+
 	@Override
 	public Duration getEstimatedTime(Integer stopAtPage) {
-		return EMCShopkeeper.estimateUpdateTime(stopAtPage);
+		if (estimator == null) {
+			Settings settings = context.get(Settings.class);
+			int threads = (settings == null) ? 0 : settings.getDownloadThreads();
+			try {
+				estimator = UpdateTimeEstimator.fromUpdateLog(context.get(DbDao.class), threads);
+			} catch (SQLException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return estimator.estimate(stopAtPage);
 	}
 }
@@ -1,10 +1,12 @@
 package emcshop.model;
 
+import java.awt.event.ActionListener;
 import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.List;
 
 import emcshop.chat.ChatMessage;
+import emcshop.chat.ChatSearchQuery;
 import emcshop.db.PaymentTransactionDb;
 
 public interface IChatLogViewerModel {
@@ -17,4 +19,39 @@ public interface IChatLogViewerModel {
 	List<ChatMessage> getChatMessages(LocalDate date);
 
 	String getCurrentPlayer();
+
+	void addSearchCompleteListener(ActionListener listener);
+
+	/**
+	 * Searches all of the chat logs in a background thread.
+	 * @param query the search criteria
+	 * @return the thread
+	 */
+	Thread startSearch(ChatSearchQuery query);
+
+	/**
+	 * Gets the results of the last search.
+	 * @return the matching messages
+	 */
+	List<ChatMessage> getSearchResults();
+
+	void addNewMessagesListener(ActionListener listener);
+
+	/**
+	 * Starts watching the "latest.log" file for new chat messages in a
+	 * background thread.
+	 */
+	void startLiveTail();
+
+	/**
+	 * Stops watching the "latest.log" file.
+	 */
+	void stopLiveTail();
+
+	/**
+	 * Gets the chat messages that were logged since the last time this method
+	 * was called.
+	 * @return the new messages
+	 */
+	List<ChatMessage> takeNewMessages();
 }
@@ -89,6 +89,13 @@ public interface IUpdateModel {
 	 */
 	LocalDateTime getOldestParsedTransactionDate();
 
+	/**
+	 * Gets the timing information of the download (how long each stage took,
+	 * download and insert rates, etc).
+	 * @return the metrics or null if the download hasn't started yet
+	 */
+	UpdateMetrics getMetrics();
+
 	/**
 	 * Gets the time that the download started.
 	 * @return the download start time
@@ -0,0 +1,211 @@
+package emcshop.model;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+import emcshop.util.LatencyHistogram;
+
+/**
+ * Keeps track of where the time goes during an update.
+ * @author Michael Angstadt
+ */
+public class UpdateMetrics {
+	/**
+	 * The stages of an update.
+	 */
+	public enum Stage {
+		/**
+		 * Time spent waiting on the transaction reader. This includes the time
+		 * it takes to download the pages and to parse them, since the reader
+		 * does both in its own background threads.
+		 */
+		DOWNLOAD("Download/parse"),
+
+		/**
+		 * Time spent resolving the item names in shop transactions.
+		 */
+		ITEM_NAMES("Item names"),
+
+		/**
+		 * Time spent inserting transactions into the database.
+		 */
+		INSERT("DB insert"),
+
+		/**
+		 * Time spent committing the transactions to the database.
+		 */
+		COMMIT("DB commit");
+
+		private final String display;
+
+		private Stage(String display) {
+			this.display = display;
+		}
+
+		/**
+		 * Gets the display name of the stage.
+		 * @return the display name
+		 */
+		public String getDisplay() {
+			return display;
+		}
+	}
+
+	/**
+	 * The weight given to the most recent page when calculating the moving
+	 * average of the time between pages.
+	 */
+	private static final double PAGE_INTERVAL_WEIGHT = 0.2;
+
+	private final long started;
+	private final Map<Stage, Long> stageNanos = new EnumMap<>(Stage.class);
+	private final LatencyHistogram insertLatency = new LatencyHistogram();
+	private int pages, rows;
+	private Long finished;
+
+	/*
+	 * Exponentially-weighted moving average of the time between pages, so that
+	 * the download rate reflects how fast pages are being downloaded now
+	 * (pages further back in the history take longer to download).
+	 */
+	private long lastPage;
+	private double pageIntervalNanos;
+
+	public UpdateMetrics() {
+		started = lastPage = System.nanoTime();
+		for (Stage stage : Stage.values()) {
+			stageNanos.put(stage, 0L);
+		}
+	}
+
+	/**
+	 * Records the time a stage took to complete.
+	 * @param stage the stage
+	 * @param startNanos the value of {@link System#nanoTime} when the stage
+	 * started
+	 * @return the current value of {@link System#nanoTime}
+	 */
+	public synchronized long record(Stage stage, long startNanos) {
+		long now = System.nanoTime();
+		long elapsed = now - startNanos;
+		stageNanos.put(stage, stageNanos.get(stage) + elapsed);
+		if (stage == Stage.INSERT) {
+			insertLatency.add(elapsed);
+			rows++;
+		}
+		return now;
+	}
+
+	/**
+	 * Records the time it took to insert several rows into the database at
+	 * once. Each row is counted as taking an equal share of the time.
+	 * @param startNanos the value of {@link System#nanoTime} when the insert
+	 * started
+	 * @param count the number of rows that were inserted
+	 * @return the current value of {@link System#nanoTime}
+	 */
+	public synchronized long recordInserts(long startNanos, int count) {
+		long now = System.nanoTime();
+		long elapsed = now - startNanos;
+		stageNanos.put(Stage.INSERT, stageNanos.get(Stage.INSERT) + elapsed);
+		for (int i = 0; i < count; i++) {
+			insertLatency.add(elapsed / count);
+		}
+		rows += count;
+		return now;
+	}
+
+	/**
+	 * Records that a page finished downloading.
+	 */
+	public synchronized void pageDownloaded() {
+		long now = System.nanoTime();
+		long interval = now - lastPage;
+		pageIntervalNanos = (pages == 0) ? interval : (PAGE_INTERVAL_WEIGHT * interval) + ((1 - PAGE_INTERVAL_WEIGHT) * pageIntervalNanos);
+		lastPage = now;
+		pages++;
+	}
+
+	/**
+	 * Stops the clock that is used to calculate the rates.
+	 */
+	public synchronized void finish() {
+		if (finished == null) {
+			finished = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Gets the total amount of time spent on a stage.
+	 * @param stage the stage
+	 * @return the total time
+	 */
+	public synchronized Duration getTime(Stage stage) {
+		return Duration.ofNanos(stageNanos.get(stage));
+	}
+
+	/**
+	 * Gets the amount of time that has elapsed since the update started.
+	 * @return the elapsed time
+	 */
+	public synchronized Duration getElapsed() {
+		long end = (finished == null) ? System.nanoTime() : finished;
+		return Duration.ofNanos(end - started);
+	}
+
+	/**
+	 * Gets the number of pages that have been downloaded.
+	 * @return the number of pages
+	 */
+	public synchronized int getPages() {
+		return pages;
+	}
+
+	/**
+	 * Gets the number of rows that have been inserted into the database.
+	 * @return the number of rows
+	 */
+	public synchronized int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Gets the average number of pages downloaded per second.
+	 * @return the download rate
+	 */
+	public synchronized double getPagesPerSecond() {
+		return perSecond(pages);
+	}
+
+	/**
+	 * Gets the number of pages downloaded per second, weighted towards the
+	 * most recently downloaded pages.
+	 * @return the download rate
+	 */
+	public synchronized double getRecentPagesPerSecond() {
+		return (pageIntervalNanos <= 0) ? 0 : 1_000_000_000.0 / pageIntervalNanos;
+	}
+
+	/**
+	 * Gets the average number of rows inserted into the database per second.
+	 * @return the insert rate
+	 */
+	public synchronized double getRowsPerSecond() {
+		return perSecond(rows);
+	}
+
+	/**
+	 * Gets a percentile of the time it took to insert a single row.
+	 * @param percentile the percentile (e.g. "99" for the 99th percentile)
+	 * @return the insert latency
+	 */
+	public Duration getInsertLatency(double percentile) {
+		return insertLatency.getPercentile(percentile);
+	}
+
+	private double perSecond(int count) {
+		double seconds = getElapsed().toNanos() / 1_000_000_000.0;
+		return (seconds <= 0) ? 0 : count / seconds;
+	}
+}
@@ -5,7 +5,9 @@ import java.io.IOException;
 import java.sql.SQLException;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -20,13 +22,17 @@ import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
 import com.github.mangstadt.emc.rupees.dto.ShopTransaction;
 
 import emcshop.AppContext;
-import emcshop.EMCShopkeeper;
 import emcshop.ItemIndex;
 import emcshop.ReportSender;
+import emcshop.Settings;
 import emcshop.db.DbDao;
 import emcshop.db.PaymentTransactionDb;
 import emcshop.db.ShopTransactionDb;
+import emcshop.db.UpdateLog;
+import emcshop.model.UpdateMetrics.Stage;
 import emcshop.scraper.EmcSession;
+import emcshop.scraper.RupeePageCache;
+import emcshop.scraper.RupeeTransactionSource;
 import emcshop.util.Listeners;
 
 public class UpdateModelImpl implements IUpdateModel {
@@ -39,13 +45,16 @@ public class UpdateModelImpl implements IUpdateModel {
 	private final Duration oldestAllowablePaymentTransactionAge;
 	private final DbDao dao;
 	private final ReportSender reportSender;
+	private final int threads;
+	private final RupeePageCache replayCache;
+	private final RupeePageCache pageCache;
 
 	private final Listeners pageDownloadedListeners = new Listeners();
 	private final Listeners badSessionListeners = new Listeners();
 	private final Listeners downloadErrorListeners = new Listeners();
 	private final Listeners downloadCompleteListeners = new Listeners();
 
-	private RupeeTransactionReader reader;
+	private RupeeTransactionSource reader;
 	private LocalDateTime started;
 	private Duration timeTaken;
 	private int transactionsCount, shopTransactionsCount, paymentTransactionsCount, bonusFeeTransactionsCount, pagesCount;
@@ -55,6 +64,18 @@ public class UpdateModelImpl implements IUpdateModel {
 	private boolean downloadStopped = false;
 	private Exception thrown;
 	private Integer rupeeBalance;
+	private UpdateMetrics metrics;
+	private UpdateTimeEstimator estimator;
+
+	/*
+	 * When re-importing, the cached pages are parsed faster than the
+	 * transactions can be inserted one at a time, so each page's transactions
+	 * are inserted in a single batch. When downloading from the website, the
+	 * download is the bottleneck, so each transaction is inserted as soon as
+	 * it's downloaded.
+	 */
+	private final List<ShopTransactionDb> shopTransactionBatch = new ArrayList<>();
+	private final List<PaymentTransactionDb> paymentTransactionBatch = new ArrayList<>();
 
 	/**
 	 * @param builder the builder object for constructing new
@@ -64,10 +85,46 @@ public class UpdateModelImpl implements IUpdateModel {
 	 * regardless of age
 	 */
 	public UpdateModelImpl(RupeeTransactionReader.Builder builder, Duration oldestAllowablePaymentTransactionAge) {
+		this(builder, oldestAllowablePaymentTransactionAge, context.get(DbDao.class));
+	}
+
+	/**
+	 * @param builder the builder object for constructing new
+	 * {@link RupeeTransactionReader} instances.
+	 * @param oldestAllowablePaymentTransactionAge ignore all payment transactions that
+	 * are older than this age or null to parse all payment transactions
+	 * regardless of age
+	 * @param dao the database connection to save the transactions to
+	 */
+	public UpdateModelImpl(RupeeTransactionReader.Builder builder, Duration oldestAllowablePaymentTransactionAge, DbDao dao) {
 		this.builder = builder;
 		this.oldestAllowablePaymentTransactionAge = oldestAllowablePaymentTransactionAge;
+		this.dao = dao;
 
 		firstUpdate = (builder.stopDate() == null);
+		reportSender = context.get(ReportSender.class);
+
+		Settings settings = context.get(Settings.class);
+		threads = (settings == null) ? 0 : settings.getDownloadThreads();
+
+		replayCache = null;
+		pageCache = (settings != null && settings.isPageCacheEnabled()) ? context.get(RupeePageCache.class) : null;
+	}
+
+	/**
+	 * Creates a model that re-imports the transactions in the page cache
+	 * instead of downloading them from the website.
+	 * @param replayCache the page cache
+	 * @param threads the number of threads to parse the cached pages with
+	 */
+	public UpdateModelImpl(RupeePageCache replayCache, int threads) {
+		this.replayCache = replayCache;
+		this.threads = threads;
+		builder = null;
+		oldestAllowablePaymentTransactionAge = null;
+		pageCache = null;
+
+		firstUpdate = true;
 		dao = context.get(DbDao.class);
 		reportSender = context.get(ReportSender.class);
 	}
@@ -99,12 +156,34 @@ public class UpdateModelImpl implements IUpdateModel {
 
 	@Override
 	public Duration getEstimatedTime() {
-		Integer stopAtPage = getStopAtPage();
-		return (stopAtPage == null) ? null : EMCShopkeeper.estimateUpdateTime(stopAtPage);
+		if (estimator == null) {
+			try {
+				estimator = UpdateTimeEstimator.fromUpdateLog(dao, threads);
+			} catch (SQLException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		Integer totalPages = getStopAtPage();
+		if (totalPages == null) {
+			totalPages = estimator.estimatePages((started == null) ? LocalDateTime.now() : started);
+		}
+		if (totalPages == null) {
+			return null;
+		}
+
+		return (metrics == null) ? estimator.estimate(totalPages) : estimator.estimate(totalPages, metrics);
 	}
 
 	@Override
 	public Integer getStopAtPage() {
+		if (replayCache != null) {
+			try {
+				return replayCache.size();
+			} catch (IOException e) {
+				return null;
+			}
+		}
 		return builder.stopPage();
 	}
 
@@ -133,10 +212,16 @@ public class UpdateModelImpl implements IUpdateModel {
 		return earliestParsedTransactionDate;
 	}
 
+	@Override
+	public UpdateMetrics getMetrics() {
+		return metrics;
+	}
+
 	@Override
 	public Thread startDownload() {
 		started = LocalDateTime.now();
 		bonusFeeTotals = new HashMap<>();
+		metrics = new UpdateMetrics();
 
 		DownloadThread thread = new DownloadThread();
 		thread.setDaemon(true);
@@ -148,6 +233,41 @@ public class UpdateModelImpl implements IUpdateModel {
 	public synchronized void stopDownload() {
 		downloadStopped = true;
 		timeTaken = Duration.between(started, LocalDateTime.now());
+
+		//save the transactions from the page that was being read when the download was stopped
+		try {
+			insertBatch();
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+
+		metrics.finish();
+	}
+
+	/**
+	 * Inserts the transactions that are waiting to be inserted in a batch.
+	 * @throws SQLException if there's a problem inserting the transactions
+	 */
+	private synchronized void insertBatch() throws SQLException {
+		int count = shopTransactionBatch.size() + paymentTransactionBatch.size();
+		if (count == 0) {
+			return;
+		}
+
+		long start = System.nanoTime();
+		try {
+			if (!shopTransactionBatch.isEmpty()) {
+				dao.insertTransactions(shopTransactionBatch, true);
+			}
+			if (!paymentTransactionBatch.isEmpty()) {
+				dao.insertPaymentTransactions(paymentTransactionBatch);
+			}
+		} finally {
+			//don't try to insert a failed batch again when the download is stopped
+			shopTransactionBatch.clear();
+			paymentTransactionBatch.clear();
+		}
+		metrics.recordInserts(start, count);
 	}
 
 	@Override
@@ -181,6 +301,7 @@ public class UpdateModelImpl implements IUpdateModel {
 			return;
 		}
 
+		int updateLogId;
 		try {
 			if (earliestParsedTransactionDate != null) {
 				dao.updateBonusesFeesSince(earliestParsedTransactionDate);
@@ -199,13 +320,46 @@ public class UpdateModelImpl implements IUpdateModel {
 			}
 
 			//log the update operation
-			dao.insertUpdateLog(started, getRupeeBalance(), shopTransactionsCount, paymentTransactionsCount, bonusFeeTransactionsCount, timeTaken);
+			updateLogId = dao.insertUpdateLog(createUpdateLog());
 
+			long start = System.nanoTime();
 			dao.commit();
+			metrics.record(Stage.COMMIT, start);
 		} catch (SQLException e) {
 			dao.rollback();
 			throw new RuntimeException(e);
 		}
+
+		/*
+		 * The commit time isn't known until after the update log entry is
+		 * committed, so save it separately. The transactions are already
+		 * saved at this point, so failing to save it isn't fatal.
+		 */
+		try {
+			dao.updateUpdateLogCommitTime(updateLogId, metrics.getTime(Stage.COMMIT));
+			dao.commit();
+		} catch (SQLException e) {
+			dao.rollback();
+			logger.log(Level.WARNING, "Could not save the commit time to the update log.", e);
+		}
+	}
+
+	private UpdateLog createUpdateLog() {
+		UpdateLog log = new UpdateLog();
+		log.setTs(started);
+		log.setRupeeBalance(getRupeeBalance());
+		log.setTransactionCount(shopTransactionsCount);
+		log.setPaymentTransactionCount(paymentTransactionsCount);
+		log.setBonusFeeTransactionCount(bonusFeeTransactionsCount);
+		log.setTimeTaken(timeTaken);
+		log.setPageCount(metrics.getPages());
+		log.setDownloadThreads((threads > 0) ? threads : null);
+		log.setDownloadTime(metrics.getTime(Stage.DOWNLOAD));
+		log.setItemNameTime(metrics.getTime(Stage.ITEM_NAMES));
+		log.setInsertTime(metrics.getTime(Stage.INSERT));
+		log.setInsertLatencyP50(metrics.getInsertLatency(50));
+		log.setInsertLatencyP99(metrics.getInsertLatency(99));
+		return log;
 	}
 
 	@Override
@@ -229,7 +383,7 @@ public class UpdateModelImpl implements IUpdateModel {
 		@Override
 		public void run() {
 			try {
-				reader = builder.build();
+				reader = openSource();
 			} catch (InvalidCredentialsException e) {
 				badSessionListeners.fire();
 				return;
@@ -241,9 +395,15 @@ public class UpdateModelImpl implements IUpdateModel {
 
 			try {
 				highestBalance = null;
-				RupeeTransaction transaction;
 				int curPage = reader.getCurrentPageNumber();
-				while ((transaction = reader.next()) != null) {
+				while (true) {
+					long start = System.nanoTime();
+					RupeeTransaction transaction = reader.next();
+					metrics.record(Stage.DOWNLOAD, start);
+					if (transaction == null) {
+						break;
+					}
+
 					LocalDateTime transactionTs = transaction.getTs();
 					rupeeBalance = reader.getRupeeBalance();
 					int page = reader.getCurrentPageNumber();
@@ -253,7 +413,9 @@ public class UpdateModelImpl implements IUpdateModel {
 						}
 
 						if (page != curPage) {
+							insertBatch();
 							pagesCount++;
+							metrics.pageDownloaded();
 							pageDownloadedListeners.fire();
 							curPage = page;
 						}
@@ -268,8 +430,16 @@ public class UpdateModelImpl implements IUpdateModel {
 
 						if (transaction instanceof ShopTransaction) {
 							ShopTransaction shopTransaction = (ShopTransaction) transaction;
+							start = System.nanoTime();
 							String itemName = itemIndex.getDisplayName(shopTransaction.getItem(), shopTransaction.getTs());
-							dao.insertTransaction(new ShopTransactionDb(shopTransaction, itemName), true);
+							start = metrics.record(Stage.ITEM_NAMES, start);
+							ShopTransactionDb row = new ShopTransactionDb(shopTransaction, itemName);
+							if (replayCache == null) {
+								dao.insertTransaction(row, true);
+								metrics.record(Stage.INSERT, start);
+							} else {
+								shopTransactionBatch.add(row);
+							}
 							shopTransactionsCount++;
 							transactionsCount++;
 						} else if (transaction instanceof PaymentTransaction) {
@@ -279,7 +449,14 @@ public class UpdateModelImpl implements IUpdateModel {
 								continue;
 							}
 
-							dao.insertPaymentTransaction(new PaymentTransactionDb(paymentTransaction));
+							PaymentTransactionDb row = new PaymentTransactionDb(paymentTransaction);
+							if (replayCache == null) {
+								start = System.nanoTime();
+								dao.insertPaymentTransaction(row);
+								metrics.record(Stage.INSERT, start);
+							} else {
+								paymentTransactionBatch.add(row);
+							}
 							paymentTransactionsCount++;
 							transactionsCount++;
 						} else if (dao.isBonusFeeTransaction(transaction)) {
@@ -306,9 +483,12 @@ public class UpdateModelImpl implements IUpdateModel {
 					if (downloadStopped) {
 						return;
 					}
+					insertBatch();
 					pagesCount++;
+					metrics.pageDownloaded();
 					pageDownloadedListeners.fire();
 					timeTaken = Duration.between(started, LocalDateTime.now());
+					metrics.finish();
 				}
 
 				downloadCompleteListeners.fire();
@@ -331,5 +511,16 @@ public class UpdateModelImpl implements IUpdateModel {
 				IOUtils.closeQuietly(reader);
 			}
 		}
+
+		private RupeeTransactionSource openSource() throws IOException {
+			if (replayCache != null) {
+				int parseThreads = (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+				return replayCache.replay(parseThreads);
+			}
+			if (pageCache != null) {
+				pageCache.record(builder);
+			}
+			return RupeeTransactionSource.of(builder.build());
+		}
 	}
 }
@@ -0,0 +1,204 @@
+package emcshop.model;
+
+import java.time.Duration;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ * Runs incremental updates on an interval that adapts to how busy the shop
+ * is. After each update, the number of transactions that were downloaded is
+ * used to estimate how quickly new transactions are coming in. The next update
+ * is scheduled for when about {@link #getTargetTransactions} new transactions
+ * are expected, so that each update stays short. Quiet shops are checked less
+ * and less often, up to the maximum interval.
+ * </p>
+ * <p>
+ * The updates are run by {@link #run}, which blocks until {@link #stop} is
+ * called.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class UpdateScheduler implements Runnable {
+	private static final Logger logger = Logger.getLogger(UpdateScheduler.class.getName());
+
+	/**
+	 * How much weight the most recent transaction rate is given over the
+	 * previous ones (between 0 and 1).
+	 */
+	private static final double SMOOTHING = 0.5;
+
+	/**
+	 * The default number of transactions that each update should download.
+	 */
+	public static final int DEFAULT_TARGET_TRANSACTIONS = 50;
+
+	/**
+	 * Runs a single update.
+	 */
+	public interface Update {
+		/**
+		 * Runs the update.
+		 * @return the number of transactions that were downloaded or -1 if the
+		 * update was canceled
+		 * @throws Exception if the update failed
+		 */
+		int run() throws Exception;
+	}
+
+	private final Duration minInterval, maxInterval, initialDelay;
+	private final int targetTransactions;
+	private final Update update;
+
+	private Duration delay;
+	private double rate = Double.NaN;
+	private boolean stopped = false;
+
+	/**
+	 * @param minInterval the shortest amount of time to wait between updates
+	 * @param maxInterval the longest amount of time to wait between updates
+	 * @param initialDelay how long to wait before running the first update
+	 * @param update runs a single update
+	 */
+	public UpdateScheduler(Duration minInterval, Duration maxInterval, Duration initialDelay, Update update) {
+		this(minInterval, maxInterval, initialDelay, DEFAULT_TARGET_TRANSACTIONS, update);
+	}
+
+	/**
+	 * @param minInterval the shortest amount of time to wait between updates
+	 * @param maxInterval the longest amount of time to wait between updates
+	 * @param initialDelay how long to wait before running the first update
+	 * @param targetTransactions the number of transactions that each update
+	 * should download
+	 * @param update runs a single update
+	 */
+	public UpdateScheduler(Duration minInterval, Duration maxInterval, Duration initialDelay, int targetTransactions, Update update) {
+		if (maxInterval.compareTo(minInterval) < 0) {
+			throw new IllegalArgumentException("The maximum interval cannot be less than the minimum interval.");
+		}
+
+		this.minInterval = minInterval;
+		this.maxInterval = maxInterval;
+		this.initialDelay = initialDelay;
+		this.targetTransactions = targetTransactions;
+		this.update = update;
+		delay = minInterval;
+	}
+
+	/**
+	 * Gets the number of transactions that each update should download.
+	 * @return the number of transactions
+	 */
+	public int getTargetTransactions() {
+		return targetTransactions;
+	}
+
+	/**
+	 * Runs updates until {@link #stop} is called.
+	 */
+	@Override
+	public void run() {
+		if (!sleep(initialDelay)) {
+			return;
+		}
+
+		long previousStart = 0;
+		while (true) {
+			long start = System.currentTimeMillis();
+
+			int transactions;
+			try {
+				transactions = update.run();
+			} catch (Exception e) {
+				logger.log(Level.WARNING, "Scheduled update failed.", e);
+				transactions = -1;
+			}
+
+			Duration sinceLastUpdate = (previousStart == 0) ? null : Duration.ofMillis(start - previousStart);
+			Duration next = nextDelay(transactions, sinceLastUpdate);
+			previousStart = start;
+
+			logger.fine("Next scheduled update in " + next.getSeconds() + " seconds.");
+			if (!sleep(next)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Stops the scheduler. If an update is running, it is allowed to finish.
+	 */
+	public synchronized void stop() {
+		stopped = true;
+		notifyAll();
+	}
+
+	/**
+	 * Calculates how long to wait before running the next update.
+	 * @param transactions the number of transactions the last update
+	 * downloaded or -1 if it failed
+	 * @param sinceLastUpdate the time between the start of the last update and
+	 * the start of the update before that, or null if this is the first
+	 * update
+	 * @return the delay
+	 */
+	synchronized Duration nextDelay(int transactions, Duration sinceLastUpdate) {
+		if (transactions < 0) {
+			//back off when the updates are failing
+			delay = clamp(delay.multipliedBy(2));
+			return delay;
+		}
+
+		if (sinceLastUpdate == null) {
+			/*
+			 * The first update downloads everything since the last time the
+			 * program was run, so it says nothing about the current rate.
+			 */
+			return delay;
+		}
+
+		double seconds = Math.max(sinceLastUpdate.toMillis() / 1000.0, 1);
+		double latestRate = transactions / seconds;
+		rate = Double.isNaN(rate) ? latestRate : (SMOOTHING * latestRate + (1 - SMOOTHING) * rate);
+
+		if (rate <= 0) {
+			delay = clamp(delay.multipliedBy(2));
+		} else {
+			delay = clamp(Duration.ofMillis((long) (targetTransactions / rate * 1000)));
+		}
+		return delay;
+	}
+
+	private Duration clamp(Duration duration) {
+		if (duration.compareTo(minInterval) < 0) {
+			return minInterval;
+		}
+		if (duration.compareTo(maxInterval) > 0) {
+			return maxInterval;
+		}
+		return duration;
+	}
+
+	/**
+	 * Waits for the given amount of time.
+	 * @param duration the amount of time to wait
+	 * @return true to continue, false if the scheduler was stopped
+	 */
+	private synchronized boolean sleep(Duration duration) {
+		long end = System.currentTimeMillis() + duration.toMillis();
+		while (!stopped) {
+			long remaining = end - System.currentTimeMillis();
+			if (remaining <= 0) {
+				break;
+			}
+
+			try {
+				wait(remaining);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return !stopped;
+	}
+}
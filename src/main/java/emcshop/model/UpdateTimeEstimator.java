@@ -0,0 +1,243 @@
+package emcshop.model;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import emcshop.db.DbDao;
+import emcshop.db.UpdateLog;
+
+/**
+ * Estimates how long an update will take, based on how long previous updates
+ * took on this computer.
+ * @author Michael Angstadt
+ */
+public class UpdateTimeEstimator {
+	/**
+	 * The number of pages that must be downloaded before the observed download
+	 * rate of the current update is trusted over the historical rate.
+	 */
+	private static final int MIN_OBSERVED_PAGES = 3;
+
+	/**
+	 * The number of previous updates to learn from.
+	 */
+	private static final int HISTORY_SIZE = 20;
+
+	private final Duration overhead;
+	private final double msPerPage;
+	private final Double pagesPerHour;
+	private final LocalDateTime latestUpdate;
+	private final boolean fromHistory;
+
+	/**
+	 * Creates an estimator from the most recent updates in the update log.
+	 * @param dao the database DAO
+	 * @param threads the number of threads that will be used to download the
+	 * transaction pages
+	 * @return the estimator
+	 * @throws SQLException
+	 */
+	public static UpdateTimeEstimator fromUpdateLog(DbDao dao, int threads) throws SQLException {
+		return new UpdateTimeEstimator(dao.getUpdateLogs(HISTORY_SIZE), threads);
+	}
+
+	/**
+	 * @param history the previous updates (in any order)
+	 * @param threads the number of threads that will be used to download the
+	 * transaction pages
+	 */
+	public UpdateTimeEstimator(List<UpdateLog> history, int threads) {
+		/*
+		 * Only updates that recorded their page count can be used. Scale each
+		 * one to the current thread count, assuming that the download time is
+		 * inversely proportional to the number of threads.
+		 */
+		List<double[]> samples = new ArrayList<>();
+		for (UpdateLog log : history) {
+			Integer pages = log.getPageCount();
+			if (pages == null || pages == 0 || log.getTimeTaken() == null) {
+				continue;
+			}
+
+			double ms = log.getTimeTaken().toMillis();
+			Integer logThreads = log.getDownloadThreads();
+			if (logThreads != null && logThreads > 0 && threads > 0) {
+				ms = ms * logThreads / threads;
+			}
+			samples.add(new double[] { pages, ms });
+		}
+
+		double[] fit = fit(samples);
+		if (fit == null) {
+			overhead = null;
+			msPerPage = 0;
+			fromHistory = false;
+		} else {
+			overhead = Duration.ofMillis((long) fit[0]);
+			msPerPage = fit[1];
+			fromHistory = true;
+		}
+
+		pagesPerHour = pagesPerHour(history);
+		latestUpdate = history.stream().map(UpdateLog::getTs).max(LocalDateTime::compareTo).orElse(null);
+	}
+
+	/**
+	 * Determines if the estimates are based on previous updates or on the
+	 * built-in defaults.
+	 * @return true if they are based on previous updates, false if not
+	 */
+	public boolean isFromHistory() {
+		return fromHistory;
+	}
+
+	/**
+	 * Estimates the time it will take to download a given number of transaction
+	 * pages.
+	 * @param pages the number of pages
+	 * @return the estimated time
+	 */
+	public Duration estimate(int pages) {
+		if (!fromHistory) {
+			return estimateDefault(pages);
+		}
+		return overhead.plusMillis((long) (msPerPage * pages));
+	}
+
+	/**
+	 * Estimates how many pages will need to be downloaded to catch up to the
+	 * last update, based on how many pages were downloaded by previous updates
+	 * relative to the time in between them.
+	 * @param now the time the update starts
+	 * @return the estimated number of pages or null if there isn't enough
+	 * history to make an estimate
+	 */
+	public Integer estimatePages(LocalDateTime now) {
+		if (pagesPerHour == null) {
+			return null;
+		}
+
+		double hours = Duration.between(latestUpdate, now).toMillis() / (double) Duration.ofHours(1).toMillis();
+		return Math.max(1, (int) Math.ceil(pagesPerHour * hours));
+	}
+
+	/**
+	 * Refines the estimate while an update is in progress, based on how fast
+	 * pages are being downloaded.
+	 * @param totalPages the total number of pages the update is expected to
+	 * download
+	 * @param metrics the metrics of the update that is in progress
+	 * @return the estimated total time of the update
+	 */
+	public Duration estimate(int totalPages, UpdateMetrics metrics) {
+		int pages = metrics.getPages();
+		Duration elapsed = metrics.getElapsed();
+		double pagesPerSecond = metrics.getRecentPagesPerSecond();
+		if (pages < MIN_OBSERVED_PAGES || pagesPerSecond <= 0) {
+			Duration estimate = estimate(totalPages);
+			return (estimate.compareTo(elapsed) < 0) ? elapsed : estimate;
+		}
+
+		//if more pages have been downloaded than expected, assume there is at least one more
+		int remainingPages = Math.max(totalPages - pages, 1);
+
+		long remainingMs = (long) (remainingPages / pagesPerSecond * 1000);
+		return elapsed.plusMillis(remainingMs);
+	}
+
+	/**
+	 * Estimates how long it will take to download a given number of pages
+	 * when there are no previous updates to learn from. Pages that are
+	 * further back in the history take longer for the website to load.
+	 * @param pages the number of pages
+	 * @return the estimated time
+	 */
+	static Duration estimateDefault(int pages) {
+		long totalMs = 10_000;
+		long last = 10_000;
+		for (int i = 100; i < pages; i += 100) {
+			long cur = last + 1550;
+			totalMs += cur;
+			last = cur;
+		}
+		return Duration.ofMillis(totalMs);
+	}
+
+	/**
+	 * Fits a line to the (pages, milliseconds) samples using least squares.
+	 * @param samples the samples
+	 * @return the intercept (overhead) and slope (milliseconds per page) or
+	 * null if there are no samples
+	 */
+	private static double[] fit(List<double[]> samples) {
+		if (samples.isEmpty()) {
+			return null;
+		}
+
+		int n = samples.size();
+		double sumX = 0, sumY = 0;
+		for (double[] sample : samples) {
+			sumX += sample[0];
+			sumY += sample[1];
+		}
+		double meanX = sumX / n;
+		double meanY = sumY / n;
+
+		double covariance = 0, variance = 0;
+		for (double[] sample : samples) {
+			double dx = sample[0] - meanX;
+			covariance += dx * (sample[1] - meanY);
+			variance += dx * dx;
+		}
+
+		if (variance > 0) {
+			double slope = covariance / variance;
+			double intercept = meanY - slope * meanX;
+			if (slope > 0 && intercept >= 0) {
+				return new double[] { intercept, slope };
+			}
+		}
+
+		/*
+		 * All the updates downloaded the same number of pages, or the fit
+		 * doesn't make sense (e.g. a negative overhead), so just use the
+		 * average throughput.
+		 */
+		return new double[] { 0, sumY / sumX };
+	}
+
+	/**
+	 * Calculates the median number of pages that were generated per hour in
+	 * between previous updates.
+	 * @param history the previous updates
+	 * @return the pages per hour or null if it can't be calculated
+	 */
+	private static Double pagesPerHour(List<UpdateLog> history) {
+		List<UpdateLog> sorted = new ArrayList<>(history);
+		sorted.sort((a, b) -> a.getTs().compareTo(b.getTs()));
+
+		List<Double> rates = new ArrayList<>();
+		LocalDateTime previous = null;
+		for (UpdateLog log : sorted) {
+			Integer pages = log.getPageCount();
+			if (previous != null && pages != null && pages > 0) {
+				long ms = Duration.between(previous, log.getTs()).toMillis();
+				if (ms > 0) {
+					rates.add(pages / (ms / (double) Duration.ofHours(1).toMillis()));
+				}
+			}
+			previous = log.getTs();
+		}
+
+		if (rates.isEmpty()) {
+			return null;
+		}
+
+		Collections.sort(rates);
+		return rates.get(rates.size() / 2);
+	}
+}
@@ -3,7 +3,12 @@ package emcshop.presenter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
+import emcshop.chat.ChatMessage;
+import emcshop.chat.ChatSearchQuery;
 import emcshop.db.PaymentTransactionDb;
 import emcshop.model.IChatLogViewerModel;
 import emcshop.view.IChatLogViewerView;
@@ -19,6 +24,10 @@ public class ChatLogViewerPresenter {
 		view.addDateChangedListener(event -> onDateChanged());
 		view.addLogDirectoryChanged(event -> onLogDirectoryChanged());
 		view.addCloseListener(event -> onClose());
+		view.addSearchAllListener(event -> onSearchAll());
+
+		model.addSearchCompleteListener(event -> onSearchComplete());
+		model.addNewMessagesListener(event -> onNewMessages());
 
 		view.setLogDirectory(model.getLogDirectory());
 		view.setCurrentPlayer(model.getCurrentPlayer());
@@ -30,6 +39,7 @@ public class ChatLogViewerPresenter {
 		view.setDate(dateToDisplay);
 		view.setChatMessages(model.getChatMessages(dateToDisplay));
 
+		model.startLiveTail();
 		view.display();
 	}
 
@@ -53,7 +63,48 @@ public class ChatLogViewerPresenter {
 		onDateChanged();
 	}
 
+	private void onSearchAll() {
+		String keyword = view.getSearchKeyword();
+		String player = view.getSearchPlayer();
+		if (keyword.isEmpty() && player.isEmpty()) {
+			return;
+		}
+
+		//@formatter:off
+		ChatSearchQuery query = new ChatSearchQuery()
+			.keyword(keyword)
+			.player(player);
+		//@formatter:on
+
+		view.searchStarted();
+		model.startSearch(query);
+	}
+
+	private void onSearchComplete() {
+		List<ChatMessage> results = model.getSearchResults();
+		if (results == null) {
+			view.showError("The chat logs could not be searched.");
+			results = Collections.emptyList();
+		}
+		view.setSearchResults(results);
+	}
+
+	private void onNewMessages() {
+		LocalDate date = view.getDate();
+
+		//@formatter:off
+		List<ChatMessage> messages = model.takeNewMessages().stream()
+			.filter(message -> message.getDate().toLocalDate().equals(date))
+		.collect(Collectors.toList());
+		//@formatter:on
+
+		if (!messages.isEmpty()) {
+			view.addChatMessages(messages);
+		}
+	}
+
 	private void onClose() {
+		model.stopLiveTail();
 		view.close();
 	}
 }
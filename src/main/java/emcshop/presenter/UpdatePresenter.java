@@ -4,6 +4,7 @@ import java.time.Duration;
 import java.time.LocalDateTime;
 
 import emcshop.model.IUpdateModel;
+import emcshop.model.UpdateMetrics;
 import emcshop.scraper.EmcSession;
 import emcshop.view.IUpdateView;
 
@@ -69,6 +70,8 @@ public class UpdatePresenter {
 		view.setPaymentTransactions(model.getPaymentTransactionsDownloaded());
 		view.setBonusFeeTransactions(model.getBonusFeeTransactionsDownloaded());
 		view.setOldestParsedTransactonDate(model.getOldestParsedTransactionDate());
+		view.setMetrics(model.getMetrics());
+		view.setEstimatedTime(model.getEstimatedTime());
 	}
 
 	private void onDownloadError() {
@@ -123,4 +126,8 @@ public class UpdatePresenter {
 	public Integer getRupeeBalance() {
 		return model.getRupeeBalance();
 	}
+
+	public UpdateMetrics getMetrics() {
+		return model.getMetrics();
+	}
 }
@@ -0,0 +1,217 @@
+package emcshop.query;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import emcshop.db.ShopTransactionType;
+
+/**
+ * Groups shop transactions by one or more {@link Dimension dimensions} and
+ * calculates {@link Measure measures} for each group. Use the
+ * {@link QueryEngine} to run the query.
+ * @author Michael Angstadt
+ * @see Builder
+ */
+public class AggregateQuery {
+	private final List<Dimension> dimensions;
+	private final List<Measure> measures;
+	private final LocalDateTime from, to;
+	private final ShopTransactionType transactionType;
+	private final Collection<String> items, players;
+	private final Measure sortBy;
+	private final boolean descending;
+	private final Integer limit;
+
+	private AggregateQuery(Builder builder) {
+		dimensions = Collections.unmodifiableList(new ArrayList<>(builder.dimensions));
+		measures = Collections.unmodifiableList(new ArrayList<>(builder.measures));
+		from = builder.from;
+		to = builder.to;
+		transactionType = builder.transactionType;
+		items = Collections.unmodifiableList(new ArrayList<>(builder.items));
+		players = Collections.unmodifiableList(new ArrayList<>(builder.players));
+		sortBy = builder.sortBy;
+		descending = builder.descending;
+		limit = builder.limit;
+	}
+
+	/**
+	 * Gets the dimensions to group the transactions by.
+	 * @return the dimensions (empty to calculate the measures over all the
+	 * transactions)
+	 */
+	public List<Dimension> getDimensions() {
+		return dimensions;
+	}
+
+	/**
+	 * Gets the measures to calculate.
+	 * @return the measures
+	 */
+	public List<Measure> getMeasures() {
+		return measures;
+	}
+
+	/**
+	 * @return the start date (inclusive) or null for no start date
+	 */
+	public LocalDateTime getFrom() {
+		return from;
+	}
+
+	/**
+	 * @return the end date (exclusive) or null for no end date
+	 */
+	public LocalDateTime getTo() {
+		return to;
+	}
+
+	public ShopTransactionType getTransactionType() {
+		return transactionType;
+	}
+
+	/**
+	 * Gets the items to include.
+	 * @return the item names (case insensitive) or empty for all items
+	 */
+	public Collection<String> getItems() {
+		return items;
+	}
+
+	/**
+	 * Gets the players to include.
+	 * @return the player names (case insensitive) or empty for all players
+	 */
+	public Collection<String> getPlayers() {
+		return players;
+	}
+
+	/**
+	 * Gets the measure to sort the results by.
+	 * @return the measure or null to sort by the dimension values
+	 */
+	public Measure getSortBy() {
+		return sortBy;
+	}
+
+	public boolean isDescending() {
+		return descending;
+	}
+
+	/**
+	 * Gets the maximum number of rows to return.
+	 * @return the limit or null for no limit
+	 */
+	public Integer getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Determines if any of the dimensions are calculated from the item name.
+	 * @return true if so, false if not
+	 * @see Dimension#isItemDerived
+	 */
+	public boolean hasItemDerivedDimensions() {
+		for (Dimension dimension : dimensions) {
+			if (dimension.isItemDerived()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Creates {@link AggregateQuery} objects.
+	 */
+	public static class Builder {
+		private List<Dimension> dimensions = new ArrayList<>();
+		private List<Measure> measures = new ArrayList<>();
+		private LocalDateTime from, to;
+		private ShopTransactionType transactionType = ShopTransactionType.MY_SHOP;
+		private Collection<String> items = new ArrayList<>(), players = new ArrayList<>();
+		private Measure sortBy;
+		private boolean descending;
+		private Integer limit;
+
+		public Builder groupBy(Dimension... dimensions) {
+			return groupBy(Arrays.asList(dimensions));
+		}
+
+		public Builder groupBy(Collection<Dimension> dimensions) {
+			this.dimensions = new ArrayList<>(dimensions);
+			return this;
+		}
+
+		public Builder measures(Measure... measures) {
+			return measures(Arrays.asList(measures));
+		}
+
+		public Builder measures(Collection<Measure> measures) {
+			this.measures = new ArrayList<>(measures);
+			return this;
+		}
+
+		public Builder from(LocalDateTime from) {
+			this.from = from;
+			return this;
+		}
+
+		public Builder to(LocalDateTime to) {
+			this.to = to;
+			return this;
+		}
+
+		public Builder transactionType(ShopTransactionType transactionType) {
+			this.transactionType = transactionType;
+			return this;
+		}
+
+		public Builder items(Collection<String> items) {
+			this.items = new ArrayList<>(items);
+			return this;
+		}
+
+		public Builder players(Collection<String> players) {
+			this.players = new ArrayList<>(players);
+			return this;
+		}
+
+		/**
+		 * @param sortBy the measure to sort by or null to sort by the
+		 * dimension values
+		 * @param descending true to sort in descending order, false for
+		 * ascending
+		 * @return this
+		 */
+		public Builder sortBy(Measure sortBy, boolean descending) {
+			this.sortBy = sortBy;
+			this.descending = descending;
+			return this;
+		}
+
+		public Builder limit(Integer limit) {
+			this.limit = limit;
+			return this;
+		}
+
+		/**
+		 * Builds the query.
+		 * @return the query
+		 * @throws IllegalArgumentException if no measures were specified or
+		 * the limit is not positive
+		 */
+		public AggregateQuery build() {
+			if (measures.isEmpty()) {
+				throw new IllegalArgumentException("At least one measure must be specified.");
+			}
+			if (limit != null && limit < 1) {
+				throw new IllegalArgumentException("Limit must be greater than 0.");
+			}
+			return new AggregateQuery(this);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package emcshop.query;
+
+import java.util.List;
+
+/**
+ * A row in the result of an {@link AggregateQuery}.
+ * @author Michael Angstadt
+ */
+public class AggregateRow {
+	private final List<Object> values;
+	private long amount, quantity;
+	private int count;
+
+	/**
+	 * @param values the value of each dimension (in the same order as the
+	 * query's dimensions)
+	 * @param amount the sum of the transaction amounts
+	 * @param quantity the sum of the transaction quantities
+	 * @param count the number of transactions
+	 */
+	public AggregateRow(List<Object> values, long amount, long quantity, int count) {
+		this.values = values;
+		this.amount = amount;
+		this.quantity = quantity;
+		this.count = count;
+	}
+
+	/**
+	 * Gets the value of each dimension.
+	 * @return the values (in the same order as the query's dimensions)
+	 */
+	public List<Object> getValues() {
+		return values;
+	}
+
+	/**
+	 * Gets the value of a dimension.
+	 * @param index the index of the dimension in the query
+	 * @return the value
+	 */
+	public Object getValue(int index) {
+		return values.get(index);
+	}
+
+	public long getAmount() {
+		return amount;
+	}
+
+	public long getQuantity() {
+		return quantity;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Calculates a measure.
+	 * @param measure the measure
+	 * @return the value or null if it cannot be calculated
+	 */
+	public Number get(Measure measure) {
+		return measure.compute(this);
+	}
+
+	/**
+	 * Adds the sums and count of another row to this row.
+	 * @param row the other row
+	 */
+	void add(AggregateRow row) {
+		amount += row.amount;
+		quantity += row.quantity;
+		count += row.count;
+	}
+
+	@Override
+	public String toString() {
+		return "AggregateRow [values=" + values + ", amount=" + amount + ", quantity=" + quantity + ", count=" + count + "]";
+	}
+}
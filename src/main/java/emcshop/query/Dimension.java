@@ -0,0 +1,152 @@
+package emcshop.query;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The values that an {@link AggregateQuery} can group transactions by.
+ * @author Michael Angstadt
+ */
+public enum Dimension {
+	/**
+	 * The item name.
+	 */
+	ITEM("item"),
+
+	/**
+	 * The item group (see {@link emcshop.ItemIndex#getGroups}). Items that
+	 * belong to more than one group are counted in each group.
+	 */
+	GROUP("group"),
+
+	/**
+	 * The item category (see {@link emcshop.ItemIndex#getCategories}). Items
+	 * that belong to more than one category are counted in each category.
+	 */
+	CATEGORY("category"),
+
+	/**
+	 * The customer (for your shop) or shop owner (for other shops).
+	 */
+	PLAYER("player"),
+
+	/**
+	 * The date (value is a {@link LocalDate}).
+	 */
+	DAY("day"),
+
+	/**
+	 * The week, starting on Monday (value is the {@link LocalDate} of the
+	 * Monday).
+	 */
+	WEEK("week"),
+
+	/**
+	 * The month (value is the {@link LocalDate} of the first day of the
+	 * month).
+	 */
+	MONTH("month"),
+
+	/**
+	 * The hour of the day (value is an {@link Integer} from 0 to 23).
+	 */
+	HOUR("hour"),
+
+	/**
+	 * The day of the week (value is a {@link DayOfWeek}).
+	 */
+	WEEKDAY("weekday");
+
+	private final String name;
+
+	private Dimension(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Gets the name of this dimension, as used in queries.
+	 * @return the name (e.g. "item")
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Determines if the values of this dimension are derived from the item
+	 * name by the {@link QueryEngine}, rather than by the database.
+	 * @return true if the values are derived from the item name, false if not
+	 */
+	public boolean isItemDerived() {
+		return this == GROUP || this == CATEGORY;
+	}
+
+	/**
+	 * Converts a value of this dimension to a string for display.
+	 * @param value the value
+	 * @return the string
+	 */
+	public String format(Object value) {
+		if (value == null) {
+			return "";
+		}
+
+		switch (this) {
+		case MONTH:
+			return DateTimeFormatter.ofPattern("yyyy-MM").format((LocalDate) value);
+		case HOUR:
+			return String.format("%02d:00", (Integer) value);
+		case WEEKDAY:
+			return ((DayOfWeek) value).getDisplayName(TextStyle.FULL, Locale.getDefault());
+		default:
+			return value.toString();
+		}
+	}
+
+	/**
+	 * Gets a dimension by name.
+	 * @param name the name (case insensitive)
+	 * @return the dimension or null if not found
+	 */
+	public static Dimension find(String name) {
+		for (Dimension dimension : values()) {
+			if (dimension.name.equalsIgnoreCase(name)) {
+				return dimension;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Parses a comma-separated list of dimension names.
+	 * @param value the list (e.g. "player, month")
+	 * @return the dimensions
+	 * @throws IllegalArgumentException if a name is not recognized
+	 */
+	public static List<Dimension> parse(String value) {
+		List<Dimension> dimensions = new ArrayList<>();
+		for (String name : value.split(",")) {
+			name = name.trim();
+			if (name.isEmpty()) {
+				continue;
+			}
+
+			Dimension dimension = find(name);
+			if (dimension == null) {
+				List<String> names = new ArrayList<>();
+				for (Dimension d : values()) {
+					names.add(d.name);
+				}
+				throw new IllegalArgumentException("Unknown dimension \"" + name + "\".  Valid dimensions are: " + String.join(", ", names));
+			}
+			if (!dimensions.contains(dimension)) {
+				dimensions.add(dimension);
+			}
+		}
+		return dimensions;
+	}
+}
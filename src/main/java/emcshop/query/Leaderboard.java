@@ -0,0 +1,152 @@
+package emcshop.query;
+
+/**
+ * The top-N rankings that can be generated from the shop transactions (for
+ * example, the 10 customers that spent the most rupees).
+ * @author Michael Angstadt
+ * @see QueryEngine#leaderboard
+ */
+public enum Leaderboard {
+	/**
+	 * The players that bought the most from your shop.
+	 */
+	CUSTOMERS("customers", Dimension.PLAYER, true),
+
+	/**
+	 * The players that sold the most to your shop.
+	 */
+	SUPPLIERS("suppliers", Dimension.PLAYER, false),
+
+	/**
+	 * The items your shop sold the most of.
+	 */
+	ITEMS_SOLD("items-sold", Dimension.ITEM, true),
+
+	/**
+	 * The items your shop bought the most of.
+	 */
+	ITEMS_BOUGHT("items-bought", Dimension.ITEM, false);
+
+	/**
+	 * What a leaderboard can be ranked by.
+	 */
+	public enum RankBy {
+		/**
+		 * The number of rupees that changed hands.
+		 */
+		REVENUE(Measure.SUM_AMOUNT),
+
+		/**
+		 * The number of items that changed hands.
+		 */
+		VOLUME(Measure.SUM_QUANTITY);
+
+		private final Measure measure;
+
+		private RankBy(Measure measure) {
+			this.measure = measure;
+		}
+
+		/**
+		 * Gets the measure that the leaderboard is sorted by.
+		 * @return the measure
+		 */
+		public Measure getMeasure() {
+			return measure;
+		}
+
+		/**
+		 * Gets a ranking by name.
+		 * @param name the name (case insensitive, e.g. "revenue")
+		 * @return the ranking or null if not found
+		 */
+		public static RankBy find(String name) {
+			for (RankBy rankBy : values()) {
+				if (rankBy.name().equalsIgnoreCase(name.trim())) {
+					return rankBy;
+				}
+			}
+			return null;
+		}
+	}
+
+	private final String name;
+	private final Dimension dimension;
+	private final boolean sold;
+
+	/**
+	 * @param name the name
+	 * @param dimension what is being ranked
+	 * @param sold true to rank sales (positive amounts, negative quantities),
+	 * false to rank purchases (negative amounts, positive quantities)
+	 */
+	private Leaderboard(String name, Dimension dimension, boolean sold) {
+		this.name = name;
+		this.dimension = dimension;
+		this.sold = sold;
+	}
+
+	/**
+	 * Gets the name of this leaderboard, as used in the command-line
+	 * arguments.
+	 * @return the name (e.g. "customers")
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets what this leaderboard ranks.
+	 * @return the dimension
+	 */
+	public Dimension getDimension() {
+		return dimension;
+	}
+
+	/**
+	 * Creates a query that returns the top rows of this leaderboard.
+	 * @param rankBy what to rank by
+	 * @param size the number of places on the leaderboard
+	 * @return the query
+	 */
+	public AggregateQuery.Builder query(RankBy rankBy, int size) {
+		//sales have positive amounts and negative quantities
+		boolean descending = (rankBy == RankBy.REVENUE) == sold;
+
+		//@formatter:off
+		return new AggregateQuery.Builder()
+			.groupBy(dimension)
+			.measures(Measure.SUM_AMOUNT, Measure.SUM_QUANTITY, Measure.COUNT)
+			.sortBy(rankBy.getMeasure(), descending)
+			.limit(size);
+		//@formatter:on
+	}
+
+	/**
+	 * Determines if a row belongs on this leaderboard. For example, a player
+	 * whose net transactions with your shop are purchases is not a customer.
+	 * @param row the row
+	 * @param rankBy what the leaderboard is ranked by
+	 * @return true if the row belongs on the leaderboard, false if not
+	 */
+	public boolean belongs(AggregateRow row, RankBy rankBy) {
+		long value = row.get(rankBy.getMeasure()).longValue();
+		boolean positive = (rankBy == RankBy.REVENUE) == sold;
+		return positive ? value > 0 : value < 0;
+	}
+
+	/**
+	 * Gets a leaderboard by name.
+	 * @param name the name (case insensitive, e.g. "customers")
+	 * @return the leaderboard or null if not found
+	 */
+	public static Leaderboard find(String name) {
+		name = name.trim();
+		for (Leaderboard leaderboard : values()) {
+			if (leaderboard.name.equalsIgnoreCase(name)) {
+				return leaderboard;
+			}
+		}
+		return null;
+	}
+}
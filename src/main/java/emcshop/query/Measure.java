@@ -0,0 +1,136 @@
+package emcshop.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The values that an {@link AggregateQuery} can calculate for each group of
+ * transactions. Every measure is calculated from the sums and count in
+ * {@link AggregateRow}, so all of them can be rolled up into item groups and
+ * categories.
+ * @author Michael Angstadt
+ */
+public enum Measure {
+	/**
+	 * The net amount of rupees earned.
+	 */
+	SUM_AMOUNT("sum(amount)"),
+
+	/**
+	 * The average amount of rupees earned per transaction.
+	 */
+	AVG_AMOUNT("avg(amount)"),
+
+	/**
+	 * The net quantity of items gained.
+	 */
+	SUM_QUANTITY("sum(quantity)"),
+
+	/**
+	 * The average quantity of items gained per transaction.
+	 */
+	AVG_QUANTITY("avg(quantity)"),
+
+	/**
+	 * The number of transactions.
+	 */
+	COUNT("count"),
+
+	/**
+	 * The average price per item (always positive).
+	 */
+	UNIT_PRICE("price");
+
+	private final String name;
+
+	private Measure(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Gets the name of this measure, as used in queries.
+	 * @return the name (e.g. "sum(amount)")
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Determines if the values of this measure are whole numbers.
+	 * @return true if they are whole numbers, false if they are decimals
+	 */
+	public boolean isWholeNumber() {
+		return this == SUM_AMOUNT || this == SUM_QUANTITY || this == COUNT;
+	}
+
+	/**
+	 * Calculates this measure.
+	 * @param row the row
+	 * @return the value or null if it cannot be calculated (e.g. the unit price
+	 * of a group whose net quantity is zero)
+	 */
+	public Number compute(AggregateRow row) {
+		switch (this) {
+		case SUM_AMOUNT:
+			return row.getAmount();
+		case AVG_AMOUNT:
+			return (row.getCount() == 0) ? null : (double) row.getAmount() / row.getCount();
+		case SUM_QUANTITY:
+			return row.getQuantity();
+		case AVG_QUANTITY:
+			return (row.getCount() == 0) ? null : (double) row.getQuantity() / row.getCount();
+		case COUNT:
+			return row.getCount();
+		default:
+			return (row.getQuantity() == 0) ? null : Math.abs((double) row.getAmount() / row.getQuantity());
+		}
+	}
+
+	/**
+	 * Gets a measure by name.
+	 * @param name the name (case insensitive, whitespace is ignored)
+	 * @return the measure or null if not found
+	 */
+	public static Measure find(String name) {
+		name = name.replaceAll("\\s+", "");
+		if ("unitprice".equalsIgnoreCase(name)) {
+			return UNIT_PRICE;
+		}
+
+		for (Measure measure : values()) {
+			if (measure.name.equalsIgnoreCase(name)) {
+				return measure;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Parses a comma-separated list of measure names.
+	 * @param value the list (e.g. "sum(amount), count")
+	 * @return the measures
+	 * @throws IllegalArgumentException if a name is not recognized
+	 */
+	public static List<Measure> parse(String value) {
+		List<Measure> measures = new ArrayList<>();
+		for (String name : value.split(",")) {
+			name = name.trim();
+			if (name.isEmpty()) {
+				continue;
+			}
+
+			Measure measure = find(name);
+			if (measure == null) {
+				List<String> names = new ArrayList<>();
+				for (Measure m : values()) {
+					names.add(m.name);
+				}
+				throw new IllegalArgumentException("Unknown measure \"" + name + "\".  Valid measures are: " + String.join(", ", names));
+			}
+			if (!measures.contains(measure)) {
+				measures.add(measure);
+			}
+		}
+		return measures;
+	}
+}
@@ -0,0 +1,235 @@
+package emcshop.query;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import emcshop.ItemIndex;
+import emcshop.db.DbDao;
+
+/**
+ * <p>
+ * Runs {@link AggregateQuery} queries.
+ * </p>
+ * <p>
+ * The transactions are grouped and totaled by the database in a single query
+ * (see {@link DbDao#getAggregates}). Item groups and categories are not stored
+ * in the database, so for these dimensions, the database groups by item name
+ * and this class rolls the item totals up into their groups and categories.
+ * This is possible because every {@link Measure} is calculated from sums and
+ * counts. The results are then sorted and limited. Top-N queries (queries
+ * with a sort measure and a limit) are limited by the database when possible,
+ * and otherwise by a bounded heap, so the full result set is never sorted.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class QueryEngine {
+	/**
+	 * The value used for items that do not belong to any group or category.
+	 */
+	public static final String NONE = "(none)";
+
+	private final DbDao dao;
+	private final Function<String, Collection<String>> groupsOf, categoriesOf;
+
+	/**
+	 * @param dao the data access object
+	 */
+	public QueryEngine(DbDao dao) {
+		//@formatter:off
+		this(dao,
+			ItemIndex.instance()::getGroups,
+			item -> ItemIndex.instance().getCategories(item).stream().map(ItemIndex.Category::getName).collect(Collectors.toList())
+		);
+		//@formatter:on
+	}
+
+	/**
+	 * @param dao the data access object
+	 * @param groupsOf gets the groups that an item belongs to
+	 * @param categoriesOf gets the categories that an item belongs to
+	 */
+	public QueryEngine(DbDao dao, Function<String, Collection<String>> groupsOf, Function<String, Collection<String>> categoriesOf) {
+		this.dao = dao;
+		this.groupsOf = groupsOf;
+		this.categoriesOf = categoriesOf;
+	}
+
+	/**
+	 * Runs a query.
+	 * @param query the query
+	 * @return the results
+	 * @throws SQLException if there's a problem querying the database
+	 */
+	public List<AggregateRow> execute(AggregateQuery query) throws SQLException {
+		List<AggregateRow> rows = dao.getAggregates(query);
+		if (query.hasItemDerivedDimensions()) {
+			rows = rollUp(rows, query.getDimensions());
+		}
+
+		Comparator<AggregateRow> comparator = comparator(query);
+		Integer limit = query.getLimit();
+		if (limit != null && rows.size() > limit) {
+			return top(rows, comparator, limit);
+		}
+
+		rows.sort(comparator);
+		return rows;
+	}
+
+	/**
+	 * Runs a leaderboard query.
+	 * @param leaderboard the leaderboard
+	 * @param rankBy what to rank by
+	 * @param from the start date or null for no start date
+	 * @param to the end date or null for no end date
+	 * @param size the number of places on the leaderboard
+	 * @return the leaderboard, in order of rank (may contain fewer rows than
+	 * the given size)
+	 * @throws SQLException if there's a problem querying the database
+	 */
+	public List<AggregateRow> leaderboard(Leaderboard leaderboard, Leaderboard.RankBy rankBy, LocalDateTime from, LocalDateTime to, int size) throws SQLException {
+		AggregateQuery query = leaderboard.query(rankBy, size).from(from).to(to).build();
+		List<AggregateRow> rows = execute(query);
+		rows.removeIf(row -> !leaderboard.belongs(row, rankBy));
+		return rows;
+	}
+
+	/**
+	 * Gets the first N elements of a collection without sorting the entire
+	 * collection. Uses a heap that never holds more than N elements.
+	 * @param elements the elements
+	 * @param comparator determines the order of the elements
+	 * @param n the number of elements to return
+	 * @return the first N elements, sorted
+	 */
+	static <T> List<T> top(Collection<T> elements, Comparator<T> comparator, int n) {
+		//the head of the heap is the "worst" element that has been kept
+		PriorityQueue<T> heap = new PriorityQueue<>(n + 1, comparator.reversed());
+		for (T element : elements) {
+			if (heap.size() < n) {
+				heap.add(element);
+			} else if (comparator.compare(element, heap.peek()) < 0) {
+				heap.poll();
+				heap.add(element);
+			}
+		}
+
+		List<T> top = new ArrayList<>(heap);
+		top.sort(comparator);
+		return top;
+	}
+
+	/**
+	 * Replaces the item names in the group and category dimensions with the
+	 * names of the item's groups and categories, and combines the rows that
+	 * end up with the same values.
+	 * @param rows the rows returned by the database
+	 * @param dimensions the query dimensions
+	 * @return the rolled-up rows
+	 */
+	private List<AggregateRow> rollUp(List<AggregateRow> rows, List<Dimension> dimensions) {
+		Map<String, Collection<String>> groupsCache = new HashMap<>();
+		Map<String, Collection<String>> categoriesCache = new HashMap<>();
+
+		Map<List<Object>, AggregateRow> rolledUp = new LinkedHashMap<>();
+		for (AggregateRow row : rows) {
+			//build every combination of values (an item can belong to more than one group)
+			List<List<Object>> combinations = new ArrayList<>();
+			combinations.add(new ArrayList<>());
+			for (int i = 0; i < dimensions.size(); i++) {
+				Object value = row.getValue(i);
+
+				Collection<?> expanded;
+				switch (dimensions.get(i)) {
+				case GROUP:
+					expanded = orNone(groupsCache.computeIfAbsent((String) value, groupsOf));
+					break;
+				case CATEGORY:
+					expanded = orNone(categoriesCache.computeIfAbsent((String) value, categoriesOf));
+					break;
+				default:
+					expanded = Collections.singletonList(value);
+					break;
+				}
+
+				List<List<Object>> next = new ArrayList<>(combinations.size() * expanded.size());
+				for (List<Object> combination : combinations) {
+					for (Object v : expanded) {
+						List<Object> copy = new ArrayList<>(combination);
+						copy.add(v);
+						next.add(copy);
+					}
+				}
+				combinations = next;
+			}
+
+			for (List<Object> values : combinations) {
+				AggregateRow existing = rolledUp.get(values);
+				if (existing == null) {
+					rolledUp.put(values, new AggregateRow(values, row.getAmount(), row.getQuantity(), row.getCount()));
+				} else {
+					existing.add(row);
+				}
+			}
+		}
+
+		return new ArrayList<>(rolledUp.values());
+	}
+
+	private static Collection<String> orNone(Collection<String> values) {
+		return values.isEmpty() ? Collections.singletonList(NONE) : values;
+	}
+
+	private static Comparator<AggregateRow> comparator(AggregateQuery query) {
+		Comparator<AggregateRow> byValues = (left, right) -> {
+			for (int i = 0; i < left.getValues().size(); i++) {
+				int c = compareValues(left.getValue(i), right.getValue(i));
+				if (c != 0) {
+					return c;
+				}
+			}
+			return 0;
+		};
+
+		Measure sortBy = query.getSortBy();
+		if (sortBy == null) {
+			return byValues;
+		}
+
+		Comparator<AggregateRow> byMeasure = (left, right) -> {
+			Number l = left.get(sortBy);
+			Number r = right.get(sortBy);
+
+			//rows that have no value always go last
+			if (l == null) {
+				return (r == null) ? 0 : 1;
+			}
+			if (r == null) {
+				return -1;
+			}
+
+			int c = Double.compare(l.doubleValue(), r.doubleValue());
+			return query.isDescending() ? -c : c;
+		};
+		return byMeasure.thenComparing(byValues);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static int compareValues(Object left, Object right) {
+		if (left instanceof String && right instanceof String) {
+			return ((String) left).compareToIgnoreCase((String) right);
+		}
+		return ((Comparable) left).compareTo(right);
+	}
+}
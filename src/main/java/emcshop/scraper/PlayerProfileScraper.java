@@ -84,15 +84,16 @@ public class PlayerProfileScraper {
 
 		HttpResponse response = client.execute(request);
 		int statusCode = response.getStatusLine().getStatusCode();
-		if (statusCode == HttpStatus.SC_NOT_MODIFIED || statusCode == HttpStatus.SC_NOT_FOUND) {
-			//image not modified or not found
-			return null;
-		}
-
 		HttpEntity entity = response.getEntity();
 		try {
+			if (statusCode == HttpStatus.SC_NOT_MODIFIED || statusCode == HttpStatus.SC_NOT_FOUND) {
+				//image not modified or not found
+				return null;
+			}
+
 			return EntityUtils.toByteArray(entity);
 		} finally {
+			//release the connection so it can be reused
 			EntityUtils.consumeQuietly(entity);
 		}
 	}
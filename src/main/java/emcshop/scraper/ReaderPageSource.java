@@ -0,0 +1,142 @@
+package emcshop.scraper;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import com.github.mangstadt.emc.net.EmcWebsiteConnection;
+import com.github.mangstadt.emc.rupees.RupeeTransactionReader;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransactionPage;
+
+/**
+ * Mirrors the object that a {@link RupeeTransactionReader} uses to log in to
+ * the website and to download each page. The library's version of this
+ * interface is package-private and the library's JAR is signed, so the only
+ * way to get at it is with a proxy and reflection.
+ * @author Michael Angstadt
+ */
+interface ReaderPageSource {
+	/**
+	 * Downloads and parses a page.
+	 * @param page the page number
+	 * @param connection the connection to download the page with
+	 * @return the page or null if the page isn't a transaction history page
+	 * (for example, if the session expired)
+	 * @throws IOException if there's a problem downloading the page
+	 */
+	RupeeTransactionPage getPage(int page, EmcWebsiteConnection connection) throws IOException;
+
+	/**
+	 * Logs in to the website.
+	 * @return the connection
+	 * @throws IOException if there's a problem logging in
+	 */
+	EmcWebsiteConnection createSession() throws IOException;
+
+	/**
+	 * Creates a new connection that uses the same session as the given
+	 * connection. Each of the reader's threads has its own connection.
+	 * @param connection the connection
+	 * @return the new connection
+	 * @throws IOException if there's a problem creating the connection
+	 */
+	EmcWebsiteConnection recreateConnection(EmcWebsiteConnection connection) throws IOException;
+
+	/**
+	 * Gets the page source of a builder.
+	 * @param builder the builder
+	 * @return the page source
+	 */
+	static ReaderPageSource get(RupeeTransactionReader.Builder builder) {
+		Object original;
+		Method getPage, createSession, recreateConnection;
+		try {
+			Field field = field();
+			original = field.get(builder);
+
+			Class<?> type = field.getType();
+			getPage = type.getMethod("getPage", int.class, EmcWebsiteConnection.class);
+			createSession = type.getMethod("createSession");
+			recreateConnection = type.getMethod("recreateConnection", EmcWebsiteConnection.class);
+		} catch (ReflectiveOperationException e) {
+			throw new RuntimeException(e);
+		}
+
+		//the interface is package-private, so its methods can't be invoked without this
+		getPage.setAccessible(true);
+		createSession.setAccessible(true);
+		recreateConnection.setAccessible(true);
+
+		return new ReaderPageSource() {
+			@Override
+			public RupeeTransactionPage getPage(int page, EmcWebsiteConnection connection) throws IOException {
+				return (RupeeTransactionPage) invoke(getPage, original, page, connection);
+			}
+
+			@Override
+			public EmcWebsiteConnection createSession() throws IOException {
+				return (EmcWebsiteConnection) invoke(createSession, original);
+			}
+
+			@Override
+			public EmcWebsiteConnection recreateConnection(EmcWebsiteConnection connection) throws IOException {
+				return (EmcWebsiteConnection) invoke(recreateConnection, original, connection);
+			}
+		};
+	}
+
+	/**
+	 * Replaces the page source of a builder.
+	 * @param builder the builder
+	 * @param source the new page source
+	 */
+	static void set(RupeeTransactionReader.Builder builder, ReaderPageSource source) {
+		try {
+			Field field = field();
+			Class<?> type = field.getType();
+			Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (p, method, args) -> {
+				switch (method.getName()) {
+				case "getPage":
+					return source.getPage((Integer) args[0], (EmcWebsiteConnection) args[1]);
+				case "createSession":
+					return source.createSession();
+				case "recreateConnection":
+					return source.recreateConnection((EmcWebsiteConnection) args[0]);
+				default:
+					throw new UnsupportedOperationException(method.toString());
+				}
+			});
+			field.set(builder, proxy);
+		} catch (ReflectiveOperationException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	static Field field() throws NoSuchFieldException {
+		Field field = RupeeTransactionReader.Builder.class.getDeclaredField("pageSource");
+		field.setAccessible(true);
+		return field;
+	}
+
+	static Object invoke(Method method, Object object, Object... args) throws IOException {
+		try {
+			return method.invoke(object, args);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+}
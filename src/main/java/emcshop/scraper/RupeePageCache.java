@@ -0,0 +1,597 @@
+package emcshop.scraper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.util.EntityUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import com.github.mangstadt.emc.net.EmcServer;
+import com.github.mangstadt.emc.net.EmcWebsiteConnection;
+import com.github.mangstadt.emc.rupees.RupeeTransactionPageScraper;
+import com.github.mangstadt.emc.rupees.RupeeTransactionReader;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransactionPage;
+
+/**
+ * <p>
+ * An on-disk cache of the transactions that were downloaded from the rupee
+ * transaction history pages, stored page by page. It allows the database to be
+ * rebuilt without downloading the entire transaction history again (for
+ * example, after the item alias logic changes).
+ * </p>
+ * <p>
+ * The cache consists of two append-only files. The data file contains each
+ * page, compressed. The index file contains a fixed-size entry for each page,
+ * which records where the page is located in the data file and the time range
+ * of the transactions it contains. If the application is terminated while a
+ * page is being written, the incomplete page is discarded the next time the
+ * cache is opened.
+ * </p>
+ * <p>
+ * Each page is stored exactly as it was returned by the website. When the
+ * pages are replayed, they are fed through a {@link RupeeTransactionReader},
+ * just like pages that are downloaded from the website. This means that
+ * re-importing picks up any fixes that were made to how pages are parsed.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class RupeePageCache {
+	private static final Logger logger = Logger.getLogger(RupeePageCache.class.getName());
+
+	/**
+	 * offset (8) + length (4) + page (4) + newest (8) + oldest (8) + cached
+	 * (8) + transaction count (4) + rupee balance (4)
+	 */
+	private static final int ENTRY_SIZE = 48;
+
+	/**
+	 * Stored in the index file when the rupee balance is unknown.
+	 */
+	private static final int NO_BALANCE = Integer.MIN_VALUE;
+
+	/**
+	 * The URL of the rupee transaction history pages.
+	 */
+	private static final String TRANSACTIONS_URL = "https://empireminecraft.com/rupees/transactions/";
+
+	private final Path dir, dataFile, indexFile;
+
+	/**
+	 * Pages are parsed by several threads at once (the reader's download
+	 * threads), and the scraper is not documented as being thread-safe.
+	 */
+	private final ThreadLocal<RupeeTransactionPageScraper> scraper = ThreadLocal.withInitial(RupeeTransactionPageScraper::new);
+
+	private List<Entry> entries;
+
+	/**
+	 * @param dir the directory the cache is stored in (it is created when the
+	 * first page is added)
+	 */
+	public RupeePageCache(Path dir) {
+		this.dir = dir;
+		dataFile = dir.resolve("pages.dat");
+		indexFile = dir.resolve("pages.idx");
+	}
+
+	/**
+	 * Gets the directory the cache is stored in.
+	 * @return the directory
+	 */
+	public Path getDirectory() {
+		return dir;
+	}
+
+	/**
+	 * Adds a page to the cache.
+	 * @param page the page number of the page at the time it was downloaded
+	 * @param html the page, exactly as it was returned by the website
+	 * @param parsed the parsed page
+	 * @throws IOException if there's a problem writing to the cache
+	 */
+	public synchronized void add(int page, byte[] html, RupeeTransactionPage parsed) throws IOException {
+		List<RupeeTransaction> transactions = parsed.getTransactions();
+		if (transactions.isEmpty()) {
+			return;
+		}
+
+		load();
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		try (OutputStream out = new DeflaterOutputStream(buffer)) {
+			out.write(html);
+		}
+		byte[] data = buffer.toByteArray();
+
+		Files.createDirectories(dir);
+
+		/*
+		 * Write the page data before the index entry, so the index never
+		 * points to data that doesn't exist.
+		 */
+		long offset;
+		try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			offset = channel.size();
+			channel.write(ByteBuffer.wrap(data), offset);
+		}
+
+		LocalDateTime newest = transactions.get(0).getTs();
+		LocalDateTime oldest = transactions.get(transactions.size() - 1).getTs();
+		Entry entry = new Entry(offset, data.length, page, newest, oldest, LocalDateTime.now(), transactions.size(), parsed.getRupeeBalance());
+
+		ByteBuffer index = ByteBuffer.allocate(ENTRY_SIZE);
+		index.putLong(entry.offset);
+		index.putInt(entry.length);
+		index.putInt(entry.page);
+		index.putLong(toEpoch(entry.newest));
+		index.putLong(toEpoch(entry.oldest));
+		index.putLong(toEpoch(entry.cached));
+		index.putInt(entry.transactionCount);
+		index.putInt((entry.rupeeBalance == null) ? NO_BALANCE : entry.rupeeBalance);
+		((Buffer) index).flip(); //cast for Java 8 compatibility
+		try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			channel.write(index, entries.size() * (long) ENTRY_SIZE);
+		}
+
+		entries.add(entry);
+	}
+
+	/**
+	 * Gets the number of pages in the cache.
+	 * @return the number of pages
+	 * @throws IOException if there's a problem reading the index
+	 */
+	public synchronized int size() throws IOException {
+		load();
+		return entries.size();
+	}
+
+	/**
+	 * Gets the index entries of all the pages in the cache, in the order in
+	 * which they were added.
+	 * @return the entries
+	 * @throws IOException if there's a problem reading the index
+	 */
+	public synchronized List<Entry> getEntries() throws IOException {
+		load();
+		return new ArrayList<>(entries);
+	}
+
+	/**
+	 * Gets the index entries of the pages that contain transactions within
+	 * the given time range.
+	 * @param from the start of the range (inclusive) or null for no lower bound
+	 * @param to the end of the range (inclusive) or null for no upper bound
+	 * @return the entries, in the order in which they were added
+	 * @throws IOException if there's a problem reading the index
+	 */
+	public synchronized List<Entry> getEntries(LocalDateTime from, LocalDateTime to) throws IOException {
+		load();
+
+		//@formatter:off
+		return entries.stream()
+			.filter(entry -> from == null || !entry.newest.isBefore(from))
+			.filter(entry -> to == null || !entry.oldest.isAfter(to))
+		.collect(Collectors.toList());
+		//@formatter:on
+	}
+
+	/**
+	 * Reads a page from the cache.
+	 * @param entry the index entry of the page
+	 * @return the page, exactly as it was returned by the website
+	 * @throws IOException if there's a problem reading the page
+	 */
+	public byte[] read(Entry entry) throws IOException {
+		byte[] data = new byte[entry.length];
+		try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.wrap(data);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, entry.offset + buffer.position()) < 0) {
+					throw new IOException("Unexpected end of page cache data file.");
+				}
+			}
+		}
+
+		try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(data))) {
+			return IOUtils.toByteArray(in);
+		}
+	}
+
+	/**
+	 * Reads and parses a page from the cache.
+	 * @param entry the index entry of the page
+	 * @return the parsed page
+	 * @throws IOException if there's a problem reading the page or if it
+	 * can't be parsed
+	 */
+	public RupeeTransactionPage parse(Entry entry) throws IOException {
+		RupeeTransactionPage page = parse(read(entry));
+		if (page == null) {
+			throw new IOException("Page cache entry at offset " + entry.offset + " could not be parsed.");
+		}
+		return page;
+	}
+
+	private RupeeTransactionPage parse(byte[] html) throws IOException {
+		//parse the page the same way the reader does
+		Document document = Jsoup.parse(new ByteArrayInputStream(html), "UTF-8", TRANSACTIONS_URL);
+		return scraper.get().scrape(document);
+	}
+
+	/**
+	 * Deletes all the pages from the cache.
+	 * @throws IOException if there's a problem deleting the cache files
+	 */
+	public synchronized void clear() throws IOException {
+		Files.deleteIfExists(indexFile);
+		Files.deleteIfExists(dataFile);
+		entries = new ArrayList<>();
+	}
+
+	/**
+	 * Configures a transaction reader builder so that the pages its readers
+	 * download are added to the cache. If a page can't be added to the cache,
+	 * a warning is logged and no more pages are added by that builder.
+	 * @param builder the builder
+	 */
+	public void record(RupeeTransactionReader.Builder builder) {
+		ReaderPageSource website = ReaderPageSource.get(builder);
+		ReaderPageSource.set(builder, new Recorder(website));
+	}
+
+	/**
+	 * Creates a transaction source that replays all the transactions in the
+	 * cache, from newest to oldest. Transactions that were cached more than
+	 * once (for example, if the entire history was downloaded twice) are only
+	 * returned once.
+	 * @param threads the number of threads to parse the pages with
+	 * @return the transaction source
+	 * @throws IOException if there's a problem reading the index
+	 */
+	public RupeeTransactionSource replay(int threads) throws IOException {
+		List<Entry> entries = getEntries();
+		if (entries.isEmpty()) {
+			return RupeeTransactionSource.empty();
+		}
+
+		//sort newest first, using the order they were added in to break ties
+		Collections.reverse(entries);
+		entries.sort(Comparator.comparing(Entry::getNewest).reversed());
+
+		/*
+		 * The reader stops when it gets a page that starts at the same place as
+		 * the first page (see Replay), so remove copies of the first page that
+		 * were cached by other updates.
+		 */
+		LocalDateTime newest = entries.get(0).getNewest();
+		entries.subList(1, entries.size()).removeIf(entry -> !entry.getNewest().isBefore(newest));
+
+		RupeeTransactionReader.Builder builder = new RupeeTransactionReader.Builder(new BasicCookieStore());
+		ReaderPageSource.set(builder, new Replay(entries));
+		return RupeeTransactionSource.of(builder.threads(Math.max(threads, 1)).build());
+	}
+
+	/**
+	 * Reads the index file. Entries that were only partially written are
+	 * removed.
+	 * @throws IOException if there's a problem reading the index
+	 */
+	private void load() throws IOException {
+		if (entries != null) {
+			return;
+		}
+
+		entries = new ArrayList<>();
+		if (!Files.exists(indexFile)) {
+			return;
+		}
+
+		long dataSize = Files.exists(dataFile) ? Files.size(dataFile) : 0;
+		long dataEnd = 0;
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(indexFile))) {
+			long count = Files.size(indexFile) / ENTRY_SIZE;
+			for (long i = 0; i < count; i++) {
+				long offset = in.readLong();
+				int length = in.readInt();
+				int page = in.readInt();
+				LocalDateTime newest = fromEpoch(in.readLong());
+				LocalDateTime oldest = fromEpoch(in.readLong());
+				LocalDateTime cached = fromEpoch(in.readLong());
+				int transactionCount = in.readInt();
+				int rupeeBalance = in.readInt();
+
+				if (offset != dataEnd || offset + length > dataSize) {
+					break;
+				}
+
+				entries.add(new Entry(offset, length, page, newest, oldest, cached, transactionCount, (rupeeBalance == NO_BALANCE) ? null : rupeeBalance));
+				dataEnd = offset + length;
+			}
+		}
+
+		long indexSize = entries.size() * (long) ENTRY_SIZE;
+		if (Files.size(indexFile) > indexSize || dataSize > dataEnd) {
+			logger.warning("Page cache is incomplete, possibly because the application was terminated while a page was being written. Discarding incomplete data.");
+			truncate(indexFile, indexSize);
+			truncate(dataFile, dataEnd);
+		}
+	}
+
+	private static void truncate(Path file, long size) throws IOException {
+		if (!Files.exists(file)) {
+			return;
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(size);
+		}
+	}
+
+	private static long toEpoch(LocalDateTime date) {
+		return date.toEpochSecond(ZoneOffset.UTC);
+	}
+
+	private static LocalDateTime fromEpoch(long epoch) {
+		return LocalDateTime.ofEpochSecond(epoch, 0, ZoneOffset.UTC);
+	}
+
+	/**
+	 * Downloads pages from the website and adds them to the cache.
+	 */
+	private class Recorder implements ReaderPageSource {
+		private final ReaderPageSource website;
+		private final Set<Integer> recorded = ConcurrentHashMap.newKeySet();
+		private volatile LocalDateTime firstPageNewest;
+		private volatile boolean disabled = false;
+
+		public Recorder(ReaderPageSource website) {
+			this.website = website;
+		}
+
+		@Override
+		public RupeeTransactionPage getPage(int page, EmcWebsiteConnection connection) throws IOException {
+			byte[] html = download(page, connection);
+			RupeeTransactionPage parsed = parse(html);
+			if (parsed == null || parsed.getTransactions().isEmpty()) {
+				return parsed;
+			}
+
+			LocalDateTime newest = parsed.getFirstTransactionDate();
+			if (page == 1) {
+				firstPageNewest = newest;
+			} else if (firstPageNewest != null && !newest.isBefore(firstPageNewest)) {
+				//a page number past the end was requested, so the website returned the first page
+				return parsed;
+			}
+
+			//the reader downloads the first page more than once
+			if (!disabled && recorded.add(page)) {
+				try {
+					add(page, html, parsed);
+				} catch (IOException e) {
+					//the update itself can still succeed
+					logger.log(Level.WARNING, "Could not write to page cache. Page caching disabled for the rest of this update.", e);
+					disabled = true;
+				}
+			}
+
+			return parsed;
+		}
+
+		/*
+		 * EmcWebsiteConnection#getRupeeTransactionPage cannot be used because
+		 * it only returns the page after it has been parsed.
+		 */
+		private byte[] download(int page, EmcWebsiteConnection connection) throws IOException {
+			String url = TRANSACTIONS_URL + "?page=" + page;
+			HttpResponse response = connection.getHttpClient().execute(new HttpGet(url));
+			HttpEntity entity = response.getEntity();
+			try {
+				int status = response.getStatusLine().getStatusCode();
+				if (status != 200) {
+					throw new IOException("HTTP " + status + " returned for " + url);
+				}
+				return EntityUtils.toByteArray(entity);
+			} finally {
+				EntityUtils.consumeQuietly(entity);
+			}
+		}
+
+		@Override
+		public EmcWebsiteConnection createSession() throws IOException {
+			return website.createSession();
+		}
+
+		@Override
+		public EmcWebsiteConnection recreateConnection(EmcWebsiteConnection connection) throws IOException {
+			return website.recreateConnection(connection);
+		}
+	}
+
+	/**
+	 * Serves the cached pages to a reader, as if they were being downloaded
+	 * from the website.
+	 */
+	private class Replay implements ReaderPageSource {
+		private final List<Entry> entries;
+		private final Integer rupeeBalance;
+
+		/**
+		 * @param entries the pages to serve (newest first)
+		 */
+		public Replay(List<Entry> entries) {
+			this.entries = entries;
+			rupeeBalance = entries.get(0).getRupeeBalance();
+		}
+
+		@Override
+		public RupeeTransactionPage getPage(int page, EmcWebsiteConnection connection) throws IOException {
+			/*
+			 * The EMC website displays the first page when a page number past
+			 * the end is requested. The reader relies on this to know when it
+			 * has reached the end.
+			 */
+			int index = (page < 1 || page > entries.size()) ? 0 : page - 1;
+			RupeeTransactionPage parsed = parse(entries.get(index));
+
+			/*
+			 * The cached pages may have been downloaded by different updates,
+			 * so number them by their position in the replay. Like the
+			 * website, show the latest rupee balance on every page.
+			 */
+			return new RupeeTransactionPage(rupeeBalance, index + 1, entries.size(), parsed.getTransactions());
+		}
+
+		@Override
+		public EmcWebsiteConnection createSession() {
+			return new OfflineConnection();
+		}
+
+		@Override
+		public EmcWebsiteConnection recreateConnection(EmcWebsiteConnection connection) {
+			return new OfflineConnection();
+		}
+	}
+
+	/**
+	 * The connection that is handed to the reader when the cached pages are
+	 * replayed. It is never used to download anything.
+	 */
+	private static class OfflineConnection implements EmcWebsiteConnection {
+		@Override
+		public Document getRupeeTransactionPage(int page) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Document getProfilePage(String playerName) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public List<String> getOnlinePlayers(EmcServer server) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public CookieStore getCookieStore() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public HttpClient getHttpClient() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+			//empty
+		}
+	}
+
+	/**
+	 * An entry in the page cache index.
+	 */
+	public static class Entry {
+		private final long offset;
+		private final int length, page, transactionCount;
+		private final LocalDateTime newest, oldest, cached;
+		private final Integer rupeeBalance;
+
+		private Entry(long offset, int length, int page, LocalDateTime newest, LocalDateTime oldest, LocalDateTime cached, int transactionCount, Integer rupeeBalance) {
+			this.offset = offset;
+			this.length = length;
+			this.page = page;
+			this.newest = newest;
+			this.oldest = oldest;
+			this.cached = cached;
+			this.transactionCount = transactionCount;
+			this.rupeeBalance = rupeeBalance;
+		}
+
+		/**
+		 * Gets the page number of the page at the time it was downloaded.
+		 * @return the page number
+		 */
+		public int getPage() {
+			return page;
+		}
+
+		/**
+		 * Gets the timestamp of the newest transaction on the page.
+		 * @return the timestamp
+		 */
+		public LocalDateTime getNewest() {
+			return newest;
+		}
+
+		/**
+		 * Gets the timestamp of the oldest transaction on the page.
+		 * @return the timestamp
+		 */
+		public LocalDateTime getOldest() {
+			return oldest;
+		}
+
+		/**
+		 * Gets the time the page was added to the cache.
+		 * @return the time
+		 */
+		public LocalDateTime getCached() {
+			return cached;
+		}
+
+		public int getTransactionCount() {
+			return transactionCount;
+		}
+
+		/**
+		 * Gets the player's rupee balance at the time the page was downloaded.
+		 * @return the rupee balance or null if unknown
+		 */
+		public Integer getRupeeBalance() {
+			return rupeeBalance;
+		}
+
+		/**
+		 * Gets the size of the page in the data file.
+		 * @return the size (in bytes)
+		 */
+		public int getLength() {
+			return length;
+		}
+	}
+}
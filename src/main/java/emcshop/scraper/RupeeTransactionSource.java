@@ -0,0 +1,91 @@
+package emcshop.scraper;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import com.github.mangstadt.emc.rupees.RupeeTransactionReader;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+
+/**
+ * A stream of rupee transactions, ordered from newest to oldest.
+ * @author Michael Angstadt
+ */
+public interface RupeeTransactionSource extends Closeable {
+	/**
+	 * Gets the next transaction.
+	 * @return the next transaction or null if there are no more transactions
+	 * @throws IOException if there's a problem retrieving the transaction
+	 */
+	RupeeTransaction next() throws IOException;
+
+	/**
+	 * Gets the player's current rupee balance.
+	 * @return the rupee balance or null if unknown
+	 */
+	Integer getRupeeBalance();
+
+	/**
+	 * Gets the page number of the transaction that was last returned by
+	 * {@link #next} (or 1 if no transactions have been returned yet).
+	 * @return the page number
+	 */
+	int getCurrentPageNumber();
+
+	/**
+	 * Creates a source that doesn't contain any transactions.
+	 * @return the source
+	 */
+	static RupeeTransactionSource empty() {
+		return new RupeeTransactionSource() {
+			@Override
+			public RupeeTransaction next() {
+				return null;
+			}
+
+			@Override
+			public Integer getRupeeBalance() {
+				return null;
+			}
+
+			@Override
+			public int getCurrentPageNumber() {
+				return 1;
+			}
+
+			@Override
+			public void close() {
+				//empty
+			}
+		};
+	}
+
+	/**
+	 * Wraps a {@link RupeeTransactionReader} that downloads the transactions
+	 * from the website.
+	 * @param reader the reader
+	 * @return the source
+	 */
+	static RupeeTransactionSource of(RupeeTransactionReader reader) {
+		return new RupeeTransactionSource() {
+			@Override
+			public RupeeTransaction next() throws IOException {
+				return reader.next();
+			}
+
+			@Override
+			public Integer getRupeeBalance() {
+				return reader.getRupeeBalance();
+			}
+
+			@Override
+			public int getCurrentPageNumber() {
+				return reader.getCurrentPageNumber();
+			}
+
+			@Override
+			public void close() throws IOException {
+				reader.close();
+			}
+		};
+	}
+}
@@ -0,0 +1,97 @@
+package emcshop.util;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * <p>
+ * Determines whether a string contains any of a set of substrings, using the
+ * Aho-Corasick algorithm. The patterns are compiled into an automaton once,
+ * so each string can be checked in a single pass no matter how many patterns
+ * there are.
+ * </p>
+ * <p>
+ * Matching is case sensitive. Instances of this class are immutable and can be
+ * shared between threads.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class AhoCorasick {
+	private final Node root = new Node();
+
+	/**
+	 * @param patterns the substrings to search for
+	 */
+	public AhoCorasick(Collection<String> patterns) {
+		for (String pattern : patterns) {
+			Node node = root;
+			for (int i = 0; i < pattern.length(); i++) {
+				node = node.children.computeIfAbsent(pattern.charAt(i), c -> new Node());
+			}
+			node.output = true;
+		}
+
+		//link each node to the longest proper suffix that is also in the trie (breadth-first)
+		Queue<Node> queue = new ArrayDeque<>();
+		for (Node child : root.children.values()) {
+			child.fail = root;
+			queue.add(child);
+		}
+		while (!queue.isEmpty()) {
+			Node node = queue.remove();
+			for (Map.Entry<Character, Node> entry : node.children.entrySet()) {
+				char c = entry.getKey();
+				Node child = entry.getValue();
+
+				Node fail = node.fail;
+				while (fail != root && !fail.children.containsKey(c)) {
+					fail = fail.fail;
+				}
+				Node next = fail.children.get(c);
+				child.fail = (next == null || next == child) ? root : next;
+
+				//a node matches if any of its suffixes match
+				child.output |= child.fail.output;
+
+				queue.add(child);
+			}
+		}
+	}
+
+	/**
+	 * Determines if a string contains any of the patterns.
+	 * @param text the string
+	 * @return true if it contains at least one pattern, false if not
+	 */
+	public boolean containsAny(CharSequence text) {
+		if (root.output) {
+			//there is an empty pattern
+			return true;
+		}
+
+		Node node = root;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+
+			Node next;
+			while ((next = node.children.get(c)) == null && node != root) {
+				node = node.fail;
+			}
+			node = (next == null) ? root : next;
+
+			if (node.output) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static class Node {
+		private final Map<Character, Node> children = new HashMap<>();
+		private Node fail;
+		private boolean output;
+	}
+}
@@ -0,0 +1,237 @@
+package emcshop.util;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ * Watches the directory that the Chester mod saves its files to. Each time
+ * the player opens a chest, the mod creates a new file that lists the chest's
+ * contents. The files are parsed, deleted, and passed to a listener in
+ * batches.
+ * </p>
+ * <p>
+ * The directory is watched using the file system's change notifications, so
+ * no CPU is used while waiting for files. The directory is also checked at a
+ * fixed interval, in case the file system does not support notifications.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class ChesterWatcher implements Closeable {
+	private static final Logger logger = Logger.getLogger(ChesterWatcher.class.getName());
+
+	/**
+	 * How long to wait for the mod to finish writing its files after a change
+	 * is detected (in milliseconds).
+	 */
+	private static final long SETTLE_TIME = 100;
+
+	private final Path dir;
+	private final long pollInterval;
+	private final Listener listener;
+	private final Instant started = Instant.now();
+	private final ExecutorService executor;
+	private final Set<Path> unreadable = ConcurrentHashMap.newKeySet();
+	private final Thread thread;
+	private volatile WatchService watcher;
+	private WatchKey parentKey;
+
+	/**
+	 * @param dir the Chester directory (it does not have to exist yet)
+	 * @param pollInterval how often to check the directory if the file system
+	 * does not report any changes (in milliseconds)
+	 * @param listener called with each batch of parsed files. Only files that
+	 * were created after the watcher was created are included.
+	 */
+	public ChesterWatcher(Path dir, long pollInterval, Listener listener) {
+		this.dir = dir;
+		this.pollInterval = pollInterval;
+		this.listener = listener;
+
+		executor = Executors.newFixedThreadPool(2, runnable -> {
+			Thread thread = new Thread(runnable, getClass().getSimpleName() + " parser");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		thread = new Thread(this::watch, getClass().getSimpleName());
+		thread.setDaemon(true);
+	}
+
+	/**
+	 * Starts watching the directory in a background thread.
+	 * @return the thread
+	 */
+	public Thread start() {
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Stops watching the directory and waits for the background thread to
+	 * finish.
+	 */
+	@Override
+	public void close() {
+		thread.interrupt();
+		WatchService watcher = this.watcher;
+		if (watcher != null) {
+			try {
+				watcher.close();
+			} catch (IOException ignore) {
+			}
+		}
+
+		try {
+			thread.join();
+		} catch (InterruptedException ignore) {
+		}
+		executor.shutdownNow();
+	}
+
+	private void watch() {
+		try (WatchService watcher = dir.getFileSystem().newWatchService()) {
+			this.watcher = watcher;
+
+			WatchKey key = null;
+			while (!Thread.currentThread().isInterrupted()) {
+				if (key == null || !key.isValid()) {
+					key = register(watcher);
+				}
+
+				if (key != null) {
+					scan();
+				}
+
+				WatchKey signalled = watcher.poll(pollInterval, TimeUnit.MILLISECONDS);
+				if (signalled != null) {
+					//wait until the mod is done writing, so a batch of files can be processed at once
+					do {
+						signalled.pollEvents();
+						signalled.reset();
+					} while ((signalled = watcher.poll(SETTLE_TIME, TimeUnit.MILLISECONDS)) != null);
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			//stopped
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Could not watch the Chester directory.", e);
+		}
+	}
+
+	/**
+	 * Registers the Chester directory with the watch service. If the
+	 * directory doesn't exist yet, its parent directory is watched instead so
+	 * the watcher is notified when it is created.
+	 * @param watcher the watch service
+	 * @return the watch key or null if the Chester directory does not exist
+	 * yet
+	 * @throws IOException if there's a problem registering the directory
+	 */
+	private WatchKey register(WatchService watcher) throws IOException {
+		if (Files.isDirectory(dir)) {
+			if (parentKey != null) {
+				parentKey.cancel();
+				parentKey = null;
+			}
+			return dir.register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+		}
+
+		Path parent = dir.getParent();
+		if (parentKey == null && parent != null && Files.isDirectory(parent)) {
+			parentKey = parent.register(watcher, ENTRY_CREATE);
+		}
+		return null;
+	}
+
+	/**
+	 * Parses and deletes all new Chester files in the directory.
+	 * @throws InterruptedException if the thread is interrupted
+	 */
+	private void scan() throws InterruptedException {
+		List<Callable<ChesterFile>> tasks = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.chester")) {
+			for (Path file : stream) {
+				if (!unreadable.contains(file) && Files.getLastModifiedTime(file).toInstant().isAfter(started)) {
+					tasks.add(() -> parse(file));
+				}
+			}
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Problem getting list of Chester files.", e);
+			return;
+		}
+
+		if (tasks.isEmpty()) {
+			return;
+		}
+
+		List<ChesterFile> files = new ArrayList<>(tasks.size());
+		for (Future<ChesterFile> future : executor.invokeAll(tasks)) {
+			try {
+				ChesterFile file = future.get();
+				if (file != null) {
+					files.add(file);
+				}
+			} catch (ExecutionException e) {
+				logger.log(Level.SEVERE, "Problem reading Chester file.", e.getCause());
+			}
+		}
+
+		if (!files.isEmpty()) {
+			listener.onFiles(files);
+		}
+	}
+
+	private ChesterFile parse(Path file) throws IOException {
+		try {
+			ChesterFile chesterFile;
+			try {
+				chesterFile = ChesterFile.parse(file);
+			} catch (IllegalArgumentException e) {
+				logger.log(Level.SEVERE, "Problem parsing Chester file.", e);
+				chesterFile = null;
+			}
+
+			Files.delete(file);
+			return chesterFile;
+		} catch (IOException e) {
+			//the file is left in the directory, so skip it from now on instead of failing on every scan
+			unreadable.add(file);
+			throw e;
+		}
+	}
+
+	/**
+	 * Receives the parsed Chester files.
+	 */
+	public interface Listener {
+		/**
+		 * Called when new Chester files are found. This method is called from
+		 * the watcher's background thread.
+		 * @param files the parsed files
+		 */
+		void onFiles(List<ChesterFile> files);
+	}
+}
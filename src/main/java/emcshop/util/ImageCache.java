@@ -1,16 +1,65 @@
 package emcshop.util;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 
 /**
- * Caches images.
+ * <p>
+ * Caches images. Each image is identified by a name (case insensitive) and
+ * the size it was scaled to.
+ * </p>
+ * <p>
+ * The cache is bounded by the amount of memory the decoded images take up.
+ * When it is full, the least recently used images are evicted.
+ * </p>
  * @author Michael Angstadt
  */
 public class ImageCache {
-	protected final Map<String, ImageIcon> cache = new HashMap<>();
+	private static final Logger logger = Logger.getLogger(ImageCache.class.getName());
+
+	/**
+	 * The default memory limit (in bytes).
+	 */
+	public static final long DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+
+	private final Cache<Key, ImageIcon> cache;
+	private final Map<Key, CompletableFuture<ImageIcon>> loading = new ConcurrentHashMap<>();
+	private volatile ExecutorService executor;
+
+	/**
+	 * Creates a cache with the default memory limit.
+	 */
+	public ImageCache() {
+		this(DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * @param maxBytes the amount of memory the decoded images can take up (in
+	 * bytes)
+	 */
+	public ImageCache(long maxBytes) {
+		//@formatter:off
+		cache = CacheBuilder.newBuilder()
+			.maximumWeight(maxBytes)
+			.weigher((Key key, ImageIcon image) -> bytes(image))
+			.recordStats()
+		.build();
+		//@formatter:on
+	}
 
 	/**
 	 * Gets an image from the cache.
@@ -19,10 +68,7 @@ public class ImageCache {
 	 * @return the image or null if it doesn't exist
 	 */
 	public ImageIcon get(String name, int maxSize) {
-		String key = key(name, maxSize);
-		synchronized (cache) {
-			return cache.get(key);
-		}
+		return cache.getIfPresent(new Key(name, maxSize));
 	}
 
 	/**
@@ -32,10 +78,80 @@ public class ImageCache {
 	 * @param image the image
 	 */
 	public void put(String name, int maxSize, ImageIcon image) {
-		String key = key(name, maxSize);
-		synchronized (cache) {
-			cache.put(key, image);
+		cache.put(new Key(name, maxSize), image);
+	}
+
+	/**
+	 * Gets an image from the cache. If the image is not in the cache, it is
+	 * loaded in a background thread and added to the cache. Multiple requests
+	 * for the same image only load it once.
+	 * @param name the image name
+	 * @param maxSize the size of the image
+	 * @param loader loads and scales the image if it's not in the cache
+	 * (called from a background thread, may return null if the image does not
+	 * exist)
+	 * @param onLoaded called on the event dispatch thread when the image has
+	 * been loaded (not called if the image is in the cache or if the loader
+	 * returns null)
+	 * @return the image or null if it isn't in the cache
+	 */
+	public ImageIcon get(String name, int maxSize, Supplier<ImageIcon> loader, Consumer<ImageIcon> onLoaded) {
+		Key key = new Key(name, maxSize);
+		ImageIcon image = cache.getIfPresent(key);
+		if (image != null) {
+			return image;
+		}
+
+		CompletableFuture<ImageIcon> created = new CompletableFuture<>();
+		CompletableFuture<ImageIcon> existing = loading.putIfAbsent(key, created);
+		CompletableFuture<ImageIcon> future;
+		if (existing == null) {
+			future = created;
+			executor().execute(() -> load(key, future, loader));
+		} else {
+			future = existing;
 		}
+
+		future.whenComplete((loaded, error) -> {
+			loading.remove(key, future);
+			if (error != null) {
+				logger.log(Level.WARNING, "Problem loading image \"" + name + "\".", error);
+				return;
+			}
+			if (loaded != null) {
+				SwingUtilities.invokeLater(() -> onLoaded.accept(loaded));
+			}
+		});
+
+		return null;
+	}
+
+	/**
+	 * Loads an image in the background and adds it to the cache.
+	 * @param key the image key
+	 * @param future the future that the image is being loaded for
+	 * @param loader loads the image
+	 */
+	private void load(Key key, CompletableFuture<ImageIcon> future, Supplier<ImageIcon> loader) {
+		ImageIcon loaded;
+		try {
+			loaded = loader.get();
+		} catch (Throwable t) {
+			future.completeExceptionally(t);
+			return;
+		}
+
+		if (loaded != null) {
+			//if the image was cleared while it was being loaded, it may be out of date, so don't cache it
+			loading.computeIfPresent(key, (k, current) -> {
+				if (current == future) {
+					cache.put(k, loaded);
+				}
+				return current;
+			});
+		}
+
+		future.complete(loaded);
 	}
 
 	/**
@@ -43,17 +159,89 @@ public class ImageCache {
 	 * @param name the image name
 	 */
 	public void clear(String name) {
-		String prefix = prefix(name);
-		synchronized (cache) {
-			cache.keySet().removeIf(key -> key.startsWith(prefix));
+		/*
+		 * Images that are being loaded may be out of date, so load them again
+		 * the next time they're requested. This must be done before the cache
+		 * is emptied so that a load that is finishing cannot add its image
+		 * back to the cache.
+		 */
+		loading.keySet().removeIf(key -> key.name.equalsIgnoreCase(name));
+
+		cache.asMap().keySet().removeIf(key -> key.name.equalsIgnoreCase(name));
+	}
+
+	/**
+	 * Gets the number of images in the cache.
+	 * @return the number of images
+	 */
+	public long size() {
+		return cache.size();
+	}
+
+	/**
+	 * Gets the cache's hit, miss, and eviction counts.
+	 * @return the statistics
+	 */
+	public CacheStats getStats() {
+		return cache.stats();
+	}
+
+	private ExecutorService executor() {
+		if (executor == null) {
+			synchronized (this) {
+				if (executor == null) {
+					executor = Executors.newFixedThreadPool(2, runnable -> {
+						Thread thread = new Thread(runnable, getClass().getSimpleName());
+						thread.setDaemon(true);
+						thread.setPriority(Thread.MIN_PRIORITY);
+						return thread;
+					});
+				}
+			}
 		}
+		return executor;
 	}
 
-	protected String key(String name, int maxSize) {
-		return prefix(name) + maxSize;
+	/**
+	 * Estimates how much memory an image takes up.
+	 * @param image the image
+	 * @return the size (in bytes)
+	 */
+	private static int bytes(ImageIcon image) {
+		return Math.max(image.getIconWidth(), 1) * Math.max(image.getIconHeight(), 1) * 4;
 	}
 
-	protected String prefix(String name) {
-		return name.toLowerCase() + '|';
+	/**
+	 * Identifies an image in the cache. The name is compared case
+	 * insensitively without creating a lower case copy of it.
+	 */
+	private static class Key {
+		private final String name;
+		private final int maxSize;
+		private final int hash;
+
+		public Key(String name, int maxSize) {
+			this.name = name;
+			this.maxSize = maxSize;
+
+			int hash = maxSize;
+			for (int i = 0; i < name.length(); i++) {
+				hash = 31 * hash + Character.toLowerCase(name.charAt(i));
+			}
+			this.hash = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof Key)) return false;
+			Key other = (Key) obj;
+			return maxSize == other.maxSize && hash == other.hash && name.equalsIgnoreCase(other.name);
+		}
 	}
 }
@@ -0,0 +1,104 @@
+package emcshop.util;
+
+import java.time.Duration;
+
+/**
+ * Records latency samples in logarithmically-sized buckets so that percentiles
+ * can be computed without storing every sample. Each bucket is 5% wider than
+ * the previous one, so percentiles are accurate to within about 5%.
+ * @author Michael Angstadt
+ */
+public class LatencyHistogram {
+	private static final double GROWTH = 1.05;
+	private static final double LOG_GROWTH = Math.log(GROWTH);
+
+	/**
+	 * Enough buckets to hold samples of up to an hour (in microseconds).
+	 * Anything larger goes into the last bucket.
+	 */
+	private static final int BUCKETS = (int) Math.ceil(Math.log(Duration.ofHours(1).toNanos() / 1000) / LOG_GROWTH);
+
+	private final long[] counts = new long[BUCKETS];
+	private long count;
+	private long max;
+
+	/**
+	 * Records a sample.
+	 * @param nanos the sample (in nanoseconds)
+	 */
+	public synchronized void add(long nanos) {
+		long micros = nanos / 1000;
+		counts[bucket(micros)]++;
+		count++;
+		if (nanos > max) {
+			max = nanos;
+		}
+	}
+
+	/**
+	 * Gets the number of recorded samples.
+	 * @return the number of samples
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the largest recorded sample.
+	 * @return the largest sample or {@link Duration#ZERO} if nothing has been
+	 * recorded
+	 */
+	public synchronized Duration getMax() {
+		return Duration.ofNanos(max);
+	}
+
+	/**
+	 * Gets the value at a given percentile.
+	 * @param percentile the percentile (e.g. "99" for the 99th percentile)
+	 * @return the value or {@link Duration#ZERO} if nothing has been recorded
+	 */
+	public synchronized Duration getPercentile(double percentile) {
+		if (count == 0) {
+			return Duration.ZERO;
+		}
+
+		long rank = (long) Math.ceil(count * (percentile / 100.0));
+		if (rank < 1) {
+			rank = 1;
+		}
+		if (rank >= count) {
+			return Duration.ofNanos(max);
+		}
+
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				long nanos = Math.round(Math.pow(GROWTH, i + 0.5)) * 1000;
+				return Duration.ofNanos(Math.min(nanos, max));
+			}
+		}
+
+		return Duration.ofNanos(max);
+	}
+
+	/**
+	 * Removes all recorded samples.
+	 */
+	public synchronized void clear() {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = 0;
+		}
+		count = 0;
+		max = 0;
+	}
+
+	private static int bucket(long micros) {
+		if (micros <= 1) {
+			return 0;
+		}
+
+		int bucket = (int) (Math.log(micros) / LOG_GROWTH);
+		return Math.min(bucket, BUCKETS - 1);
+	}
+}
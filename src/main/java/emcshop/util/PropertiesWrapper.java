@@ -47,6 +47,10 @@ public class PropertiesWrapper implements Iterable<Map.Entry<String, String>> {
 		}
 	}
 
+	public PropertiesWrapper(Reader reader) throws IOException {
+		properties.load(reader);
+	}
+
 	public String get(String key) {
 		return properties.getProperty(key);
 	}
@@ -236,10 +240,14 @@ public class PropertiesWrapper implements Iterable<Map.Entry<String, String>> {
 
 	public void store(Path file, String comment) throws IOException {
 		try (Writer writer = Files.newBufferedWriter(file, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.CREATE)) {
-			properties.store(writer, comment);
+			store(writer, comment);
 		}
 	}
 
+	public void store(Writer writer, String comment) throws IOException {
+		properties.store(writer, comment);
+	}
+
 	/**
 	 * Gets all the property keys.
 	 * @return the property keys
@@ -0,0 +1,112 @@
+package emcshop.view;
+
+import java.awt.event.ActionListener;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import emcshop.model.UpdateMetrics;
+import emcshop.scraper.EmcSession;
+
+/**
+ * An update view that does not display anything. Used for updates that run in
+ * the background. If the update fails or the user's session has expired, the
+ * update is canceled and nothing is saved.
+ * @author Michael Angstadt
+ */
+public class BackgroundUpdateView implements IUpdateView {
+	private static final Logger logger = Logger.getLogger(BackgroundUpdateView.class.getName());
+
+	@Override
+	public EmcSession getNewSession() {
+		//the user has to log in again, which can't be done in the background
+		return null;
+	}
+
+	@Override
+	public boolean showDownloadError(Exception thrown) {
+		logger.log(Level.WARNING, "Error downloading transactions during a background update.", thrown);
+		return false;
+	}
+
+	@Override
+	public void addCancelListener(ActionListener listener) {
+		//empty
+	}
+
+	@Override
+	public void addStopListener(ActionListener listener) {
+		//empty
+	}
+
+	@Override
+	public void addReportErrorListener(ActionListener listener) {
+		//empty
+	}
+
+	@Override
+	public boolean getShowResults() {
+		return false;
+	}
+
+	@Override
+	public void setFirstUpdate(boolean firstUpdate) {
+		//empty
+	}
+
+	@Override
+	public void setEstimatedTime(Duration estimatedTime) {
+		//empty
+	}
+
+	@Override
+	public void setStopAtPage(Integer stopAtPage) {
+		//empty
+	}
+
+	@Override
+	public void setOldestParsedTransactonDate(LocalDateTime date) {
+		//empty
+	}
+
+	@Override
+	public void setPages(int pages) {
+		//empty
+	}
+
+	@Override
+	public void setShopTransactions(int count) {
+		//empty
+	}
+
+	@Override
+	public void setPaymentTransactions(int count) {
+		//empty
+	}
+
+	@Override
+	public void setBonusFeeTransactions(int count) {
+		//empty
+	}
+
+	@Override
+	public void setMetrics(UpdateMetrics metrics) {
+		//empty
+	}
+
+	@Override
+	public void reset() {
+		//empty
+	}
+
+	@Override
+	public void display() {
+		//empty
+	}
+
+	@Override
+	public void close() {
+		//empty
+	}
+}
@@ -161,6 +161,11 @@ public class ChatLogViewerViewImpl extends JDialog implements IChatLogViewerView
 		closeListeners.add(listener);
 	}
 
+	@Override
+	public void addSearchAllListener(ActionListener listener) {
+		filterPanel.searchAll.addActionListener(listener);
+	}
+
 	@Override
 	public Path getLogDirectory() {
 		return Paths.get(logDir.getText());
@@ -195,6 +200,28 @@ public class ChatLogViewerViewImpl extends JDialog implements IChatLogViewerView
 		this.currentPlayer = currentPlayer;
 	}
 
+	@Override
+	public String getSearchKeyword() {
+		return filterPanel.search.getText().trim();
+	}
+
+	@Override
+	public String getSearchPlayer() {
+		return filterPanel.player.getText().trim();
+	}
+
+	@Override
+	public void searchStarted() {
+		filterPanel.searchAll.setEnabled(false);
+		messages.setText("<html><div align=\"center\"><b>Searching all logs...");
+	}
+
+	@Override
+	public void setSearchResults(List<ChatMessage> results) {
+		filterPanel.searchAll.setEnabled(true);
+		messages.setSearchResults(results);
+	}
+
 	@Override
 	public void setChatMessages(List<ChatMessage> chatMessages) {
 		this.chatMessages = chatMessages;
@@ -203,6 +230,17 @@ public class ChatLogViewerViewImpl extends JDialog implements IChatLogViewerView
 		}
 	}
 
+	@Override
+	public void addChatMessages(List<ChatMessage> chatMessages) {
+		List<ChatMessage> combined = new ArrayList<>(this.chatMessages);
+		combined.addAll(chatMessages);
+		this.chatMessages = combined;
+
+		if (isVisible() && !messages.searchResults) {
+			messages.setChatMessages(this.chatMessages, paymentTransaction);
+		}
+	}
+
 	@Override
 	public void showError(String message) {
 		DialogBuilder.error() //@formatter:off
@@ -224,13 +262,14 @@ public class ChatLogViewerViewImpl extends JDialog implements IChatLogViewerView
 
 	private class ChatLogEditorPane extends JEditorPane {
 		private final DateTimeFormatter df = DateTimeFormatter.ofPattern("HH:mm:ss");
+		private final DateTimeFormatter searchResultDf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 		private final Pattern gaveRupeesRegex = Pattern.compile("^You paid ([\\d,]+) rupees to (.*)");
 		private final Pattern receivedRupeesRegex = Pattern.compile("^You just received ([\\d,]+) rupees from (.*)");
 
 		private PaymentTransactionDb paymentTransaction;
 		private Pattern paymentTransactionRegex;
 		private List<ChatMessage> chatMessages = Collections.emptyList();
-		private boolean foundPaymentTransaction;
+		private boolean foundPaymentTransaction, searchResults;
 
 		public ChatLogEditorPane() {
 			setContentType("text/html");
@@ -238,10 +277,22 @@ public class ChatLogViewerViewImpl extends JDialog implements IChatLogViewerView
 
 		public void setChatMessages(List<ChatMessage> chatMessages, PaymentTransactionDb paymentTransaction) {
 			this.chatMessages = chatMessages;
+			searchResults = false;
 			setPaymentTransaction(paymentTransaction);
 			update();
 		}
 
+		/**
+		 * Displays messages from multiple dates.
+		 * @param chatMessages the messages
+		 */
+		public void setSearchResults(List<ChatMessage> chatMessages) {
+			this.chatMessages = chatMessages;
+			searchResults = true;
+			setPaymentTransaction(null);
+			update();
+		}
+
 		public void setPaymentTransaction(PaymentTransactionDb paymentTransaction) {
 			this.paymentTransaction = paymentTransaction;
 
@@ -264,7 +315,7 @@ public class ChatLogViewerViewImpl extends JDialog implements IChatLogViewerView
 
 		public void update() {
 			if (chatMessages.isEmpty()) {
-				setText("<html><div align=\"center\"><b>No log entries for this date.");
+				setText("<html><div align=\"center\"><b>" + (searchResults ? "No messages found." : "No log entries for this date."));
 				return;
 			}
 
@@ -350,7 +401,7 @@ public class ChatLogViewerViewImpl extends JDialog implements IChatLogViewerView
 					sb.append("<span style=\"color:#cccccc\">");
 				}
 
-				String dateStr = "[" + df.format(date) + "] ";
+				String dateStr = "[" + (searchResults ? searchResultDf : df).format(date) + "] ";
 				sb.append(escapeHtml3(dateStr)).append(escapedMessage);
 
 				if (hide) {
@@ -440,8 +491,9 @@ public class ChatLogViewerViewImpl extends JDialog implements IChatLogViewerView
 	}
 
 	private class FilterPanel extends JPanel {
-		private final JLabel searchLabel;
-		private final JTextField search;
+		private final JLabel searchLabel, playerLabel;
+		private final JTextField search, player;
+		private final JButton searchAll;
 
 		private final List<SearchListener> searchListeners = new ArrayList<>();
 
@@ -456,12 +508,22 @@ public class ChatLogViewerViewImpl extends JDialog implements IChatLogViewerView
 				}
 			});
 
+			playerLabel = new JLabel("Player:");
+			player = new JTextField();
+
+			searchAll = new JButton("Search All Logs");
+			searchAll.setToolTipText("Searches every log file for messages that contain the search term and player name.");
+			player.addActionListener(event -> searchAll.doClick());
+
 			////////////////////////////////////////
 
 			setLayout(new MigLayout("insets 0"));
 
 			add(searchLabel);
 			add(search, "w 150");
+			add(playerLabel, "gapleft 10");
+			add(player, "w 100");
+			add(searchAll);
 		}
 
 		public void addSearchListener(SearchListener listener) {
@@ -472,6 +534,8 @@ public class ChatLogViewerViewImpl extends JDialog implements IChatLogViewerView
 		public void setEnabled(boolean enabled) {
 			super.setEnabled(enabled);
 			search.setEnabled(enabled);
+			player.setEnabled(enabled);
+			searchAll.setEnabled(enabled);
 		}
 	}
 
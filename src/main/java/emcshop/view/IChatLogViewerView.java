@@ -15,6 +15,8 @@ public interface IChatLogViewerView {
 
 	void addCloseListener(ActionListener listener);
 
+	void addSearchAllListener(ActionListener listener);
+
 	Path getLogDirectory();
 
 	void setLogDirectory(Path logDirectory);
@@ -27,8 +29,23 @@ public interface IChatLogViewerView {
 
 	void setChatMessages(List<ChatMessage> chatMessages);
 
+	/**
+	 * Adds messages to the end of the log that is being displayed. The
+	 * messages are ignored if search results are being displayed.
+	 * @param chatMessages the messages to add
+	 */
+	void addChatMessages(List<ChatMessage> chatMessages);
+
 	void setCurrentPlayer(String currentPlayer);
 
+	String getSearchKeyword();
+
+	String getSearchPlayer();
+
+	void searchStarted();
+
+	void setSearchResults(List<ChatMessage> results);
+
 	void showError(String string);
 
 	void display();
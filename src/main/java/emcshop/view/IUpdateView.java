@@ -4,6 +4,7 @@ import java.awt.event.ActionListener;
 import java.time.Duration;
 import java.time.LocalDateTime;
 
+import emcshop.model.UpdateMetrics;
 import emcshop.scraper.EmcSession;
 
 public interface IUpdateView {
@@ -96,6 +97,12 @@ public interface IUpdateView {
 	 */
 	void setBonusFeeTransactions(int count);
 
+	/**
+	 * Sets the timing information of the download so far.
+	 * @param metrics the metrics
+	 */
+	void setMetrics(UpdateMetrics metrics);
+
 	/**
 	 * Resets the dialog back to its starting state.
 	 */
@@ -12,7 +12,9 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -30,6 +32,8 @@ import org.apache.commons.lang3.time.DurationFormatUtils;
 
 import emcshop.gui.DialogBuilder;
 import emcshop.gui.images.Images;
+import emcshop.model.UpdateMetrics;
+import emcshop.model.UpdateMetrics.Stage;
 import emcshop.presenter.LoginPresenter;
 import emcshop.scraper.EmcSession;
 import emcshop.util.GuiUtils;
@@ -41,13 +45,15 @@ public class UpdateViewImpl extends JDialog implements IUpdateView {
 	private final LoginShower loginShower;
 	private final JButton cancel, stop;
 	private final JLabel pagesLabel, shopTransactionsLabel, paymentTransactionsLabel, bonusFeeTransactionsLabel, timerLabel;
+	private final JLabel ratesLabel, insertLatencyLabel;
+	private final Map<Stage, JLabel> stageLabels = new EnumMap<>(Stage.class);
 	private final JCheckBox display;
 	private final List<ActionListener> reportErrorListeners = new ArrayList<>();
 
 	private int pagesCount, shopTransactionsCount, paymentTransactionsCount, bonusFeeTransactionsCount;
 	private LocalDateTime oldestTransactionDate;
 
-	private Duration estimatedTime;
+	private volatile Duration estimatedTime;
 	private Integer stopAtPage;
 	private TimerThread timer;
 
@@ -72,6 +78,11 @@ public class UpdateViewImpl extends JDialog implements IUpdateView {
 		shopTransactionsLabel = new JLabel();
 		paymentTransactionsLabel = new JLabel();
 		bonusFeeTransactionsLabel = new JLabel();
+		ratesLabel = new JLabel();
+		insertLatencyLabel = new JLabel();
+		for (Stage stage : Stage.values()) {
+			stageLabels.put(stage, new JLabel());
+		}
 		reset();
 
 		timerLabel = new JLabel("...");
@@ -99,6 +110,17 @@ public class UpdateViewImpl extends JDialog implements IUpdateView {
 		add(new JLabel("Time:"));
 		add(timerLabel, "wrap");
 
+		add(new JLabel("Rate:"));
+		add(ratesLabel, "wrap");
+
+		add(new JLabel("Time spent:"), "span 2, wrap");
+		for (Map.Entry<Stage, JLabel> entry : stageLabels.entrySet()) {
+			add(new JLabel(entry.getKey().getDisplay() + ":"), "gapleft 30");
+			add(entry.getValue(), "wrap");
+		}
+		add(new JLabel("Insert latency:"), "gapleft 30");
+		add(insertLatencyLabel, "wrap");
+
 		add(display, "span 2, align center, wrap");
 
 		add(cancel, "span 2, split 2, align center");
@@ -160,6 +182,7 @@ public class UpdateViewImpl extends JDialog implements IUpdateView {
 		setShopTransactions(0);
 		setPaymentTransactions(0);
 		setBonusFeeTransactions(0);
+		setMetrics(null);
 	}
 
 	@Override
@@ -192,6 +215,29 @@ public class UpdateViewImpl extends JDialog implements IUpdateView {
 		bonusFeeTransactionsLabel.setText(nf.format(count));
 	}
 
+	@Override
+	public void setMetrics(UpdateMetrics metrics) {
+		if (metrics == null) {
+			ratesLabel.setText("-");
+			for (JLabel label : stageLabels.values()) {
+				label.setText("-");
+			}
+			insertLatencyLabel.setText("-");
+			return;
+		}
+
+		ratesLabel.setText(String.format("%.1f pages/s, %.0f rows/s", metrics.getPagesPerSecond(), metrics.getRowsPerSecond()));
+		for (Map.Entry<Stage, JLabel> entry : stageLabels.entrySet()) {
+			Duration time = metrics.getTime(entry.getKey());
+			entry.getValue().setText(DurationFormatUtils.formatDuration(time.toMillis(), "HH:mm:ss", true));
+		}
+		insertLatencyLabel.setText("p50 " + formatLatency(metrics.getInsertLatency(50)) + ", p99 " + formatLatency(metrics.getInsertLatency(99)));
+	}
+
+	private static String formatLatency(Duration latency) {
+		return String.format("%.2f ms", latency.toNanos() / 1_000_000.0);
+	}
+
 	@Override
 	public void setOldestParsedTransactonDate(LocalDateTime date) {
 		oldestTransactionDate = date;
@@ -241,15 +287,16 @@ public class UpdateViewImpl extends JDialog implements IUpdateView {
 	private class TimerThread extends Thread {
 		@Override
 		public void run() {
-			final String estimatedTimeDisplay = (estimatedTime == null) ? null : DurationFormatUtils.formatDuration(estimatedTime.toMillis(), "HH:mm:ss", true);
 			final Instant start = Instant.now();
 
 			while (isDisplayable()) {
 				Duration elapsed = Duration.between(start, Instant.now());
 				String timerText = DurationFormatUtils.formatDuration(elapsed.toMillis(), "HH:mm:ss", true);
 
-				if (estimatedTimeDisplay != null) {
-					timerText += " / " + estimatedTimeDisplay;
+				//the estimate is refined as pages are downloaded
+				Duration estimatedTime = UpdateViewImpl.this.estimatedTime;
+				if (estimatedTime != null) {
+					timerText += " / " + DurationFormatUtils.formatDuration(estimatedTime.toMillis(), "HH:mm:ss", true);
 				}
 				timerLabel.setText(timerText);
 
@@ -0,0 +1,9 @@
+--per-stage timings of each update (in milliseconds), NULL for updates that were logged before these columns existed
+ALTER TABLE update_log ADD COLUMN page_count INT;
+ALTER TABLE update_log ADD COLUMN download_time INT;
+ALTER TABLE update_log ADD COLUMN item_name_time INT;
+ALTER TABLE update_log ADD COLUMN insert_time INT;
+
+--the median and 99th percentile time it took to insert a single transaction (in microseconds)
+ALTER TABLE update_log ADD COLUMN insert_latency_p50 INT;
+ALTER TABLE update_log ADD COLUMN insert_latency_p99 INT;
@@ -0,0 +1,2 @@
+--the number of threads that were used to download the transaction pages
+ALTER TABLE update_log ADD COLUMN download_threads INT;
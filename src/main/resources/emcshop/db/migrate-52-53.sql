@@ -0,0 +1,2 @@
+--the time it took to commit each update (in milliseconds), NULL for updates that were logged before this column existed
+ALTER TABLE update_log ADD COLUMN commit_time INT;
@@ -0,0 +1,5 @@
+--whether the transaction's quantity was applied to the inventory
+ALTER TABLE transactions ADD COLUMN inventory_updated BOOLEAN NOT NULL DEFAULT false;
+
+--it isn't known which existing transactions were applied, so assume it was all the ones for items that are in the inventory
+UPDATE transactions SET inventory_updated = true WHERE player IS NOT NULL AND item IN (SELECT item FROM inventory);
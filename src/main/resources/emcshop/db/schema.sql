@@ -45,7 +45,10 @@ CREATE TABLE transactions(
 	quantity INT NOT NULL,
 	
 	--the player's rupee balance after the transaction occurred
-	balance INT NOT NULL
+	balance INT NOT NULL,
+	
+	--whether the transaction's quantity was applied to the inventory
+	inventory_updated BOOLEAN NOT NULL DEFAULT false
 );
 
 CREATE TABLE payment_transactions(
@@ -99,7 +102,20 @@ CREATE TABLE update_log (
 	transaction_count INT NOT NULL,
 	payment_transaction_count INT NOT NULL,
 	bonus_fee_transaction_count INT NOT NULL,
-	time_taken INT NOT NULL
+	time_taken INT NOT NULL,
+	
+	--per-stage timings (in milliseconds)
+	--NULL for updates that were logged before these columns were added
+	page_count INT,
+	download_threads INT,
+	download_time INT,
+	item_name_time INT,
+	insert_time INT,
+	commit_time INT,
+	
+	--the median and 99th percentile time it took to insert a single transaction (in microseconds)
+	insert_latency_p50 INT,
+	insert_latency_p99 INT
 );
 
 CREATE INDEX ts_index ON transactions(ts);
@@ -0,0 +1,64 @@
+package emcshop.chart;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.data.time.TimeSeriesCollection;
+import org.junit.Test;
+
+import emcshop.chart.ChartWriter.Format;
+
+/**
+ * @author Michael Angstadt
+ */
+public class ChartWriterTest {
+	@Test
+	public void png() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ChartWriter.write(chart(), Format.PNG, 300, 200, out);
+
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(300, image.getWidth());
+		assertEquals(200, image.getHeight());
+	}
+
+	@Test
+	public void svg() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ChartWriter.write(chart(), Format.SVG, 300, 200, out);
+
+		String svg = new String(out.toByteArray(), StandardCharsets.UTF_8);
+		assertTrue(svg.contains("<svg xmlns=\"http://www.w3.org/2000/svg\""));
+		assertTrue(svg.contains("width=\"300\" height=\"200\""));
+
+		Matcher m = Pattern.compile("data:image/png;base64,([^\"]+)").matcher(svg);
+		assertTrue(m.find());
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(Base64.getDecoder().decode(m.group(1))));
+		assertEquals(300, image.getWidth());
+		assertEquals(200, image.getHeight());
+	}
+
+	@Test
+	public void find() {
+		assertEquals(Format.PNG, Format.find("png"));
+		assertEquals(Format.SVG, Format.find("SVG"));
+		assertNull(Format.find("csv"));
+	}
+
+	private static JFreeChart chart() {
+		return ChartFactory.createTimeSeriesChart("", "Date", "Rupees", new TimeSeriesCollection(), true, false, false);
+	}
+}
@@ -0,0 +1,49 @@
+package emcshop.chart;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * @author Michael Angstadt
+ */
+public class LttbTest {
+	@Test
+	public void below_threshold() {
+		double[] x = { 0, 1, 2, 3 };
+		double[] y = { 5, 2, 7, 1 };
+		assertArrayEquals(new int[] { 0, 1, 2, 3 }, Lttb.downsample(x, y, 4));
+		assertArrayEquals(new int[] { 0, 1, 2, 3 }, Lttb.downsample(x, y, 10));
+		assertArrayEquals(new int[] { 0, 1, 2, 3 }, Lttb.downsample(x, y, 2));
+		assertArrayEquals(new int[0], Lttb.downsample(new double[0], new double[0], 5));
+	}
+
+	@Test
+	public void keeps_first_last_and_peaks() {
+		int size = 1000;
+		double[] x = new double[size];
+		double[] y = new double[size];
+		for (int i = 0; i < size; i++) {
+			x[i] = i;
+			y[i] = 0;
+		}
+		y[250] = 100;
+		y[700] = -100;
+
+		int[] sampled = Lttb.downsample(x, y, 50);
+		assertEquals(50, sampled.length);
+		assertEquals(0, sampled[0]);
+		assertEquals(size - 1, sampled[sampled.length - 1]);
+		assertTrue(Arrays.binarySearch(sampled, 250) >= 0);
+		assertTrue(Arrays.binarySearch(sampled, 700) >= 0);
+
+		//indexes are in ascending order
+		for (int i = 1; i < sampled.length; i++) {
+			assertTrue(sampled[i] > sampled[i - 1]);
+		}
+	}
+}
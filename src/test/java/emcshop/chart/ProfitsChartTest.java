@@ -0,0 +1,119 @@
+package emcshop.chart;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.data.time.TimeSeries;
+import org.junit.Test;
+
+import emcshop.chart.ProfitsChart.Show;
+import emcshop.db.Profits;
+
+/**
+ * @author Michael Angstadt
+ */
+public class ProfitsChartTest {
+	@Test
+	public void net_profits() {
+		ProfitsChart chart = new ProfitsChart(matrix(10));
+
+		List<TimeSeries> series = chart.createSeries(Show.NET_PROFITS, Collections.emptyList(), 0);
+		assertEquals(3, series.size());
+		assertEquals("Customers", series.get(0).getKey());
+		assertEquals("Suppliers", series.get(1).getKey());
+		assertEquals("Net Profit", series.get(2).getKey());
+
+		//days without transactions are skipped
+		assertEquals(5, series.get(0).getItemCount());
+		assertEquals(100, series.get(0).getValue(0).intValue());
+		assertEquals(-10, series.get(1).getValue(0).intValue());
+		assertEquals(90, series.get(2).getValue(0).intValue());
+
+		assertEquals(5 * 90, chart.getNetTotal(Show.NET_PROFITS, Collections.emptyList()));
+	}
+
+	@Test
+	public void groups_and_items() {
+		ProfitsChart chart = new ProfitsChart(matrix(10));
+
+		List<TimeSeries> series = chart.createSeries(Show.ITEM_GROUPS, Arrays.asList("Diamonds", "Wool"), 0);
+		assertEquals(2, series.size());
+		assertEquals(5, series.get(0).getItemCount());
+		assertEquals(90, series.get(0).getValue(0).intValue());
+		assertEquals(0, series.get(1).getValue(0).intValue());
+		assertEquals(5 * 90, chart.getNetTotal(Show.ITEM_GROUPS, Arrays.asList("Diamonds", "Wool")));
+
+		series = chart.createSeries(Show.ITEMS, Arrays.asList("Diamond"), 0);
+		assertEquals("Diamond", series.get(0).getKey());
+		assertEquals(100, series.get(0).getValue(0).intValue());
+		assertEquals(5 * 100, chart.getNetTotal(Show.ITEMS, Arrays.asList("Diamond")));
+	}
+
+	@Test
+	public void rupee_balance() {
+		ProfitsChart chart = new ProfitsChart(matrix(10));
+
+		List<TimeSeries> series = chart.createSeries(Show.RUPEE_BALANCE, Collections.emptyList(), 0);
+		assertEquals(1, series.size());
+
+		//every day is included
+		assertEquals(10, series.get(0).getItemCount());
+		assertEquals(0, chart.getNetTotal(Show.RUPEE_BALANCE, Collections.emptyList()));
+	}
+
+	@Test
+	public void downsample() {
+		ProfitsChart chart = new ProfitsChart(matrix(2000));
+
+		List<TimeSeries> series = chart.createSeries(Show.RUPEE_BALANCE, Collections.emptyList(), 100);
+		assertEquals(100, series.get(0).getItemCount());
+
+		series = chart.createSeries(Show.NET_PROFITS, Collections.emptyList(), 100);
+		assertEquals(100, series.get(0).getItemCount());
+
+		//downsampling does not affect the total
+		assertEquals(1000 * 90, chart.getNetTotal(Show.NET_PROFITS, Collections.emptyList()));
+	}
+
+	@Test
+	public void createChart() {
+		ProfitsChart chart = new ProfitsChart(matrix(10));
+		JFreeChart jfreeChart = chart.createChart(Show.NET_PROFITS, Collections.emptyList(), 0);
+		XYPlot plot = (XYPlot) jfreeChart.getPlot();
+		assertEquals(3, plot.getDataset().getSeriesCount());
+	}
+
+	/**
+	 * Creates a matrix where every other day has transactions.
+	 * @param days the number of days
+	 * @return the matrix
+	 */
+	private static ProfitsMatrix matrix(int days) {
+		Map<LocalDate, Profits> profits = new LinkedHashMap<>();
+		LocalDate date = LocalDate.of(2015, 1, 1);
+		for (int i = 0; i < days; i++) {
+			Profits p = new Profits();
+			if (i % 2 == 0) {
+				p.addTransaction("Diamond", 100);
+				p.addTransaction("Diamond Block", -10);
+			}
+			p.setBalance(1000 + i);
+			profits.put(date.plusDays(i), p);
+		}
+
+		return new ProfitsMatrix(profits, false, ProfitsChartTest::groupsOf);
+	}
+
+	private static Collection<String> groupsOf(String item) {
+		return item.startsWith("diamond") ? Arrays.asList("Diamonds") : Collections.emptyList();
+	}
+}
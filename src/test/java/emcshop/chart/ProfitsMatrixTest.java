@@ -0,0 +1,94 @@
+package emcshop.chart;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import emcshop.db.Profits;
+
+/**
+ * @author Michael Angstadt
+ */
+public class ProfitsMatrixTest {
+	private final Function<String, Collection<String>> groupsOf = item -> {
+		switch (item) {
+		case "diamond":
+		case "diamond block":
+			return Arrays.asList("Diamonds");
+		case "oak log":
+			return Arrays.asList("Wood");
+		default:
+			return Collections.emptyList();
+		}
+	};
+
+	@Test
+	public void matrix() {
+		Map<LocalDate, Profits> profits = new LinkedHashMap<>();
+
+		Profits p = new Profits();
+		p.addTransaction("Diamond", 100);
+		p.addTransaction("Diamond Block", -50);
+		p.addTransaction("Oak Log", 10);
+		p.addTransaction("Stone", 5);
+		p.setBalance(1000);
+		profits.put(LocalDate.of(2020, 1, 1), p);
+
+		p = new Profits();
+		p.setBalance(900);
+		profits.put(LocalDate.of(2020, 1, 2), p);
+
+		p = new Profits();
+		p.addTransaction("diamond", -20);
+		p.addTransaction("Oak Log", 30);
+		p.addTransaction("Oak Log", 5);
+		p.setBalance(1100);
+		profits.put(LocalDate.of(2020, 1, 3), p);
+
+		ProfitsMatrix matrix = new ProfitsMatrix(profits, false, groupsOf);
+		assertFalse(matrix.isByMonth());
+		assertEquals(3, matrix.size());
+		assertEquals(Arrays.asList(LocalDate.of(2020, 1, 1), LocalDate.of(2020, 1, 2), LocalDate.of(2020, 1, 3)), matrix.getDates());
+
+		assertTrue(matrix.hasTransactions(0));
+		assertFalse(matrix.hasTransactions(1));
+		assertTrue(matrix.hasTransactions(2));
+
+		assertArrayEquals(new int[] { 115, 0, 35 }, matrix.getCustomerTotals());
+		assertArrayEquals(new int[] { -50, 0, -20 }, matrix.getSupplierTotals());
+		assertArrayEquals(new int[] { 1000, 900, 1100 }, matrix.getBalances());
+
+		assertEquals(new HashSet<>(Arrays.asList("Diamonds", "Wood")), new HashSet<>(matrix.getGroups()));
+		assertArrayEquals(new int[] { 50, 0, -20 }, matrix.getGroupTotals("Diamonds"));
+		assertArrayEquals(new int[] { 10, 0, 35 }, matrix.getGroupTotals("Wood"));
+		assertArrayEquals(new int[] { 0, 0, 0 }, matrix.getGroupTotals("Wool"));
+
+		assertArrayEquals(new int[] { 100, 0, -20 }, matrix.getItemTotals("DIAMOND"));
+		assertArrayEquals(new int[] { 0, 0, 0 }, matrix.getItemTotals("Wool"));
+
+		//item totals are cached
+		assertSame(matrix.getItemTotals("oak log"), matrix.getItemTotals("Oak Log"));
+	}
+
+	@Test
+	public void empty() {
+		ProfitsMatrix matrix = new ProfitsMatrix(new LinkedHashMap<>(), true, groupsOf);
+		assertTrue(matrix.isByMonth());
+		assertEquals(0, matrix.size());
+		assertEquals(0, matrix.getItemTotals("Diamond").length);
+		assertEquals(0, matrix.getGroupTotals("Diamonds").length);
+	}
+}
@@ -0,0 +1,184 @@
+package emcshop.chat;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.FileUtils;
+
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+
+/**
+ * Utility program that compares the speed of {@link ChatLogFileReader}
+ * against the regular expression-based implementation it replaced. A
+ * synthetic log file is generated, and each implementation reads it several
+ * times after a warm-up period.
+ *
+ * <pre>
+ * --lines=N         number of lines in the generated log file (default: 500000)
+ * --chat-ratio=R    fraction of the lines that are chat messages (default: 0.1)
+ * --gzip            gzip the log file like Minecraft's archived logs
+ * --iterations=N    number of measured runs of each implementation (default: 10)
+ * --warmup=N        number of warm-up runs of each implementation (default: 5)
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class ChatLogFileReaderBenchmark {
+	public static void main(String[] args) throws Exception {
+		OptionParser parser = new OptionParser();
+		parser.accepts("lines").withRequiredArg().ofType(Integer.class).defaultsTo(500_000);
+		parser.accepts("chat-ratio").withRequiredArg().ofType(Double.class).defaultsTo(0.1);
+		parser.accepts("gzip");
+		parser.accepts("iterations").withRequiredArg().ofType(Integer.class).defaultsTo(10);
+		parser.accepts("warmup").withRequiredArg().ofType(Integer.class).defaultsTo(5);
+		OptionSet options = parser.parse(args);
+
+		int lines = (Integer) options.valueOf("lines");
+		double chatRatio = (Double) options.valueOf("chat-ratio");
+		boolean gzip = options.has("gzip");
+		int iterations = (Integer) options.valueOf("iterations");
+		int warmup = (Integer) options.valueOf("warmup");
+
+		Path dir = Files.createTempDirectory("emcshop-chat-benchmark");
+		try {
+			Path file = dir.resolve(gzip ? "2020-04-01-1.log.gz" : "latest.log");
+			generate(file, lines, chatRatio);
+			long size = Files.size(file);
+			LocalDate date = LocalDate.of(2020, 4, 1);
+
+			System.out.println("=== " + lines + " lines, " + (int) (chatRatio * 100) + "% chat, " + (size / 1024) + " KB" + (gzip ? " (gzipped)" : "") + " ===");
+
+			for (int i = 0; i < warmup; i++) {
+				readRegex(file, date);
+				readScanner(file, date);
+			}
+
+			long regexTotal = 0, scannerTotal = 0;
+			long regexBest = Long.MAX_VALUE, scannerBest = Long.MAX_VALUE;
+			int regexCount = 0, scannerCount = 0;
+			for (int i = 0; i < iterations; i++) {
+				long start = System.nanoTime();
+				regexCount = readRegex(file, date);
+				long elapsed = System.nanoTime() - start;
+				regexTotal += elapsed;
+				regexBest = Math.min(regexBest, elapsed);
+
+				start = System.nanoTime();
+				scannerCount = readScanner(file, date);
+				elapsed = System.nanoTime() - start;
+				scannerTotal += elapsed;
+				scannerBest = Math.min(scannerBest, elapsed);
+			}
+
+			if (regexCount != scannerCount) {
+				throw new IllegalStateException("Implementations returned different numbers of messages: regex=" + regexCount + ", scanner=" + scannerCount);
+			}
+
+			System.out.println("Chat messages:  " + scannerCount);
+			print("Regex:", regexTotal / iterations, regexBest, lines);
+			print("Scanner:", scannerTotal / iterations, scannerBest, lines);
+			System.out.println(String.format("Speedup:        %.2fx", (double) regexTotal / scannerTotal));
+		} finally {
+			FileUtils.deleteQuietly(dir.toFile());
+		}
+	}
+
+	private static void print(String label, long average, long best, int lines) {
+		System.out.println(String.format("%-16savg %.1f ms, best %.1f ms, %.0f lines/s", label, average / 1_000_000.0, best / 1_000_000.0, lines / (average / 1_000_000_000.0)));
+	}
+
+	private static int readScanner(Path file, LocalDate date) throws IOException {
+		int count = 0;
+		try (ChatLogFileReader reader = new ChatLogFileReader(file, date)) {
+			while (reader.readNext() != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * The original implementation of {@link ChatLogFileReader#readNext}, which
+	 * decodes every line and matches it against a regular expression.
+	 */
+	private static int readRegex(Path file, LocalDate date) throws IOException {
+		Pattern lineRegex = Pattern.compile("^\\[(\\d\\d):(\\d\\d):(\\d\\d)\\].*?\\[CHAT\\](.*)");
+
+		InputStream in = Files.newInputStream(file);
+		if (file.getFileName().toString().endsWith(".gz")) {
+			in = new GZIPInputStream(in);
+		}
+
+		int count = 0;
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				Matcher m = lineRegex.matcher(line);
+				if (!m.find()) {
+					continue;
+				}
+
+				int hour = Integer.parseInt(m.group(1));
+				int minute = Integer.parseInt(m.group(2));
+				int second = Integer.parseInt(m.group(3));
+				String message = m.group(4).trim();
+
+				LocalTime time = LocalTime.of(hour, minute, second);
+				new ChatMessage(LocalDateTime.of(date, time), message);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static void generate(Path file, int lines, double chatRatio) throws IOException {
+		//@formatter:off
+		String[] other = {
+			"[Render thread/WARN]: Received passengers for unknown entity",
+			"[Render thread/INFO]: Loaded 1234 advancements",
+			"[Worker-Main-3/WARN]: Unable to parse the text component in item lore",
+			"[main/INFO]: Setting user: shavingfoam",
+			"[Render thread/INFO]: Connecting to smp5.emc.gs, 25565"
+		};
+		String[] chat = {
+			"[Render thread/INFO]: [CHAT] M-5 • Ides_Of_March: Is anyone selling tridents?",
+			"[Render thread/INFO]: [CHAT] Player shop sold 64 Diamond to Notch",
+			"[Render thread/INFO]: [CHAT] » Welcome to shavingfoam's shoppe 2.0 /v 11372",
+			"[Render thread/INFO]: [CHAT] You paid 1,000 rupees to Jeb_"
+		};
+		//@formatter:on
+
+		Random random = new Random(1);
+		OutputStream out = Files.newOutputStream(file);
+		if (file.getFileName().toString().endsWith(".gz")) {
+			out = new GZIPOutputStream(out);
+		}
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+			for (int i = 0; i < lines; i++) {
+				int seconds = (int) ((long) i * 86_400 / lines);
+				String ts = String.format("[%02d:%02d:%02d] ", seconds / 3600, seconds / 60 % 60, seconds % 60);
+				String[] messages = (random.nextDouble() < chatRatio) ? chat : other;
+				writer.write(ts);
+				writer.write(messages[random.nextInt(messages.length)]);
+				writer.write('\n');
+			}
+		}
+	}
+}
@@ -3,19 +3,28 @@ package emcshop.chat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 /**
  * @author Michael Angstadt
  */
 public class ChatLogFileReaderTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	@Test
 	public void test() throws Exception {
 		//this log file should be edited in Notepad to preserve the character encoding
@@ -48,4 +57,80 @@ public class ChatLogFileReaderTest {
 			}
 		}
 	}
+
+	@Test
+	public void non_chat_lines() throws Exception {
+		//@formatter:off
+		Path file = file(
+			"[10:00:00] [main/INFO]: Starting\n" +
+			"\n" +
+			"[10:00] [Render thread/INFO]: [CHAT] bad timestamp\n" +
+			"[1a:00:00] [Render thread/INFO]: [CHAT] bad timestamp\n" +
+			" [10:00:00] [Render thread/INFO]: [CHAT] does not start with timestamp\n" +
+			"[10:00:01] [Render thread/INFO]: [CHA\n" +
+			"[10:00:02] [Render thread/INFO]: [CHAT]   one [CHAT] two  \n" +
+			"[10:00:03] [Render thread/INFO]: [CHAT]"
+		);
+		//@formatter:on
+
+		try (ChatLogFileReader reader = new ChatLogFileReader(file, LocalDate.of(2020, 4, 1))) {
+			ChatMessage message = reader.readNext();
+			assertEquals("one [CHAT] two", message.getMessage());
+			assertEquals(LocalDateTime.of(2020, 4, 1, 10, 0, 2), message.getDate());
+
+			message = reader.readNext();
+			assertEquals("", message.getMessage());
+			assertEquals(LocalDateTime.of(2020, 4, 1, 10, 0, 3), message.getDate());
+
+			assertNull(reader.readNext());
+		}
+	}
+
+	@Test
+	public void line_endings() throws Exception {
+		Path file = file("[10:00:01] [Render thread/INFO]: [CHAT] one\r\n[10:00:02] [Render thread/INFO]: [CHAT] two\r[10:00:03] [Render thread/INFO]: [CHAT] three\n");
+
+		try (ChatLogFileReader reader = new ChatLogFileReader(file, LocalDate.of(2020, 4, 1))) {
+			assertEquals("one", reader.readNext().getMessage());
+			assertEquals("two", reader.readNext().getMessage());
+			assertEquals("three", reader.readNext().getMessage());
+			assertNull(reader.readNext());
+		}
+	}
+
+	@Test
+	public void long_lines() throws Exception {
+		String longMessage = StringUtils.repeat("abcdefghij", 2000);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 10; i++) {
+			sb.append("[10:00:00] [main/INFO]: ").append(longMessage).append("\r\n");
+			sb.append("[10:00:0").append(i).append("] [Render thread/INFO]: [CHAT] ").append(i).append(longMessage).append("\r\n");
+		}
+		Path file = file(sb.toString());
+
+		try (ChatLogFileReader reader = new ChatLogFileReader(file, LocalDate.of(2020, 4, 1))) {
+			for (int i = 0; i < 10; i++) {
+				ChatMessage message = reader.readNext();
+				assertEquals(i + longMessage, message.getMessage());
+				assertEquals(LocalDateTime.of(2020, 4, 1, 10, 0, i), message.getDate());
+			}
+			assertNull(reader.readNext());
+		}
+	}
+
+	@Test
+	public void stream() throws Exception {
+		Path file = file("[10:00:01] [Render thread/INFO]: [CHAT] one\n[10:00:02] [main/INFO]: not chat\n[10:00:03] [Render thread/INFO]: [CHAT] two\n");
+
+		try (Stream<ChatMessage> stream = new ChatLogFileReader(file, LocalDate.of(2020, 4, 1)).stream()) {
+			List<String> messages = stream.map(ChatMessage::getMessage).collect(Collectors.toList());
+			assertEquals(Arrays.asList("one", "two"), messages);
+		}
+	}
+
+	private Path file(String content) throws Exception {
+		Path file = folder.newFile("latest.log").toPath();
+		Files.write(file, content.getBytes("UTF-8"));
+		return file;
+	}
 }
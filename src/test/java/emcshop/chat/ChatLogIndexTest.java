@@ -0,0 +1,204 @@
+package emcshop.chat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import emcshop.chat.ChatLogIndex.DayEntry;
+import emcshop.chat.ChatLogIndex.FileEntry;
+
+/**
+ * @author Michael Angstadt
+ */
+public class ChatLogIndexTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path logDir, indexFile;
+	private long logDirModified = System.currentTimeMillis() - 3_600_000;
+
+	@Before
+	public void before() throws Exception {
+		logDir = folder.newFolder("logs").toPath();
+		indexFile = folder.getRoot().toPath().resolve("chat-log-index.txt");
+	}
+
+	@Test
+	public void getFiles() throws Exception {
+		gzip("2020-03-01-1.log.gz", "[10:11:12] [Render thread/INFO]: [CHAT] March log file");
+		gzip("2020-04-01-1.log.gz", "[01:11:12] [Render thread/INFO]: [CHAT] Log file 1");
+		gzip("2020-04-01-10.log.gz", "[10:11:12] [Render thread/INFO]: [CHAT] Log file 10");
+		gzip("2020-04-01-2.log.gz", "[02:11:12] [Render thread/INFO]: [CHAT] Log file 2");
+		gzip("not-a-log.log.gz", "");
+
+		ChatLogIndex index = new ChatLogIndex(logDir, indexFile);
+		List<FileEntry> files = index.getFiles(LocalDate.of(2020, 4, 1));
+		assertEquals(3, files.size());
+		assertEquals("2020-04-01-1.log.gz", files.get(0).getFile().getFileName().toString());
+		assertEquals("2020-04-01-2.log.gz", files.get(1).getFile().getFileName().toString());
+		assertEquals("2020-04-01-10.log.gz", files.get(2).getFile().getFileName().toString());
+
+		//not scanned yet
+		assertFalse(files.get(0).isScanned());
+
+		assertTrue(index.getFiles(LocalDate.of(2020, 5, 1)).isEmpty());
+	}
+
+	@Test
+	public void update() throws Exception {
+		//@formatter:off
+		String content =
+		"[10:00:00] [main/INFO]: Starting\n" +
+		"[10:00:01] [Render thread/INFO]: [CHAT] one\n" +
+		"[10:00:02] [Render thread/INFO]: Not chat\n" +
+		"[10:00:03] [Render thread/INFO]: [CHAT] two\n" +
+		"[10:00:04] [main/INFO]: Stopping\n";
+		//@formatter:on
+		gzip("2020-04-01-1.log.gz", content);
+		gzip("2020-04-01-2.log.gz", "[10:00:00] [main/INFO]: No chat here\n");
+
+		ChatLogIndex index = new ChatLogIndex(logDir, indexFile);
+		index.update();
+
+		List<FileEntry> files = index.getFiles(LocalDate.of(2020, 4, 1));
+		FileEntry entry = files.get(0);
+		assertTrue(entry.isScanned());
+		assertEquals(2, entry.getChatLines());
+		assertEquals(1, entry.getDays().size());
+		DayEntry day = entry.getDays().get(0);
+		assertEquals(LocalDate.of(2020, 4, 1), day.getDate());
+		assertEquals(content.indexOf("[10:00:01]"), day.getChatStart());
+		assertEquals(content.indexOf("[10:00:04]"), day.getChatEnd());
+
+		entry = files.get(1);
+		assertTrue(entry.isScanned());
+		assertEquals(0, entry.getChatLines());
+		assertTrue(entry.getDays().isEmpty());
+
+		//the offsets are persisted
+		index = new ChatLogIndex(logDir, indexFile);
+		entry = index.getFiles(LocalDate.of(2020, 4, 1)).get(0);
+		assertTrue(entry.isScanned());
+		assertEquals(2, entry.getChatLines());
+		assertEquals(content.indexOf("[10:00:01]"), entry.getDays().get(0).getChatStart());
+		assertTrue(index.getFiles(LocalDate.of(2020, 4, 1)).get(1).isScanned());
+	}
+
+	@Test
+	public void update_past_midnight() throws Exception {
+		//@formatter:off
+		String content =
+		"[23:00:00] [main/INFO]: Starting\n" +
+		"[23:00:01] [Render thread/INFO]: [CHAT] one\n" +
+		"[23:59:59] [Render thread/INFO]: [CHAT] two\n" +
+		"[00:00:00] [Render thread/INFO]: Not chat\n" +
+		"[00:00:01] [Render thread/INFO]: [CHAT] three\n" +
+		"[00:00:02] [main/INFO]: Stopping";
+		//@formatter:on
+		gzip("2020-04-01-1.log.gz", content);
+		gzip("2020-04-02-1.log.gz", "[10:00:00] [Render thread/INFO]: [CHAT] four");
+
+		ChatLogIndex index = new ChatLogIndex(logDir, indexFile);
+
+		//the file hasn't been scanned, so its entire contents are included
+		List<DayEntry> days = index.getDays(LocalDate.of(2020, 4, 1));
+		assertEquals(1, days.size());
+		assertEquals(0, days.get(0).getChatStart());
+		assertEquals(-1, days.get(0).getChatEnd());
+
+		index.update();
+
+		days = index.getDays(LocalDate.of(2020, 4, 1));
+		assertEquals(1, days.size());
+		DayEntry day = days.get(0);
+		assertEquals(LocalDate.of(2020, 4, 1), day.getDate());
+		assertEquals(2, day.getChatLines());
+		assertEquals(content.indexOf("[23:00:01]"), day.getChatStart());
+		assertEquals(content.indexOf("[00:00:00]"), day.getChatEnd());
+
+		days = index.getDays(LocalDate.of(2020, 4, 2));
+		assertEquals(2, days.size());
+		day = days.get(0);
+		assertEquals("2020-04-01-1.log.gz", day.getFile().getFileName().toString());
+		assertEquals(LocalDate.of(2020, 4, 2), day.getDate());
+		assertEquals(1, day.getChatLines());
+		assertEquals(content.indexOf("[00:00:01]"), day.getChatStart());
+		assertEquals(content.indexOf("[00:00:02]"), day.getChatEnd());
+		assertEquals("2020-04-02-1.log.gz", days.get(1).getFile().getFileName().toString());
+
+		//the days are persisted
+		index = new ChatLogIndex(logDir, indexFile);
+		days = index.getDays(LocalDate.of(2020, 4, 2));
+		assertEquals(2, days.size());
+		assertEquals(content.indexOf("[00:00:01]"), days.get(0).getChatStart());
+	}
+
+	@Test
+	public void new_files() throws Exception {
+		gzip("2020-04-01-1.log.gz", "[01:11:12] [Render thread/INFO]: [CHAT] Log file 1");
+
+		ChatLogIndex index = new ChatLogIndex(logDir, indexFile);
+		index.update();
+		assertEquals(1, index.getFiles(LocalDate.of(2020, 4, 1)).size());
+
+		gzip("2020-04-01-2.log.gz", "[02:11:12] [Render thread/INFO]: [CHAT] Log file 2");
+		touchLogDir();
+
+		List<FileEntry> files = index.getFiles(LocalDate.of(2020, 4, 1));
+		assertEquals(2, files.size());
+		assertTrue(files.get(0).isScanned());
+		assertFalse(files.get(1).isScanned());
+
+		index.update();
+		assertTrue(files.get(1).isScanned());
+	}
+
+	@Test
+	public void different_log_dir() throws Exception {
+		gzip("2020-04-01-1.log.gz", "[01:11:12] [Render thread/INFO]: [CHAT] Log file 1");
+		new ChatLogIndex(logDir, indexFile).update();
+
+		Path otherDir = folder.newFolder("other").toPath();
+		ChatLogIndex index = new ChatLogIndex(otherDir, indexFile);
+		assertTrue(index.getFiles(LocalDate.of(2020, 4, 1)).isEmpty());
+	}
+
+	@Test
+	public void missing_log_dir() throws Exception {
+		ChatLogIndex index = new ChatLogIndex(logDir.resolve("does-not-exist"), indexFile);
+		assertTrue(index.getFiles(LocalDate.of(2020, 4, 1)).isEmpty());
+	}
+
+	/**
+	 * Changes the log directory's last modified time so that it is treated as
+	 * having changed. The time is kept in the past so that it isn't affected
+	 * by the file system's timestamp resolution.
+	 */
+	private void touchLogDir() throws IOException {
+		logDirModified += 60_000;
+		Files.setLastModifiedTime(logDir, FileTime.fromMillis(logDirModified));
+	}
+
+	private Path gzip(String name, String content) throws IOException {
+		Path file = logDir.resolve(name);
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+			out.write(content.getBytes());
+		}
+		touchLogDir();
+		return file;
+	}
+}
@@ -12,8 +12,11 @@ import java.nio.file.attribute.FileTime;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.GZIPOutputStream;
 
 import org.junit.Rule;
@@ -99,6 +102,77 @@ public class ChatLogParserTest {
 		}
 	}
 
+	@Test
+	public void streamLog() throws Exception {
+		gzip("2020-04-01-1.log.gz", "[01:11:12] [Render thread/INFO]: [CHAT] Log file 1\n[01:11:13] [Render thread/INFO]: [CHAT] Log file 1 again");
+		gzip("2020-04-01-2.log.gz", "[02:11:12] [Render thread/INFO]: [CHAT] Log file 2");
+
+		ChatLogParser parser = new ChatLogParser(folder.getRoot().toPath());
+		try (Stream<ChatMessage> stream = parser.streamLog(LocalDate.of(2020, 4, 1))) {
+			List<String> messages = stream.limit(2).map(ChatMessage::getMessage).collect(Collectors.toList());
+			assertEquals(Arrays.asList("Log file 1", "Log file 1 again"), messages);
+		}
+	}
+
+	@Test
+	public void getLog_with_index() throws Exception {
+		gzip("2020-03-01-1.log.gz", "[10:11:12] [Render thread/INFO]: [CHAT] March log file"); //should be ignored
+		gzip("2020-04-01-1.log.gz", "[01:00:00] [main/INFO]: Starting\n[01:11:12] [Render thread/INFO]: [CHAT] Log file 1\n[01:12:00] [main/INFO]: Stopping\n");
+		gzip("2020-04-01-2.log.gz", "[02:11:12] [main/INFO]: No chat messages");
+		gzip("2020-04-01-10.log.gz", "[10:11:12] [Render thread/INFO]: [CHAT] Log file 10");
+		Path latest = file("latest.log", "[20:11:12] [Render thread/INFO]: [CHAT] Log file latest");
+		Files.setLastModifiedTime(latest, filetime(LocalDateTime.of(2020, 4, 1, 12, 0, 0)));
+
+		ChatLogIndex index = new ChatLogIndex(folder.getRoot().toPath(), folder.newFolder("index").toPath().resolve("index.txt"));
+
+		//before and after the files are scanned
+		for (int i = 0; i < 2; i++) {
+			ChatLogParser parser = new ChatLogParser(folder.getRoot().toPath(), index);
+			Iterator<ChatMessage> messages = parser.getLog(LocalDate.of(2020, 4, 1)).iterator();
+
+			ChatMessage message = messages.next();
+			assertEquals("Log file 1", message.getMessage());
+			assertEquals(LocalDateTime.of(2020, 4, 1, 1, 11, 12), message.getDate());
+
+			message = messages.next();
+			assertEquals("Log file 10", message.getMessage());
+			assertEquals(LocalDateTime.of(2020, 4, 1, 10, 11, 12), message.getDate());
+
+			message = messages.next();
+			assertEquals("Log file latest", message.getMessage());
+			assertEquals(LocalDateTime.of(2020, 4, 1, 20, 11, 12), message.getDate());
+
+			assertFalse(messages.hasNext());
+
+			index.update();
+		}
+	}
+
+	@Test
+	public void getLog_with_index_past_midnight() throws Exception {
+		gzip("2020-04-01-1.log.gz", "[23:59:59] [Render thread/INFO]: [CHAT] Before midnight\n[00:00:01] [Render thread/INFO]: [CHAT] After midnight\n");
+		gzip("2020-04-02-1.log.gz", "[10:11:12] [Render thread/INFO]: [CHAT] Next day");
+
+		ChatLogIndex index = new ChatLogIndex(folder.getRoot().toPath(), folder.newFolder("index").toPath().resolve("index.txt"));
+		index.update();
+		ChatLogParser parser = new ChatLogParser(folder.getRoot().toPath(), index);
+
+		Iterator<ChatMessage> messages = parser.getLog(LocalDate.of(2020, 4, 1)).iterator();
+		ChatMessage message = messages.next();
+		assertEquals("Before midnight", message.getMessage());
+		assertEquals(LocalDateTime.of(2020, 4, 1, 23, 59, 59), message.getDate());
+		assertFalse(messages.hasNext());
+
+		messages = parser.getLog(LocalDate.of(2020, 4, 2)).iterator();
+		message = messages.next();
+		assertEquals("After midnight", message.getMessage());
+		assertEquals(LocalDateTime.of(2020, 4, 2, 0, 0, 1), message.getDate());
+		message = messages.next();
+		assertEquals("Next day", message.getMessage());
+		assertEquals(LocalDateTime.of(2020, 4, 2, 10, 11, 12), message.getDate());
+		assertFalse(messages.hasNext());
+	}
+
 	private Path file(String name, String content) throws IOException {
 		return file(name, content, false);
 	}
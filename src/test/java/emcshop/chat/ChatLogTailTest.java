@@ -0,0 +1,188 @@
+package emcshop.chat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Michael Angstadt
+ */
+public class ChatLogTailTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path logDir, latest;
+	private ChatLogTail tail;
+	private final List<String> events = new ArrayList<>();
+
+	@Before
+	public void before() {
+		logDir = folder.getRoot().toPath();
+		latest = logDir.resolve("latest.log");
+
+		tail = new ChatLogTail(logDir);
+		tail.addListener((date, start, end, messages) -> {
+			String text = messages.stream().map(ChatMessage::getMessage).collect(Collectors.joining(","));
+			events.add(start + "-" + end + ":" + text);
+		});
+	}
+
+	@Test
+	public void appended_lines() throws Exception {
+		String existing = "[10:00:00] [Render thread/INFO]: [CHAT] before\n";
+		write(existing);
+		tail.skipToEnd();
+
+		tail.poll(false);
+		assertTrue(events.isEmpty());
+
+		String line1 = "[10:00:01] [Render thread/INFO]: [CHAT] one\n";
+		String line2 = "[10:00:02] [main/INFO]: not chat\n";
+		append(line1 + line2 + "[10:00:03] [Render thread/INFO]: [CHAT] tw");
+		tail.poll(false);
+		long end = existing.length() + line1.length() + line2.length();
+		assertEquals(existing.length() + "-" + end + ":one", events.remove(0));
+
+		//the rest of the partial line is written
+		append("o\n");
+		tail.poll(false);
+		assertEquals(end + "-" + size() + ":two", events.remove(0));
+
+		tail.poll(false);
+		assertTrue(events.isEmpty());
+	}
+
+	@Test
+	public void rotation() throws Exception {
+		write("[10:00:00] [Render thread/INFO]: [CHAT] before\n");
+		tail.skipToEnd();
+
+		//Minecraft archives the file and starts a new one
+		Files.move(latest, logDir.resolve("2020-04-01-1.log"));
+		write("[11:00:00] [Render thread/INFO]: [CHAT] new file\n");
+		tail.poll(true);
+		assertEquals("0-" + size() + ":new file", events.remove(0));
+
+		append("[11:00:01] [Render thread/INFO]: [CHAT] appended\n");
+		tail.poll(false);
+		assertTrue(events.remove(0).endsWith(":appended"));
+	}
+
+	@Test
+	public void truncated() throws Exception {
+		write("[10:00:00] [Render thread/INFO]: [CHAT] a long message that is written before\n");
+		tail.skipToEnd();
+
+		Files.write(latest, "[11:00:00] [Render thread/INFO]: [CHAT] short\n".getBytes());
+		tail.poll(false);
+		assertEquals("0-" + size() + ":short", events.remove(0));
+	}
+
+	@Test
+	public void file_does_not_exist_yet() throws Exception {
+		tail.skipToEnd();
+		tail.poll(false);
+		assertTrue(events.isEmpty());
+
+		write("[11:00:00] [Render thread/INFO]: [CHAT] created\n");
+		tail.poll(true);
+		assertEquals("0-" + size() + ":created", events.remove(0));
+	}
+
+	@Test
+	public void start() throws Exception {
+		write("[10:00:00] [Render thread/INFO]: [CHAT] before\n");
+
+		CountDownLatch latch = new CountDownLatch(1);
+		List<ChatMessage> received = new ArrayList<>();
+		tail.addListener((date, start, end, messages) -> {
+			received.addAll(messages);
+			latch.countDown();
+		});
+
+		LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+		tail.start(100);
+		try {
+			append("[" + now.toLocalTime().format(DateTimeFormatter.ofPattern("HH:mm:ss")) + "] [Render thread/INFO]: [CHAT] live\n");
+			assertTrue(latch.await(10, TimeUnit.SECONDS));
+		} finally {
+			tail.stop();
+		}
+
+		assertEquals(1, received.size());
+		assertEquals("live", received.get(0).getMessage());
+		assertEquals(now, received.get(0).getDate());
+	}
+
+	@Test
+	public void assignDates() {
+		LocalDate date = LocalDate.of(2020, 4, 1);
+
+		//@formatter:off
+		List<ChatMessage> messages = Arrays.asList(
+			new ChatMessage(date.atTime(23, 58), "a"),
+			new ChatMessage(date.atTime(23, 59), "b"),
+			new ChatMessage(date.atTime(0, 1), "c"),
+			new ChatMessage(date.atTime(1, 50), "d"),
+			new ChatMessage(date.atTime(1, 10), "e"), //the clocks went back an hour
+			new ChatMessage(date.atTime(9, 0), "f")
+		);
+		//@formatter:on
+
+		List<ChatMessage> actual = ChatLogTail.assignDates(messages, date.plusDays(1).atTime(9, 0, 30));
+
+		//@formatter:off
+		List<LocalDateTime> expected = Arrays.asList(
+			date.atTime(23, 58),
+			date.atTime(23, 59),
+			date.plusDays(1).atTime(0, 1),
+			date.plusDays(1).atTime(1, 50),
+			date.plusDays(1).atTime(1, 10),
+			date.plusDays(1).atTime(9, 0)
+		);
+		//@formatter:on
+		assertEquals(expected, actual.stream().map(ChatMessage::getDate).collect(Collectors.toList()));
+		assertEquals("a,b,c,d,e,f", actual.stream().map(ChatMessage::getMessage).collect(Collectors.joining(",")));
+	}
+
+	@Test
+	public void assignDates_written_before_midnight() {
+		LocalDate date = LocalDate.of(2020, 4, 1);
+		List<ChatMessage> messages = Arrays.asList(new ChatMessage(date.atTime(23, 59), "a"));
+
+		//the file was last modified just after midnight
+		List<ChatMessage> actual = ChatLogTail.assignDates(messages, date.plusDays(1).atTime(0, 0, 5));
+		assertEquals(date.atTime(23, 59), actual.get(0).getDate());
+	}
+
+	private void write(String content) throws IOException {
+		Files.write(latest, content.getBytes());
+	}
+
+	private void append(String content) throws IOException {
+		Files.write(latest, content.getBytes(), StandardOpenOption.APPEND);
+	}
+
+	private long size() throws IOException {
+		return Files.size(latest);
+	}
+}
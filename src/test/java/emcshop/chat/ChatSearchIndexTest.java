@@ -0,0 +1,202 @@
+package emcshop.chat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Michael Angstadt
+ */
+public class ChatSearchIndexTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path logDir;
+	private long logDirModified = System.currentTimeMillis() - 3_600_000;
+
+	@Before
+	public void before() throws Exception {
+		logDir = folder.getRoot().toPath();
+
+		//@formatter:off
+		gzip("2020-03-01-1.log.gz",
+			"[10:00:00] [main/INFO]: Starting\n" +
+			"[10:00:01] [Render thread/INFO]: [CHAT] [M] Notch: selling diamond blocks\n" +
+			"[10:00:02] [Render thread/INFO]: [CHAT] You paid 500 rupees to Jeb_\n");
+		gzip("2020-04-01-1.log.gz",
+			"[11:00:01] [Render thread/INFO]: [CHAT] [M] Jeb_: buying diamonds\n" +
+			"[11:00:02] [Render thread/INFO]: [CHAT] You just received 1,000 rupees from Notch\n");
+		gzip("2020-04-01-2.log.gz",
+			"[12:00:01] [Render thread/INFO]: [CHAT] [M] Notch: diamond blocks for sale again\n");
+		//@formatter:on
+	}
+
+	@Test
+	public void keyword() throws Exception {
+		ChatSearchIndex index = index();
+
+		List<ChatMessage> results = index.search(new ChatSearchQuery().keyword("DIAMOND"));
+		assertMessages(results, "[M] Notch: selling diamond blocks", "[M] Notch: diamond blocks for sale again");
+		assertEquals(LocalDateTime.of(2020, 3, 1, 10, 0, 1), results.get(0).getDate());
+		assertEquals(LocalDateTime.of(2020, 4, 1, 12, 0, 1), results.get(1).getDate());
+
+		//whole words only
+		assertTrue(index.search(new ChatSearchQuery().keyword("diam")).isEmpty());
+
+		//phrase
+		assertMessages(index.search(new ChatSearchQuery().keyword("blocks for sale")), "[M] Notch: diamond blocks for sale again");
+		assertTrue(index.search(new ChatSearchQuery().keyword("sale for")).isEmpty());
+	}
+
+	@Test
+	public void player() throws Exception {
+		ChatSearchIndex index = index();
+
+		assertMessages(index.search(new ChatSearchQuery().player("jeb_")), "You paid 500 rupees to Jeb_", "[M] Jeb_: buying diamonds");
+		assertMessages(index.search(new ChatSearchQuery().player("Notch").keyword("rupees")), "You just received 1,000 rupees from Notch");
+	}
+
+	@Test
+	public void date_range() throws Exception {
+		ChatSearchIndex index = index();
+
+		assertMessages(index.search(new ChatSearchQuery().player("notch").from(LocalDate.of(2020, 4, 1))), "You just received 1,000 rupees from Notch", "[M] Notch: diamond blocks for sale again");
+		assertMessages(index.search(new ChatSearchQuery().player("notch").to(LocalDate.of(2020, 3, 31))), "[M] Notch: selling diamond blocks");
+		assertEquals(5, index.search(new ChatSearchQuery()).size());
+	}
+
+	@Test
+	public void limit() throws Exception {
+		ChatSearchIndex index = index();
+
+		//the most recent messages are returned
+		assertMessages(index.search(new ChatSearchQuery().keyword("diamond").limit(1)), "[M] Notch: diamond blocks for sale again");
+	}
+
+	@Test
+	public void latest_log() throws Exception {
+		Path latest = logDir.resolve("latest.log");
+		Files.write(latest, "[13:00:00] [Render thread/INFO]: [CHAT] first latest message\n[13:00:01] [Render thread/INFO]: [CHAT] incomplete".getBytes());
+		Files.setLastModifiedTime(latest, filetime(LocalDateTime.of(2020, 4, 2, 13, 0, 0)));
+
+		ChatSearchIndex index = index();
+		List<ChatMessage> results = index.search(new ChatSearchQuery().keyword("latest"));
+		assertMessages(results, "first latest message");
+		assertEquals(LocalDateTime.of(2020, 4, 2, 13, 0, 0), results.get(0).getDate());
+
+		//the incomplete line isn't indexed until it is finished
+		assertTrue(index.search(new ChatSearchQuery().keyword("incomplete")).isEmpty());
+		append(latest, " message\n[13:00:02] [Render thread/INFO]: [CHAT] another latest message\n");
+		Files.setLastModifiedTime(latest, filetime(LocalDateTime.of(2020, 4, 2, 13, 1, 0)));
+		assertMessages(index.search(new ChatSearchQuery().keyword("message")), "first latest message", "incomplete message", "another latest message");
+		assertEquals(8, index.size());
+
+		//Minecraft restarts and archives the file
+		Files.move(latest, logDir.resolve("2020-04-02-1.log"));
+		gzip("2020-04-02-1.log.gz", new String(Files.readAllBytes(logDir.resolve("2020-04-02-1.log"))));
+		Files.delete(logDir.resolve("2020-04-02-1.log"));
+		Files.write(latest, "[14:00:00] [Render thread/INFO]: [CHAT] new session message\n".getBytes());
+		Files.setLastModifiedTime(latest, filetime(LocalDateTime.of(2020, 4, 2, 14, 0, 0)));
+		touchLogDir();
+
+		assertMessages(index.search(new ChatSearchQuery().keyword("message")), "first latest message", "incomplete message", "another latest message", "new session message");
+		assertEquals(9, index.size());
+	}
+
+	@Test
+	public void append() throws Exception {
+		Path latest = logDir.resolve("latest.log");
+		String line1 = "[13:00:00] [Render thread/INFO]: [CHAT] first latest message\n";
+		Files.write(latest, line1.getBytes());
+		Files.setLastModifiedTime(latest, filetime(LocalDateTime.of(2020, 4, 2, 13, 0, 0)));
+		LocalDate date = LocalDate.of(2020, 4, 2);
+
+		ChatSearchIndex index = index();
+		assertEquals(6, index.search(new ChatSearchQuery()).size());
+
+		//pushed by a ChatLogTail
+		String line2 = "[13:00:01] [Render thread/INFO]: [CHAT] pushed message\n";
+		append(latest, line2);
+		index.append(date, line1.length(), line1.length() + line2.length(), Arrays.asList(new ChatMessage(LocalDateTime.of(2020, 4, 2, 13, 0, 1), "pushed message")));
+		assertEquals(7, index.size());
+
+		//out of sync, so it is ignored
+		index.append(date, 5, 10, Arrays.asList(new ChatMessage(LocalDateTime.of(2020, 4, 2, 13, 0, 2), "ignored")));
+		assertEquals(7, index.size());
+
+		//the file isn't read again
+		assertMessages(index.search(new ChatSearchQuery().keyword("message")), "first latest message", "pushed message");
+		assertEquals(7, index.size());
+
+		//the file was replaced
+		index.append(date, 0, 10, Arrays.asList(new ChatMessage(LocalDateTime.of(2020, 4, 2, 14, 0, 0), "new file message")));
+		assertEquals(6, index.size());
+	}
+
+	@Test
+	public void older_file_added() throws Exception {
+		ChatSearchIndex index = index();
+		assertEquals(0, index.size());
+		index.search(new ChatSearchQuery());
+		assertEquals(5, index.size());
+
+		gzip("2020-02-01-1.log.gz", "[09:00:00] [Render thread/INFO]: [CHAT] [M] Notch: very old diamond message\n");
+
+		List<ChatMessage> results = index.search(new ChatSearchQuery().keyword("diamond"));
+		assertEquals(3, results.size());
+		assertEquals("[M] Notch: very old diamond message", results.get(0).getMessage());
+		assertEquals(6, index.size());
+	}
+
+	@Test
+	public void tokenize() {
+		assertEquals("[m, jeb_, buying, 1, 000, diamonds]", ChatSearchIndex.tokenize("[m] jeb_: buying 1,000 diamonds!").toString());
+		assertTrue(ChatSearchIndex.tokenize(null).isEmpty());
+	}
+
+	private ChatSearchIndex index() {
+		return new ChatSearchIndex(new ChatLogIndex(logDir, null));
+	}
+
+	private static void assertMessages(List<ChatMessage> actual, String... expected) {
+		assertEquals(String.join("\n", expected), actual.stream().map(ChatMessage::getMessage).collect(Collectors.joining("\n")));
+	}
+
+	private void touchLogDir() throws IOException {
+		logDirModified += 60_000;
+		Files.setLastModifiedTime(logDir, FileTime.fromMillis(logDirModified));
+	}
+
+	private void gzip(String name, String content) throws IOException {
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(logDir.resolve(name)))) {
+			out.write(content.getBytes());
+		}
+		touchLogDir();
+	}
+
+	private static void append(Path file, String content) throws IOException {
+		Files.write(file, content.getBytes(), StandardOpenOption.APPEND);
+	}
+
+	private static FileTime filetime(LocalDateTime ts) {
+		return FileTime.from(ts.atZone(ZoneId.systemDefault()).toInstant());
+	}
+}
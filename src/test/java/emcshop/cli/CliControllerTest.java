@@ -1,23 +1,55 @@
 package emcshop.cli;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.DateTimeException;
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransactionPage;
 
+import emcshop.chart.ChartWriter;
+import emcshop.chart.ProfitsChart.Show;
 import emcshop.db.DbDao;
+import emcshop.db.Profits;
+import emcshop.db.ShopTransactionDb;
+import emcshop.db.ShopTransactionType;
+import emcshop.query.AggregateQuery;
+import emcshop.query.Dimension;
+import emcshop.query.Measure;
+import emcshop.scraper.RupeePageCache;
 
 /**
  * @author Michael Angstadt
  */
 public class CliControllerTest {
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
 	@Test(expected = DateTimeException.class)
 	public void parseDateRange_bad_date() throws Exception {
 		DbDao dao = mock(DbDao.class);
@@ -79,6 +111,160 @@ public class CliControllerTest {
 		assertEquals(LocalDateTime.of(2013, 3, 8, 13, 21, 0), range[1]);
 	}
 
+	@Test
+	public void chart() throws Exception {
+		DbDao dao = mock(DbDao.class);
+
+		Map<LocalDate, Profits> profits = new LinkedHashMap<>();
+		for (int i = 0; i < 5; i++) {
+			Profits p = new Profits();
+			p.addTransaction("Diamond", 100 * i);
+			p.addTransaction("Oak Log", -10 * i);
+			p.setBalance(1000 + i);
+			profits.put(LocalDate.of(2013, 3, 7 + i), p);
+		}
+		when(dao.getProfitsByDay(LocalDate.of(2013, 3, 7), LocalDate.of(2013, 3, 12))).thenReturn(profits);
+
+		Path dir = temp.getRoot().toPath().resolve("charts");
+		CliController cli = new CliController(dao);
+		List<Path> files = cli.chart("2013-03-07 to 2013-03-11", Arrays.asList(Show.values()), Collections.emptyList(), Arrays.asList("Diamond"), false, ChartWriter.Format.PNG, 200, 100, dir);
+
+		verify(dao).getProfitsByDay(LocalDate.of(2013, 3, 7), LocalDate.of(2013, 3, 12));
+		//@formatter:off
+		assertEquals(Arrays.asList(
+			dir.resolve("profits.png"),
+			dir.resolve("groups.png"),
+			dir.resolve("items.png"),
+			dir.resolve("balance.png")
+		), files);
+		//@formatter:on
+		for (Path file : files) {
+			assertEquals(200, ImageIO.read(file.toFile()).getWidth());
+		}
+	}
+
+	@Test
+	public void chart_no_transactions() throws Exception {
+		DbDao dao = mock(DbDao.class);
+		when(dao.getProfitsByMonth(null, null)).thenReturn(Collections.emptyMap());
+
+		Path dir = temp.getRoot().toPath().resolve("charts");
+		CliController cli = new CliController(dao);
+		List<Path> files = cli.chart("", Arrays.asList(Show.NET_PROFITS), Collections.emptyList(), Collections.emptyList(), true, ChartWriter.Format.PNG, 200, 100, dir);
+
+		assertTrue(files.isEmpty());
+		assertTrue(!Files.exists(dir));
+	}
+
+	@Test
+	public void findUncachedTransactions() throws Exception {
+		RupeePageCache cache = new RupeePageCache(temp.getRoot().toPath().resolve("page-cache"));
+		LocalDateTime start = LocalDateTime.of(2013, 3, 7, 10, 0);
+		cache.add(2, new byte[0], page(2, start.plusMinutes(2), start));
+		cache.add(1, new byte[0], page(1, start.plusHours(2).plusMinutes(2), start.plusHours(2)));
+
+		DbDao dao = mock(DbDao.class);
+		CliController cli = new CliController(dao);
+
+		//database is empty
+		assertNull(cli.findUncachedTransactions(cache));
+
+		//cache covers the database
+		when(dao.getEarliestTransactionDate()).thenReturn(start);
+		assertNull(cli.findUncachedTransactions(cache));
+
+		//database goes back further than the cache
+		when(dao.getEarliestTransactionDate()).thenReturn(start.minusDays(365));
+		assertNotNull(cli.findUncachedTransactions(cache));
+		when(dao.getEarliestTransactionDate()).thenReturn(start);
+
+		//database has transactions between the cached pages
+		List<ShopTransactionDb> transactions = Arrays.asList(new ShopTransactionDb());
+		when(dao.getTransactionsByDate(start.plusMinutes(2).plusSeconds(1), start.plusHours(2), ShopTransactionType.ALL)).thenReturn(transactions);
+		assertNotNull(cli.findUncachedTransactions(cache));
+		when(dao.getTransactionsByDate(start.plusMinutes(2).plusSeconds(1), start.plusHours(2), ShopTransactionType.ALL)).thenReturn(Collections.emptyList());
+
+		//database has transactions that are newer than the cache
+		when(dao.getTransactionsByDate(start.plusHours(2).plusMinutes(2).plusSeconds(1), null, ShopTransactionType.ALL)).thenReturn(transactions);
+		assertNotNull(cli.findUncachedTransactions(cache));
+	}
+
+	private static RupeeTransactionPage page(int page, LocalDateTime newest, LocalDateTime oldest) {
+		//@formatter:off
+		List<RupeeTransaction> transactions = Arrays.asList(
+			new RupeeTransaction.Builder<>().ts(newest).description("Voted for Empire Minecraft").amount(400).balance(1400).build(),
+			new RupeeTransaction.Builder<>().ts(oldest).description("Voted for Empire Minecraft").amount(400).balance(1000).build()
+		);
+		//@formatter:on
+		return new RupeeTransactionPage(null, page, page, transactions);
+	}
+
+	@Test
+	public void parseChartTypes() {
+		assertEquals(Arrays.asList(Show.NET_PROFITS), CliController.parseChartTypes("profits"));
+		assertEquals(Arrays.asList(Show.ITEMS, Show.RUPEE_BALANCE, Show.ITEM_GROUPS), CliController.parseChartTypes(" ITEMS, balance,,groups,items "));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void parseChartTypes_unknown() {
+		CliController.parseChartTypes("profits,foo");
+	}
+
+	@Test
+	public void parseChartSize() {
+		int[] size = CliController.parseChartSize("800x600");
+		assertEquals(800, size[0]);
+		assertEquals(600, size[1]);
+
+		size = CliController.parseChartSize(" 1024 X 768 ");
+		assertEquals(1024, size[0]);
+		assertEquals(768, size[1]);
+	}
+
+	@Test
+	public void parseChartSize_invalid() {
+		for (String value : Arrays.asList("800", "800x", "x600", "0x600", "800x-1", "axb", "800x600x1")) {
+			try {
+				CliController.parseChartSize(value);
+				fail(value);
+			} catch (IllegalArgumentException e) {
+				//expected
+			}
+		}
+	}
+
+	@Test
+	public void parseList() {
+		assertEquals(Arrays.asList(), CliController.parseList(null));
+		assertEquals(Arrays.asList("Diamond", "Oak Log"), CliController.parseList("Diamond, Oak Log ,"));
+	}
+
+	@Test
+	public void parseAggregateQuery() {
+		AggregateQuery query = CliController.parseAggregateQuery("player, month", null, "all", "sum(amount) DESC", 10).build();
+		assertEquals(Arrays.asList(Dimension.PLAYER, Dimension.MONTH), query.getDimensions());
+		assertEquals(Arrays.asList(Measure.SUM_AMOUNT, Measure.SUM_QUANTITY, Measure.COUNT), query.getMeasures());
+		assertEquals(ShopTransactionType.ALL, query.getTransactionType());
+		assertEquals(Measure.SUM_AMOUNT, query.getSortBy());
+		assertTrue(query.isDescending());
+		assertEquals(Integer.valueOf(10), query.getLimit());
+
+		query = CliController.parseAggregateQuery(null, "count", null, "count", null).build();
+		assertEquals(Arrays.asList(), query.getDimensions());
+		assertEquals(ShopTransactionType.MY_SHOP, query.getTransactionType());
+		assertEquals(Measure.COUNT, query.getSortBy());
+		assertFalse(query.isDescending());
+
+		for (String[] invalid : new String[][] { { "color", null, null }, { null, "max(amount)", null }, { null, null, "foo desc" } }) {
+			try {
+				CliController.parseAggregateQuery(invalid[0], invalid[1], null, invalid[2], null);
+				fail();
+			} catch (IllegalArgumentException e) {
+				//expected
+			}
+		}
+	}
+
 	private static void assertNow(LocalDateTime actual) {
 		LocalDateTime now = LocalDateTime.now();
 		assertTrue(Duration.between(now, actual).getSeconds() < 1);
@@ -0,0 +1,283 @@
+package emcshop.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import emcshop.db.DbDao;
+import emcshop.db.ItemGroup;
+import emcshop.db.ShopTransactionDb;
+import emcshop.db.ShopTransactionType;
+
+/**
+ * @author Michael Angstadt
+ */
+public class QueryServerTest {
+	private final ObjectMapper mapper = new ObjectMapper();
+	private QueryServer server;
+
+	@After
+	public void after() {
+		if (server != null) {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void query() throws Exception {
+		DbDao dao = dao();
+
+		ItemGroup apple = new ItemGroup();
+		apple.setItem("Apple");
+		apple.setBoughtAmount(-10);
+		apple.setBoughtQuantity(100);
+		apple.setSoldAmount(5);
+		apple.setSoldQuantity(-20);
+		ItemGroup diamond = new ItemGroup();
+		diamond.setItem("diamond");
+		diamond.setSoldAmount(50);
+		diamond.setSoldQuantity(-1);
+		LocalDateTime from = LocalDateTime.of(2013, 3, 7, 0, 0);
+		LocalDateTime to = LocalDateTime.of(2013, 3, 10, 0, 0);
+		when(dao.getItemGroups(from, to, ShopTransactionType.MY_SHOP)).thenReturn(Arrays.asList(diamond, apple));
+
+		start(dao, 1);
+		Response response = get("/query?range=2013-03-07+to+2013-03-09");
+		assertEquals(200, response.status);
+
+		JsonNode json = response.json;
+		assertEquals("2013-03-07T00:00:00", json.get("from").asText());
+		assertEquals("2013-03-10T00:00:00", json.get("to").asText());
+		assertEquals(45, json.get("netTotal").asInt());
+
+		JsonNode items = json.get("items");
+		assertEquals(2, items.size());
+		assertEquals("Apple", items.get(0).get("item").asText());
+		assertEquals(100, items.get(0).get("boughtQuantity").asInt());
+		assertEquals(-10, items.get(0).get("boughtAmount").asInt());
+		assertEquals(-20, items.get(0).get("soldQuantity").asInt());
+		assertEquals(5, items.get(0).get("soldAmount").asInt());
+		assertEquals(80, items.get(0).get("netQuantity").asInt());
+		assertEquals(-5, items.get(0).get("netAmount").asInt());
+		assertEquals("diamond", items.get(1).get("item").asText());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void export() throws Exception {
+		DbDao dao = dao();
+
+		List<ShopTransactionDb> transactions = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			ShopTransactionDb transaction = new ShopTransactionDb();
+			transaction.setTs(LocalDateTime.of(2013, 3, 7, 0, 0).plusMinutes(i));
+			transaction.setShopCustomer("Notch");
+			transaction.setItem("Apple");
+			transaction.setQuantity(-1);
+			transaction.setAmount(i);
+			transactions.add(transaction);
+		}
+		doAnswer(invocation -> {
+			Consumer<ShopTransactionDb> handler = (Consumer<ShopTransactionDb>) invocation.getArguments()[3];
+			transactions.forEach(handler);
+			return null;
+		}).when(dao).getTransactionsByDate(isNull(LocalDateTime.class), isNull(LocalDateTime.class), eq(ShopTransactionType.OTHER_SHOPS), any(Consumer.class));
+
+		start(dao, 1);
+		Response response = get("/export?type=other_shops");
+		assertEquals(200, response.status);
+
+		JsonNode json = response.json;
+		assertNull(json.get("from").textValue());
+		assertNull(json.get("to").textValue());
+
+		JsonNode actual = json.get("transactions");
+		assertEquals(1000, actual.size());
+		JsonNode last = actual.get(999);
+		assertEquals("2013-03-07T16:39:00", last.get("ts").asText());
+		assertEquals("Notch", last.get("customer").asText());
+		assertNull(last.get("shopOwner").textValue());
+		assertEquals("Apple", last.get("item").asText());
+		assertEquals(-1, last.get("quantity").asInt());
+		assertEquals(999, last.get("amount").asInt());
+	}
+
+	@Test
+	public void bad_request() throws Exception {
+		DbDao dao = dao();
+
+		start(dao, 1);
+		assertEquals(400, get("/query?range=not-a-date").status);
+		assertEquals(400, get("/export?type=foo").status);
+	}
+
+	@Test
+	public void sql_error() throws Exception {
+		DbDao dao = dao();
+		when(dao.getItemGroups(null, null, ShopTransactionType.MY_SHOP)).thenThrow(new SQLException());
+
+		start(dao, 1);
+		Response response = get("/query");
+		assertEquals(500, response.status);
+		assertEquals("Problem querying the database.", response.json.get("error").asText());
+	}
+
+	@Test
+	public void runtime_error() throws Exception {
+		DbDao dao = dao();
+		when(dao.getItemGroups(null, null, ShopTransactionType.MY_SHOP)).thenThrow(new IllegalStateException("oops"));
+
+		start(dao, 1);
+		Response response = get("/query");
+		assertEquals(500, response.status);
+		assertTrue(response.json.get("error").asText().contains("oops"));
+
+		//the server keeps working
+		doReturn(Collections.emptyList()).when(dao).getItemGroups(null, null, ShopTransactionType.MY_SHOP);
+		assertEquals(200, get("/query").status);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void export_sql_error() throws Exception {
+		DbDao dao = dao();
+		doThrow(new SQLException()).when(dao).getTransactionsByDate(isNull(LocalDateTime.class), isNull(LocalDateTime.class), eq(ShopTransactionType.ALL), any(Consumer.class));
+
+		start(dao, 1);
+		Response response = get("/export");
+		assertEquals(500, response.status);
+		assertEquals("Problem querying the database.", response.json.get("error").asText());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void export_error_after_response_started() throws Exception {
+		DbDao dao = dao();
+
+		ShopTransactionDb transaction = new ShopTransactionDb();
+		transaction.setTs(LocalDateTime.of(2013, 3, 7, 0, 0));
+		transaction.setShopCustomer("Notch");
+		transaction.setItem("Apple");
+		doAnswer(invocation -> {
+			Consumer<ShopTransactionDb> handler = (Consumer<ShopTransactionDb>) invocation.getArguments()[3];
+			for (int i = 0; i < 1000; i++) {
+				handler.accept(transaction);
+			}
+			throw new SQLException();
+		}).when(dao).getTransactionsByDate(isNull(LocalDateTime.class), isNull(LocalDateTime.class), eq(ShopTransactionType.ALL), any(Consumer.class));
+
+		start(dao, 1);
+		HttpURLConnection connection = (HttpURLConnection) url("/export").openConnection();
+		assertEquals(200, connection.getResponseCode());
+
+		//the response is cut short
+		try (InputStream in = connection.getInputStream()) {
+			mapper.readTree(in);
+			fail();
+		} catch (IOException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void not_get() throws Exception {
+		DbDao dao = dao();
+
+		start(dao, 1);
+		HttpURLConnection connection = (HttpURLConnection) url("/query").openConnection();
+		connection.setRequestMethod("DELETE");
+		assertEquals(405, connection.getResponseCode());
+	}
+
+	@Test
+	public void one_reader_per_worker_thread() throws Exception {
+		DbDao dao = dao();
+		when(dao.getItemGroups(null, null, ShopTransactionType.MY_SHOP)).thenReturn(Collections.emptyList());
+
+		start(dao, 2);
+
+		ExecutorService clients = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Response>> futures = new ArrayList<>();
+			for (int i = 0; i < 20; i++) {
+				futures.add(clients.submit(() -> get("/query")));
+			}
+			for (Future<Response> future : futures) {
+				assertEquals(200, future.get().status);
+			}
+		} finally {
+			clients.shutdown();
+		}
+
+		verify(dao, atMost(2)).openReader();
+	}
+
+	/**
+	 * Creates a mock DAO whose readers are the DAO itself.
+	 */
+	private static DbDao dao() throws SQLException {
+		DbDao dao = mock(DbDao.class);
+		when(dao.openReader()).thenReturn(dao);
+		return dao;
+	}
+
+	private void start(DbDao dao, int threads) throws IOException {
+		server = new QueryServer(dao, 0, threads);
+		server.start();
+	}
+
+	private URL url(String path) throws IOException {
+		return new URL("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort() + path);
+	}
+
+	private Response get(String path) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) url(path).openConnection();
+		int status = connection.getResponseCode();
+		try (InputStream in = (status < 400) ? connection.getInputStream() : connection.getErrorStream()) {
+			return new Response(status, mapper.readTree(in));
+		}
+	}
+
+	private static class Response {
+		private final int status;
+		private final JsonNode json;
+
+		public Response(int status, JsonNode json) {
+			this.status = status;
+			this.json = json;
+		}
+	}
+}
@@ -19,6 +19,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
+import java.time.DayOfWeek;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -51,6 +52,10 @@ import com.github.mangstadt.emc.rupees.dto.VaultFee;
 import com.github.mangstadt.emc.rupees.dto.VoteBonus;
 
 import emcshop.ItemIndex;
+import emcshop.query.AggregateQuery;
+import emcshop.query.AggregateRow;
+import emcshop.query.Dimension;
+import emcshop.query.Measure;
 import emcshop.util.DateGenerator;
 
 public class DirbyDbDaoTest {
@@ -122,6 +127,88 @@ public class DirbyDbDaoTest {
 		updateLog().ts(dg.getGenerated(0)).rupeeBalance(123).shopTransactionCount(1).paymentTransactionCount(2).bonusFeeTransactionCount(3).timeTaken(1000).test();
 	}
 
+	@Test
+	public void insertUpdateLog_metrics() throws Exception {
+		DateGenerator dg = new DateGenerator();
+		UpdateLog log = new UpdateLog();
+		log.setTs(dg.next());
+		log.setRupeeBalance(123);
+		log.setTransactionCount(1);
+		log.setPaymentTransactionCount(2);
+		log.setBonusFeeTransactionCount(3);
+		log.setTimeTaken(Duration.ofSeconds(1));
+		log.setPageCount(4);
+		log.setDownloadTime(Duration.ofMillis(500));
+		log.setItemNameTime(Duration.ofMillis(20));
+		log.setInsertTime(Duration.ofMillis(300));
+		log.setInsertLatencyP50(Duration.ofNanos(1_500_000));
+		log.setInsertLatencyP99(Duration.ofNanos(8_250_000));
+		int id = dao.insertUpdateLog(log);
+		dao.updateUpdateLogCommitTime(id, Duration.ofMillis(40));
+
+		updateLog().ts(dg.getGenerated(0)).rupeeBalance(123).shopTransactionCount(1).paymentTransactionCount(2).bonusFeeTransactionCount(3).timeTaken(1000).test();
+
+		ResultSet rs = query("SELECT * FROM update_log");
+		rs.next();
+		assertEquals(4, rs.getInt("page_count"));
+		assertEquals(500, rs.getInt("download_time"));
+		assertEquals(20, rs.getInt("item_name_time"));
+		assertEquals(300, rs.getInt("insert_time"));
+		assertEquals(40, rs.getInt("commit_time"));
+		assertEquals(1500, rs.getInt("insert_latency_p50"));
+		assertEquals(8250, rs.getInt("insert_latency_p99"));
+	}
+
+	@Test
+	public void getUpdateLogs() throws Exception {
+		dao.insertUpdateLog(LocalDateTime.of(2014, 1, 1, 0, 0, 0), 100, 1, 2, 3, Duration.ofSeconds(1));
+
+		UpdateLog log = new UpdateLog();
+		log.setTs(LocalDateTime.of(2014, 1, 2, 0, 0, 0));
+		log.setRupeeBalance(200);
+		log.setTransactionCount(4);
+		log.setTimeTaken(Duration.ofSeconds(5));
+		log.setPageCount(6);
+		log.setDownloadThreads(4);
+		log.setInsertLatencyP99(Duration.ofNanos(8_250_000));
+		log.setCommitTime(Duration.ofMillis(40));
+		dao.insertUpdateLog(log);
+
+		dao.insertUpdateLog(LocalDateTime.of(2014, 1, 3, 0, 0, 0), 300, 7, 8, 9, Duration.ofSeconds(10));
+
+		List<UpdateLog> logs = dao.getUpdateLogs(2);
+		assertEquals(2, logs.size());
+
+		log = logs.get(0);
+		assertEquals(LocalDateTime.of(2014, 1, 3, 0, 0, 0), log.getTs());
+		assertEquals(Integer.valueOf(300), log.getRupeeBalance());
+		assertEquals(Duration.ofSeconds(10), log.getTimeTaken());
+		assertNull(log.getPageCount());
+		assertNull(log.getDownloadThreads());
+		assertNull(log.getCommitTime());
+
+		log = logs.get(1);
+		assertEquals(LocalDateTime.of(2014, 1, 2, 0, 0, 0), log.getTs());
+		assertEquals(4, log.getTransactionCount());
+		assertEquals(Integer.valueOf(6), log.getPageCount());
+		assertEquals(Integer.valueOf(4), log.getDownloadThreads());
+		assertEquals(Duration.ofNanos(8_250_000), log.getInsertLatencyP99());
+		assertEquals(Duration.ofMillis(40), log.getCommitTime());
+		assertNull(log.getDownloadTime());
+	}
+
+	@Test
+	public void insertUpdateLog_no_metrics() throws Exception {
+		DateGenerator dg = new DateGenerator();
+		dao.insertUpdateLog(dg.next(), 123, 1, 2, 3, Duration.ofSeconds(1));
+
+		ResultSet rs = query("SELECT * FROM update_log");
+		rs.next();
+		assertNull(rs.getObject("page_count"));
+		assertNull(rs.getObject("download_time"));
+		assertNull(rs.getObject("insert_latency_p99"));
+	}
+
 	@Test
 	public void getLatestUpdateDate() throws Exception {
 		assertNull(dao.getLatestUpdateDate());
@@ -414,28 +501,247 @@ public class DirbyDbDaoTest {
 
 	@Test
 	public void insertTransaction_update_inventory() throws Exception {
+		DirbyDbDao testDao = new DirbyMemoryDbDao("insertTransaction_update_inventory");
+		try {
+			Connection testConn = testDao.getConnection();
+
+			DateGenerator dg = new DateGenerator();
+			inventory(testConn).item(appleId).quantity(100).insert();
+			inventory(testConn).item(diamondId).quantity(20).insert();
+
+			ShopTransactionDb transaction = transactions(testConn).ts(dg.next()).item("apple").player("notch").balance(1000).amount(10).dto();
+
+			transaction.setQuantity(5);
+			testDao.insertTransaction(transaction, false);
+
+			transaction.setQuantity(5);
+			testDao.insertTransaction(transaction, true);
+
+			transaction.setQuantity(-15);
+			testDao.insertTransaction(transaction, true);
+
+			//not in the inventory
+			transaction = transactions(testConn).ts(dg.next()).item("Gold Ingot").player("notch").balance(1000).amount(10).quantity(3).dto();
+			testDao.insertTransaction(transaction, true);
+
+			//the inventory is updated when a commit happens
+			Map<Integer, Integer> expected = new HashMap<>();
+			expected.put(appleId, 100);
+			expected.put(diamondId, 20);
+			assertEquals(expected, inventory(testConn).all());
+
+			testDao.commit();
+
+			expected = new HashMap<>();
+			expected.put(appleId, 90);
+			expected.put(diamondId, 20);
+			assertEquals(expected, inventory(testConn).all());
+
+			//the transactions that changed the inventory are flagged
+			ResultSet rs = transactions(testConn).all();
+			for (boolean inventoryUpdated : new boolean[] { false, true, true, false }) {
+				rs.next();
+				assertEquals(inventoryUpdated, rs.getBoolean("inventory_updated"));
+			}
+			assertFalse(rs.next());
+		} finally {
+			testDao.close();
+		}
+	}
+
+	@Test
+	public void insertTransaction_update_inventory_rollback() throws Exception {
+		DirbyDbDao testDao = new DirbyMemoryDbDao("insertTransaction_update_inventory_rollback");
+		try {
+			Connection testConn = testDao.getConnection();
+
+			DateGenerator dg = new DateGenerator();
+			inventory(testConn).item(appleId).quantity(100).insert();
+			testDao.commit();
+
+			ShopTransactionDb transaction = transactions(testConn).ts(dg.next()).item("apple").player("notch").quantity(-15).balance(1000).amount(10).dto();
+			testDao.insertTransaction(transaction, true);
+			testDao.rollback();
+
+			//the discarded changes are not applied on the next commit
+			inventory(testConn).item(diamondId).quantity(20).insert();
+			testDao.commit();
+
+			Map<Integer, Integer> expected = new HashMap<>();
+			expected.put(appleId, 100);
+			expected.put(diamondId, 20);
+			assertEquals(expected, inventory(testConn).all());
+		} finally {
+			testDao.close();
+		}
+	}
+
+	@Test
+	public void insertTransaction_update_inventory_separate_connection() throws Exception {
+		DirbyDbDao testDao = new DirbyMemoryDbDao("insertTransaction_update_inventory_separate_connection");
+		try {
+			Connection testConn = testDao.getConnection();
+
+			DateGenerator dg = new DateGenerator();
+			inventory(testConn).item(appleId).quantity(100).insert();
+			testDao.commit();
+
+			DbDao writer = testDao.openWriter();
+			try {
+				ShopTransactionDb transaction = transactions(testConn).ts(dg.next()).item("apple").player("notch").quantity(-15).balance(1000).amount(10).dto();
+				writer.insertTransaction(transaction, true);
+
+				//the other connection's changes are not applied
+				testDao.commit();
+				Map<Integer, Integer> expected = new HashMap<>();
+				expected.put(appleId, 100);
+				assertEquals(expected, inventory(testConn).all());
+
+				writer.commit();
+				expected.put(appleId, 85);
+				assertEquals(expected, inventory(testConn).all());
+			} finally {
+				writer.close();
+			}
+		} finally {
+			testDao.close();
+		}
+	}
+
+	@Test
+	public void insertTransactions() throws Exception {
 		DateGenerator dg = new DateGenerator();
-		inventory().item(appleId).quantity(100).insert();
-		inventory().item(diamondId).quantity(20).insert();
 
-		ShopTransactionDb transaction = transactions().ts(dg.next()).item("apple").player("notch").balance(1000).amount(10).dto();
+		//@formatter:off
+		List<ShopTransactionDb> transactions = Arrays.asList(
+			transactions().ts(dg.next()).item("apple").player("notch").balance(1000).amount(-10).quantity(5).dto(),
+			transactions().ts(dg.next()).item("Item").player("Jeb").balance(1200).amount(200).quantity(-7).dto(),
+			transactions().ts(dg.next()).item("apple").player("jeb").balance(1190).amount(-10).quantity(-15).dto()
+		);
+		//@formatter:on
+		dao.insertTransactions(transactions, false);
 
-		transaction.setQuantity(5);
-		dao.insertTransaction(transaction, false);
+		List<String> actualNames = players().names();
+		assertEquals(2, actualNames.size());
+		assertTrue(actualNames.contains("Notch"));
+		assertTrue(actualNames.contains("Jeb"));
 
-		transaction.setQuantity(5);
-		dao.insertTransaction(transaction, true);
+		int itemId = items().name("Item").id();
+		int jebId = players().name("Jeb").id();
+		ResultSet rs = transactions().all();
 
-		transaction.setQuantity(-15);
-		dao.insertTransaction(transaction, true);
+		rs.next();
+		transactions().ts(dg.getGenerated(0)).item(appleId).player(notchId).balance(1000).amount(-10).quantity(5).test(rs);
 
-		Map<Integer, Integer> actual = inventory().all();
+		rs.next();
+		transactions().ts(dg.getGenerated(1)).item(itemId).player(jebId).balance(1200).amount(200).quantity(-7).test(rs);
+
+		rs.next();
+		transactions().ts(dg.getGenerated(2)).item(appleId).player(jebId).balance(1190).amount(-10).quantity(-15).test(rs);
+
+		assertFalse(rs.next());
+	}
+
+	@Test
+	public void insertTransactions_update_inventory() throws Exception {
+		DirbyDbDao testDao = new DirbyMemoryDbDao("insertTransactions_update_inventory");
+		try {
+			Connection testConn = testDao.getConnection();
+
+			DateGenerator dg = new DateGenerator();
+			inventory(testConn).item(appleId).quantity(100).insert();
+			inventory(testConn).item(diamondId).quantity(20).insert();
+			testDao.commit();
+
+			//@formatter:off
+			List<ShopTransactionDb> transactions = Arrays.asList(
+				transactions(testConn).ts(dg.next()).item("apple").player("notch").balance(1000).amount(10).quantity(5).dto(),
+				transactions(testConn).ts(dg.next()).item("Gold Ingot").player("notch").balance(1000).amount(10).quantity(3).dto(),
+				transactions(testConn).ts(dg.next()).item("apple").player("notch").balance(1010).amount(10).quantity(-15).dto()
+			);
+			//@formatter:on
+			testDao.insertTransactions(transactions, true);
+
+			//the inventory is updated when a commit happens
+			Map<Integer, Integer> expected = new HashMap<>();
+			expected.put(appleId, 100);
+			expected.put(diamondId, 20);
+			assertEquals(expected, inventory(testConn).all());
+
+			testDao.commit();
+
+			expected.put(appleId, 90);
+			assertEquals(expected, inventory(testConn).all());
+
+			//the transactions that changed the inventory are flagged
+			ResultSet rs = transactions(testConn).all();
+			for (boolean inventoryUpdated : new boolean[] { true, false, true }) {
+				rs.next();
+				assertEquals(inventoryUpdated, rs.getBoolean("inventory_updated"));
+			}
+			assertFalse(rs.next());
+		} finally {
+			testDao.close();
+		}
+	}
+
+	@Test
+	public void insertPaymentTransactions() throws Exception {
+		DateGenerator dg = new DateGenerator();
+
+		//@formatter:off
+		List<PaymentTransactionDb> transactions = Arrays.asList(
+			paymentTransactions().amount(1000).balance(20000).player("Notch").ts(dg.next()).dto(),
+			paymentTransactions().amount(-500).balance(19500).player("Jeb").ts(dg.next()).dto()
+		);
+		//@formatter:on
+		dao.insertPaymentTransactions(transactions);
+
+		ResultSet rs = paymentTransactions().all();
+
+		rs.next();
+		paymentTransactions().ts(dg.getGenerated(0)).player(notchId).balance(20000).amount(1000).transaction(null).ignore(false).test(rs);
+
+		rs.next();
+		paymentTransactions().ts(dg.getGenerated(1)).player(players().name("Jeb").id()).balance(19500).amount(-500).transaction(null).ignore(false).test(rs);
+
+		assertFalse(rs.next());
+	}
+
+	@Test
+	public void getInventory_asOf() throws Exception {
+		inventory().item(appleId).quantity(100).insert();
+		inventory().item(diamondId).quantity(20).insert();
+
+		transactions().ts(LocalDateTime.of(2014, 1, 1, 0, 0, 0)).item(appleId).quantity(-10).inventoryUpdated(true).insert();
+		transactions().ts(LocalDateTime.of(2014, 1, 2, 0, 0, 0)).item(appleId).quantity(-5).inventoryUpdated(true).insert();
+		transactions().ts(LocalDateTime.of(2014, 1, 3, 0, 0, 0)).item(appleId).quantity(2).inventoryUpdated(true).insert();
+
+		//transactions that didn't change the inventory are ignored
+		transactions().ts(LocalDateTime.of(2014, 1, 3, 0, 0, 0)).item(appleId).quantity(-50).inventoryUpdated(false).insert();
+		transactions().ts(LocalDateTime.of(2014, 1, 3, 0, 0, 0)).item(diamondId).player((Integer) null).quantity(1).inventoryUpdated(false).insert();
+
+		Map<Integer, Integer> actual = toMap(dao.getInventory(LocalDateTime.of(2014, 1, 1, 12, 0, 0)));
 		Map<Integer, Integer> expected = new HashMap<>();
-		expected.put(appleId, 90);
+		expected.put(appleId, 103);
+		expected.put(diamondId, 20);
+		assertEquals(expected, actual);
+
+		actual = toMap(dao.getInventory(LocalDateTime.of(2014, 1, 4, 0, 0, 0)));
+		expected = new HashMap<>();
+		expected.put(appleId, 100);
 		expected.put(diamondId, 20);
 		assertEquals(expected, actual);
 	}
 
+	private static Map<Integer, Integer> toMap(Collection<Inventory> inventory) {
+		Map<Integer, Integer> map = new HashMap<>();
+		for (Inventory inv : inventory) {
+			map.put(inv.getItemId(), inv.getQuantity());
+		}
+		return map;
+	}
+
 	@Test
 	public void insertTransaction_update_first_last_seen_dates() throws Exception {
 		DirbyDbDao dao = new DirbyMemoryDbDao("insertTransaction_update_first_last_seen_dates");
@@ -594,6 +900,46 @@ public class DirbyDbDaoTest {
 		assertFalse(rs.next());
 	}
 
+	@Test
+	public void openReader() throws Exception {
+		DbDao reader = dao.openReader();
+		try {
+			assertEquals(dao.getAppDbVersion(), reader.selectDbVersion());
+			assertTrue(reader.getItemGroups(null, null, ShopTransactionType.MY_SHOP).isEmpty());
+
+			try {
+				reader.upsertDbVersion(1);
+				fail();
+			} catch (SQLException e) {
+				//expected: the connection is read-only
+			}
+		} finally {
+			reader.close();
+		}
+
+		//the main connection is still open
+		assertEquals(dao.getAppDbVersion(), dao.selectDbVersion());
+	}
+
+	@Test
+	public void openWriter() throws Exception {
+		DbDao writer = dao.openWriter();
+		try {
+			writer.upsertDbVersion(1);
+
+			//the main connection has its own transaction
+			dao.rollback();
+			writer.commit();
+			assertEquals(1, dao.selectDbVersion());
+		} finally {
+			writer.close();
+
+			//the change was committed, so it must be undone
+			dao.upsertDbVersion(dao.getAppDbVersion());
+			dao.commit();
+		}
+	}
+
 	@Test
 	public void getItemGroups() throws Exception {
 		assertTrue(dao.getItemGroups(null, null, ShopTransactionType.MY_SHOP).isEmpty());
@@ -656,6 +1002,155 @@ public class DirbyDbDaoTest {
 		}
 	}
 
+	@Test
+	public void getAggregates() throws Exception {
+		AggregateQuery.Builder query = new AggregateQuery.Builder().measures(Measure.SUM_AMOUNT);
+		assertTrue(dao.getAggregates(query.build()).isEmpty());
+
+		int jeb = players().name("Jeb").insert();
+		transactions().ts(LocalDateTime.of(2014, 1, 1, 10, 0, 0)).item(appleId).player(notchId).amount(100).quantity(-10).insert(); //Wednesday
+		transactions().ts(LocalDateTime.of(2014, 1, 1, 15, 0, 0)).item(appleId).player(jeb).amount(50).quantity(-5).insert();
+		transactions().ts(LocalDateTime.of(2014, 1, 6, 10, 0, 0)).item(diamondId).player(notchId).amount(-20).quantity(2).insert(); //Monday
+		transactions().ts(LocalDateTime.of(2014, 2, 3, 10, 0, 0)).item(appleId).player(notchId).amount(30).quantity(-3).insert(); //Monday
+		transactions().ts(LocalDateTime.of(2014, 2, 3, 11, 0, 0)).item(appleId).player((Integer) null).amount(1000).quantity(-100).insert(); //not my shop
+
+		//no dimensions
+		{
+			List<AggregateRow> rows = dao.getAggregates(query.build());
+			assertEquals(1, rows.size());
+			assertAggregate(rows.get(0), 160, -16, 4);
+		}
+
+		//player
+		{
+			List<AggregateRow> rows = sortAggregates(dao.getAggregates(query.groupBy(Dimension.PLAYER).build()));
+			assertEquals(2, rows.size());
+			assertAggregate(rows.get(0), 50, -5, 1, "Jeb");
+			assertAggregate(rows.get(1), 110, -11, 3, "Notch");
+		}
+
+		//item and month
+		{
+			List<AggregateRow> rows = sortAggregates(dao.getAggregates(query.groupBy(Dimension.ITEM, Dimension.MONTH).build()));
+			assertEquals(3, rows.size());
+			assertAggregate(rows.get(0), 150, -15, 2, "Apple", LocalDate.of(2014, 1, 1));
+			assertAggregate(rows.get(1), 30, -3, 1, "Apple", LocalDate.of(2014, 2, 1));
+			assertAggregate(rows.get(2), -20, 2, 1, "Diamond", LocalDate.of(2014, 1, 1));
+		}
+
+		//week (weeks start on Monday)
+		{
+			List<AggregateRow> rows = sortAggregates(dao.getAggregates(query.groupBy(Dimension.WEEK).build()));
+			assertEquals(3, rows.size());
+			assertAggregate(rows.get(0), 150, -15, 2, LocalDate.of(2013, 12, 30));
+			assertAggregate(rows.get(1), -20, 2, 1, LocalDate.of(2014, 1, 6));
+			assertAggregate(rows.get(2), 30, -3, 1, LocalDate.of(2014, 2, 3));
+		}
+
+		//weekday
+		{
+			List<AggregateRow> rows = sortAggregates(dao.getAggregates(query.groupBy(Dimension.WEEKDAY).build()));
+			assertEquals(2, rows.size());
+			assertAggregate(rows.get(0), 10, -1, 2, DayOfWeek.MONDAY);
+			assertAggregate(rows.get(1), 150, -15, 2, DayOfWeek.WEDNESDAY);
+		}
+
+		//day and hour
+		{
+			List<AggregateRow> rows = sortAggregates(dao.getAggregates(query.groupBy(Dimension.DAY, Dimension.HOUR).build()));
+			assertEquals(4, rows.size());
+			assertAggregate(rows.get(0), 100, -10, 1, LocalDate.of(2014, 1, 1), 10);
+			assertAggregate(rows.get(1), 50, -5, 1, LocalDate.of(2014, 1, 1), 15);
+			assertAggregate(rows.get(2), -20, 2, 1, LocalDate.of(2014, 1, 6), 10);
+			assertAggregate(rows.get(3), 30, -3, 1, LocalDate.of(2014, 2, 3), 10);
+		}
+
+		//filters are case-insensitive
+		{
+			query.groupBy(Dimension.ITEM).items(Arrays.asList("APPLE")).players(Arrays.asList("notch"));
+			List<AggregateRow> rows = dao.getAggregates(query.build());
+			assertEquals(1, rows.size());
+			assertAggregate(rows.get(0), 130, -13, 2, "Apple");
+		}
+
+		//date range
+		{
+			query.items(Collections.emptyList()).players(Collections.emptyList());
+			query.from(LocalDateTime.of(2014, 1, 1, 12, 0, 0)).to(LocalDateTime.of(2014, 2, 1, 0, 0, 0));
+			List<AggregateRow> rows = sortAggregates(dao.getAggregates(query.build()));
+			assertEquals(2, rows.size());
+			assertAggregate(rows.get(0), 50, -5, 1, "Apple");
+			assertAggregate(rows.get(1), -20, 2, 1, "Diamond");
+		}
+
+		//all transactions
+		{
+			query.from(null).to(null).transactionType(ShopTransactionType.ALL);
+			List<AggregateRow> rows = sortAggregates(dao.getAggregates(query.build()));
+			assertEquals(2, rows.size());
+			assertAggregate(rows.get(0), 1180, -118, 4, "Apple");
+			assertAggregate(rows.get(1), -20, 2, 1, "Diamond");
+		}
+	}
+
+	@Test
+	public void getAggregates_top() throws Exception {
+		int jeb = players().name("Jeb").insert();
+		int dinnerbone = players().name("dinnerbone").insert();
+		transactions().item(appleId).player(notchId).amount(100).quantity(-10).insert();
+		transactions().item(appleId).player(notchId).amount(50).quantity(-5).insert();
+		transactions().item(diamondId).player(jeb).amount(150).quantity(-1).insert();
+		transactions().item(diamondId).player(dinnerbone).amount(-20).quantity(2).insert();
+
+		AggregateQuery.Builder query = new AggregateQuery.Builder().groupBy(Dimension.PLAYER).measures(Measure.SUM_AMOUNT).limit(2);
+
+		//ties are broken by name, ignoring case
+		{
+			List<AggregateRow> rows = dao.getAggregates(query.sortBy(Measure.SUM_AMOUNT, true).build());
+			assertEquals(2, rows.size());
+			assertAggregate(rows.get(0), 150, -1, 1, "Jeb");
+			assertAggregate(rows.get(1), 150, -15, 2, "Notch");
+		}
+
+		{
+			List<AggregateRow> rows = dao.getAggregates(query.sortBy(Measure.SUM_AMOUNT, false).build());
+			assertEquals(2, rows.size());
+			assertAggregate(rows.get(0), -20, 2, 1, "dinnerbone");
+			assertAggregate(rows.get(1), 150, -1, 1, "Jeb");
+		}
+
+		{
+			List<AggregateRow> rows = dao.getAggregates(query.sortBy(Measure.UNIT_PRICE, true).limit(3).build());
+			assertEquals(3, rows.size());
+			assertAggregate(rows.get(0), 150, -1, 1, "Jeb");
+			assertAggregate(rows.get(1), -20, 2, 1, "dinnerbone");
+			assertAggregate(rows.get(2), 150, -15, 2, "Notch");
+		}
+
+		//rows without a value go last
+		transactions().item(appleId).player(jeb).amount(0).quantity(1).insert();
+		{
+			List<AggregateRow> rows = dao.getAggregates(query.sortBy(Measure.UNIT_PRICE, true).build());
+			assertEquals(3, rows.size());
+			assertAggregate(rows.get(0), -20, 2, 1, "dinnerbone");
+			assertAggregate(rows.get(1), 150, -15, 2, "Notch");
+			assertAggregate(rows.get(2), 150, 0, 2, "Jeb");
+		}
+	}
+
+	private static void assertAggregate(AggregateRow row, long amount, long quantity, int count, Object... values) {
+		assertEquals(Arrays.asList(values), row.getValues());
+		assertEquals(amount, row.getAmount());
+		assertEquals(quantity, row.getQuantity());
+		assertEquals(count, row.getCount());
+	}
+
+	private static List<AggregateRow> sortAggregates(List<AggregateRow> rows) {
+		List<AggregateRow> sorted = new ArrayList<>(rows);
+		sorted.sort(Comparator.comparing(AggregateRow::toString));
+		return sorted;
+	}
+
 	@Test
 	public void getTransactionsByDate() throws Exception {
 		assertTrue(dao.getTransactionsByDate(null, null, ShopTransactionType.MY_SHOP).isEmpty());
@@ -743,6 +1238,30 @@ public class DirbyDbDaoTest {
 		}
 	}
 
+	@Test
+	public void getTransactionsByDate_handler() throws Exception {
+		int jeb = players().name("Jeb").insert();
+		transactions().ts(LocalDateTime.of(2014, 1, 1, 1, 0, 0)).item(appleId).player(notchId).amount(100).quantity(-10).insert();
+		transactions().ts(LocalDateTime.of(2014, 1, 1, 1, 0, 30)).item(diamondId).player(jeb).amount(-10).quantity(1).insert();
+		transactions().ts(LocalDateTime.of(2014, 1, 1, 1, 1, 0)).item(appleId).player(notchId).amount(100).quantity(-10).insert();
+		transactions().ts(LocalDateTime.of(2014, 1, 1, 1, 10, 0)).item(appleId).player(notchId).amount(100).quantity(-10).insert();
+
+		//record the amounts when the transactions are handed over to make sure they are complete by then
+		List<ShopTransactionDb> handled = new ArrayList<>();
+		List<Integer> amounts = new ArrayList<>();
+		dao.getTransactionsByDate(null, null, ShopTransactionType.MY_SHOP, transaction -> {
+			handled.add(transaction);
+			amounts.add(transaction.getAmount());
+		});
+
+		assertEquals(Arrays.asList(200, -10, 100), amounts);
+		Iterator<ShopTransactionDb> it = handled.iterator();
+		transactions().ts(LocalDateTime.of(2014, 1, 1, 1, 0, 0)).item("Apple").player("Notch").amount(200).quantity(-20).test(it.next());
+		transactions().ts(LocalDateTime.of(2014, 1, 1, 1, 0, 30)).item("Diamond").player("Jeb").amount(-10).quantity(1).test(it.next());
+		transactions().ts(LocalDateTime.of(2014, 1, 1, 1, 10, 0)).item("Apple").player("Notch").amount(100).quantity(-10).test(it.next());
+		assertFalse(it.hasNext());
+	}
+
 	@Test
 	public void getPlayerGroups() throws Exception {
 		assertTrue(dao.getPlayerGroups(null, null, ShopTransactionType.MY_SHOP).isEmpty());
@@ -925,6 +1444,50 @@ public class DirbyDbDaoTest {
 		assertEquals(expected, actual);
 	}
 
+	@Test
+	public void updateInventory() throws Exception {
+		inventory().item(appleId).quantity(5).insert();
+		inventory().item(diamondId).quantity(2).insert();
+		int customId = items().name("Custom Item").insert();
+		inventory().item(customId).quantity(64).insert();
+
+		//@formatter:off
+		dao.updateInventory(Arrays.asList(
+			new InventoryChange("apple").setQuantity(10).addQuantity(-3),
+			new InventoryChange("Diamond").addQuantity(4).setLowThreshold(16),
+			new InventoryChange("Custom Item").setLowThreshold(128),
+			new InventoryChange("Oak Log").addQuantity(8),
+			new InventoryChange("Gold Ingot").setQuantity(3),
+			new InventoryChange("Brand New Item").setQuantity(1)
+		));
+		//@formatter:on
+
+		Map<String, Inventory> inventory = new HashMap<>();
+		for (Inventory inv : dao.getInventory()) {
+			inventory.put(inv.getItem(), inv);
+		}
+		assertEquals(6, inventory.size());
+
+		assertEquals(Integer.valueOf(7), inventory.get("Apple").getQuantity());
+		assertEquals(Integer.valueOf(0), inventory.get("Apple").getLowInStockThreshold());
+
+		assertEquals(Integer.valueOf(6), inventory.get("Diamond").getQuantity());
+		assertEquals(Integer.valueOf(16), inventory.get("Diamond").getLowInStockThreshold());
+
+		assertEquals(Integer.valueOf(64), inventory.get("Custom Item").getQuantity());
+		assertEquals(Integer.valueOf(128), inventory.get("Custom Item").getLowInStockThreshold());
+
+		assertEquals(Integer.valueOf(8), inventory.get("Oak Log").getQuantity());
+		assertEquals(Integer.valueOf(3), inventory.get("Gold Ingot").getQuantity());
+
+		//items that aren't in the database yet are added
+		assertEquals(Integer.valueOf(1), inventory.get("Brand New Item").getQuantity());
+		assertNotNull(items().name("Brand New Item").id());
+
+		dao.updateInventory(Collections.emptyList());
+		assertEquals(6, dao.getInventory().size());
+	}
+
 	@Test
 	public void deleteInventory() throws Exception {
 		int a = items().name("a").insert();
@@ -1574,12 +2137,21 @@ public class DirbyDbDaoTest {
 	}
 
 	private static ItemTester items() {
-		return new ItemTester();
+		return items(conn);
+	}
+
+	private static ItemTester items(Connection conn) {
+		return new ItemTester(conn);
 	}
 
 	private static class ItemTester {
+		private final Connection conn;
 		private String name;
 
+		public ItemTester(Connection conn) {
+			this.conn = conn;
+		}
+
 		public ItemTester name(String name) {
 			this.name = name;
 			return this;
@@ -1610,14 +2182,14 @@ public class DirbyDbDaoTest {
 		}
 
 		public int count() throws SQLException {
-			ResultSet rs = query("SELECT Count(*) FROM items");
+			ResultSet rs = query(conn, "SELECT Count(*) FROM items");
 			rs.next();
 			return rs.getInt(1);
 		}
 
 		public Map<Integer, String> all() throws SQLException {
 			Map<Integer, String> map = new HashMap<>();
-			ResultSet rs = query("SELECT id, name FROM items");
+			ResultSet rs = query(conn, "SELECT id, name FROM items");
 			while (rs.next()) {
 				map.put(rs.getInt("id"), rs.getString("name"));
 			}
@@ -1711,13 +2283,22 @@ public class DirbyDbDaoTest {
 	}
 
 	private static InventoryTester inventory() {
-		return new InventoryTester();
+		return inventory(conn);
+	}
+
+	private static InventoryTester inventory(Connection conn) {
+		return new InventoryTester(conn);
 	}
 
 	private static class InventoryTester {
+		private final Connection conn;
 		private int item = appleId, quantity;
 		private String itemStr = "Apple";
 
+		public InventoryTester(Connection conn) {
+			this.conn = conn;
+		}
+
 		public InventoryTester item(int item) {
 			this.item = item;
 			this.itemStr = null;
@@ -1737,7 +2318,7 @@ public class DirbyDbDaoTest {
 
 		public int insert() throws SQLException {
 			if (item == 0) {
-				item = items().name(itemStr).selsert();
+				item = items(conn).name(itemStr).selsert();
 			}
 
 			PreparedStatement stmt = conn.prepareStatement("INSERT INTO inventory (item, quantity) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS);
@@ -1751,14 +2332,14 @@ public class DirbyDbDaoTest {
 		}
 
 		public int count() throws SQLException {
-			ResultSet rs = query("SELECT Count(*) FROM inventory");
+			ResultSet rs = query(conn, "SELECT Count(*) FROM inventory");
 			rs.next();
 			return rs.getInt(1);
 		}
 
 		public Map<Integer, Integer> all() throws SQLException {
 			Map<Integer, Integer> map = new HashMap<>();
-			ResultSet rs = query("SELECT item, quantity FROM inventory");
+			ResultSet rs = query(conn, "SELECT item, quantity FROM inventory");
 			while (rs.next()) {
 				map.put(rs.getInt("item"), rs.getInt("quantity"));
 			}
@@ -1767,14 +2348,24 @@ public class DirbyDbDaoTest {
 	}
 
 	private static TransactionTester transactions() {
-		return new TransactionTester();
+		return transactions(conn);
+	}
+
+	private static TransactionTester transactions(Connection conn) {
+		return new TransactionTester(conn);
 	}
 
 	private static class TransactionTester {
+		private final Connection conn;
 		private LocalDateTime ts = LocalDateTime.now();
 		private int item = appleId, amount, quantity, balance;
 		private Integer player = notchId;
 		private String itemStr = "Apple", playerStr = "Notch";
+		private boolean inventoryUpdated;
+
+		public TransactionTester(Connection conn) {
+			this.conn = conn;
+		}
 
 		public TransactionTester ts(LocalDateTime ts) {
 			this.ts = ts;
@@ -1820,6 +2411,11 @@ public class DirbyDbDaoTest {
 			return this;
 		}
 
+		public TransactionTester inventoryUpdated(boolean inventoryUpdated) {
+			this.inventoryUpdated = inventoryUpdated;
+			return this;
+		}
+
 		public void test(ResultSet rs) throws SQLException {
 			assertTimestampEquals(ts, toLocalDateTime(rs.getTimestamp("ts")));
 			assertEquals(item, rs.getInt("item"));
@@ -1827,6 +2423,7 @@ public class DirbyDbDaoTest {
 			assertEquals(balance, rs.getInt("balance"));
 			assertEquals(amount, rs.getInt("amount"));
 			assertEquals(quantity, rs.getInt("quantity"));
+			assertEquals(inventoryUpdated, rs.getBoolean("inventory_updated"));
 		}
 
 		public void test(ShopTransactionDb transaction) {
@@ -1839,10 +2436,10 @@ public class DirbyDbDaoTest {
 
 		public int insert() throws SQLException {
 			if (item == 0) {
-				item = items().name(itemStr).selsert();
+				item = items(conn).name(itemStr).selsert();
 			}
 
-			PreparedStatement stmt = conn.prepareStatement("INSERT INTO transactions (ts, item, player, amount, quantity, balance) VALUES (?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
+			PreparedStatement stmt = conn.prepareStatement("INSERT INTO transactions (ts, item, player, amount, quantity, balance, inventory_updated) VALUES (?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
 
 			int i = 1;
 			stmt.setTimestamp(i++, timestamp(ts));
@@ -1855,19 +2452,20 @@ public class DirbyDbDaoTest {
 			stmt.setInt(i++, amount);
 			stmt.setInt(i++, quantity);
 			stmt.setInt(i++, balance);
+			stmt.setBoolean(i++, inventoryUpdated);
 			stmt.executeUpdate();
 
 			return getKey(stmt);
 		}
 
 		public int count() throws SQLException {
-			ResultSet rs = query("SELECT Count(*) FROM transactions");
+			ResultSet rs = query(conn, "SELECT Count(*) FROM transactions");
 			rs.next();
 			return rs.getInt(1);
 		}
 
 		public ResultSet all() throws SQLException {
-			return query("SELECT * FROM transactions ORDER BY id");
+			return query(conn, "SELECT * FROM transactions ORDER BY id");
 		}
 
 		public ShopTransactionDb dto() {
@@ -2005,6 +2603,10 @@ public class DirbyDbDaoTest {
 	}
 
 	private static ResultSet query(String sql) throws SQLException {
+		return query(conn, sql);
+	}
+
+	private static ResultSet query(Connection conn, String sql) throws SQLException {
 		Statement stmt = conn.createStatement();
 		return stmt.executeQuery(sql);
 	}
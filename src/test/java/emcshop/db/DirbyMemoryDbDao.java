@@ -1,5 +1,6 @@
 package emcshop.db;
 
+import java.sql.DriverManager;
 import java.sql.SQLException;
 
 /**
@@ -12,6 +13,30 @@ public class DirbyMemoryDbDao extends DirbyDbDao {
 	}
 
 	public DirbyMemoryDbDao(String dbName, DbListener listener) throws SQLException {
+		//the sprocs only run once per JVM, but each in-memory database needs them
+		MigrationSprocs.populateItemsTableCalled = false;
+		MigrationSprocs.updateItemNamesCalled = false;
+
 		init("jdbc:derby:memory:" + dbName, true, listener);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Deletes the in-memory database. Unlike the parent implementation, this
+	 * does not shut down the entire Derby engine, so the other in-memory
+	 * databases can still be used.
+	 */
+	@Override
+	public void close() throws SQLException {
+		try {
+			DriverManager.getConnection(jdbcUrl + ";drop=true");
+		} catch (SQLException e) {
+			if ("08006".equals(e.getSQLState())) {
+				//we got the expected exception
+			} else if ("XJ004".equals(e.getSQLState())) {
+				//the database was already deleted
+			} else {
+				throw e;
+			}
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package emcshop.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+/**
+ * @author Michael Angstadt
+ */
+public class InventoryWriteBufferTest {
+	private final DbDao dao = mock(DbDao.class);
+	private final DbDao writer = mock(DbDao.class);
+	private final BlockingQueue<SQLException> errors = new LinkedBlockingQueue<>();
+	private final List<InventoryWriteBuffer> buffers = new ArrayList<>();
+
+	@Before
+	public void before() throws Exception {
+		when(dao.openWriter()).thenReturn(writer);
+	}
+
+	@After
+	public void after() throws Exception {
+		for (InventoryWriteBuffer buffer : buffers) {
+			try {
+				buffer.close();
+			} catch (SQLException e) {
+				//ignore
+			}
+		}
+	}
+
+	@Test
+	public void edits_are_merged() throws Exception {
+		InventoryWriteBuffer buffer = buffer(60_000);
+
+		buffer.setQuantity("Apple", 10, false);
+		buffer.setQuantity("apple", 5, true);
+		buffer.setLowThreshold("Apple", 64);
+		buffer.setQuantity("Diamond", 2, true);
+		buffer.setQuantity("Diamond", -1, true);
+		assertEquals(2, buffer.size());
+
+		buffer.flush();
+		assertEquals(0, buffer.size());
+
+		List<InventoryChange> changes = captureChanges();
+		assertEquals(2, changes.size());
+
+		InventoryChange change = changes.get(0);
+		assertEquals("Apple", change.getItem());
+		assertEquals(Integer.valueOf(10), change.getQuantity());
+		assertEquals(5, change.getDelta());
+		assertEquals(Integer.valueOf(64), change.getLowThreshold());
+
+		change = changes.get(1);
+		assertEquals("Diamond", change.getItem());
+		assertNull(change.getQuantity());
+		assertEquals(1, change.getDelta());
+		assertNull(change.getLowThreshold());
+
+		InOrder inOrder = inOrder(writer);
+		inOrder.verify(writer).updateInventory(anyCollectionOf(InventoryChange.class));
+		inOrder.verify(writer).commit();
+
+		//nothing left to flush
+		buffer.flush();
+		verify(writer).commit();
+
+		//the main connection is never written to
+		verify(dao, never()).updateInventory(anyCollectionOf(InventoryChange.class));
+		verify(dao, never()).commit();
+	}
+
+	@Test
+	public void set_quantity_resets_delta() throws Exception {
+		InventoryWriteBuffer buffer = buffer(60_000);
+
+		buffer.setQuantity("Apple", 5, true);
+		buffer.setQuantity("Apple", 10, false);
+		buffer.flush();
+
+		InventoryChange change = captureChanges().get(0);
+		assertEquals(Integer.valueOf(10), change.getQuantity());
+		assertEquals(0, change.getDelta());
+	}
+
+	@Test
+	public void flushed_after_delay() throws Exception {
+		InventoryWriteBuffer buffer = buffer(50);
+
+		BlockingQueue<Thread> threads = new LinkedBlockingQueue<>();
+		doAnswer(invocation -> {
+			threads.add(Thread.currentThread());
+			return null;
+		}).when(writer).commit();
+
+		buffer.setQuantity("Apple", 10, false);
+		buffer.setQuantity("Diamond", 1, false);
+
+		//written in the background
+		assertNotSame(Thread.currentThread(), threads.poll(5, TimeUnit.SECONDS));
+		assertEquals(2, captureChanges().size());
+		assertEquals(0, buffer.size());
+	}
+
+	@Test
+	public void close() throws Exception {
+		InventoryWriteBuffer buffer = new InventoryWriteBuffer(dao, 60_000, errors::add);
+		buffer.setQuantity("Apple", 10, false);
+		buffer.close();
+
+		InOrder inOrder = inOrder(writer);
+		inOrder.verify(writer).updateInventory(anyCollectionOf(InventoryChange.class));
+		inOrder.verify(writer).commit();
+		inOrder.verify(writer).close();
+	}
+
+	@Test
+	public void close_without_edits() throws Exception {
+		InventoryWriteBuffer buffer = new InventoryWriteBuffer(dao, 60_000, errors::add);
+		buffer.close();
+
+		//the connection is only opened when there's something to write
+		verify(dao, never()).openWriter();
+	}
+
+	@Test
+	public void error() throws Exception {
+		SQLException exception = new SQLException();
+		doThrow(exception).when(writer).updateInventory(anyCollectionOf(InventoryChange.class));
+
+		InventoryWriteBuffer buffer = buffer(60_000);
+		buffer.setQuantity("Apple", 10, false);
+		try {
+			buffer.flush();
+			fail();
+		} catch (SQLException e) {
+			assertSame(exception, e);
+		}
+
+		verify(writer).rollback();
+		verify(writer, never()).commit();
+
+		//the edits are discarded
+		assertEquals(0, buffer.size());
+	}
+
+	@Test
+	public void error_in_background() throws Exception {
+		SQLException exception = new SQLException();
+		doThrow(exception).when(writer).commit();
+
+		InventoryWriteBuffer buffer = buffer(50);
+		buffer.setQuantity("Apple", 10, false);
+
+		assertSame(exception, errors.poll(5, TimeUnit.SECONDS));
+		verify(writer).rollback();
+	}
+
+	private InventoryWriteBuffer buffer(long delay) {
+		InventoryWriteBuffer buffer = new InventoryWriteBuffer(dao, delay, errors::add);
+		buffers.add(buffer);
+		return buffer;
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<InventoryChange> captureChanges() throws SQLException {
+		ArgumentCaptor<Collection<InventoryChange>> captor = ArgumentCaptor.forClass((Class<Collection<InventoryChange>>) (Class<?>) Collection.class);
+		verify(writer, timeout(5000)).updateInventory(captor.capture());
+		return new ArrayList<>(captor.getValue());
+	}
+}
@@ -0,0 +1,33 @@
+package emcshop.gui;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+
+import org.junit.Test;
+
+import emcshop.util.DateRange;
+
+/**
+ * @author Michael Angstadt
+ */
+public class DateRangePanelTest {
+	private final DateTimeFormatter df = DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM);
+	private final String start = "<b><i><font color=navy>", end = "</font></i></b>";
+
+	@Test
+	public void describe() {
+		LocalDate march7 = LocalDate.of(2013, 3, 7);
+		LocalDate march10 = LocalDate.of(2013, 3, 10);
+
+		assertEquals(start + "entire history" + end, DateRangePanel.describe(new DateRange(null, null)));
+
+		//the end date is exclusive
+		assertEquals("up to " + start + df.format(march7) + end, DateRangePanel.describe(new DateRange(null, march7.plusDays(1).atStartOfDay())));
+		assertEquals(start + df.format(march7) + end + " to " + start + "now" + end, DateRangePanel.describe(new DateRange(march7.atStartOfDay(), null)));
+		assertEquals(start + df.format(march7) + end, DateRangePanel.describe(new DateRange(march7.atStartOfDay(), march7.plusDays(1).atStartOfDay())));
+		assertEquals(start + df.format(march7) + end + " to " + start + df.format(march10) + end, DateRangePanel.describe(new DateRange(march7.atStartOfDay(), march10.plusDays(1).atStartOfDay())));
+	}
+}
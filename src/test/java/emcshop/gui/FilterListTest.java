@@ -0,0 +1,66 @@
+package emcshop.gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+/**
+ * @author Michael Angstadt
+ */
+public class FilterListTest {
+	@Test
+	public void empty() {
+		FilterList list = new FilterList();
+		assertTrue(list.isEmpty());
+		assertTrue(list.isFiltered("Diamond"));
+		assertTrue(list.isFilteredKey("diamond"));
+	}
+
+	@Test
+	public void whole_match() {
+		FilterList list = new FilterList();
+		list.add("Diamond", true);
+		list.add("Oak Log", true);
+
+		assertFalse(list.isEmpty());
+		assertFalse(list.hasPartialMatches());
+		assertEquals(new HashSet<>(Arrays.asList("diamond", "oak log")), list.getWholeMatches());
+
+		assertTrue(list.isFiltered("Diamond"));
+		assertTrue(list.isFiltered("DIAMOND"));
+		assertTrue(list.isFiltered("oak log"));
+		assertFalse(list.isFiltered("Diamond Sword"));
+		assertFalse(list.isFiltered("Oak"));
+	}
+
+	@Test
+	public void partial_match() {
+		FilterList list = new FilterList();
+		list.add("Diamond", false);
+		list.add("log", false);
+		list.add("Apple", true);
+
+		assertTrue(list.hasPartialMatches());
+		assertTrue(list.isFiltered("Diamond Sword"));
+		assertTrue(list.isFiltered("Oak Log"));
+		assertTrue(list.isFiltered("apple"));
+		assertFalse(list.isFiltered("Golden Apple"));
+		assertFalse(list.isFiltered("Stone"));
+		assertTrue(list.isFilteredKey("blue diamond"));
+	}
+
+	@Test
+	public void results_are_updated_when_keywords_are_added() {
+		FilterList list = new FilterList();
+		list.add("Diamond", false);
+		assertFalse(list.isFiltered("Stone"));
+
+		list.add("one", false);
+		assertTrue(list.isFiltered("Stone"));
+	}
+}
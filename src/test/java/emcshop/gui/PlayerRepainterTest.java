@@ -0,0 +1,57 @@
+package emcshop.gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.Test;
+
+import emcshop.scraper.PlayerProfile;
+
+/**
+ * @author Michael Angstadt
+ */
+public class PlayerRepainterTest {
+	private final BlockingQueue<Set<String>> repaints = new LinkedBlockingQueue<>();
+
+	@Test
+	public void repaints_are_coalesced() throws Exception {
+		PlayerRepainter repainter = new PlayerRepainter(50, repaints::add);
+
+		repainter.playerChanged("Notch");
+		repainter.playerChanged("notch");
+		repainter.onPortraitLoaded("Jeb").accept(null);
+		repainter.playerChanged(null);
+
+		PlayerProfile profile = new PlayerProfile.Builder().playerName("Dinnerbone").build();
+		repainter.onProfileDownloaded().onProfileDownloaded(profile);
+
+		assertEquals(new HashSet<>(Arrays.asList("notch", "jeb", "dinnerbone")), repaints.poll(5, TimeUnit.SECONDS));
+		assertNull(repaints.poll(200, TimeUnit.MILLISECONDS));
+
+		//a new batch is started
+		repainter.playerChanged("Notch");
+		assertEquals(new HashSet<>(Arrays.asList("notch")), repaints.poll(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void flush() throws Exception {
+		PlayerRepainter repainter = new PlayerRepainter(60_000, repaints::add);
+
+		repainter.playerChanged("Notch");
+		SwingUtilities.invokeAndWait(repainter::flush);
+		assertEquals(new HashSet<>(Arrays.asList("notch")), repaints.poll());
+
+		//nothing left to repaint
+		SwingUtilities.invokeAndWait(repainter::flush);
+		assertNull(repaints.poll());
+	}
+}
@@ -0,0 +1,109 @@
+package emcshop.gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import emcshop.AppContext;
+import emcshop.Settings;
+import emcshop.db.Player;
+import emcshop.db.PlayerGroup;
+import emcshop.db.ShopTransactionType;
+import emcshop.scraper.PlayerProfile;
+
+/**
+ * @author Michael Angstadt
+ */
+public class PlayersPanelTest {
+	private final ProfileLoader profileLoader = mock(ProfileLoader.class);
+
+	@Before
+	public void before() {
+		AppContext.init(profileLoader, mock(OnlinePlayersMonitor.class), mock(Settings.class));
+	}
+
+	@After
+	public void after() {
+		AppContext.init();
+	}
+
+	@Test
+	public void getRankColor() {
+		PlayersPanel panel = new PlayersPanel(Collections.emptyList(), ShopTransactionType.MY_SHOP);
+
+		//profile not downloaded yet
+		assertNull(panel.getRankColor("Notch"));
+
+		//the color is only decoded once
+		when(profileLoader.getProfile("Notch", null)).thenReturn(profile("Notch", "#FF0000"));
+		assertEquals(Color.RED, panel.getRankColor("Notch"));
+		assertEquals(Color.RED, panel.getRankColor("Notch"));
+		verify(profileLoader, times(2)).getProfile("Notch", null);
+	}
+
+	@Test
+	public void getRankColor_profiles_cleared() {
+		PlayersPanel panel = new PlayersPanel(Collections.emptyList(), ShopTransactionType.MY_SHOP);
+
+		//private profile
+		when(profileLoader.getProfile("Notch", null)).thenReturn(profile("Notch", null));
+		assertNull(panel.getRankColor("Notch"));
+
+		//the user logged in, so the profile was downloaded again
+		when(profileLoader.getCacheGeneration()).thenReturn(1);
+		when(profileLoader.getProfile("Notch", null)).thenReturn(profile("Notch", "#FF0000"));
+		assertEquals(Color.RED, panel.getRankColor("Notch"));
+	}
+
+	@Test
+	public void getWidestPlayer() {
+		PlayerGroup narrow = player("iiiiiiii");
+		PlayerGroup wide = player("WWWWW");
+		PlayerGroup medium = player("abc");
+
+		BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		try {
+			FontMetrics metrics = g.getFontMetrics(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+			assertSame(wide, PlayersPanel.getWidestPlayer(Arrays.asList(narrow, wide, medium), metrics));
+			assertNull(PlayersPanel.getWidestPlayer(Collections.emptyList(), metrics));
+		} finally {
+			g.dispose();
+		}
+	}
+
+	private static PlayerProfile profile(String playerName, String rankColor) {
+		//@formatter:off
+		return new PlayerProfile.Builder()
+			.playerName(playerName)
+			.private_(rankColor == null)
+			.rank((rankColor == null) ? null : "Gold Supporter", rankColor)
+		.build();
+		//@formatter:on
+	}
+
+	private static PlayerGroup player(String name) {
+		Player player = new Player();
+		player.setName(name);
+
+		PlayerGroup group = new PlayerGroup();
+		group.setPlayer(player);
+		return group;
+	}
+}
@@ -2,13 +2,14 @@ package emcshop.gui;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isNull;
 import static org.mockito.Mockito.RETURNS_MOCKS;
 import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -17,12 +18,13 @@ import static org.mockito.Mockito.withSettings;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.Icon;
 import javax.swing.JLabel;
@@ -38,6 +40,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
 
 import emcshop.gui.ProfileLoader.ProfileDownloadedListener;
 import emcshop.scraper.PlayerProfile;
@@ -63,7 +66,7 @@ public class ProfileLoaderTest {
 	.build();
 	//@formatter:on
 
-	private Path portraitFile, propertiesFile;
+	private Path root;
 	private ProfileDownloadedListener listener;
 	private JLabel label;
 	private PlayerProfileScraper scraper = mock(PlayerProfileScraper.class);
@@ -74,14 +77,20 @@ public class ProfileLoaderTest {
 
 	@Before
 	public void before() {
-		Path root = temp.getRoot().toPath();
-		portraitFile = root.resolve(profile.getPlayerName());
-		propertiesFile = root.resolve(profile.getPlayerName() + ".properties");
+		root = temp.getRoot().toPath();
 
 		listener = mock(ProfileDownloadedListener.class);
 		label = mock(JLabel.class);
 		scraper = mock(PlayerProfileScraper.class);
-		profileImageLoader = create(temp.getRoot().toPath(), scraper);
+		profileImageLoader = create(root, scraper);
+		profileImageLoader.start();
+	}
+
+	@Test
+	public void clearPrivateProfilesFromCache() throws Exception {
+		int generation = profileImageLoader.getCacheGeneration();
+		profileImageLoader.clearPrivateProfilesFromCache();
+		assertEquals(generation + 1, profileImageLoader.getCacheGeneration());
 	}
 
 	@Test
@@ -95,8 +104,10 @@ public class ProfileLoaderTest {
 
 		verify(label).setIcon(any(Icon.class));
 		verify(listener, never()).onProfileDownloaded(any(PlayerProfile.class));
-		assertFalse(Files.exists(portraitFile));
-		assertFalse(Files.exists(propertiesFile));
+
+		ProfilePack pack = pack();
+		assertNull(pack.getPortrait(player));
+		assertNull(pack.getProfile(player));
 	}
 
 	@Test
@@ -111,12 +122,11 @@ public class ProfileLoaderTest {
 
 		verify(label).setIcon(any(Icon.class));
 		verify(listener).onProfileDownloaded(profile);
-		assertFalse(Files.exists(portraitFile));
 
-		Properties props = new Properties();
-		try (InputStream in = Files.newInputStream(propertiesFile)) {
-			props.load(in);
-		}
+		ProfilePack pack = pack();
+		assertNull(pack.getPortrait(player));
+
+		Properties props = properties(pack, player);
 		assertEquals(2, props.size());
 		assertEquals("true", props.get("private"));
 	}
@@ -134,18 +144,17 @@ public class ProfileLoaderTest {
 		verify(label).setIcon(any(Icon.class));
 		verify(listener).onProfileDownloaded(profile);
 
+		ProfilePack pack = pack();
 		byte[] expected = portrait;
-		byte[] actual = Files.readAllBytes(portraitFile);
+		byte[] actual = pack.getPortrait(player);
 		assertArrayEquals(expected, actual);
 
-		Properties props = new Properties();
-		try (InputStream in = Files.newInputStream(propertiesFile)) {
-			props.load(in);
-		}
+		Properties props = properties(pack, player);
 		assertEquals(4, props.size());
 		assertEquals("false", props.get("private"));
 		assertEquals("Gold Supporter", props.get("rank"));
 		assertNotNull(props.get("joined"));
+		pack.close();
 
 		//loading it again should retrieve it from the cache
 		//no HTTP calls should be made
@@ -155,7 +164,7 @@ public class ProfileLoaderTest {
 		profileImageLoader.getPortrait(player, label, 16, listener);
 		wait(profileImageLoader);
 
-		verify(label).setIcon(any(Icon.class));
+		verify(label, atLeastOnce()).setIcon(any(Icon.class));
 		verify(listener, never()).onProfileDownloaded(any(PlayerProfile.class));
 
 		//the portrait should have only been downloaded once
@@ -165,9 +174,11 @@ public class ProfileLoaderTest {
 	@Test
 	public void image_not_modified() throws Exception {
 		String player = profile.getPlayerName();
-		temp.newFile(player);
-		temp.newFile(player + ".properties");
-		Instant lastModified = Instant.now();
+		Instant lastModified = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+		ProfilePack pack = new ProfilePack(root, Long.MAX_VALUE);
+		pack.putPortrait(player, new byte[0], lastModified);
+		pack.putProfile(player, new byte[0]);
+		pack.close();
 
 		when(scraper.scrapeProfile(eq(player), any(Document.class))).thenReturn(profile);
 		when(scraper.downloadPortrait(eq(profile), eq(lastModified), any(HttpClient.class))).thenReturn(null);
@@ -175,16 +186,14 @@ public class ProfileLoaderTest {
 		profileImageLoader.getPortrait(player, label, 16, listener);
 		wait(profileImageLoader);
 
-		verify(label).setIcon(any(Icon.class));
+		verify(label, atLeastOnce()).setIcon(any(Icon.class));
 		verify(listener).onProfileDownloaded(profile);
 
-		assertEquals(0, Files.size(portraitFile)); //file should not have been modified
+		pack = pack();
+		assertEquals(0, pack.getPortrait(player).length); //portrait should not have been modified
 
-		//properties file should have been modified, though
-		Properties props = new Properties();
-		try (InputStream in = Files.newInputStream(propertiesFile)) {
-			props.load(in);
-		}
+		//profile should have been modified, though
+		Properties props = properties(pack, player);
 		assertEquals(4, props.size());
 		assertEquals("false", props.get("private"));
 		assertEquals("Gold Supporter", props.get("rank"));
@@ -206,20 +215,80 @@ public class ProfileLoaderTest {
 		verify(label, atLeastOnce()).setIcon(any(Icon.class));
 		verify(listener, atLeastOnce()).onProfileDownloaded(profile);
 
+		ProfilePack pack = pack();
 		byte[] expected = portrait;
-		byte[] actual = Files.readAllBytes(portraitFile);
+		byte[] actual = pack.getPortrait(player);
 		assertArrayEquals(expected, actual);
 
-		Properties props = new Properties();
-		try (InputStream in = Files.newInputStream(propertiesFile)) {
-			props.load(in);
-		}
+		Properties props = properties(pack, player);
 		assertEquals(4, props.size());
 		assertEquals("false", props.get("private"));
 		assertEquals("Gold Supporter", props.get("rank"));
 		assertNotNull(props.get("joined"));
 	}
 
+	@Test
+	public void visible_players_are_downloaded_first() throws Exception {
+		ProfileLoader loader = create(temp.newFolder().toPath(), scraper);
+		loader.setThreads(1);
+
+		for (String player : Arrays.asList("one", "two", "three", "four")) {
+			loader.getProfile(player, null);
+		}
+		assertEquals(4, loader.getQueueLength());
+
+		loader.prioritize(Arrays.asList("three"));
+		loader.prioritize(Arrays.asList("four", "not-queued"));
+
+		loader.start();
+		wait(loader);
+
+		InOrder inOrder = inOrder(scraper);
+		inOrder.verify(scraper).scrapeProfile(eq("four"), any(Document.class));
+		inOrder.verify(scraper).scrapeProfile(eq("three"), any(Document.class));
+		inOrder.verify(scraper).scrapeProfile(eq("one"), any(Document.class));
+		inOrder.verify(scraper).scrapeProfile(eq("two"), any(Document.class));
+
+		assertEquals(0, loader.getQueueLength());
+		assertEquals(4, loader.getFetchCount());
+	}
+
+	@Test
+	public void http_client_is_shared() throws Exception {
+		AtomicInteger clientsCreated = new AtomicInteger();
+		ProfileLoader loader = new ProfileLoader(temp.newFolder().toPath(), maxConnections -> {
+			clientsCreated.incrementAndGet();
+			assertEquals(2, maxConnections);
+			return mockClient();
+		});
+		loader.setProfilePageScraper(scraper);
+		loader.setThreads(2);
+		loader.start();
+
+		for (int i = 0; i < 10; i++) {
+			loader.getProfile("player" + i, null);
+		}
+		wait(loader);
+
+		assertEquals(1, clientsCreated.get());
+		assertEquals(10, loader.getFetchCount());
+	}
+
+	/**
+	 * Closes the loader's cache and opens it for reading.
+	 * @return the cache
+	 */
+	private ProfilePack pack() {
+		profileImageLoader.close();
+		return new ProfilePack(root, Long.MAX_VALUE);
+	}
+
+	private static Properties properties(ProfilePack pack, String player) throws IOException {
+		Properties properties = new Properties();
+		properties.load(new ByteArrayInputStream(pack.getProfile(player)));
+		return properties;
+	}
+
 	private static void wait(ProfileLoader profileImageLoader) throws InterruptedException {
 		while (profileImageLoader.jobsBeingProcessed.get() > 0) {
 			Thread.sleep(100);
@@ -227,28 +296,28 @@ public class ProfileLoaderTest {
 	}
 
 	private ProfileLoader create(Path cacheDir, PlayerProfileScraper scraper) {
-		ProfileLoader loader = new ProfileLoader(cacheDir, () -> {
-			/*
-			 * Create a mock client that just returns empty HTML pages. This has
-			 * to be done, otherwise Jsoup.parse() will go into an infinite loop
-			 * when a mocked InputStream is passed into it.
-			 */
-			CloseableHttpClient client = mock(CloseableHttpClient.class, withSettings().defaultAnswer(RETURNS_MOCKS));
-			CloseableHttpResponse response = mock(CloseableHttpResponse.class, withSettings().defaultAnswer(RETURNS_MOCKS));
-			HttpEntity entity = mock(HttpEntity.class, withSettings().defaultAnswer(RETURNS_MOCKS));
-			InputStream in = new ByteArrayInputStream("<html />".getBytes());
-
-			try {
-				when(client.execute(any(HttpUriRequest.class))).thenReturn(response);
-				when(response.getEntity()).thenReturn(entity);
-				when(entity.getContent()).thenReturn(in);
-			} catch (Exception ignore) {
-			}
-
-			return client;
-		});
+		ProfileLoader loader = new ProfileLoader(cacheDir, maxConnections -> mockClient());
 		loader.setProfilePageScraper(scraper);
-		loader.start();
 		return loader;
 	}
+
+	private static CloseableHttpClient mockClient() {
+		/*
+		 * Create a mock client that just returns empty HTML pages. This has to
+		 * be done, otherwise Jsoup.parse() will go into an infinite loop when a
+		 * mocked InputStream is passed into it.
+		 */
+		CloseableHttpClient client = mock(CloseableHttpClient.class, withSettings().defaultAnswer(RETURNS_MOCKS));
+		CloseableHttpResponse response = mock(CloseableHttpResponse.class, withSettings().defaultAnswer(RETURNS_MOCKS));
+		HttpEntity entity = mock(HttpEntity.class, withSettings().defaultAnswer(RETURNS_MOCKS));
+
+		try {
+			when(client.execute(any(HttpUriRequest.class))).thenReturn(response);
+			when(response.getEntity()).thenReturn(entity);
+			when(entity.getContent()).thenAnswer(invocation -> new ByteArrayInputStream("<html />".getBytes()));
+		} catch (Exception ignore) {
+		}
+
+		return client;
+	}
 }
@@ -0,0 +1,239 @@
+package emcshop.gui;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Michael Angstadt
+ */
+public class ProfilePackTest {
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
+	private Path dir;
+
+	@Before
+	public void before() {
+		dir = temp.getRoot().toPath();
+	}
+
+	@Test
+	public void put_and_get() throws Exception {
+		Instant lastModified = Instant.ofEpochMilli(1_500_000_000_000L);
+
+		ProfilePack pack = new ProfilePack(dir, Long.MAX_VALUE);
+		assertNull(pack.getPortrait("Notch"));
+		assertNull(pack.getProfile("Notch"));
+		assertNull(pack.getPortraitLastModified("Notch"));
+
+		pack.putPortrait("Notch", bytes(1, 2, 3), lastModified);
+		pack.putProfile("Notch", bytes(4, 5));
+		pack.putProfile("notch", bytes(6));
+
+		assertArrayEquals(bytes(1, 2, 3), pack.getPortrait("notch"));
+		assertArrayEquals(bytes(6), pack.getProfile("NOTCH"));
+		assertEquals(lastModified, pack.getPortraitLastModified("Notch"));
+		assertEquals(1, pack.size());
+		pack.close();
+
+		//everything is stored in a single file
+		assertTrue(Files.exists(dir.resolve("profiles.dat")));
+		assertTrue(Files.exists(dir.resolve("profiles.idx")));
+
+		pack = new ProfilePack(dir, Long.MAX_VALUE);
+		assertArrayEquals(bytes(1, 2, 3), pack.getPortrait("notch"));
+		assertArrayEquals(bytes(6), pack.getProfile("notch"));
+		assertEquals(lastModified, pack.getPortraitLastModified("notch"));
+		pack.close();
+	}
+
+	@Test
+	public void records_written_after_index_are_recovered() throws Exception {
+		ProfilePack pack = new ProfilePack(dir, Long.MAX_VALUE);
+		pack.putProfile("Notch", bytes(1));
+		pack.close();
+
+		//simulate the application being terminated without closing the pack
+		pack = new ProfilePack(dir, Long.MAX_VALUE);
+		pack.putProfile("Jeb", bytes(2));
+		pack.putProfile("Notch", bytes(3));
+
+		ProfilePack reopened = new ProfilePack(dir, Long.MAX_VALUE);
+		assertArrayEquals(bytes(3), reopened.getProfile("Notch"));
+		assertArrayEquals(bytes(2), reopened.getProfile("Jeb"));
+		reopened.close();
+		pack.close();
+	}
+
+	@Test
+	public void incomplete_record_is_discarded() throws Exception {
+		ProfilePack pack = new ProfilePack(dir, Long.MAX_VALUE);
+		pack.putProfile("Notch", bytes(1));
+		pack.putProfile("Jeb", bytes(2, 3, 4));
+		long size = pack.getDataSize();
+
+		//cut off the end of the last record
+		Files.deleteIfExists(dir.resolve("profiles.idx"));
+		try (FileChannel channel = FileChannel.open(dir.resolve("profiles.dat"), StandardOpenOption.WRITE)) {
+			channel.truncate(size - 1);
+		}
+
+		ProfilePack reopened = new ProfilePack(dir, Long.MAX_VALUE);
+		assertArrayEquals(bytes(1), reopened.getProfile("Notch"));
+		assertNull(reopened.getProfile("Jeb"));
+		assertTrue(reopened.getDataSize() < size - 1);
+		reopened.close();
+	}
+
+	@Test
+	public void least_recently_used_are_removed() throws Exception {
+		byte[] data = new byte[100];
+		ProfilePack pack = new ProfilePack(dir, 1000);
+
+		for (int i = 0; i < 7; i++) {
+			pack.putPortrait("player" + i, data, Instant.now());
+			Thread.sleep(2);
+		}
+
+		//access the oldest player so it's not removed
+		pack.getPortrait("player0");
+		Thread.sleep(2);
+
+		//pushes the file over the limit
+		for (int i = 7; i < 10; i++) {
+			pack.putPortrait("player" + i, data, Instant.now());
+			Thread.sleep(2);
+		}
+
+		assertTrue(pack.getDataSize() <= 1000);
+		assertEquals(7, pack.size());
+		assertNotNull(pack.getPortrait("player0"));
+		assertNotNull(pack.getPortrait("player9"));
+		assertNull(pack.getPortrait("player1"));
+		pack.close();
+
+		pack = new ProfilePack(dir, 1000);
+		assertNotNull(pack.getPortrait("player0"));
+		assertNull(pack.getPortrait("player1"));
+		pack.close();
+	}
+
+	@Test
+	public void compact_removes_old_records() throws Exception {
+		ProfilePack pack = new ProfilePack(dir, Long.MAX_VALUE);
+		for (int i = 0; i < 10; i++) {
+			pack.putProfile("Notch", new byte[100]);
+		}
+		long size = pack.getDataSize();
+
+		pack.compact();
+		assertEquals(size / 10, pack.getDataSize());
+		assertEquals(100, pack.getProfile("Notch").length);
+		pack.close();
+	}
+
+	@Test
+	public void loose_files_are_migrated() throws Exception {
+		Instant lastModified = Instant.ofEpochMilli(1_500_000_000_000L);
+		Files.write(dir.resolve("notch"), bytes(1, 2));
+		Files.setLastModifiedTime(dir.resolve("notch"), FileTime.from(lastModified));
+		Files.write(dir.resolve("notch.properties"), bytes(3));
+		Files.write(dir.resolve("_cache-version"), bytes(4));
+
+		ProfilePack pack = new ProfilePack(dir, Long.MAX_VALUE);
+
+		//the files are only migrated when asked
+		assertNull(pack.getPortrait("Notch"));
+
+		assertEquals(2, pack.migrateLooseFiles());
+		assertArrayEquals(bytes(1, 2), pack.getPortrait("Notch"));
+		assertArrayEquals(bytes(3), pack.getProfile("Notch"));
+		assertEquals(lastModified, pack.getPortraitLastModified("Notch"));
+		pack.close();
+
+		assertFalse(Files.exists(dir.resolve("notch")));
+		assertFalse(Files.exists(dir.resolve("notch.properties")));
+		assertTrue(Files.exists(dir.resolve("_cache-version")));
+
+		pack = new ProfilePack(dir, Long.MAX_VALUE);
+		assertEquals(0, pack.migrateLooseFiles());
+		assertArrayEquals(bytes(1, 2), pack.getPortrait("Notch"));
+		pack.close();
+	}
+
+	@Test
+	public void loose_files_are_migrated_into_existing_pack() throws Exception {
+		ProfilePack pack = new ProfilePack(dir, Long.MAX_VALUE);
+		pack.putProfile("Notch", bytes(1));
+		pack.close();
+
+		Files.write(dir.resolve("notch.properties"), bytes(2));
+		Files.write(dir.resolve("jeb_.properties"), bytes(3));
+
+		pack = new ProfilePack(dir, Long.MAX_VALUE);
+		assertEquals(1, pack.migrateLooseFiles());
+
+		//the pack's copy is newer
+		assertArrayEquals(bytes(1), pack.getProfile("Notch"));
+		assertArrayEquals(bytes(3), pack.getProfile("Jeb_"));
+		pack.close();
+
+		assertFalse(Files.exists(dir.resolve("notch.properties")));
+		assertFalse(Files.exists(dir.resolve("jeb_.properties")));
+	}
+
+	@Test
+	public void compact_failure() throws Exception {
+		ProfilePack pack = new ProfilePack(dir, Long.MAX_VALUE);
+		pack.putProfile("Notch", bytes(1));
+		pack.putProfile("Notch", bytes(2));
+		long size = pack.getDataSize();
+
+		//prevent the temporary file from being created
+		Files.createDirectories(dir.resolve("profiles.dat.tmp").resolve("child"));
+		try {
+			pack.compact();
+			fail();
+		} catch (IOException e) {
+			//expected
+		}
+
+		//the pack can still be used
+		assertEquals(size, pack.getDataSize());
+		assertArrayEquals(bytes(2), pack.getProfile("Notch"));
+		pack.putProfile("Jeb_", bytes(3));
+		assertArrayEquals(bytes(3), pack.getProfile("Jeb_"));
+		pack.close();
+
+		pack = new ProfilePack(dir, Long.MAX_VALUE);
+		assertArrayEquals(bytes(2), pack.getProfile("Notch"));
+		assertArrayEquals(bytes(3), pack.getProfile("Jeb_"));
+		pack.close();
+	}
+
+	private static byte[] bytes(int... values) {
+		byte[] bytes = new byte[values.length];
+		for (int i = 0; i < values.length; i++) {
+			bytes[i] = (byte) values[i];
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,28 @@
+package emcshop.gui;
+
+import static org.junit.Assert.assertEquals;
+
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+
+import org.junit.Test;
+
+import emcshop.query.Measure;
+
+/**
+ * @author Michael Angstadt
+ */
+public class QueryTabTest {
+	@Test
+	public void format() {
+		NumberFormat nf = NumberFormat.getIntegerInstance();
+		NumberFormat df = new DecimalFormat("#,##0.00");
+
+		assertEquals(nf.format(1500) + "r", QueryTab.format(Measure.SUM_AMOUNT, 1500L));
+		assertEquals(new DecimalFormat("#,###.##").format(2.5) + "r", QueryTab.format(Measure.UNIT_PRICE, 2.5));
+		assertEquals(nf.format(-1500), QueryTab.format(Measure.SUM_QUANTITY, -1500L));
+		assertEquals(nf.format(3), QueryTab.format(Measure.COUNT, 3));
+		assertEquals(df.format(1.5), QueryTab.format(Measure.AVG_QUANTITY, 1.5));
+		assertEquals("-", QueryTab.format(Measure.UNIT_PRICE, null));
+	}
+}
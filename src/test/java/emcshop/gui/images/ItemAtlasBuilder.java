@@ -0,0 +1,128 @@
+package emcshop.gui.images;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+/**
+ * <p>
+ * Packs the item icons into the atlas that is used by {@link ItemAtlas}. This
+ * must be re-run whenever an item image is added or changed
+ * ({@link ItemAtlasTest} fails if the atlas is out of date).
+ * </p>
+ * <p>
+ * <b>Usage:</b> {@code ItemAtlasBuilder [RESOURCE_DIR]}
+ * </p>
+ * <p>
+ * RESOURCE_DIR defaults to "src/main/resources/emcshop/gui/images".
+ * </p>
+ * @author Michael Angstadt
+ */
+public class ItemAtlasBuilder {
+	/**
+	 * The width of the atlas image.
+	 */
+	private static final int WIDTH = 512;
+
+	public static void main(String args[]) throws Exception {
+		Path dir = Paths.get((args.length > 0) ? args[0] : "src/main/resources/emcshop/gui/images");
+
+		List<Icon> icons = readIcons(dir.resolve("items"));
+		BufferedImage atlas = pack(icons);
+
+		ImageIO.write(atlas, "png", dir.resolve(ItemAtlas.IMAGE).toFile());
+		try (Writer writer = Files.newBufferedWriter(dir.resolve(ItemAtlas.INDEX), StandardCharsets.UTF_8)) {
+			writer.write(index(icons));
+		}
+
+		System.out.println("Packed " + icons.size() + " icons into a " + atlas.getWidth() + "x" + atlas.getHeight() + " atlas.");
+	}
+
+	/**
+	 * Reads all the icons in the "items" directory.
+	 * @param dir the directory
+	 * @return the icons, sorted by file name
+	 * @throws IOException if there's a problem reading the icons
+	 */
+	static List<Icon> readIcons(Path dir) throws IOException {
+		List<Icon> icons = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.png")) {
+			for (Path file : stream) {
+				BufferedImage image = ImageIO.read(file.toFile());
+				if (image == null) {
+					throw new IOException("Could not decode " + file);
+				}
+				icons.add(new Icon(file.getFileName().toString(), image));
+			}
+		}
+		icons.sort(Comparator.comparing(icon -> icon.name));
+		return icons;
+	}
+
+	/**
+	 * Arranges the icons in rows, tallest first, and draws them into the atlas.
+	 * @param icons the icons (their positions are assigned by this method)
+	 * @return the atlas image
+	 */
+	static BufferedImage pack(List<Icon> icons) {
+		List<Icon> byHeight = new ArrayList<>(icons);
+		byHeight.sort(Comparator.comparingInt((Icon icon) -> icon.image.getHeight()).reversed().thenComparing(icon -> icon.name));
+
+		int x = 0, y = 0, rowHeight = 0;
+		for (Icon icon : byHeight) {
+			int width = icon.image.getWidth();
+			int height = icon.image.getHeight();
+			if (x + width > WIDTH) {
+				x = 0;
+				y += rowHeight;
+				rowHeight = 0;
+			}
+
+			icon.x = x;
+			icon.y = y;
+			x += width;
+			rowHeight = Math.max(rowHeight, height);
+		}
+
+		BufferedImage atlas = new BufferedImage(WIDTH, y + rowHeight, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = atlas.createGraphics();
+		g.setComposite(AlphaComposite.Src); //copy the pixels exactly
+		for (Icon icon : icons) {
+			g.drawImage(icon.image, icon.x, icon.y, null);
+		}
+		g.dispose();
+
+		return atlas;
+	}
+
+	static String index(List<Icon> icons) {
+		StringBuilder sb = new StringBuilder();
+		for (Icon icon : icons) {
+			sb.append(icon.name).append(' ').append(icon.x).append(' ').append(icon.y).append(' ').append(icon.image.getWidth()).append(' ').append(icon.image.getHeight()).append('\n');
+		}
+		return sb.toString();
+	}
+
+	static class Icon {
+		final String name;
+		final BufferedImage image;
+		int x, y;
+
+		Icon(String name, BufferedImage image) {
+			this.name = name;
+			this.image = image;
+		}
+	}
+}
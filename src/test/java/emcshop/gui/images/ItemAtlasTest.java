@@ -0,0 +1,91 @@
+package emcshop.gui.images;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import emcshop.gui.images.ItemAtlasBuilder.Icon;
+
+/**
+ * @author Michael Angstadt
+ */
+public class ItemAtlasTest {
+	@Test
+	public void pack_and_load() throws Exception {
+		List<Icon> icons = Arrays.asList( //@formatter:off
+			icon("a.png", 16, 16, 0xff0000ff),
+			icon("b.png", 16, 8, 0x80ff0000),
+			icon("c.png", 32, 32, 0xff00ff00)
+		); //@formatter:on
+
+		BufferedImage image = ItemAtlasBuilder.pack(icons);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", out);
+		byte[] index = ItemAtlasBuilder.index(icons).getBytes(StandardCharsets.UTF_8);
+
+		ItemAtlas atlas = ItemAtlas.load(new ByteArrayInputStream(out.toByteArray()), new ByteArrayInputStream(index));
+		assertEquals(3, atlas.size());
+		for (Icon icon : icons) {
+			assertSamePixels(icon.name, icon.image, atlas.get(icon.name));
+		}
+		assertNull(atlas.get("d.png"));
+	}
+
+	/**
+	 * Makes sure the atlas was rebuilt after the item images were changed.
+	 */
+	@Test
+	public void atlas_is_up_to_date() throws Exception {
+		List<Icon> icons = ItemAtlasBuilder.readIcons(Paths.get("src/main/resources/emcshop/gui/images/items"));
+		ItemAtlas atlas = ItemAtlas.instance();
+
+		assertEquals("The item atlas is out of date. Run " + ItemAtlasBuilder.class.getSimpleName() + " to rebuild it.", icons.size(), atlas.size());
+		for (Icon icon : icons) {
+			BufferedImage actual = atlas.get(icon.name);
+			assertNotNull("The item atlas is out of date (missing " + icon.name + "). Run " + ItemAtlasBuilder.class.getSimpleName() + " to rebuild it.", actual);
+			assertSamePixels(icon.name, icon.image, actual);
+		}
+	}
+
+	private static void assertSamePixels(String name, BufferedImage expected, BufferedImage actual) {
+		assertEquals(name, expected.getWidth(), actual.getWidth());
+		assertEquals(name, expected.getHeight(), actual.getHeight());
+
+		for (int x = 0; x < expected.getWidth(); x++) {
+			for (int y = 0; y < expected.getHeight(); y++) {
+				int e = expected.getRGB(x, y);
+				int a = actual.getRGB(x, y);
+				if ((e >>> 24) == 0 && (a >>> 24) == 0) {
+					//fully transparent
+					continue;
+				}
+				if (e != a) {
+					fail("The item atlas is out of date (" + name + " differs). Run " + ItemAtlasBuilder.class.getSimpleName() + " to rebuild it.");
+				}
+			}
+		}
+	}
+
+	private static Icon icon(String name, int width, int height, int argb) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				image.setRGB(x, y, argb);
+			}
+		}
+		return new Icon(name, image);
+	}
+}
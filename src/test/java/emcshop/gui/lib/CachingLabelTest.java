@@ -0,0 +1,119 @@
+package emcshop.gui.lib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Color;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.swing.plaf.basic.BasicHTML;
+import javax.swing.text.View;
+
+import org.junit.Test;
+
+/**
+ * @author Michael Angstadt
+ */
+public class CachingLabelTest {
+	@Test
+	public void text_is_built_once() {
+		CachingLabel label = new CachingLabel();
+		Object row1 = new Object();
+		Object row2 = new Object();
+		AtomicInteger calls = new AtomicInteger();
+		Supplier<String> text = () -> "<html><b>" + calls.incrementAndGet();
+
+		assertEquals("<html><b>1", label.setText(row1, 0, text));
+		View view = view(label);
+		assertNotNull(view);
+
+		assertEquals("<html><b>2", label.setText(row2, 0, text));
+		assertEquals("<html><b>3", label.setText(row1, 1, text));
+
+		//cached
+		assertEquals("<html><b>1", label.setText(row1, 0, text));
+		assertEquals("<html><b>1", label.getText());
+		assertSame(view, view(label));
+		assertEquals(3, calls.get());
+		assertEquals(3, label.getCacheSize());
+	}
+
+	@Test
+	public void plain_text() {
+		CachingLabel label = new CachingLabel();
+
+		label.setText(new Object(), 0, () -> "<html>one");
+		assertNotNull(view(label));
+
+		label.setText(new Object(), 0, () -> "two");
+		assertEquals("two", label.getText());
+		assertNull(view(label));
+
+		label.setText(new Object(), 0, () -> null);
+		assertNull(label.getText());
+		assertNull(view(label));
+
+		//uncached
+		label.setText("<html>three");
+		assertNotNull(view(label));
+		label.setText("four");
+		assertNull(view(label));
+		assertEquals(3, label.getCacheSize());
+	}
+
+	@Test
+	public void cached_view_is_not_detached() {
+		CachingLabel label = new CachingLabel();
+		Object row1 = new Object();
+		Object row2 = new Object();
+
+		label.setText(row1, 0, () -> "<html><b>one");
+		View view = view(label);
+		View child = view.getView(0);
+
+		label.setText(row2, 0, () -> "<html><b>two");
+		label.setText(row1, 0, () -> "<html><b>one");
+		assertSame(view, view(label));
+		assertSame(view, child.getParent());
+	}
+
+	@Test
+	public void invalidate() {
+		CachingLabel label = new CachingLabel();
+		Object row = new Object();
+		AtomicInteger calls = new AtomicInteger();
+		Supplier<String> text = () -> "<html>" + calls.incrementAndGet();
+
+		label.setText(row, 0, text);
+		label.setText(row, 1, text);
+		label.invalidate(1);
+		assertEquals(1, label.getCacheSize());
+
+		label.setText(row, 0, text);
+		assertEquals(2, calls.get());
+		label.setText(row, 1, text);
+		assertEquals(3, calls.get());
+
+		//the views are created with the label's color
+		label.setForeground(label.getForeground());
+		assertEquals(2, label.getCacheSize());
+		label.setForeground(Color.RED);
+		assertEquals(0, label.getCacheSize());
+	}
+
+	@Test
+	public void max_size() {
+		CachingLabel label = new CachingLabel(10);
+		for (int i = 0; i < 20; i++) {
+			label.setText(new Object(), 0, () -> "text");
+		}
+		assertEquals(10, label.getCacheSize());
+	}
+
+	private static View view(CachingLabel label) {
+		return (View) label.getClientProperty(BasicHTML.propertyKey);
+	}
+}
@@ -0,0 +1,124 @@
+package emcshop.model;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.logging.LogManager;
+
+import org.apache.commons.io.FileUtils;
+
+import emcshop.AppContext;
+import emcshop.Settings;
+import emcshop.cli.model.UpdateModelCli;
+import emcshop.cli.view.UpdateViewCli;
+import emcshop.db.DirbyEmbeddedDbDao;
+import emcshop.model.UpdateMetrics.Stage;
+import emcshop.presenter.UpdatePresenter;
+import emcshop.scraper.ReplayServer;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+
+/**
+ * Utility program that benchmarks the update process by running a first-time
+ * update against a local {@link ReplayServer}. Each run downloads into a new,
+ * scratch Derby database, using the same code path as the "--update" CLI
+ * command.
+ *
+ * <pre>
+ * --pages=N                number of generated pages to serve (default: 2000)
+ * --recorded=DIR           serve recorded pages ("1.html", "2.html", ...) instead
+ * --threads=N[,N...]       download thread counts to compare (default: 4)
+ * --latency=MS             base latency of each request (default: 0)
+ * --jitter=MS              random latency added to each request (default: 0)
+ * --timeout-rate=R         fraction of pages that time out once (default: 0)
+ * --session-expiry-rate=R  fraction of pages that log the user out once (default: 0)
+ * --seed=N                 seed for the injected latency and errors
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class UpdateBenchmark {
+	public static void main(String[] args) throws Exception {
+		OptionParser parser = new OptionParser();
+		parser.accepts("pages").withRequiredArg().ofType(Integer.class).defaultsTo(2000);
+		parser.accepts("recorded").withRequiredArg();
+		parser.accepts("threads").withRequiredArg().ofType(Integer.class).withValuesSeparatedBy(',').defaultsTo(4);
+		parser.accepts("latency").withRequiredArg().ofType(Integer.class).defaultsTo(0);
+		parser.accepts("jitter").withRequiredArg().ofType(Integer.class).defaultsTo(0);
+		parser.accepts("timeout-rate").withRequiredArg().ofType(Double.class).defaultsTo(0.0);
+		parser.accepts("session-expiry-rate").withRequiredArg().ofType(Double.class).defaultsTo(0.0);
+		parser.accepts("seed").withRequiredArg().ofType(Long.class).defaultsTo(1L);
+		OptionSet options = parser.parse(args);
+
+		LogManager.getLogManager().reset();
+
+		/*
+		 * All databases must be in the same directory, since Derby only reads
+		 * its home directory once.
+		 */
+		Path scratch = Files.createTempDirectory("emcshop-update-benchmark");
+
+		@SuppressWarnings("unchecked")
+		List<Integer> threadCounts = (List<Integer>) options.valuesOf("threads");
+		try {
+			for (Integer threads : threadCounts) {
+				ReplayServer server;
+				if (options.has("recorded")) {
+					server = ReplayServer.recorded(Paths.get((String) options.valueOf("recorded")));
+				} else {
+					server = ReplayServer.generated((Integer) options.valueOf("pages"), LocalDateTime.now().minusDays(1).truncatedTo(ChronoUnit.MINUTES));
+				}
+
+				//@formatter:off
+				server
+					.latency(Duration.ofMillis((Integer) options.valueOf("latency")), Duration.ofMillis((Integer) options.valueOf("jitter")))
+					.timeoutRate((Double) options.valueOf("timeout-rate"))
+					.sessionExpiryRate((Double) options.valueOf("session-expiry-rate"))
+					.seed((Long) options.valueOf("seed"));
+				//@formatter:on
+
+				System.out.println("=== " + server.getTotalPages() + " pages, " + threads + " download threads ===");
+				try {
+					server.start(Math.max(threads, 4));
+					run(server, threads, scratch);
+				} finally {
+					server.close();
+				}
+			}
+		} finally {
+			FileUtils.deleteQuietly(scratch.toFile());
+		}
+	}
+
+	private static void run(ReplayServer server, int threads, Path scratch) throws Exception {
+		String name = "threads-" + threads + "-" + System.nanoTime();
+		DirbyEmbeddedDbDao dao = new DirbyEmbeddedDbDao(scratch.resolve(name));
+		Settings settings = new Settings(scratch.resolve(name + ".properties"));
+		settings.setDownloadThreads(threads);
+		AppContext.init(dao, settings);
+
+		UpdatePresenter presenter;
+		try {
+			IUpdateModel model = new UpdateModelCli(server.readerBuilder().threads(threads), null);
+			presenter = new UpdatePresenter(new UpdateViewCli(null), model);
+		} finally {
+			dao.close();
+		}
+
+		UpdateMetrics metrics = presenter.getMetrics();
+		System.out.println();
+		System.out.println("Requests:        " + server.getRequests() + " (" + server.getErrors() + " disrupted)");
+		System.out.println("Pages:           " + metrics.getPages());
+		System.out.println("Rows:            " + metrics.getRows());
+		System.out.println("Elapsed:         " + metrics.getElapsed().toMillis() + " ms");
+		System.out.println(String.format("Throughput:      %.1f pages/s, %.0f rows/s", metrics.getPagesPerSecond(), metrics.getRowsPerSecond()));
+		System.out.println(String.format("Insert latency:  p50 %.3f ms, p99 %.3f ms", metrics.getInsertLatency(50).toNanos() / 1_000_000.0, metrics.getInsertLatency(99).toNanos() / 1_000_000.0));
+		for (Stage stage : Stage.values()) {
+			System.out.println(String.format("%-17s%d ms", stage.getDisplay() + ":", metrics.getTime(stage).toMillis()));
+		}
+		System.out.println();
+	}
+}
@@ -51,6 +51,7 @@ import emcshop.ReportSender;
 import emcshop.db.DbDao;
 import emcshop.db.PaymentTransactionDb;
 import emcshop.db.ShopTransactionDb;
+import emcshop.db.UpdateLog;
 import emcshop.scraper.EmcSession;
 import emcshop.util.DateGenerator;
 
@@ -607,8 +608,9 @@ public class UpdateModelImplTest {
 
 		verify(dao).updateBonusesFeesSince(t3.getTs());
 		verify(dao).updateBonusesFeesHighestBalance(t1);
-		verify(dao).insertUpdateLog(any(LocalDateTime.class), eq(123), eq(1), eq(1), eq(0), any(Duration.class));
-		verify(dao).commit();
+		verify(dao).insertUpdateLog(updateLog(123, 1, 1, 0, 1));
+		verify(dao).updateUpdateLogCommitTime(eq(0), any(Duration.class));
+		verify(dao, times(2)).commit();
 		verifyNoMoreInteractions(dao);
 	}
 
@@ -655,8 +657,9 @@ public class UpdateModelImplTest {
 
 		verify(dao).updateBonusesFeesHighestBalance(t1);
 
-		verify(dao).insertUpdateLog(any(LocalDateTime.class), eq(123), eq(1), eq(1), eq(1), any(Duration.class));
-		verify(dao).commit();
+		verify(dao).insertUpdateLog(updateLog(123, 1, 1, 1, 1));
+		verify(dao).updateUpdateLogCommitTime(eq(0), any(Duration.class));
+		verify(dao, times(2)).commit();
 		verifyNoMoreInteractions(dao);
 	}
 
@@ -707,8 +710,9 @@ public class UpdateModelImplTest {
 		verify(dao).updateBonusFeeTotals(totals);
 		verify(dao).updateBonusesFeesHighestBalance(t1);
 
-		verify(dao).insertUpdateLog(any(LocalDateTime.class), eq(123), eq(1), eq(1), eq(3), any(Duration.class));
-		verify(dao).commit();
+		verify(dao).insertUpdateLog(updateLog(123, 1, 1, 3, 1));
+		verify(dao).updateUpdateLogCommitTime(eq(0), any(Duration.class));
+		verify(dao, times(2)).commit();
 		verifyNoMoreInteractions(dao);
 	}
 
@@ -819,6 +823,29 @@ public class UpdateModelImplTest {
 		});
 	}
 
+	private static UpdateLog updateLog(int rupeeBalance, int shopTransactions, int paymentTransactions, int bonusFeeTransactions, int pages) {
+		return argThat(new ArgumentMatcher<UpdateLog>() {
+			@Override
+			public boolean matches(Object argument) {
+				UpdateLog arg = (UpdateLog) argument;
+				//@formatter:off
+				return
+					arg.getTs() != null &&
+					arg.getRupeeBalance() == rupeeBalance &&
+					arg.getTransactionCount() == shopTransactions &&
+					arg.getPaymentTransactionCount() == paymentTransactions &&
+					arg.getBonusFeeTransactionCount() == bonusFeeTransactions &&
+					arg.getTimeTaken() != null &&
+					arg.getPageCount() == pages &&
+					arg.getDownloadTime() != null &&
+					arg.getItemNameTime() != null &&
+					arg.getInsertTime() != null &&
+					arg.getInsertLatencyP50().compareTo(arg.getInsertLatencyP99()) <= 0;
+				//@formatter:on
+			}
+		});
+	}
+
 	private class MockReaderBuilder {
 		private final List<List<RupeeTransaction>> pages = new ArrayList<>();
 		private final Map<Integer, IOException> exceptions = new HashMap<>();
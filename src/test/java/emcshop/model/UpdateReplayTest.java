@@ -0,0 +1,172 @@
+package emcshop.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.logging.LogManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.TestName;
+
+import emcshop.AppContext;
+import emcshop.ReportSender;
+import emcshop.Settings;
+import emcshop.db.DirbyMemoryDbDao;
+import emcshop.db.UpdateLog;
+import emcshop.scraper.EmcSession;
+import emcshop.scraper.ReplayServer;
+import emcshop.scraper.RupeePageCache;
+
+/**
+ * Runs the entire update process against a local {@link ReplayServer}.
+ * @author Michael Angstadt
+ */
+public class UpdateReplayTest {
+	@Rule
+	public final TestName name = new TestName();
+
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
+	private DirbyMemoryDbDao dao;
+	private ReplayServer server;
+
+	@BeforeClass
+	public static void beforeClass() {
+		LogManager.getLogManager().reset();
+	}
+
+	@Before
+	public void before() throws Exception {
+		dao = new DirbyMemoryDbDao("UpdateReplayTest-" + name.getMethodName());
+		AppContext.init(dao, mock(ReportSender.class), mock(EmcSession.class));
+	}
+
+	@After
+	public void after() throws Exception {
+		if (server != null) {
+			server.close();
+		}
+		dao.rollback();
+		dao.close();
+	}
+
+	@Test
+	public void first_update() throws Throwable {
+		server = ReplayServer.generated(20, LocalDateTime.now().minusDays(1).truncatedTo(ChronoUnit.MINUTES)).start(4);
+		UpdateModelImpl model = update(server, 4);
+
+		assertNull(model.getDownloadError());
+		assertEquals(20, model.getPagesDownloaded());
+		assertEquals(480, model.getShopTransactionsDownloaded());
+		assertEquals(60, model.getPaymentTransactionsDownloaded());
+		assertEquals(60, model.getBonusFeeTransactionsDownloaded());
+
+		List<UpdateLog> logs = dao.getUpdateLogs(1);
+		assertEquals(1, logs.size());
+		assertEquals(Integer.valueOf(20), logs.get(0).getPageCount());
+		assertEquals(480, logs.get(0).getTransactionCount());
+	}
+
+	@Test
+	public void transient_errors() throws Throwable {
+		//@formatter:off
+		server = ReplayServer.generated(20, LocalDateTime.now().minusDays(1).truncatedTo(ChronoUnit.MINUTES))
+			.timeoutRate(0.1)
+			.sessionExpiryRate(0.2)
+			.latency(Duration.ofMillis(1), Duration.ofMillis(5))
+			.seed(1)
+		.start(4);
+		//@formatter:on
+		UpdateModelImpl model = update(server, 4);
+
+		assertTrue(server.getErrors() > 0);
+		assertNull(model.getDownloadError());
+		assertEquals(20, model.getPagesDownloaded());
+		assertEquals(480, model.getShopTransactionsDownloaded());
+	}
+
+	@Test
+	public void server_errors() throws Throwable {
+		//@formatter:off
+		server = ReplayServer.generated(20, LocalDateTime.now().minusDays(1).truncatedTo(ChronoUnit.MINUTES))
+			.errorRate(0.1)
+			.seed(1)
+		.start(4);
+		//@formatter:on
+		UpdateModelImpl model = update(server, 1);
+
+		//the transactions that were downloaded before the error can still be saved
+		assertNotNull(model.getDownloadError());
+		assertTrue(model.getPagesDownloaded() < 20);
+		assertEquals(1, dao.getUpdateLogs(1).size());
+	}
+
+	@Test
+	public void reimport() throws Throwable {
+		Path root = temp.getRoot().toPath();
+		Settings settings = new Settings(root.resolve("settings.properties"));
+		settings.setPageCacheEnabled(true);
+		RupeePageCache cache = new RupeePageCache(root.resolve("page-cache"));
+		AppContext.init(dao, mock(ReportSender.class), mock(EmcSession.class), settings, cache);
+
+		server = ReplayServer.generated(20, LocalDateTime.now().minusDays(1).truncatedTo(ChronoUnit.MINUTES)).start(4);
+		update(server, 4);
+		assertEquals(20, cache.size());
+
+		int requests = server.getRequests();
+		dao.wipe();
+		UpdateModelImpl model = run(new UpdateModelImpl(cache, 4));
+
+		//the website isn't contacted again
+		assertEquals(requests, server.getRequests());
+
+		assertNull(model.getDownloadError());
+		assertEquals(20, model.getPagesDownloaded());
+		assertEquals(480, model.getShopTransactionsDownloaded());
+		assertEquals(60, model.getPaymentTransactionsDownloaded());
+		assertEquals(60, model.getBonusFeeTransactionsDownloaded());
+		assertEquals(20, cache.size());
+	}
+
+	/**
+	 * Performs a first-time update, without a presenter.
+	 * @param server the server to download from
+	 * @param threads the number of download threads
+	 * @return the model
+	 */
+	static UpdateModelImpl update(ReplayServer server, int threads) throws Throwable {
+		return run(new UpdateModelImpl(server.readerBuilder().threads(threads), null));
+	}
+
+	/**
+	 * Runs an update, without a presenter.
+	 * @param model the model
+	 * @return the model
+	 */
+	static UpdateModelImpl run(UpdateModelImpl model) throws Throwable {
+		Throwable[] uncaught = new Throwable[1];
+		Thread thread = model.startDownload();
+		thread.setUncaughtExceptionHandler((t, e) -> uncaught[0] = e);
+		thread.join();
+		if (uncaught[0] != null) {
+			throw uncaught[0];
+		}
+
+		model.saveTransactions();
+		return model;
+	}
+}
@@ -0,0 +1,113 @@
+package emcshop.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * @author Michael Angstadt
+ */
+public class UpdateSchedulerTest {
+	private static final Duration min = Duration.ofMinutes(5);
+	private static final Duration max = Duration.ofMinutes(60);
+
+	@Test
+	public void nextDelay_first_update() {
+		UpdateScheduler scheduler = new UpdateScheduler(min, max, Duration.ZERO, 50, () -> 0);
+
+		//the first update covers the time since the program was last run, so it is ignored
+		assertEquals(min, scheduler.nextDelay(10000, null));
+	}
+
+	@Test
+	public void nextDelay_adapts_to_rate() {
+		UpdateScheduler scheduler = new UpdateScheduler(min, max, Duration.ZERO, 50, () -> 0);
+		scheduler.nextDelay(0, null);
+
+		//50 transactions in 10 minutes: wait 10 minutes for the next 50
+		assertEquals(Duration.ofMinutes(10), scheduler.nextDelay(50, Duration.ofMinutes(10)));
+
+		//rate doubles: the smoothed rate is 7.5 per minute
+		assertEquals(Duration.ofMillis(400_000), scheduler.nextDelay(100, Duration.ofMinutes(10)));
+	}
+
+	@Test
+	public void nextDelay_busy_shop() {
+		UpdateScheduler scheduler = new UpdateScheduler(min, max, Duration.ZERO, 50, () -> 0);
+		scheduler.nextDelay(0, null);
+
+		assertEquals(min, scheduler.nextDelay(1000, Duration.ofMinutes(5)));
+	}
+
+	@Test
+	public void nextDelay_quiet_shop() {
+		UpdateScheduler scheduler = new UpdateScheduler(min, max, Duration.ZERO, 50, () -> 0);
+		scheduler.nextDelay(0, null);
+
+		assertEquals(Duration.ofMinutes(10), scheduler.nextDelay(0, Duration.ofMinutes(5)));
+		assertEquals(Duration.ofMinutes(20), scheduler.nextDelay(0, Duration.ofMinutes(10)));
+		assertEquals(Duration.ofMinutes(40), scheduler.nextDelay(0, Duration.ofMinutes(20)));
+		assertEquals(max, scheduler.nextDelay(0, Duration.ofMinutes(40)));
+		assertEquals(max, scheduler.nextDelay(0, Duration.ofMinutes(60)));
+
+		//shop gets busy again: the smoothed rate is 8.33 per minute
+		assertEquals(Duration.ofMinutes(6), scheduler.nextDelay(1000, Duration.ofMinutes(60)));
+		assertEquals(min, scheduler.nextDelay(1000, Duration.ofMinutes(6)));
+	}
+
+	@Test
+	public void nextDelay_failed() {
+		UpdateScheduler scheduler = new UpdateScheduler(min, max, Duration.ZERO, 50, () -> 0);
+		scheduler.nextDelay(0, null);
+
+		assertEquals(Duration.ofMinutes(10), scheduler.nextDelay(-1, Duration.ofMinutes(5)));
+		assertEquals(Duration.ofMinutes(20), scheduler.nextDelay(-1, Duration.ofMinutes(10)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void max_less_than_min() {
+		new UpdateScheduler(max, min, Duration.ZERO, () -> 0);
+	}
+
+	@Test
+	public void run() throws Exception {
+		AtomicInteger runs = new AtomicInteger();
+		CountDownLatch latch = new CountDownLatch(3);
+		UpdateScheduler scheduler = new UpdateScheduler(Duration.ofMillis(1), Duration.ofMillis(10), Duration.ZERO, () -> {
+			runs.incrementAndGet();
+			latch.countDown();
+			if (runs.get() == 2) {
+				throw new Exception("failed updates do not stop the scheduler");
+			}
+			return 0;
+		});
+
+		Thread t = new Thread(scheduler);
+		t.start();
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+		scheduler.stop();
+		t.join(5000);
+		assertTrue(!t.isAlive());
+	}
+
+	@Test
+	public void stop_during_initial_delay() throws Exception {
+		AtomicInteger runs = new AtomicInteger();
+		UpdateScheduler scheduler = new UpdateScheduler(min, max, Duration.ofHours(1), () -> runs.incrementAndGet());
+
+		Thread t = new Thread(scheduler);
+		t.start();
+		scheduler.stop();
+		t.join(5000);
+
+		assertTrue(!t.isAlive());
+		assertEquals(0, runs.get());
+	}
+}
@@ -0,0 +1,99 @@
+package emcshop.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import emcshop.db.UpdateLog;
+
+/**
+ * @author Michael Angstadt
+ */
+public class UpdateTimeEstimatorTest {
+	private final LocalDateTime now = LocalDateTime.of(2016, 1, 1, 12, 0);
+
+	@Test
+	public void no_history() {
+		UpdateTimeEstimator estimator = new UpdateTimeEstimator(Collections.<UpdateLog> emptyList(), 4);
+		assertFalse(estimator.isFromHistory());
+		assertEquals(UpdateTimeEstimator.estimateDefault(500), estimator.estimate(500));
+		assertNull(estimator.estimatePages(now));
+	}
+
+	@Test
+	public void history_without_page_counts() {
+		UpdateLog log = log(now, null, null, 1000);
+		UpdateTimeEstimator estimator = new UpdateTimeEstimator(Arrays.asList(log), 4);
+		assertFalse(estimator.isFromHistory());
+	}
+
+	@Test
+	public void estimate() {
+		//@formatter:off
+		UpdateTimeEstimator estimator = new UpdateTimeEstimator(Arrays.asList(
+			log(now.minusHours(2), 10, 4, 3000),
+			log(now.minusHours(1), 20, 4, 5000),
+			log(now, 40, 4, 9000)
+		), 4);
+		//@formatter:on
+
+		assertTrue(estimator.isFromHistory());
+		assertEquals(Duration.ofMillis(1000 + 200 * 100), estimator.estimate(100));
+	}
+
+	@Test
+	public void estimate_same_page_counts() {
+		//@formatter:off
+		UpdateTimeEstimator estimator = new UpdateTimeEstimator(Arrays.asList(
+			log(now.minusHours(1), 10, null, 2000),
+			log(now, 10, null, 4000)
+		), 4);
+		//@formatter:on
+
+		assertEquals(Duration.ofMillis(300 * 100), estimator.estimate(100));
+	}
+
+	@Test
+	public void estimate_scaled_by_threads() {
+		//@formatter:off
+		UpdateTimeEstimator estimator = new UpdateTimeEstimator(Arrays.asList(
+			log(now, 10, 2, 4000)
+		), 4);
+		//@formatter:on
+
+		assertEquals(Duration.ofMillis(200 * 100), estimator.estimate(100));
+	}
+
+	@Test
+	public void estimatePages() {
+		//@formatter:off
+		UpdateTimeEstimator estimator = new UpdateTimeEstimator(Arrays.asList(
+			log(now.minusHours(3), 50, null, 1000),
+			log(now.minusHours(2), 10, null, 1000),
+			log(now.minusHours(1), 30, null, 1000),
+			log(now, 20, null, 1000)
+		), 4);
+		//@formatter:on
+
+		//median is 20 pages per hour
+		assertEquals(Integer.valueOf(40), estimator.estimatePages(now.plusHours(2)));
+		assertEquals(Integer.valueOf(1), estimator.estimatePages(now));
+	}
+
+	private static UpdateLog log(LocalDateTime ts, Integer pages, Integer threads, long ms) {
+		UpdateLog log = new UpdateLog();
+		log.setTs(ts);
+		log.setPageCount(pages);
+		log.setDownloadThreads(threads);
+		log.setTimeTaken(Duration.ofMillis(ms));
+		return log;
+	}
+}
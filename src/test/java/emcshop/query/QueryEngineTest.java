@@ -0,0 +1,209 @@
+package emcshop.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import emcshop.db.DbDao;
+
+/**
+ * @author Michael Angstadt
+ */
+public class QueryEngineTest {
+	@Test
+	public void sort_by_values() throws Exception {
+		DbDao dao = dao(row(10, "diamond"), row(20, "Apple"), row(30, "Cobblestone"));
+		QueryEngine engine = new QueryEngine(dao, item -> Collections.emptyList(), item -> Collections.emptyList());
+
+		List<AggregateRow> rows = engine.execute(query().groupBy(Dimension.ITEM).build());
+		assertValues(rows, "Apple", "Cobblestone", "diamond");
+	}
+
+	@Test
+	public void sort_by_measure() throws Exception {
+		DbDao dao = dao(row(10, "Diamond"), row(20, "Apple"), row(20, "Cobblestone"), row(5, "Dirt"));
+		QueryEngine engine = new QueryEngine(dao, item -> Collections.emptyList(), item -> Collections.emptyList());
+
+		List<AggregateRow> rows = engine.execute(query().groupBy(Dimension.ITEM).sortBy(Measure.SUM_AMOUNT, true).build());
+		assertValues(rows, "Apple", "Cobblestone", "Diamond", "Dirt");
+
+		rows = engine.execute(query().groupBy(Dimension.ITEM).sortBy(Measure.SUM_AMOUNT, false).limit(2).build());
+		assertValues(rows, "Dirt", "Diamond");
+	}
+
+	@Test
+	public void sort_by_measure_without_value() throws Exception {
+		//unit price cannot be calculated when the quantity is zero
+		DbDao dao = dao(new AggregateRow(list("Apple"), 10, 0, 1), new AggregateRow(list("Diamond"), 10, -1, 1), new AggregateRow(list("Dirt"), 100, -1, 1));
+		QueryEngine engine = new QueryEngine(dao, item -> Collections.emptyList(), item -> Collections.emptyList());
+
+		List<AggregateRow> rows = engine.execute(query().groupBy(Dimension.ITEM).sortBy(Measure.UNIT_PRICE, false).build());
+		assertValues(rows, "Diamond", "Dirt", "Apple");
+		assertNull(rows.get(2).get(Measure.UNIT_PRICE));
+	}
+
+	@Test
+	public void roll_up_groups() throws Exception {
+		Map<String, Collection<String>> groups = new HashMap<>();
+		groups.put("Oak Log", Arrays.asList("Logs"));
+		groups.put("Birch Log", Arrays.asList("Logs"));
+		groups.put("Oak Planks", Arrays.asList("Planks", "Oak"));
+
+		//@formatter:off
+		DbDao dao = dao(
+			row(10, "Oak Log", DayOfWeek.MONDAY),
+			row(20, "Birch Log", DayOfWeek.MONDAY),
+			row(40, "Birch Log", DayOfWeek.TUESDAY),
+			row(5, "Oak Planks", DayOfWeek.MONDAY),
+			row(1, "Diamond", DayOfWeek.MONDAY)
+		);
+		//@formatter:on
+		QueryEngine engine = new QueryEngine(dao, item -> groups.getOrDefault(item, Collections.emptyList()), item -> Collections.emptyList());
+
+		List<AggregateRow> rows = engine.execute(query().groupBy(Dimension.GROUP, Dimension.WEEKDAY).build());
+		assertEquals(5, rows.size());
+		assertRow(rows.get(0), 1, list(QueryEngine.NONE, DayOfWeek.MONDAY));
+		assertRow(rows.get(1), 30, list("Logs", DayOfWeek.MONDAY));
+		assertRow(rows.get(2), 40, list("Logs", DayOfWeek.TUESDAY));
+		assertRow(rows.get(3), 5, list("Oak", DayOfWeek.MONDAY));
+		assertRow(rows.get(4), 5, list("Planks", DayOfWeek.MONDAY));
+		assertEquals(2, rows.get(1).getCount());
+	}
+
+	@Test
+	public void top() {
+		List<Integer> numbers = Arrays.asList(5, 3, 9, 1, 7, 3, 8);
+		assertEquals(Arrays.asList(9, 8, 7), QueryEngine.top(numbers, Comparator.reverseOrder(), 3));
+		assertEquals(Arrays.asList(1, 3, 3, 5), QueryEngine.top(numbers, Comparator.naturalOrder(), 4));
+		assertEquals(Arrays.asList(1, 3, 3, 5, 7, 8, 9), QueryEngine.top(numbers, Comparator.naturalOrder(), 10));
+	}
+
+	@Test
+	public void top_rolled_up() throws Exception {
+		Map<String, Collection<String>> groups = new HashMap<>();
+		groups.put("Oak Log", Arrays.asList("Logs"));
+		groups.put("Birch Log", Arrays.asList("Logs"));
+		groups.put("Stone", Arrays.asList("Stone"));
+		groups.put("Dirt", Arrays.asList("Dirt"));
+
+		DbDao dao = dao(row(10, "Oak Log"), row(20, "Birch Log"), row(25, "Stone"), row(5, "Dirt"));
+		QueryEngine engine = new QueryEngine(dao, item -> groups.getOrDefault(item, Collections.emptyList()), item -> Collections.emptyList());
+
+		List<AggregateRow> rows = engine.execute(query().groupBy(Dimension.GROUP).sortBy(Measure.SUM_AMOUNT, true).limit(2).build());
+		assertValues(rows, "Logs", "Stone");
+	}
+
+	@Test
+	public void leaderboard() throws Exception {
+		DbDao dao = mock(DbDao.class);
+		when(dao.getAggregates(any(AggregateQuery.class))).thenAnswer(invocation -> {
+			AggregateQuery query = (AggregateQuery) invocation.getArguments()[0];
+			assertEquals(Arrays.asList(Dimension.PLAYER), query.getDimensions());
+			assertEquals(Measure.SUM_AMOUNT, query.getSortBy());
+			assertEquals(Integer.valueOf(3), query.getLimit());
+
+			//the database returns the top rows, some of which are not customers
+			List<AggregateRow> rows = new ArrayList<>();
+			rows.add(new AggregateRow(list("Notch"), 100, -10, 2));
+			rows.add(new AggregateRow(list("Jeb"), 0, 0, 2));
+			rows.add(new AggregateRow(list("Dinnerbone"), -50, 5, 1));
+			if (!query.isDescending()) {
+				Collections.reverse(rows);
+			}
+			return rows;
+		});
+		QueryEngine engine = new QueryEngine(dao, item -> Collections.emptyList(), item -> Collections.emptyList());
+
+		List<AggregateRow> rows = engine.leaderboard(Leaderboard.CUSTOMERS, Leaderboard.RankBy.REVENUE, null, null, 3);
+		assertValues(rows, "Notch");
+
+		rows = engine.leaderboard(Leaderboard.SUPPLIERS, Leaderboard.RankBy.REVENUE, null, null, 3);
+		assertValues(rows, "Dinnerbone");
+	}
+
+	@Test
+	public void leaderboard_query() {
+		AggregateQuery query = Leaderboard.ITEMS_SOLD.query(Leaderboard.RankBy.VOLUME, 5).build();
+		assertEquals(Arrays.asList(Dimension.ITEM), query.getDimensions());
+		assertEquals(Measure.SUM_QUANTITY, query.getSortBy());
+		assertFalse(query.isDescending()); //sold items have negative quantities
+		assertEquals(Integer.valueOf(5), query.getLimit());
+
+		query = Leaderboard.ITEMS_BOUGHT.query(Leaderboard.RankBy.VOLUME, 5).build();
+		assertTrue(query.isDescending());
+
+		assertEquals(Leaderboard.ITEMS_BOUGHT, Leaderboard.find("Items-Bought"));
+		assertNull(Leaderboard.find("foo"));
+		assertEquals(Leaderboard.RankBy.VOLUME, Leaderboard.RankBy.find("volume"));
+	}
+
+	@Test
+	public void parse() {
+		assertEquals(Arrays.asList(Dimension.PLAYER, Dimension.MONTH), Dimension.parse(" Player, month "));
+		assertEquals(Arrays.asList(Measure.SUM_AMOUNT, Measure.COUNT, Measure.UNIT_PRICE), Measure.parse("sum(amount), COUNT, unit price"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void parse_unknown_dimension() {
+		Dimension.parse("item, color");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void parse_unknown_measure() {
+		Measure.parse("max(amount)");
+	}
+
+	private static AggregateQuery.Builder query() {
+		return new AggregateQuery.Builder().measures(Measure.SUM_AMOUNT);
+	}
+
+	private static DbDao dao(AggregateRow... rows) throws Exception {
+		DbDao dao = mock(DbDao.class);
+		when(dao.getAggregates(any(AggregateQuery.class))).thenAnswer(invocation -> {
+			//return a new list each time, like the real DAO
+			List<AggregateRow> copy = new ArrayList<>();
+			for (AggregateRow row : rows) {
+				copy.add(new AggregateRow(row.getValues(), row.getAmount(), row.getQuantity(), row.getCount()));
+			}
+			return copy;
+		});
+		return dao;
+	}
+
+	private static AggregateRow row(long amount, Object... values) {
+		return new AggregateRow(list(values), amount, -1, 1);
+	}
+
+	private static List<Object> list(Object... values) {
+		return Arrays.asList(values);
+	}
+
+	private static void assertValues(List<AggregateRow> rows, String... expected) {
+		List<Object> actual = new ArrayList<>();
+		for (AggregateRow row : rows) {
+			actual.add(row.getValue(0));
+		}
+		assertEquals(Arrays.asList((Object[]) expected), actual);
+	}
+
+	private static void assertRow(AggregateRow row, long amount, List<Object> values) {
+		assertEquals(values, row.getValues());
+		assertEquals(amount, row.getAmount());
+	}
+}
@@ -0,0 +1,482 @@
+package emcshop.scraper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.NumberFormat;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import com.github.mangstadt.emc.net.EmcServer;
+import com.github.mangstadt.emc.net.EmcWebsiteConnection;
+import com.github.mangstadt.emc.rupees.RupeeTransactionReader;
+import com.github.mangstadt.emc.rupees.RupeeTransactionPageScraper;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransactionPage;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local HTTP server that serves rupee transaction history pages, so that the
+ * update process can be tested and benchmarked without the EMC website. The
+ * pages are either read from a directory of recorded pages or generated on the
+ * fly. Latency and server errors can be injected to simulate a slow or flaky
+ * website.
+ * @author Michael Angstadt
+ */
+public class ReplayServer implements Closeable {
+	/**
+	 * The number of transactions the EMC website displays on each page.
+	 */
+	public static final int TRANSACTIONS_PER_PAGE = 30;
+
+	/**
+	 * How long connections wait for a response before timing out.
+	 */
+	private static final Duration CLIENT_TIMEOUT = Duration.ofMillis(500);
+
+	private static final String PATH = "/rupees/transactions/";
+	private static final Pattern PAGE_PARAM = Pattern.compile("(^|&)page=(\\d+)");
+	private static final String[] ITEMS = { "Diamond", "Stone", "Leather", "Glass", "Iron Ingot", "Oak Log", "Redstone Dust", "Bone" };
+	private static final String[] PLAYERS = { "Notch", "jeb_", "Dinnerbone", "shavingfoam", "Marc", "ColeWalser" };
+
+	private final int totalPages;
+	private final Path recordedPagesDir;
+	private final LocalDateTime latestTransaction;
+	private final ZoneId zone = ZoneId.systemDefault();
+	private final AtomicInteger requests = new AtomicInteger();
+	private final AtomicInteger errors = new AtomicInteger();
+	private final Set<Integer> disruptedPages = new HashSet<>();
+
+	private Duration latency = Duration.ZERO;
+	private Duration latencyJitter = Duration.ZERO;
+	private double errorRate, timeoutRate, sessionExpiryRate;
+	private Random random = new Random();
+
+	private HttpServer server;
+	private ExecutorService executor;
+
+	/**
+	 * Creates a server that generates its pages. Each page contains
+	 * {@link #TRANSACTIONS_PER_PAGE} transactions that are one minute apart. The
+	 * page contents depend only on the page number, so the same pages are
+	 * served every time.
+	 * @param totalPages the number of pages
+	 * @param latestTransaction the date of the first transaction on page 1
+	 * @return the server
+	 */
+	public static ReplayServer generated(int totalPages, LocalDateTime latestTransaction) {
+		return new ReplayServer(totalPages, null, latestTransaction);
+	}
+
+	/**
+	 * Creates a server that serves recorded pages. The directory must contain
+	 * one file per page, named after the page number (e.g. "1.html",
+	 * "2.html").
+	 * @param dir the directory
+	 * @return the server
+	 * @throws IOException if there's a problem reading the directory
+	 */
+	public static ReplayServer recorded(Path dir) throws IOException {
+		int totalPages = 0;
+		try (Stream<Path> stream = Files.list(dir)) {
+			totalPages = (int) stream.filter(file -> file.getFileName().toString().matches("\\d+\\.html")).count();
+		}
+		return new ReplayServer(totalPages, dir, null);
+	}
+
+	private ReplayServer(int totalPages, Path recordedPagesDir, LocalDateTime latestTransaction) {
+		this.totalPages = totalPages;
+		this.recordedPagesDir = recordedPagesDir;
+		this.latestTransaction = latestTransaction;
+	}
+
+	/**
+	 * Sets the amount of time the server waits before sending each page.
+	 * @param latency the base latency
+	 * @param jitter a random amount of time, up to this value, that is added to
+	 * the base latency
+	 * @return this
+	 */
+	public ReplayServer latency(Duration latency, Duration jitter) {
+		this.latency = latency;
+		this.latencyJitter = jitter;
+		return this;
+	}
+
+	/**
+	 * Sets the fraction of requests that fail with a "500 Internal Server
+	 * Error" response. The reader does not recover from these errors, so this
+	 * simulates an update that fails part way through.
+	 * @param errorRate the error rate (between 0 and 1)
+	 * @return this
+	 */
+	public ReplayServer errorRate(double errorRate) {
+		this.errorRate = errorRate;
+		return this;
+	}
+
+	/**
+	 * Sets the fraction of pages whose first request stalls until the
+	 * connection times out. The reader recovers from these by re-creating its
+	 * connection and downloading the page again.
+	 * @param timeoutRate the timeout rate (between 0 and 1)
+	 * @return this
+	 * @see #sessionExpiryRate
+	 */
+	public ReplayServer timeoutRate(double timeoutRate) {
+		this.timeoutRate = timeoutRate;
+		return this;
+	}
+
+	/**
+	 * Sets the fraction of pages whose first request returns a page that
+	 * doesn't contain any transactions, as if the user had been logged out. The
+	 * reader recovers from these by logging in again and downloading the page
+	 * again.
+	 * @param sessionExpiryRate the session expiry rate (between 0 and 1)
+	 * @return this
+	 * @see #timeoutRate
+	 */
+	public ReplayServer sessionExpiryRate(double sessionExpiryRate) {
+		this.sessionExpiryRate = sessionExpiryRate;
+		return this;
+	}
+
+	/**
+	 * Seeds the random number generator that is used to inject latency and
+	 * errors, so that runs are reproducible.
+	 * @param seed the seed
+	 * @return this
+	 */
+	public ReplayServer seed(long seed) {
+		random = new Random(seed);
+		return this;
+	}
+
+	/**
+	 * Starts the server on a random port.
+	 * @param threads the number of threads to handle requests with
+	 * @return this
+	 * @throws IOException if the server can't be started
+	 */
+	public ReplayServer start(int threads) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext(PATH, this::handle);
+		executor = Executors.newFixedThreadPool(threads);
+		server.setExecutor(executor);
+		server.start();
+		return this;
+	}
+
+	/**
+	 * Gets the server's base URI.
+	 * @return the base URI
+	 */
+	public URI getUri() {
+		InetSocketAddress address = server.getAddress();
+		return URI.create("http://" + address.getHostString() + ":" + address.getPort());
+	}
+
+	/**
+	 * Gets the number of pages the server has.
+	 * @return the number of pages
+	 */
+	public int getTotalPages() {
+		return totalPages;
+	}
+
+	/**
+	 * Gets the number of requests the server has received.
+	 * @return the number of requests
+	 */
+	public int getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * Gets the number of errors, timeouts, and session expirations the server
+	 * has injected.
+	 * @return the number of errors
+	 */
+	public int getErrors() {
+		return errors.get();
+	}
+
+	/**
+	 * Creates a transaction reader builder that downloads its pages from this
+	 * server.
+	 * @return the builder
+	 */
+	public RupeeTransactionReader.Builder readerBuilder() {
+		RupeeTransactionReader.Builder builder = new RupeeTransactionReader.Builder(new BasicCookieStore());
+
+		RupeeTransactionPageScraper scraper = new RupeeTransactionPageScraper();
+		ReaderPageSource.set(builder, new ReaderPageSource() {
+			@Override
+			public RupeeTransactionPage getPage(int page, EmcWebsiteConnection connection) throws IOException {
+				return scraper.scrape(connection.getRupeeTransactionPage(page));
+			}
+
+			@Override
+			public EmcWebsiteConnection createSession() {
+				return new Connection(getUri());
+			}
+
+			@Override
+			public EmcWebsiteConnection recreateConnection(EmcWebsiteConnection connection) {
+				return new Connection(getUri());
+			}
+		});
+
+		return builder;
+	}
+
+	@Override
+	public void close() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdownNow();
+		}
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			requests.incrementAndGet();
+
+			String query = exchange.getRequestURI().getRawQuery();
+			Matcher m = (query == null) ? null : PAGE_PARAM.matcher(query);
+			int page = (m != null && m.find()) ? Integer.parseInt(m.group(2)) : 1;
+
+			long delay;
+			Disruption disruption = null;
+			synchronized (random) {
+				delay = latency.toMillis() + (latencyJitter.isZero() ? 0 : (long) (random.nextDouble() * latencyJitter.toMillis()));
+
+				/*
+				 * Timeouts and session expirations only happen once per page,
+				 * since the reader only retries a page once. They never happen
+				 * on page 1, since the reader does not retry its initial
+				 * request.
+				 */
+				double r = random.nextDouble();
+				if (r < errorRate) {
+					disruption = Disruption.ERROR;
+				} else if (page > 1 && !disruptedPages.contains(page)) {
+					r = random.nextDouble();
+					if (r < timeoutRate) {
+						disruption = Disruption.TIMEOUT;
+					} else if (r < timeoutRate + sessionExpiryRate) {
+						disruption = Disruption.SESSION_EXPIRED;
+					}
+					if (disruption != null) {
+						disruptedPages.add(page);
+					}
+				}
+			}
+			if (disruption == Disruption.TIMEOUT) {
+				delay = CLIENT_TIMEOUT.toMillis() * 2;
+			}
+			if (delay > 0) {
+				Thread.sleep(delay);
+			}
+
+			if (disruption != null) {
+				errors.incrementAndGet();
+				switch (disruption) {
+				case ERROR:
+				case TIMEOUT:
+					exchange.sendResponseHeaders(500, -1);
+					return;
+				case SESSION_EXPIRED:
+					send(exchange, "<html><body>You must be logged-in to do that.</body></html>".getBytes(StandardCharsets.UTF_8));
+					return;
+				}
+			}
+
+			/*
+			 * The EMC website displays the first page when a page number past
+			 * the end is requested. The reader relies on this to know when it
+			 * has reached the end.
+			 */
+			if (page < 1 || page > totalPages) {
+				page = 1;
+			}
+
+			byte[] body = (recordedPagesDir == null) ? generatePage(page).getBytes(StandardCharsets.UTF_8) : Files.readAllBytes(recordedPagesDir.resolve(page + ".html"));
+			send(exchange, body);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static void send(HttpExchange exchange, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private enum Disruption {
+		ERROR, TIMEOUT, SESSION_EXPIRED
+	}
+
+	private String generatePage(int page) {
+		NumberFormat nf = NumberFormat.getIntegerInstance(Locale.US);
+		DateTimeFormatter df = DateTimeFormatter.ofPattern("MMM d, yyyy 'at' h:mm a", Locale.US);
+		int totalTransactions = totalPages * TRANSACTIONS_PER_PAGE;
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("<html><body>");
+		sb.append("<h1><span id=\"rupeesBalance\">Your balance: ").append(nf.format(balance(0, totalTransactions))).append("</span>Rupees History</h1>");
+		sb.append("<div class=\"PageNav\" data-page=\"").append(page).append("\" data-last=\"").append(totalPages).append("\"></div>");
+		sb.append("<ol class=\"sectionItems\">");
+		for (int i = 0; i < TRANSACTIONS_PER_PAGE; i++) {
+			int index = (page - 1) * TRANSACTIONS_PER_PAGE + i;
+			LocalDateTime ts = latestTransaction.minusMinutes(index);
+			String player = PLAYERS[index % PLAYERS.length];
+			String item = ITEMS[index % ITEMS.length];
+			int quantity = index % 64 + 1;
+
+			String description;
+			int amount;
+			switch (index % 10) {
+			case 0:
+				description = "Payment from " + player;
+				amount = 100;
+				break;
+			case 1:
+				description = "Daily sign-in bonus";
+				amount = 400;
+				break;
+			case 2:
+			case 3:
+				description = "Your player shop bought " + quantity + " " + item + " from " + player;
+				amount = -quantity;
+				break;
+			default:
+				description = "Player shop sold " + quantity + " " + item + " to " + player;
+				amount = quantity * 2;
+				break;
+			}
+
+			//@formatter:off
+			sb.append("<li class=\"sectionItem\">")
+				.append("<div class=\"listBlock time\"><abbr class=\"DateTime\" data-time=\"").append(ts.atZone(zone).toEpochSecond()).append("\">").append(df.format(ts)).append("</abbr></div>")
+				.append("<div class=\"listBlock description\">").append(description).append("</div>")
+				.append("<div class=\"listBlock amount\">").append(amount < 0 ? "- " : "+ ").append(nf.format(Math.abs(amount))).append("</div>")
+				.append("<div class=\"listBlock balance\">").append(nf.format(balance(index, totalTransactions))).append("</div>")
+			.append("</li>");
+			//@formatter:on
+		}
+		sb.append("</ol></body></html>");
+		return sb.toString();
+	}
+
+	private static int balance(int index, int totalTransactions) {
+		return 100_000 + (totalTransactions - index) * 10;
+	}
+
+	/**
+	 * A connection to the replay server.
+	 */
+	private static class Connection implements EmcWebsiteConnection {
+		private final URI baseUri;
+		private final CookieStore cookieStore = new BasicCookieStore();
+		private final CloseableHttpClient client;
+
+		public Connection(URI baseUri) {
+			this.baseUri = baseUri;
+			HttpHost host = new HttpHost(baseUri.getHost(), baseUri.getPort());
+
+			int timeout = (int) CLIENT_TIMEOUT.toMillis();
+			//@formatter:off
+			client = HttpClients.custom()
+				.setDefaultCookieStore(cookieStore)
+				.setDefaultRequestConfig(RequestConfig.custom().setConnectTimeout(timeout).setSocketTimeout(timeout).build())
+				.setRoutePlanner((target, request, context) -> new HttpRoute(host)) //send requests for the EMC website to this server
+			.build();
+			//@formatter:on
+		}
+
+		@Override
+		public Document getRupeeTransactionPage(int page) throws IOException {
+			String url = baseUri + PATH + "?page=" + page;
+			HttpResponse response = client.execute(new HttpGet(url));
+			HttpEntity entity = response.getEntity();
+			try {
+				int status = response.getStatusLine().getStatusCode();
+				if (status != 200) {
+					throw new IOException("HTTP " + status + " returned for " + url);
+				}
+				try (InputStream in = entity.getContent()) {
+					return Jsoup.parse(in, "UTF-8", url);
+				}
+			} finally {
+				EntityUtils.consumeQuietly(entity);
+			}
+		}
+
+		@Override
+		public Document getProfilePage(String playerName) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public List<String> getOnlinePlayers(EmcServer server) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public CookieStore getCookieStore() {
+			return cookieStore;
+		}
+
+		@Override
+		public HttpClient getHttpClient() {
+			return client;
+		}
+
+		@Override
+		public void close() throws IOException {
+			client.close();
+		}
+	}
+}
@@ -0,0 +1,301 @@
+package emcshop.scraper;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.NumberFormat;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.mangstadt.emc.rupees.RupeeTransactionPageScraper;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransactionPage;
+import com.github.mangstadt.emc.rupees.dto.ShopTransaction;
+
+import emcshop.scraper.RupeePageCache.Entry;
+
+/**
+ * @author Michael Angstadt
+ */
+public class RupeePageCacheTest {
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
+	private final LocalDateTime now = LocalDateTime.of(2016, 1, 1, 12, 0);
+	private Path dir;
+
+	@Before
+	public void before() throws Exception {
+		dir = temp.getRoot().toPath().resolve("page-cache");
+	}
+
+	@Test
+	public void empty() throws Exception {
+		RupeePageCache cache = new RupeePageCache(dir);
+		assertEquals(0, cache.size());
+		assertTrue(cache.getEntries().isEmpty());
+
+		try (RupeeTransactionSource source = cache.replay(2)) {
+			assertNull(source.next());
+			assertNull(source.getRupeeBalance());
+		}
+	}
+
+	@Test
+	public void add_and_read() throws Exception {
+		List<RupeeTransaction> transactions = transactions(8, 10);
+
+		byte[] html = html(3, 50_000, transactions);
+
+		RupeePageCache cache = new RupeePageCache(dir);
+		cache.add(3, html, parse(html));
+
+		//re-open the cache
+		cache = new RupeePageCache(dir);
+		List<Entry> entries = cache.getEntries();
+		assertEquals(1, entries.size());
+
+		Entry entry = entries.get(0);
+		assertEquals(3, entry.getPage());
+		assertEquals(now.minusMinutes(8), entry.getNewest());
+		assertEquals(now.minusMinutes(10), entry.getOldest());
+		assertEquals(3, entry.getTransactionCount());
+		assertEquals(Integer.valueOf(50_000), entry.getRupeeBalance());
+
+		//the page is stored exactly as it was downloaded
+		assertArrayEquals(html, cache.read(entry));
+
+		RupeeTransactionPage page = cache.parse(entry);
+		assertEquals(Integer.valueOf(50_000), page.getRupeeBalance());
+		assertTransactions(transactions, page.getTransactions());
+
+		//the descriptions are parsed again
+		assertTrue(page.getTransactions().get(0) instanceof ShopTransaction);
+		ShopTransaction shop = (ShopTransaction) page.getTransactions().get(0);
+		assertEquals("Notch", shop.getShopCustomer());
+		assertEquals(-8, shop.getQuantity());
+	}
+
+	@Test
+	public void special_characters() throws Exception {
+		//@formatter:off
+		List<RupeeTransaction> transactions = Arrays.asList(
+			new RupeeTransaction.Builder<>().ts(now).description("Gave <b>100</b> rupees & \"more\" to §aplayer").amount(-1_000_000).balance(-5).build()
+		);
+		//@formatter:on
+
+		RupeePageCache cache = new RupeePageCache(dir);
+		add(cache, 1, null, transactions);
+
+		Entry entry = cache.getEntries().get(0);
+		assertNull(entry.getRupeeBalance());
+		RupeeTransactionPage page = cache.parse(entry);
+		assertNull(page.getRupeeBalance());
+		assertTransactions(transactions, page.getTransactions());
+	}
+
+	@Test
+	public void getEntries_range() throws Exception {
+		RupeePageCache cache = new RupeePageCache(dir);
+		add(cache, 1, null, transactions(0, 4));
+		add(cache, 2, null, transactions(5, 9));
+		add(cache, 3, null, transactions(10, 14));
+
+		assertEquals(3, cache.getEntries(null, null).size());
+
+		List<Entry> entries = cache.getEntries(now.minusMinutes(9), now.minusMinutes(4));
+		assertEquals(2, entries.size());
+		assertEquals(1, entries.get(0).getPage());
+		assertEquals(2, entries.get(1).getPage());
+
+		entries = cache.getEntries(null, now.minusMinutes(10));
+		assertEquals(1, entries.size());
+		assertEquals(3, entries.get(0).getPage());
+
+		assertTrue(cache.getEntries(now.plusMinutes(1), null).isEmpty());
+	}
+
+	@Test
+	public void replay() throws Exception {
+		RupeePageCache cache = new RupeePageCache(dir);
+
+		//an update that downloaded the older transactions
+		add(cache, 1, 100, transactions(10, 14));
+		add(cache, 2, 100, transactions(15, 19));
+
+		//a later update that downloaded the newer transactions, and some of the older ones again
+		add(cache, 1, 200, transactions(0, 4));
+		add(cache, 2, 200, transactions(5, 12));
+
+		List<RupeeTransaction> expected = transactions(0, 19);
+		List<RupeeTransaction> actual = new ArrayList<>();
+		List<Integer> pages = new ArrayList<>();
+		try (RupeeTransactionSource source = cache.replay(2)) {
+			RupeeTransaction transaction;
+			while ((transaction = source.next()) != null) {
+				actual.add(transaction);
+				pages.add(source.getCurrentPageNumber());
+				assertEquals(Integer.valueOf(200), source.getRupeeBalance());
+			}
+		}
+
+		assertTransactions(expected, actual);
+		assertEquals(Integer.valueOf(1), pages.get(0));
+		assertEquals(Integer.valueOf(2), pages.get(5));
+		assertEquals(Integer.valueOf(3), pages.get(13));
+		assertEquals(Integer.valueOf(4), pages.get(19));
+	}
+
+	@Test
+	public void incomplete_write() throws Exception {
+		RupeePageCache cache = new RupeePageCache(dir);
+		add(cache, 1, null, transactions(0, 4));
+		add(cache, 2, null, transactions(5, 9));
+
+		//simulate the application terminating while a page was being written
+		append(dir.resolve("pages.dat"), 100);
+		append(dir.resolve("pages.idx"), 20);
+
+		cache = new RupeePageCache(dir);
+		assertEquals(2, cache.size());
+
+		add(cache, 3, null, transactions(10, 14));
+		cache = new RupeePageCache(dir);
+		assertEquals(3, cache.size());
+		assertTransactions(transactions(10, 14), cache.parse(cache.getEntries().get(2)).getTransactions());
+	}
+
+	@Test
+	public void clear() throws Exception {
+		RupeePageCache cache = new RupeePageCache(dir);
+		add(cache, 1, null, transactions(0, 4));
+		cache.clear();
+		assertEquals(0, cache.size());
+
+		cache = new RupeePageCache(dir);
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void replay_first_page_cached_twice() throws Exception {
+		RupeePageCache cache = new RupeePageCache(dir);
+		add(cache, 1, 100, transactions(0, 4));
+		add(cache, 2, 100, transactions(5, 9));
+
+		//an update that didn't download anything new
+		add(cache, 1, 100, transactions(0, 4));
+
+		List<RupeeTransaction> actual = new ArrayList<>();
+		try (RupeeTransactionSource source = cache.replay(2)) {
+			RupeeTransaction transaction;
+			while ((transaction = source.next()) != null) {
+				actual.add(transaction);
+			}
+		}
+
+		assertTransactions(transactions(0, 9), actual);
+	}
+
+	private static void add(RupeePageCache cache, int page, Integer rupeeBalance, List<RupeeTransaction> transactions) throws IOException {
+		byte[] html = html(page, rupeeBalance, transactions);
+		cache.add(page, html, parse(html));
+	}
+
+	private static RupeeTransactionPage parse(byte[] html) {
+		return new RupeeTransactionPageScraper().scrape(Jsoup.parse(new String(html, StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Renders a transaction history page using the same markup as the website.
+	 * @param page the page number
+	 * @param rupeeBalance the rupee balance or null to leave it out
+	 * @param transactions the transactions
+	 * @return the HTML page
+	 */
+	private static byte[] html(int page, Integer rupeeBalance, List<RupeeTransaction> transactions) {
+		NumberFormat nf = NumberFormat.getIntegerInstance(Locale.US);
+		ZoneId zone = ZoneId.systemDefault();
+
+		Document document = Document.createShell("");
+		Element body = document.body();
+
+		if (rupeeBalance != null) {
+			body.appendElement("span").attr("id", "rupeesBalance").text("Your balance: " + nf.format(rupeeBalance));
+		}
+		body.appendElement("div").addClass("PageNav").attr("data-page", Integer.toString(page)).attr("data-last", Integer.toString(page));
+
+		Element list = body.appendElement("ol").addClass("sectionItems");
+		for (RupeeTransaction transaction : transactions) {
+			Element item = list.appendElement("li").addClass("sectionItem");
+
+			long epoch = transaction.getTs().atZone(zone).toEpochSecond();
+			item.appendElement("div").addClass("time").appendElement("abbr").attr("data-time", Long.toString(epoch));
+			item.appendElement("div").addClass("description").text(transaction.getDescription());
+
+			int amount = transaction.getAmount();
+			item.appendElement("div").addClass("amount").text(((amount < 0) ? "- " : "+ ") + nf.format(Math.abs(amount)));
+			item.appendElement("div").addClass("balance").text(nf.format(transaction.getBalance()));
+		}
+
+		return document.outerHtml().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Creates shop transactions that occurred one minute apart.
+	 * @param from the age of the newest transaction (in minutes)
+	 * @param to the age of the oldest transaction (in minutes)
+	 * @return the transactions (newest first)
+	 */
+	private List<RupeeTransaction> transactions(int from, int to) {
+		List<RupeeTransaction> transactions = new ArrayList<>();
+		for (int i = from; i <= to; i++) {
+			//@formatter:off
+			transactions.add(new RupeeTransaction.Builder<>()
+				.ts(now.minusMinutes(i))
+				.description("Player shop sold " + i + " Apple to Notch")
+				.amount(i * 1000)
+				.balance(100_000 - i)
+			.build());
+			//@formatter:on
+		}
+		return transactions;
+	}
+
+	private static void assertTransactions(List<RupeeTransaction> expected, List<RupeeTransaction> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			RupeeTransaction e = expected.get(i);
+			RupeeTransaction a = actual.get(i);
+			assertEquals(e.getTs(), a.getTs());
+			assertEquals(e.getDescription(), a.getDescription());
+			assertEquals(e.getAmount(), a.getAmount());
+			assertEquals(e.getBalance(), a.getBalance());
+		}
+	}
+
+	private static void append(Path file, int bytes) throws IOException {
+		try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.APPEND)) {
+			out.write(new byte[bytes]);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package emcshop.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Michael Angstadt
+ */
+public class AhoCorasickTest {
+	@Test
+	public void containsAny() {
+		AhoCorasick matcher = new AhoCorasick(Arrays.asList("he", "she", "his", "hers"));
+
+		assertTrue(matcher.containsAny("ushers"));
+		assertTrue(matcher.containsAny("his"));
+		assertTrue(matcher.containsAny("ahishers"));
+		assertTrue(matcher.containsAny("he"));
+		assertFalse(matcher.containsAny("hi"));
+		assertFalse(matcher.containsAny("h"));
+		assertFalse(matcher.containsAny(""));
+		assertFalse(matcher.containsAny("HERS"));
+	}
+
+	@Test
+	public void suffix_matches() {
+		//"abcd" fails over to "bc", which is a pattern
+		AhoCorasick matcher = new AhoCorasick(Arrays.asList("abcx", "bc"));
+		assertTrue(matcher.containsAny("abcd"));
+
+		matcher = new AhoCorasick(Arrays.asList("aab"));
+		assertTrue(matcher.containsAny("aaab"));
+	}
+
+	@Test
+	public void no_patterns() {
+		AhoCorasick matcher = new AhoCorasick(Collections.emptyList());
+		assertFalse(matcher.containsAny("text"));
+		assertFalse(matcher.containsAny(""));
+	}
+
+	@Test
+	public void empty_pattern() {
+		AhoCorasick matcher = new AhoCorasick(Arrays.asList("abc", ""));
+		assertTrue(matcher.containsAny("xyz"));
+		assertTrue(matcher.containsAny(""));
+	}
+
+	@Test
+	public void same_as_contains() {
+		Random random = new Random(1);
+		for (int i = 0; i < 500; i++) {
+			List<String> patterns = Arrays.asList(randomString(random, 3), randomString(random, 3), randomString(random, 4));
+			AhoCorasick matcher = new AhoCorasick(patterns);
+
+			String text = randomString(random, 12);
+			boolean expected = patterns.stream().anyMatch(text::contains);
+			assertEquals(patterns + " " + text, expected, matcher.containsAny(text));
+		}
+	}
+
+	private static String randomString(Random random, int maxLength) {
+		int length = 1 + random.nextInt(maxLength);
+		StringBuilder sb = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			sb.append((char) ('a' + random.nextInt(3)));
+		}
+		return sb.toString();
+	}
+}
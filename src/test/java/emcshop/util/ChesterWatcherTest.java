@@ -0,0 +1,181 @@
+package emcshop.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Michael Angstadt
+ */
+public class ChesterWatcherTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final BlockingQueue<List<ChesterFile>> batches = new LinkedBlockingQueue<>();
+
+	@Test
+	public void new_files() throws Exception {
+		Path dir = folder.newFolder(".chester").toPath();
+		Path old = write(dir, "old.chester", "19 1", Instant.now().minusSeconds(60));
+
+		try (ChesterWatcher watcher = new ChesterWatcher(dir, 60_000, batches::add)) {
+			watcher.start();
+
+			write(dir, "1.chester", "19 64", Instant.now().plusSeconds(5));
+			write(dir, "2.chester", "Zombie-Virus 5", Instant.now().plusSeconds(5));
+
+			Map<String, Integer> items = items(2);
+			assertEquals(Integer.valueOf(64), items.get("19"));
+			assertEquals(Integer.valueOf(5), items.get("Zombie Virus"));
+		}
+
+		//files are deleted after they are parsed
+		assertFalse(Files.exists(dir.resolve("1.chester")));
+		assertFalse(Files.exists(dir.resolve("2.chester")));
+
+		//files that existed before the watcher was started are ignored
+		assertTrue(Files.exists(old));
+	}
+
+	@Test
+	public void directory_created_later() throws Exception {
+		Path dir = folder.getRoot().toPath().resolve(".chester");
+
+		try (ChesterWatcher watcher = new ChesterWatcher(dir, 60_000, batches::add)) {
+			watcher.start();
+
+			Files.createDirectory(dir);
+			write(dir, "1.chester", "19 64", Instant.now().plusSeconds(5));
+
+			assertEquals(Integer.valueOf(64), items(1).get("19"));
+		}
+	}
+
+	@Test
+	public void invalid_file() throws Exception {
+		Path dir = folder.newFolder(".chester").toPath();
+
+		try (ChesterWatcher watcher = new ChesterWatcher(dir, 60_000, batches::add)) {
+			watcher.start();
+
+			Path file = write(dir, "bad.chester", "not an item", Instant.now().plusSeconds(5));
+			write(dir, "good.chester", "19 64", Instant.now().plusSeconds(5));
+
+			assertEquals(Integer.valueOf(64), items(1).get("19"));
+			assertFalse(Files.exists(file));
+		}
+	}
+
+	@Test
+	public void unreadable_file() throws Exception {
+		Path dir = folder.newFolder(".chester").toPath();
+
+		List<LogRecord> errors = new ArrayList<>();
+		Handler handler = new Handler() {
+			@Override
+			public void publish(LogRecord record) {
+				synchronized (errors) {
+					errors.add(record);
+				}
+			}
+
+			@Override
+			public void flush() {
+				//empty
+			}
+
+			@Override
+			public void close() {
+				//empty
+			}
+		};
+		Logger logger = Logger.getLogger(ChesterWatcher.class.getName());
+		logger.addHandler(handler);
+
+		try (ChesterWatcher watcher = new ChesterWatcher(dir, 50, batches::add)) {
+			watcher.start();
+
+			//a directory can be neither read nor deleted
+			Path file = dir.resolve("bad.chester");
+			Files.createDirectory(file);
+			Files.createFile(file.resolve("child"));
+			Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(5)));
+			write(dir, "good.chester", "19 64", Instant.now().plusSeconds(5));
+
+			assertEquals(Integer.valueOf(64), items(1).get("19"));
+
+			//give the watcher time to scan the directory a few more times
+			Thread.sleep(500);
+		} finally {
+			logger.removeHandler(handler);
+		}
+
+		synchronized (errors) {
+			assertEquals(1, errors.size());
+		}
+	}
+
+	@Test
+	public void close_before_any_files() throws Exception {
+		Path dir = folder.newFolder(".chester").toPath();
+
+		ChesterWatcher watcher = new ChesterWatcher(dir, 60_000, batches::add);
+		Thread thread = watcher.start();
+		watcher.close();
+
+		assertFalse(thread.isAlive());
+		assertNull(batches.poll());
+	}
+
+	/**
+	 * Waits for the listener to receive the given number of files.
+	 * @param count the number of files
+	 * @return the items from all the files
+	 */
+	private Map<String, Integer> items(int count) throws InterruptedException {
+		List<ChesterFile> files = new ArrayList<>();
+		while (files.size() < count) {
+			List<ChesterFile> batch = batches.poll(10, TimeUnit.SECONDS);
+			if (batch == null) {
+				throw new AssertionError("Timed out waiting for Chester files.");
+			}
+			files.addAll(batch);
+		}
+
+		return files.stream().flatMap(file -> file.getItems().entrySet().stream()).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+	}
+
+	private static Path write(Path dir, String name, String item, Instant modified) throws Exception {
+		/*
+		 * The watcher ignores files that were modified before it was created,
+		 * so make sure that the time is not affected by the file system's
+		 * timestamp resolution. The file is moved into place so the watcher
+		 * doesn't see it before it is complete.
+		 */
+		Path temp = dir.getParent().resolve(name + ".tmp");
+		Files.write(temp, ("1\n10 20 30\n" + item + "\n").getBytes());
+		Files.setLastModifiedTime(temp, FileTime.from(modified));
+		return Files.move(temp, dir.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -0,0 +1,166 @@
+package emcshop.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
+
+import org.junit.Test;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * @author Michael Angstadt
+ */
+public class ImageCacheTest {
+	@Test
+	public void get_put() {
+		ImageCache cache = new ImageCache();
+		ImageIcon image16 = image(16), image32 = image(32);
+
+		cache.put("Notch", 16, image16);
+		cache.put("Notch", 32, image32);
+
+		assertSame(image16, cache.get("notch", 16));
+		assertSame(image32, cache.get("NOTCH", 32));
+		assertNull(cache.get("Notch", 64));
+		assertNull(cache.get("Jeb", 16));
+	}
+
+	@Test
+	public void clear() {
+		ImageCache cache = new ImageCache();
+		cache.put("Notch", 16, image(16));
+		cache.put("Notch", 32, image(32));
+		cache.put("Notch2", 16, image(16));
+
+		cache.clear("NOTCH");
+		assertNull(cache.get("Notch", 16));
+		assertNull(cache.get("Notch", 32));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void bounded_by_image_size() {
+		//room for four 16x16 images
+		ImageCache cache = new ImageCache(16 * 16 * 4 * 4);
+
+		for (int i = 0; i < 10; i++) {
+			cache.put("player" + i, 16, image(16));
+		}
+
+		assertTrue(cache.size() <= 4);
+		CacheStats stats = cache.getStats();
+		assertTrue(stats.evictionCount() >= 6);
+
+		cache.get("player9", 16);
+		cache.get("player0", 16);
+		stats = cache.getStats();
+		assertEquals(1, stats.hitCount());
+		assertEquals(1, stats.missCount());
+	}
+
+	@Test
+	public void load_in_background() throws Exception {
+		ImageCache cache = new ImageCache();
+		ImageIcon image = image(16);
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch loaderRunning = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		BlockingQueue<ImageIcon> loaded = new LinkedBlockingQueue<>();
+		BlockingQueue<Boolean> onEdt = new LinkedBlockingQueue<>();
+
+		for (int i = 0; i < 3; i++) {
+			ImageIcon result = cache.get("Notch", 16, () -> {
+				loads.incrementAndGet();
+				loaderRunning.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				return image;
+			}, icon -> {
+				onEdt.add(SwingUtilities.isEventDispatchThread());
+				loaded.add(icon);
+			});
+			assertNull(result);
+		}
+
+		assertTrue(loaderRunning.await(5, TimeUnit.SECONDS));
+		release.countDown();
+
+		for (int i = 0; i < 3; i++) {
+			assertSame(image, loaded.poll(5, TimeUnit.SECONDS));
+			assertTrue(onEdt.poll());
+		}
+
+		//the image is only loaded once
+		assertEquals(1, loads.get());
+		assertSame(image, cache.get("Notch", 16));
+		assertSame(image, cache.get("Notch", 16, () -> null, icon -> {
+		}));
+	}
+
+	@Test
+	public void clear_while_loading() throws Exception {
+		ImageCache cache = new ImageCache();
+		ImageIcon oldImage = image(16), newImage = image(16);
+		CountDownLatch loaderRunning = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		BlockingQueue<ImageIcon> loaded = new LinkedBlockingQueue<>();
+
+		cache.get("Notch", 16, () -> {
+			loaderRunning.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			return oldImage;
+		}, loaded::add);
+
+		assertTrue(loaderRunning.await(5, TimeUnit.SECONDS));
+		cache.clear("Notch");
+		release.countDown();
+		assertSame(oldImage, loaded.poll(5, TimeUnit.SECONDS));
+
+		//the out of date image is not cached
+		assertNull(cache.get("Notch", 16));
+
+		//the image is loaded again
+		assertNull(cache.get("Notch", 16, () -> newImage, loaded::add));
+		assertSame(newImage, loaded.poll(5, TimeUnit.SECONDS));
+		assertSame(newImage, cache.get("Notch", 16));
+	}
+
+	@Test
+	public void load_in_background_not_found() throws Exception {
+		ImageCache cache = new ImageCache();
+		CountDownLatch loaded = new CountDownLatch(1);
+		BlockingQueue<ImageIcon> callbacks = new LinkedBlockingQueue<>();
+
+		cache.get("Notch", 16, () -> {
+			loaded.countDown();
+			return null;
+		}, callbacks::add);
+
+		assertTrue(loaded.await(5, TimeUnit.SECONDS));
+		assertNull(callbacks.poll(200, TimeUnit.MILLISECONDS));
+		assertEquals(0, cache.size());
+	}
+
+	private static ImageIcon image(int size) {
+		return new ImageIcon(new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB));
+	}
+}
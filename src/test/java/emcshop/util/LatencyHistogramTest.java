@@ -0,0 +1,64 @@
+package emcshop.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.Test;
+
+/**
+ * @author Michael Angstadt
+ */
+public class LatencyHistogramTest {
+	@Test
+	public void empty() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getCount());
+		assertEquals(Duration.ZERO, histogram.getPercentile(50));
+		assertEquals(Duration.ZERO, histogram.getMax());
+	}
+
+	@Test
+	public void percentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 100; i++) {
+			histogram.add(Duration.ofMillis(i).toNanos());
+		}
+
+		assertEquals(100, histogram.getCount());
+		assertEquals(Duration.ofMillis(100), histogram.getMax());
+		assertWithin5Percent(Duration.ofMillis(50), histogram.getPercentile(50));
+		assertWithin5Percent(Duration.ofMillis(99), histogram.getPercentile(99));
+		assertEquals(Duration.ofMillis(100), histogram.getPercentile(100));
+	}
+
+	@Test
+	public void percentile_never_exceeds_max() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.add(Duration.ofMillis(3).toNanos());
+		assertTrue(histogram.getPercentile(99).compareTo(Duration.ofMillis(3)) <= 0);
+	}
+
+	@Test
+	public void very_large_sample() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.add(Duration.ofHours(5).toNanos());
+		assertEquals(1, histogram.getCount());
+		assertEquals(Duration.ofHours(5), histogram.getMax());
+	}
+
+	@Test
+	public void clear() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.add(1000);
+		histogram.clear();
+		assertEquals(0, histogram.getCount());
+		assertEquals(Duration.ZERO, histogram.getPercentile(50));
+	}
+
+	private static void assertWithin5Percent(Duration expected, Duration actual) {
+		double diff = Math.abs(expected.toNanos() - actual.toNanos()) / (double) expected.toNanos();
+		assertTrue("Expected " + expected + " but was " + actual, diff <= 0.05);
+	}
+}